@@ -0,0 +1,57 @@
+package ZeroKit.Benchmarks;
+
+import ZeroKit.Utils.Base64;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base64 encoding and decoding, 32 bytes being the size of a signature and an admin key
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Base64Benchmark {
+    // Length of the encoded data
+    @Param({ "32", "1024", "65536" })
+    public int length;
+
+    // Raw data
+    private byte[] data;
+
+    // Encoded data
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        data = new byte[length];
+        new Random(2).nextBytes(data);
+        encoded = Base64.encodeToString(data, Base64.NO_WRAP);
+    }
+
+    @Benchmark
+    public String encodeToString() {
+        return Base64.encodeToString(data, Base64.NO_WRAP);
+    }
+
+    @Benchmark
+    public byte[] decode() {
+        return Base64.decode(encoded, Base64.DEFAULT);
+    }
+}
@@ -0,0 +1,30 @@
+package ZeroKit.Benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar
+ * Accepts the usual JMH command line (e.g. java -jar target/benchmarks.jar Signer -f 1), and adds the GC profiler
+ * unless other profilers are requested, so every run reports the allocation rate next to the throughput.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp() || options.shouldList() || options.shouldListProfilers() || options.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+        if (options.getProfilers().isEmpty())
+            builder.addProfiler(GCProfiler.class);
+
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,100 @@
+package ZeroKit.Benchmarks;
+
+import ZeroKit.Http.HttpConnectionPool;
+import ZeroKit.Http.HttpResponse;
+import ZeroKit.Http.HttpTransport;
+import ZeroKit.Http.HttpTransports;
+import ZeroKit.Testing.ZeroKitAdminApiStubServer;
+import ZeroKit.ZeroKitAdminApiClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signed admin calls through {@link ZeroKitAdminApiClient#doHttpCall} against the in-process {@link ZeroKitAdminApiStubServer}
+ * The stub verifies every signature and content hash. The allocation rate reported by the GC profiler includes the stub
+ * server, which runs in the same JVM.
+ * The JDK server speaks HTTP/1.1 only, so the java.net.http transport falls back from HTTP/2 here.
+ * Network round trips can be emulated with the latency parameter, e.g. -p latencyMillis=20 -t 64.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@Threads(4)
+public class EndToEndBenchmark {
+    // Transport of the client: urlConnection, pooled or javaNetHttp
+    @Param({ "urlConnection", "pooled", "javaNetHttp" })
+    public String transport;
+
+    // Latency of the stub server in milliseconds
+    @Param({ "0" })
+    public long latencyMillis;
+
+    // Local stub server
+    private ZeroKitAdminApiStubServer server;
+
+    // Transport of the client
+    private HttpTransport httpTransport;
+
+    // Client under measurement
+    private ZeroKitAdminApiClient client;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new ZeroKitAdminApiStubServer(Fixtures.AdminKey, Fixtures.TenantId).start();
+        server.setLatencyMillis(latencyMillis);
+
+        httpTransport = createTransport(transport);
+        client = new ZeroKitAdminApiClient(server.getServiceUrl(), Fixtures.AdminKey);
+        client.setTransport(httpTransport);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        httpTransport.close();
+        server.close();
+    }
+
+    @Benchmark
+    public int initUserRegistration() throws IOException {
+        HttpResponse response = client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+        if (response.getStatusCode() != 200)
+            throw new IllegalStateException("Unexpected status: " + response.getStatusCode());
+        return response.getContents().length;
+    }
+
+    /**
+     * Creates the transport with the given name
+     * @param name Name of the transport
+     * @return Returns the created transport
+     */
+    private static HttpTransport createTransport(String name) {
+        if ("urlConnection".equals(name))
+            return HttpTransports.urlConnection();
+        else if ("pooled".equals(name))
+            return HttpTransports.pooled(new HttpConnectionPool(64));
+        else if ("javaNetHttp".equals(name))
+            return HttpTransports.javaNetHttp();
+
+        throw new IllegalArgumentException("Unknown transport: " + name);
+    }
+}
@@ -0,0 +1,71 @@
+package ZeroKit.Benchmarks;
+
+import ZeroKit.ZeroKitAdminApiException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parsing of API error bodies: the single pass JSON scanner against the former regex translation
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ErrorParsingBenchmark {
+    // Former regex patterns of the error translation
+    private static final Pattern ErrorCodeRegex = Pattern.compile("\\A\\s*\\{.*\"ErrorCode\"\\s*:\\s*\"(?<errorcode>[a-zA-Z0-9_]+)\".*}\\s*\\z", Pattern.DOTALL);
+    private static final Pattern ErrorMessageRegex = Pattern.compile("\\A\\s*[^\"]*\"ErrorMessage\"\\s*:\\s*\"(?<errormessage>((?=\\\\)\\\\(\"|/|\\\\|b|f|n|r|t|u[0-9a-f]{4})|[^\\\\\"]*)*)\".*}\\s*\\z", Pattern.DOTALL);
+
+    // Length of the padding member of the error body (e.g. a stack trace of a debug tenant)
+    @Param({ "0", "1024", "65536" })
+    public int padding;
+
+    // Error body
+    private byte[] contents;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder("{\"ErrorMessage\":\"The user \\\"x\\\" does not exist.\",\"ErrorCode\":\"UserNotExists\"");
+        if (padding > 0) {
+            sb.append(",\"Details\":\"");
+            for (int i = 0; i < padding; i++)
+                sb.append(i % 64 == 63 ? "\\n" : "x");
+            sb.append('"');
+        }
+        contents = sb.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public ZeroKitAdminApiException scanner() {
+        return ZeroKitAdminApiException.parse(contents);
+    }
+
+    @Benchmark
+    public ZeroKitAdminApiException regex() {
+        String responseText = new String(contents);
+        Matcher errorCodeMatcher = ErrorCodeRegex.matcher(responseText);
+        Matcher errorMessageMatcher = ErrorMessageRegex.matcher(responseText);
+
+        if (errorCodeMatcher.matches() && errorMessageMatcher.matches())
+            return new ZeroKitAdminApiException(errorCodeMatcher.group("errorcode"), errorMessageMatcher.group("errormessage"));
+        return null;
+    }
+}
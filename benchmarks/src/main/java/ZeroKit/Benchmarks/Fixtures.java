@@ -0,0 +1,17 @@
+package ZeroKit.Benchmarks;
+
+/**
+ * Constants shared by the benchmarks
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+final class Fixtures {
+    // Admin key of the benchmarked tenant
+    static final String AdminKey = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    // Tenant ID of the benchmarked tenant
+    static final String TenantId = "abcdefgh";
+
+    private Fixtures() {
+    }
+}
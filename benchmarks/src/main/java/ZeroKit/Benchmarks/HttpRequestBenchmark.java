@@ -0,0 +1,95 @@
+package ZeroKit.Benchmarks;
+
+import ZeroKit.Http.HttpEndpoint;
+import ZeroKit.Http.HttpMethod;
+import ZeroKit.Http.HttpRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building of an admin API request, the way the client prepares every call before signing
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpRequestBenchmark {
+    // Service URL of the tenant
+    private URL baseUrl;
+
+    // Precompiled endpoint without query parameters
+    private HttpEndpoint endpoint;
+
+    // Precompiled endpoint with a query parameter
+    private HttpEndpoint queryEndpoint;
+
+    @Setup
+    public void setup() throws MalformedURLException {
+        baseUrl = new URL("https://" + Fixtures.TenantId + ".api.tresorit.io/");
+        endpoint = new HttpEndpoint(baseUrl, HttpMethod.POST, "/api/v4/admin/user/init-user-registration");
+        queryEndpoint = new HttpEndpoint(baseUrl, HttpMethod.PUT, "/api/v4/admin/tenant/upload-custom-content?fileName=");
+    }
+
+    @Benchmark
+    public HttpRequest addPath() throws MalformedURLException {
+        return HttpRequest.createRequest(baseUrl).addPath("/api/v4/admin/user/init-user-registration").setMethod(HttpMethod.POST);
+    }
+
+    @Benchmark
+    public HttpRequest endpoint() {
+        return endpoint.createRequest();
+    }
+
+    @Benchmark
+    public HttpRequest addPathWithQuery() throws IOException {
+        return HttpRequest.createRequest(baseUrl)
+                .addPath("/api/v4/admin/tenant/upload-custom-content?fileName=" + URLEncoder.encode("css/login.css", "UTF-8"))
+                .setMethod(HttpMethod.PUT);
+    }
+
+    @Benchmark
+    public HttpRequest endpointWithQuery() {
+        return queryEndpoint.createRequest("css/login.css");
+    }
+
+    @Benchmark
+    public HttpRequest setHeaders() throws MalformedURLException {
+        return HttpRequest.createRequest(baseUrl).addPath("/api/v4/admin/user/init-user-registration")
+                .setMethod(HttpMethod.POST)
+                .setHeader("UserId", "admin@" + Fixtures.TenantId + ".tresorit.io")
+                .setHeader("TresoritDate", "2017-01-01T00:00:00Z")
+                .setHeader("Content-SHA256", "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855")
+                .setHeader("Content-Length", 0)
+                .setHeader("Content-Type", "application/json")
+                .setHeader("HMACHeaders", "UserId,TresoritDate,Content-SHA256,Content-Length,Content-Type,HMACHeaders");
+    }
+
+    @Benchmark
+    public HttpRequest reusedHeaders() {
+        return endpoint.reuseRequest()
+                .setHeader("UserId", "admin@" + Fixtures.TenantId + ".tresorit.io")
+                .setHeader("TresoritDate", "2017-01-01T00:00:00Z")
+                .setHeader("Content-SHA256", "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855")
+                .setHeader("Content-Length", 0)
+                .setHeader("Content-Type", "application/json")
+                .setHeader("HMACHeaders", "UserId,TresoritDate,Content-SHA256,Content-Length,Content-Type,HMACHeaders");
+    }
+}
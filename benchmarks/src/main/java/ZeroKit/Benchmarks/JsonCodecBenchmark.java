@@ -0,0 +1,79 @@
+package ZeroKit.Benchmarks;
+
+import ZeroKit.UserRegistration;
+import ZeroKit.Utils.JsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * JSON bodies of the typed endpoint methods: the byte-level codec against building strings and matching regexes
+ * Reading parses an init-user-registration response, writing builds a set-user-state request body.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+    // Regex extraction of the response properties, as done by callers without a JSON library
+    private static final Pattern UserIdRegex = Pattern.compile("\"UserId\"\\s*:\\s*\"(?<value>[^\"]*)\"");
+    private static final Pattern RegSessionIdRegex = Pattern.compile("\"RegSessionId\"\\s*:\\s*\"(?<value>[^\"]*)\"");
+    private static final Pattern RegSessionVerifierRegex = Pattern.compile("\"RegSessionVerifier\"\\s*:\\s*\"(?<value>[^\"]*)\"");
+
+    // Response body of init-user-registration
+    private final byte[] response = ("{\"UserId\":\"20170901120000.1a2b3c4d@" + Fixtures.TenantId + ".tresorit.io\","
+            + "\"RegSessionId\":\"00112233445566778899aabbccddeeff\",\"RegSessionVerifier\":\"ffeeddccbbaa99887766554433221100\"}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    // User ID of the written request
+    private final String userId = "20170901120000.1a2b3c4d@" + Fixtures.TenantId + ".tresorit.io";
+
+    @Benchmark
+    public UserRegistration readTyped() throws Exception {
+        return UserRegistration.parse(response);
+    }
+
+    @Benchmark
+    public UserRegistration readRegex() {
+        String text = new String(response, StandardCharsets.UTF_8);
+        Matcher userId = UserIdRegex.matcher(text);
+        Matcher sessionId = RegSessionIdRegex.matcher(text);
+        Matcher verifier = RegSessionVerifierRegex.matcher(text);
+        if (!userId.find() || !sessionId.find() || !verifier.find())
+            return null;
+
+        return new UserRegistration(userId.group("value"), sessionId.group("value"), verifier.group("value"));
+    }
+
+    @Benchmark
+    public int writeTyped() {
+        JsonWriter json = new JsonWriter()
+                .beginObject()
+                .name("UserId").value(userId)
+                .name("Enabled").value(false)
+                .endObject();
+        return json.getBuffer()[json.size() - 1];
+    }
+
+    @Benchmark
+    public int writeConcat() {
+        byte[] json = ("{\"UserId\":\"" + userId.replace("\\", "\\\\").replace("\"", "\\\"") + "\",\"Enabled\":false}")
+                .getBytes(StandardCharsets.UTF_8);
+        return json[json.length - 1];
+    }
+}
@@ -0,0 +1,57 @@
+package ZeroKit.Benchmarks;
+
+import ZeroKit.Http.EndpointMetrics;
+import ZeroKit.Http.HttpMethod;
+import ZeroKit.Http.HttpMetrics;
+import ZeroKit.Http.LatencyHistogram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording latencies and error codes from concurrent threads, the hot path of the metrics (should not allocate)
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class MetricsBenchmark {
+    // Shared histogram
+    private LatencyHistogram histogram;
+
+    // Shared metrics
+    private HttpMetrics metrics;
+
+    @Setup
+    public void setup() {
+        histogram = new LatencyHistogram();
+        metrics = new HttpMetrics();
+    }
+
+    @Benchmark
+    public void recordLatency() {
+        histogram.record(ThreadLocalRandom.current().nextLong(100000000));
+    }
+
+    @Benchmark
+    public void recordErrorCode() {
+        EndpointMetrics endpoint = metrics.getEndpoint(HttpMethod.POST, "/api/v4/admin/user/set-user-state");
+        endpoint.recordErrorCode("UserNotExists");
+    }
+}
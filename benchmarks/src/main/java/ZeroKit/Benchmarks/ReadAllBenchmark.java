@@ -0,0 +1,70 @@
+package ZeroKit.Benchmarks;
+
+import ZeroKit.Utils.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading of response bodies: presized and pooled reads against a scratch buffer and a ByteArrayOutputStream per call
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadAllBenchmark {
+    // Length of the body, a small JSON response and a larger download
+    @Param({ "512", "65536" })
+    public int length;
+
+    // Body to read
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        body = new byte[length];
+        new Random(length).nextBytes(body);
+    }
+
+    @Benchmark
+    public byte[] presized() throws IOException {
+        return IOUtils.readAll(new ByteArrayInputStream(body), body.length);
+    }
+
+    @Benchmark
+    public byte[] pooled() throws IOException {
+        return IOUtils.readAll(new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    public byte[] byteArrayOutputStream() throws IOException {
+        InputStream input = new ByteArrayInputStream(body);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        int nRead;
+        byte[] data = new byte[16384];
+        while ((nRead = input.read(data, 0, data.length)) != -1)
+            buffer.write(data, 0, nRead);
+
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,55 @@
+package ZeroKit.Benchmarks;
+
+import ZeroKit.Utils.Sha256;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hex SHA-256 hashing of request bodies
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Sha256Benchmark {
+    // Length of the hashed payload
+    @Param({ "0", "128", "4096", "65536", "1048576" })
+    public int length;
+
+    // Hashed payload
+    private byte[] payload;
+
+    @Setup
+    public void setup() {
+        payload = new byte[length];
+        new Random(1).nextBytes(payload);
+    }
+
+    @Benchmark
+    public String hashArray() {
+        return Sha256.hash(payload);
+    }
+
+    @Benchmark
+    public String hashStream() throws IOException {
+        return Sha256.hash(new ByteArrayInputStream(payload));
+    }
+}
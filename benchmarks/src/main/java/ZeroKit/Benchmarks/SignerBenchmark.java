@@ -0,0 +1,77 @@
+package ZeroKit.Benchmarks;
+
+import ZeroKit.Http.HttpMethod;
+import ZeroKit.Http.HttpRequest;
+import ZeroKit.ZeroKitAdminApiSigner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signing of a typical admin API request
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignerBenchmark {
+    // Signer of the measured requests
+    private ZeroKitAdminApiSigner signer;
+
+    // Signed request
+    private HttpRequest request;
+
+    // Canonical string of the signed request
+    private String canonical;
+
+    @Setup
+    public void setup() throws Exception {
+        signer = new ZeroKitAdminApiSigner(Fixtures.AdminKey);
+        request = createRequest();
+        canonical = ZeroKitAdminApiSigner.canonicalizeRequest(request);
+    }
+
+    @Benchmark
+    public String signRequest() {
+        return signer.signRequest(request);
+    }
+
+    @Benchmark
+    public String canonicalizeRequest() {
+        return ZeroKitAdminApiSigner.canonicalizeRequest(request);
+    }
+
+    @Benchmark
+    public String hmacSha256() {
+        return signer.hmacSha256(canonical);
+    }
+
+    /**
+     * Creates a request with the headers the client signs
+     * @return Returns the created request
+     */
+    static HttpRequest createRequest() throws Exception {
+        return HttpRequest.createRequest(new URL("https://abcdefgh.api.tresorit.io/api/v4/admin/user/init-user-registration"))
+                .setMethod(HttpMethod.POST)
+                .setHeader("UserId", "admin@abcdefgh.tresorit.io")
+                .setHeader("TresoritDate", "2017-01-01T00:00:00Z")
+                .setHeader("Content-SHA256", "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855")
+                .setHeader("Content-Length", 0)
+                .setHeader("Content-Type", "application/json")
+                .setHeader("HMACHeaders", "UserId,TresoritDate,Content-SHA256,Content-Length,Content-Type,HMACHeaders");
+    }
+}
@@ -0,0 +1,436 @@
+package ZeroKit;
+
+import ZeroKit.Http.HttpMethod;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breakers of the admin API endpoints
+ * Every endpoint (method and path) has its own circuit. A closed circuit lets the calls through and records their outcome
+ * in a sliding window of the last calls; when the rate of the failures (I/O errors, 429 and 5xx responses) or of the slow
+ * calls in the window reaches its threshold, the circuit opens. An open circuit rejects the calls immediately with a
+ * {@link CircuitOpenException}, so threads do not pile up waiting for a degraded service. After the open duration the
+ * circuit is half-open: a few trial calls are let through, it closes if all of them succeed and opens again otherwise.
+ * The breaker is thread-safe, closed circuits are checked without locking.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class CircuitBreaker {
+    // Default number of calls in the sliding window
+    public static final int DefaultWindowSize = 20;
+
+    // Default minimal number of calls in the window before the circuit can open
+    public static final int DefaultMinCalls = 10;
+
+    // Default rate of the failed calls opening the circuit
+    public static final double DefaultFailureRateThreshold = 0.5;
+
+    // Default latency above which a call is slow in milliseconds
+    public static final long DefaultSlowCallMillis = 5000;
+
+    // Default rate of the slow calls opening the circuit
+    public static final double DefaultSlowCallRateThreshold = 0.5;
+
+    // Default time a circuit stays open in milliseconds
+    public static final long DefaultOpenDurationMillis = 30000;
+
+    // Default number of trial calls of a half-open circuit
+    public static final int DefaultHalfOpenCalls = 3;
+
+    // Outcome flag of a failed call
+    private static final byte Failed = 1;
+
+    // Outcome flag of a slow call
+    private static final byte Slow = 2;
+
+    /**
+     * State of a circuit
+     */
+    public enum State {
+        /**
+         * Calls are let through and measured
+         */
+        CLOSED,
+
+        /**
+         * Calls are rejected
+         */
+        OPEN,
+
+        /**
+         * A limited number of trial calls are let through
+         */
+        HALF_OPEN
+    }
+
+    // Number of calls in the sliding window
+    private volatile int windowSize;
+
+    // Minimal number of calls in the window before the circuit can open
+    private volatile int minCalls;
+
+    // Rate of the failed calls opening the circuit
+    private volatile double failureRateThreshold;
+
+    // Latency above which a call is slow in nanoseconds
+    private volatile long slowCallNanos;
+
+    // Rate of the slow calls opening the circuit
+    private volatile double slowCallRateThreshold;
+
+    // Time a circuit stays open in nanoseconds
+    private volatile long openDurationNanos;
+
+    // Number of trial calls of a half-open circuit
+    private volatile int halfOpenCalls;
+
+    // Circuits of the endpoints
+    private final ConcurrentMap<String, Circuit> circuits;
+
+    // Number of calls rejected by open circuits
+    private final AtomicLong rejectedCount;
+
+    // Number of times a circuit opened
+    private final AtomicLong openedCount;
+
+    /**
+     * Initializes a new circuit breaker with the default settings
+     */
+    public CircuitBreaker() {
+        this.windowSize = DefaultWindowSize;
+        this.minCalls = DefaultMinCalls;
+        this.failureRateThreshold = DefaultFailureRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(DefaultSlowCallMillis);
+        this.slowCallRateThreshold = DefaultSlowCallRateThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(DefaultOpenDurationMillis);
+        this.halfOpenCalls = DefaultHalfOpenCalls;
+        this.circuits = new ConcurrentHashMap<String, Circuit>();
+        this.rejectedCount = new AtomicLong();
+        this.openedCount = new AtomicLong();
+    }
+
+    /**
+     * Sets the sliding window of the circuits, resetting every circuit
+     * @param windowSize Number of recent calls the rates are computed from
+     * @param minCalls Minimal number of calls in the window before the circuit can open
+     * @return Returns the modified breaker
+     */
+    public CircuitBreaker setWindow(int windowSize, int minCalls) {
+        if (minCalls < 1 || windowSize < minCalls)
+            throw new IllegalArgumentException("The window must satisfy 1 <= min calls <= size.");
+
+        this.windowSize = windowSize;
+        this.minCalls = minCalls;
+        this.circuits.clear();
+        return this;
+    }
+
+    /**
+     * Sets the rate of the failed calls opening the circuit
+     * @param failureRateThreshold Rate between 0 and 1 (e.g. 0.5 opens the circuit when half of the calls fail)
+     * @return Returns the modified breaker
+     */
+    public CircuitBreaker setFailureRateThreshold(double failureRateThreshold) {
+        if (!(failureRateThreshold > 0 && failureRateThreshold <= 1))
+            throw new IllegalArgumentException("The rate must be between 0 and 1.");
+
+        this.failureRateThreshold = failureRateThreshold;
+        return this;
+    }
+
+    /**
+     * Sets when slow calls open the circuit
+     * @param slowCallMillis Latency above which a call is slow in milliseconds
+     * @param slowCallRateThreshold Rate of the slow calls opening the circuit, between 0 and 1
+     * @return Returns the modified breaker
+     */
+    public CircuitBreaker setSlowCalls(long slowCallMillis, double slowCallRateThreshold) {
+        if (slowCallMillis < 0 || !(slowCallRateThreshold > 0 && slowCallRateThreshold <= 1))
+            throw new IllegalArgumentException("The latency can not be negative, the rate must be between 0 and 1.");
+
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        return this;
+    }
+
+    /**
+     * Sets how an open circuit recovers
+     * @param openDurationMillis Time a circuit stays open before trial calls are let through in milliseconds
+     * @param halfOpenCalls Number of successful trial calls closing the circuit
+     * @return Returns the modified breaker
+     */
+    public CircuitBreaker setRecovery(long openDurationMillis, int halfOpenCalls) {
+        if (openDurationMillis < 0 || halfOpenCalls < 1)
+            throw new IllegalArgumentException("The duration can not be negative and at least one trial call is required.");
+
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+        this.halfOpenCalls = halfOpenCalls;
+        return this;
+    }
+
+    /**
+     * Gets the state of the circuit of an endpoint
+     * @param method HTTP method of the endpoint
+     * @param path API path of the endpoint (e.g. "/api/v4/admin/user/set-user-state")
+     * @return Returns the state of the circuit, CLOSED if the endpoint was not called yet
+     */
+    public State getState(HttpMethod method, String path) {
+        Circuit circuit = circuits.get(getEndpoint(method, path));
+        return circuit != null ? circuit.state : State.CLOSED;
+    }
+
+    /**
+     * Gets the state of every called endpoint
+     * @return Returns the states of the circuits by their endpoint (e.g. "POST /api/v4/admin/user/set-user-state")
+     */
+    public Map<String, State> getStates() {
+        Map<String, State> states = new TreeMap<String, State>();
+        for (Map.Entry<String, Circuit> circuit : circuits.entrySet())
+            states.put(circuit.getKey(), circuit.getValue().state);
+
+        return Collections.unmodifiableMap(states);
+    }
+
+    /**
+     * Gets whether any circuit is not closed
+     * @return Returns true if calls of at least one endpoint are rejected or limited to trial calls
+     */
+    public boolean isDegraded() {
+        for (Circuit circuit : circuits.values()) {
+            if (circuit.state != State.CLOSED)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the number of rejected calls
+     * @return Returns the number of calls rejected by open circuits
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Gets the number of times a circuit opened
+     * @return Returns the number of transitions to the open state
+     */
+    public long getOpenedCount() {
+        return openedCount.get();
+    }
+
+    /**
+     * Closes every circuit and forgets the recorded calls
+     */
+    public void reset() {
+        circuits.clear();
+    }
+
+    /**
+     * Gets the endpoint key of a method and a path
+     * @param method HTTP method of the endpoint
+     * @param path API path of the endpoint
+     * @return Returns the key of the circuit
+     */
+    static String getEndpoint(HttpMethod method, String path) {
+        return method + " " + path;
+    }
+
+    /**
+     * Lets a call of the given endpoint through if its circuit allows
+     * @param endpoint Endpoint of the call
+     * @return Returns the generation of the circuit, to be passed to {@link #onResult} or {@link #onCancelled}
+     * @throws CircuitOpenException Thrown when the circuit is open
+     */
+    long acquire(String endpoint) throws CircuitOpenException {
+        Circuit circuit = circuits.get(endpoint);
+        if (circuit == null) {
+            Circuit created = new Circuit(windowSize);
+            circuit = circuits.putIfAbsent(endpoint, created);
+            if (circuit == null)
+                circuit = created;
+        }
+
+        // Closed circuits are checked without locking
+        if (circuit.state == State.CLOSED)
+            return circuit.generation;
+
+        long generation = circuit.tryAcquire(openDurationNanos, halfOpenCalls);
+        if (generation < 0) {
+            rejectedCount.incrementAndGet();
+            throw new CircuitOpenException(endpoint, "The circuit of " + endpoint + " is open, the endpoint failed or was too slow recently.");
+        }
+
+        return generation;
+    }
+
+    /**
+     * Records the outcome of a call
+     * @param endpoint Endpoint of the call
+     * @param generation Generation returned by {@link #acquire}
+     * @param latencyNanos Latency of the call in nanoseconds
+     * @param failed True if the call failed or the service signaled overload
+     */
+    void onResult(String endpoint, long generation, long latencyNanos, boolean failed) {
+        Circuit circuit = circuits.get(endpoint);
+        if (circuit == null)
+            return;
+
+        byte outcome = (byte) ((failed ? Failed : 0) | (latencyNanos > slowCallNanos ? Slow : 0));
+        if (circuit.record(generation, outcome, minCalls, failureRateThreshold, slowCallRateThreshold, halfOpenCalls))
+            openedCount.incrementAndGet();
+    }
+
+    /**
+     * Gives back the permit of a call which was not executed or was cancelled, without recording its outcome
+     * @param endpoint Endpoint of the call
+     * @param generation Generation returned by {@link #acquire}
+     */
+    void onCancelled(String endpoint, long generation) {
+        Circuit circuit = circuits.get(endpoint);
+        if (circuit != null)
+            circuit.cancel(generation);
+    }
+
+    /**
+     * Circuit of a single endpoint
+     * Every state transition starts a new generation, outcomes of calls let through in an earlier one are ignored.
+     */
+    private static final class Circuit {
+        // Current state
+        private volatile State state = State.CLOSED;
+
+        // Current generation
+        private volatile long generation;
+
+        // Outcomes of the recent calls in the closed state
+        private final byte[] outcomes;
+
+        // Position of the next outcome
+        private int position;
+
+        // Number of outcomes in the window
+        private int count;
+
+        // Number of failed calls in the window
+        private int failures;
+
+        // Number of slow calls in the window
+        private int slowCalls;
+
+        // Time the circuit opened (System.nanoTime)
+        private long openedAt;
+
+        // Number of trial calls which may still be let through
+        private int trialPermits;
+
+        // Number of successful trial calls
+        private int trialSuccesses;
+
+        Circuit(int windowSize) {
+            this.outcomes = new byte[windowSize];
+        }
+
+        /**
+         * Lets a call through an open or half-open circuit if it allows
+         * @param openDurationNanos Time the circuit stays open
+         * @param halfOpenCalls Number of trial calls
+         * @return Returns the generation of the circuit, or -1 if the call is rejected
+         */
+        synchronized long tryAcquire(long openDurationNanos, int halfOpenCalls) {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openDurationNanos)
+                    return -1;
+
+                trialPermits = halfOpenCalls;
+                trialSuccesses = 0;
+                transition(State.HALF_OPEN);
+            }
+
+            if (state == State.HALF_OPEN) {
+                if (trialPermits == 0)
+                    return -1;
+                trialPermits--;
+            }
+
+            return generation;
+        }
+
+        /**
+         * Records the outcome of a call
+         * @return Returns true if the circuit opened
+         */
+        synchronized boolean record(long generation, byte outcome, int minCalls, double failureRateThreshold,
+                                    double slowCallRateThreshold, int halfOpenCalls) {
+            if (generation != this.generation)
+                return false;
+
+            if (state == State.HALF_OPEN) {
+                if (outcome != 0)
+                    return open();
+
+                if (++trialSuccesses >= halfOpenCalls) {
+                    position = count = failures = slowCalls = 0;
+                    transition(State.CLOSED);
+                }
+                return false;
+            }
+
+            if (state != State.CLOSED)
+                return false;
+
+            if (count == outcomes.length) {
+                byte evicted = outcomes[position];
+                failures -= evicted & Failed;
+                slowCalls -= (evicted & Slow) >> 1;
+            }
+            else {
+                count++;
+            }
+
+            outcomes[position] = outcome;
+            position = (position + 1) % outcomes.length;
+            failures += outcome & Failed;
+            slowCalls += (outcome & Slow) >> 1;
+
+            if (count >= minCalls && (failures >= failureRateThreshold * count || slowCalls >= slowCallRateThreshold * count))
+                return open();
+
+            return false;
+        }
+
+        /**
+         * Gives back the trial permit of a cancelled call
+         */
+        synchronized void cancel(long generation) {
+            if (generation == this.generation && state == State.HALF_OPEN)
+                trialPermits++;
+        }
+
+        /**
+         * Opens the circuit
+         * @return Returns true
+         */
+        private boolean open() {
+            openedAt = System.nanoTime();
+            transition(State.OPEN);
+            return true;
+        }
+
+        /**
+         * Moves the circuit to the given state in a new generation
+         * @param state New state
+         */
+        private void transition(State state) {
+            generation++;
+            this.state = state;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ZeroKit;
+
+import ZeroKit.Http.ClientRejectedException;
+
+/**
+ * Exception thrown when a call is rejected because the circuit of its endpoint is open
+ * The call was not sent to the service, the endpoint failed or was too slow recently.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class CircuitOpenException extends ClientRejectedException {
+    // Version of the serialized form
+    private static final long serialVersionUID = 1L;
+
+    // Error code of the rejected calls
+    public static final String ErrorCode = "ClientCircuitOpen";
+
+    // Endpoint of the rejected call
+    private final String endpoint;
+
+    /**
+     * Initializes a new circuit open exception
+     * @param endpoint Endpoint of the rejected call (method and path)
+     * @param errorMessage Description of the open circuit
+     */
+    public CircuitOpenException(String endpoint, String errorMessage) {
+        super(ErrorCode, errorMessage);
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Gets the endpoint of the rejected call
+     * @return Returns the method and the path of the endpoint (e.g. "POST /api/v4/admin/user/set-user-state")
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+}
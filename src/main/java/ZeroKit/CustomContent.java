@@ -0,0 +1,137 @@
+package ZeroKit;
+
+import ZeroKit.Utils.JsonReader;
+
+import java.io.IOException;
+
+/**
+ * Custom content of a tenant (e.g. a stylesheet of the login page), returned by upload-custom-content
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class CustomContent {
+    // File name of the content
+    private final String name;
+
+    // Path of the content
+    private final String path;
+
+    // Public URL of the content
+    private final String url;
+
+    // Size of the content in bytes
+    private final long size;
+
+    // MIME type of the content
+    private final String contentType;
+
+    // Entity tag of the content
+    private final String etag;
+
+    /**
+     * Initializes a new custom content
+     * @param name File name of the content
+     * @param path Path of the content
+     * @param url Public URL of the content
+     * @param size Size of the content in bytes
+     * @param contentType MIME type of the content
+     * @param etag Entity tag of the content
+     */
+    public CustomContent(String name, String path, String url, long size, String contentType, String etag) {
+        this.name = name;
+        this.path = path;
+        this.url = url;
+        this.size = size;
+        this.contentType = contentType;
+        this.etag = etag;
+    }
+
+    /**
+     * Gets the file name of the content
+     * @return Returns the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the path of the content
+     * @return Returns the path (e.g. css/login.css)
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the public URL of the content
+     * @return Returns the URL
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Gets the size of the content
+     * @return Returns the size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the MIME type of the content
+     * @return Returns the content type
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Gets the entity tag of the content
+     * @return Returns the etag
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Reads a custom content from the JSON body of an upload-custom-content response
+     * @param contents UTF-8 encoded JSON body
+     * @return Returns the custom content
+     * @throws IOException Thrown when the body is not a custom content
+     */
+    public static CustomContent parse(byte[] contents) throws IOException {
+        String name = null;
+        String path = null;
+        String url = null;
+        long size = -1;
+        String contentType = null;
+        String etag = null;
+
+        JsonReader reader = new JsonReader(contents);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String member = reader.nextName();
+            if (member.equals("Name"))
+                name = reader.nextString();
+            else if (member.equals("Path"))
+                path = reader.nextString();
+            else if (member.equals("Url"))
+                url = reader.nextString();
+            else if (member.equals("Size"))
+                size = reader.nextLong();
+            else if (member.equals("ContentType"))
+                contentType = reader.nextString();
+            else if (member.equals("Etag"))
+                etag = reader.nextString();
+            else
+                reader.skipValue();
+        }
+        reader.endObject();
+
+        if (path == null || url == null)
+            throw new IOException("The response is not a custom content.");
+
+        return new CustomContent(name, path, url, size, contentType, etag);
+    }
+}
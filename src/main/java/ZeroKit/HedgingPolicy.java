@@ -0,0 +1,296 @@
+package ZeroKit;
+
+import ZeroKit.Http.HttpMethod;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hedging policy of the admin API client
+ * A call to an allowlisted endpoint which did not complete within the configured percentile of the recent latency of the
+ * endpoint is sent a second time (independently signed), the first successful response is used and the other call is
+ * cancelled. Hedging doubles the load of the slowest calls, so it should only be enabled for idempotent endpoints: calls
+ * known to create, modify or consume data (e.g. uploading custom content or validating a registration) can only be hedged
+ * if they are explicitly allowed by {@link #allowNonIdempotent(HttpMethod, String)}. The policy is thread-safe, it can be
+ * shared by any number of clients.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class HedgingPolicy {
+    // Default percentile of the latency after which a call is hedged
+    public static final double DefaultPercentile = 0.95;
+
+    // Default minimal delay before a call is hedged in milliseconds
+    public static final long DefaultMinDelayMillis = 10;
+
+    // API paths of the endpoints which are not idempotent, they are hedged only if explicitly allowed
+    private static final Set<String> NonIdempotentPaths = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "/api/v4/admin/tenant/upload-custom-content",
+            "/api/v4/admin/user/init-user-registration",
+            "/api/v4/admin/user/validate-user-registration")));
+
+    // Number of latency samples kept per endpoint (power of two)
+    private static final int WindowSize = 256;
+
+    // Number of samples after which the percentile is recomputed
+    private static final int RecomputeInterval = 16;
+
+    // Number of samples required before an endpoint is hedged
+    private static final int MinSamples = 20;
+
+    // Percentile of the latency after which a call is hedged
+    private volatile double percentile;
+
+    // Minimal delay before a call is hedged in nanoseconds
+    private volatile long minDelayNanos;
+
+    // Allowlisted endpoints (method and API path, e.g. "POST /api/v4/admin/user/set-user-state")
+    private volatile Set<String> endpoints;
+
+    // Latency windows of the endpoints
+    private final ConcurrentMap<String, LatencyWindow> windows;
+
+    // Number of hedged calls
+    private final AtomicLong hedgedCount;
+
+    // Number of hedged calls won by the second request
+    private final AtomicLong hedgeWinCount;
+
+    /**
+     * Initializes a new hedging policy with the default settings and no allowed endpoints
+     */
+    public HedgingPolicy() {
+        this.percentile = DefaultPercentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(DefaultMinDelayMillis);
+        this.endpoints = Collections.<String>emptySet();
+        this.windows = new ConcurrentHashMap<String, LatencyWindow>();
+        this.hedgedCount = new AtomicLong();
+        this.hedgeWinCount = new AtomicLong();
+    }
+
+    /**
+     * Gets the percentile of the latency after which a call is hedged
+     * @return Returns the percentile (e.g. 0.95)
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * Sets the percentile of the latency after which a call is hedged
+     * @param percentile Percentile between 0 and 1 (e.g. 0.95 hedges the slowest 5% of the calls)
+     * @return Returns the modified policy
+     */
+    public HedgingPolicy setPercentile(double percentile) {
+        if (!(percentile > 0 && percentile < 1))
+            throw new IllegalArgumentException("The percentile must be between 0 and 1.");
+
+        this.percentile = percentile;
+        return this;
+    }
+
+    /**
+     * Gets the minimal delay before a call is hedged
+     * @return Returns the delay in milliseconds
+     */
+    public long getMinDelayMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(minDelayNanos);
+    }
+
+    /**
+     * Sets the minimal delay before a call is hedged, protecting the service when the latency is very low
+     * @param minDelayMillis Delay in milliseconds
+     * @return Returns the modified policy
+     */
+    public HedgingPolicy setMinDelayMillis(long minDelayMillis) {
+        if (minDelayMillis < 0)
+            throw new IllegalArgumentException("The delay can not be negative.");
+
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        return this;
+    }
+
+    /**
+     * Allows hedging the calls of the given idempotent endpoints
+     * @param method HTTP method of the endpoints
+     * @param paths Full API paths of the endpoints (e.g. "/api/v4/admin/user/set-user-state")
+     * @return Returns the modified policy
+     * @throws IllegalArgumentException Thrown when a path is not a full API path, or an endpoint is known to be
+     * non-idempotent
+     */
+    public HedgingPolicy allow(HttpMethod method, String... paths) {
+        String[] endpoints = new String[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            String path = normalizePath(paths[i]);
+            if (isNonIdempotent(path))
+                throw new IllegalArgumentException("The endpoint " + path + " is not idempotent, use allowNonIdempotent to hedge it anyway.");
+            endpoints[i] = CircuitBreaker.getEndpoint(method, path);
+        }
+
+        return add(endpoints);
+    }
+
+    /**
+     * Allows hedging the calls of the given endpoint even if it is not idempotent
+     * A hedged call may be executed twice by the service, only use this if the duplicate is harmless.
+     * @param method HTTP method of the endpoint
+     * @param path Full API path of the endpoint (e.g. "/api/v4/admin/tenant/upload-custom-content")
+     * @return Returns the modified policy
+     * @throws IllegalArgumentException Thrown when the path is not a full API path
+     */
+    public HedgingPolicy allowNonIdempotent(HttpMethod method, String path) {
+        return add(CircuitBreaker.getEndpoint(method, normalizePath(path)));
+    }
+
+    /**
+     * Checks whether an endpoint is known to be non-idempotent, so repeating its call may repeat its side effects
+     * @param path API path of the endpoint, relative to the service URL (e.g. "/api/v4/admin/user/init-user-registration")
+     * @return Returns true if the endpoint creates or modifies data on every call
+     */
+    public static boolean isNonIdempotent(String path) {
+        return NonIdempotentPaths.contains(path);
+    }
+
+    /**
+     * Gets the allowlisted endpoints
+     * @return Returns the methods and API paths of the hedged endpoints (e.g. "POST /api/v4/admin/user/set-user-state")
+     */
+    public Set<String> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Gets the number of hedged calls
+     * @return Returns the number of calls for which a second request was sent
+     */
+    public long getHedgedCount() {
+        return hedgedCount.get();
+    }
+
+    /**
+     * Gets the number of hedged calls won by the second request
+     * @return Returns the number of calls answered by their second request
+     */
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+    /**
+     * Checks whether the calls of an endpoint are hedged
+     * @param endpoint Method and API path of the call (e.g. "POST /api/v4/admin/user/set-user-state")
+     * @return Returns true if the endpoint is allowlisted
+     */
+    boolean isHedged(String endpoint) {
+        return endpoints.contains(endpoint);
+    }
+
+    /**
+     * Gets the delay after which a call of the given endpoint is hedged
+     * @param endpoint Allowlisted endpoint
+     * @return Returns the delay in nanoseconds, or -1 if too few calls were measured yet
+     */
+    long getHedgeDelayNanos(String endpoint) {
+        LatencyWindow window = windows.get(endpoint);
+        if (window == null || window.count.get() < MinSamples)
+            return -1;
+
+        return Math.max(minDelayNanos, window.percentileNanos);
+    }
+
+    /**
+     * Records the latency of a successful request
+     * @param endpoint Allowlisted endpoint of the request
+     * @param latencyNanos Latency in nanoseconds
+     */
+    void recordLatency(String endpoint, long latencyNanos) {
+        LatencyWindow window = windows.get(endpoint);
+        if (window == null) {
+            LatencyWindow created = new LatencyWindow();
+            window = windows.putIfAbsent(endpoint, created);
+            if (window == null)
+                window = created;
+        }
+
+        long index = window.count.getAndIncrement();
+        window.samples.set((int) (index & (WindowSize - 1)), latencyNanos);
+        if (index + 1 == MinSamples || (index + 1) % RecomputeInterval == 0)
+            window.recompute(percentile, (int) Math.min(index + 1, WindowSize));
+    }
+
+    /**
+     * Counts a hedged call
+     * @param won True if the second request answered the call
+     */
+    void onHedged(boolean won) {
+        hedgedCount.incrementAndGet();
+        if (won)
+            hedgeWinCount.incrementAndGet();
+    }
+
+    /**
+     * Normalizes the API path of an allowlisted endpoint
+     * @param path Path to normalize
+     * @return Returns the path with a leading and without a trailing slash
+     * @throws IllegalArgumentException Thrown when the path is not a full API path (e.g. "upload-custom-content")
+     */
+    private static String normalizePath(String path) {
+        String normalized = path.trim();
+        if (!normalized.startsWith("/"))
+            normalized = "/" + normalized;
+        if (normalized.length() > 1 && normalized.endsWith("/"))
+            normalized = normalized.substring(0, normalized.length() - 1);
+
+        if (!normalized.startsWith("/api/") || normalized.indexOf('?') >= 0)
+            throw new IllegalArgumentException("The endpoint " + path + " is not a full API path (e.g. \"/api/v4/admin/user/set-user-state\").");
+
+        return normalized;
+    }
+
+    /**
+     * Adds endpoints to the allowlist
+     * @param endpoints Endpoints to add
+     * @return Returns the modified policy
+     */
+    private synchronized HedgingPolicy add(String... endpoints) {
+        Set<String> updated = new LinkedHashSet<String>(this.endpoints);
+        updated.addAll(Arrays.asList(endpoints));
+        this.endpoints = Collections.unmodifiableSet(updated);
+        return this;
+    }
+
+    /**
+     * Ring of the recent latencies of an endpoint
+     */
+    private static final class LatencyWindow {
+        // Latency samples in nanoseconds
+        private final AtomicLongArray samples = new AtomicLongArray(WindowSize);
+
+        // Number of recorded samples
+        private final AtomicLong count = new AtomicLong();
+
+        // Cached percentile of the samples in nanoseconds
+        private volatile long percentileNanos;
+
+        /**
+         * Recomputes the cached percentile
+         * @param percentile Percentile to compute
+         * @param length Number of valid samples
+         */
+        void recompute(double percentile, int length) {
+            long[] sorted = new long[length];
+            for (int i = 0; i < length; i++)
+                sorted[i] = samples.get(i);
+
+            Arrays.sort(sorted);
+            percentileNanos = sorted[Math.min(length - 1, (int) (percentile * length))];
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ZeroKit.Http;
+
+/**
+ * Java Flight Recorder event of a single call, started by {@link CallEvents}
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public interface CallEvent {
+    /**
+     * Sets the response of the call (the last one if the call was retried)
+     * @param response Received response
+     */
+    void setResponse(HttpResponse response);
+
+    /**
+     * Ends the event and writes it to the recordings if it is within their threshold
+     * @param tenantId ID of the tenant, or null if the call is not an admin API call
+     * @param request Request of the call
+     * @param errorCode Error code of the translated API error, or null if there was none
+     * @param failure Exception the call threw, or null if it returned a response
+     */
+    void commit(String tenantId, HttpRequest request, String errorCode, Throwable failure);
+}
@@ -0,0 +1,85 @@
+package ZeroKit.Http;
+
+/**
+ * Java Flight Recorder events of the HTTP and admin API calls
+ * The events are implemented with the jdk.jfr API of JAVA 11+ and loaded reflectively, so the library keeps working on
+ * JAVA 8 and on runtimes without the jdk.jfr module. An event is only created while a recording has its type enabled;
+ * otherwise beginning an event costs a single check and allocates nothing.
+ * Recorded events: ZeroKit.HttpRequest (every request sent by a client) and ZeroKit.AdminCall (every admin API call,
+ * including its retries).
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public abstract class CallEvents {
+    // Class name of the JFR implementation (compiled only on JAVA 11+)
+    private static final String JfrCallEventsClass = "ZeroKit.Http.JfrCallEvents";
+
+    // Events of the runtime (null if JFR is not available)
+    private static final CallEvents Instance = load();
+
+    /**
+     * Gets whether JFR events can be recorded on this runtime
+     * @return Returns true if the events are available
+     */
+    public static boolean isAvailable() {
+        return Instance != null;
+    }
+
+    /**
+     * Gets whether any of the events is recorded right now
+     * @return Returns true if a recording has an event type of the calls enabled
+     */
+    public static boolean isRecording() {
+        CallEvents instance = Instance;
+        return instance != null && instance.isEnabled();
+    }
+
+    /**
+     * Starts the event of an HTTP request
+     * @return Returns the started event, or null if it is not recorded
+     */
+    public static CallEvent beginHttpRequest() {
+        CallEvents instance = Instance;
+        return instance != null ? instance.newHttpRequest() : null;
+    }
+
+    /**
+     * Starts the event of an admin API call
+     * @return Returns the started event, or null if it is not recorded
+     */
+    public static CallEvent beginAdminCall() {
+        CallEvents instance = Instance;
+        return instance != null ? instance.newAdminCall() : null;
+    }
+
+    /**
+     * Gets whether any of the event types is enabled
+     * @return Returns true if an event type is enabled
+     */
+    protected abstract boolean isEnabled();
+
+    /**
+     * Creates and begins an HTTP request event
+     * @return Returns the event, or null if its type is disabled
+     */
+    protected abstract CallEvent newHttpRequest();
+
+    /**
+     * Creates and begins an admin API call event
+     * @return Returns the event, or null if its type is disabled
+     */
+    protected abstract CallEvent newAdminCall();
+
+    /**
+     * Loads the JFR implementation of the runtime
+     * @return Returns the events, or null if JFR is not available
+     */
+    private static CallEvents load() {
+        try {
+            return (CallEvents) Class.forName(JfrCallEventsClass).getConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package ZeroKit.Http;
+
+import java.io.IOException;
+
+/**
+ * Exception thrown when a call is rejected by the client itself (e.g. by a rate, concurrency or circuit limit)
+ * The request was not sent to the service, so the call can be safely attempted again later. Rejections are not errors of
+ * the service: they are not reported as {@code ZeroKitAdminApiException}s and they are not retried by the retry policy.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class ClientRejectedException extends IOException {
+    // Version of the serialized form
+    private static final long serialVersionUID = 1L;
+
+    // Client side error code of the rejection
+    private final String errorCode;
+
+    /**
+     * Initializes a new client rejection exception
+     * @param errorCode Client side error code of the rejection (e.g. "ClientRateLimitExceeded")
+     * @param message Description of the rejection
+     */
+    public ClientRejectedException(String errorCode, String message) {
+        super(message);
+        this.errorCode = errorCode;
+    }
+
+    /**
+     * Gets the client side error code of the rejection
+     * @return Returns the error code string, which identifies the limit rejecting the call
+     */
+    public String getErrorCode() {
+        return errorCode;
+    }
+}
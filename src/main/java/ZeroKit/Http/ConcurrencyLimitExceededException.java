@@ -0,0 +1,23 @@
+package ZeroKit.Http;
+
+/**
+ * Exception thrown when a call is rejected by the concurrency limiter of the client
+ * The call was not sent, the service is considered overloaded.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class ConcurrencyLimitExceededException extends ClientRejectedException {
+    // Version of the serialized form
+    private static final long serialVersionUID = 1L;
+
+    // Error code of the rejected calls
+    public static final String ErrorCode = "ClientConcurrencyLimitExceeded";
+
+    /**
+     * Initializes a new concurrency limit exception
+     * @param message Description of the exceeded limit
+     */
+    public ConcurrencyLimitExceededException(String message) {
+        super(ErrorCode, message);
+    }
+}
@@ -0,0 +1,317 @@
+package ZeroKit.Http;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive limit of the concurrent HTTP calls (AIMD driven by the observed latency)
+ * The limit grows by one call per limit-worth of successful calls while the service is busy and its latency stays within
+ * the tolerance of the baseline (the minimal latency of the previous sample window). Errors (I/O failures, 429 and 5xx
+ * responses) and slow calls shrink it multiplicatively, at most once per round trip: calls started before the last
+ * decrease can not decrease it again. Calls over the limit wait in a bounded queue for a bounded time, or are rejected
+ * immediately with a {@link ConcurrencyLimitExceededException}.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class ConcurrencyLimiter {
+    // Default initial limit
+    public static final int DefaultInitialLimit = 20;
+
+    // Default minimal limit
+    public static final int DefaultMinLimit = 1;
+
+    // Default maximal limit
+    public static final int DefaultMaxLimit = 200;
+
+    // Default ratio of the baseline latency above which a call is slow
+    public static final double DefaultLatencyTolerance = 2.0;
+
+    // Default multiplier of the limit when it is decreased
+    public static final double DefaultBackoffRatio = 0.9;
+
+    // Number of calls after which the baseline latency is re-measured
+    private static final int SampleWindow = 500;
+
+    // Minimal limit
+    private final int minLimit;
+
+    // Maximal limit
+    private final int maxLimit;
+
+    // Ratio of the baseline latency above which a call is slow
+    private volatile double latencyTolerance;
+
+    // Multiplier of the limit when it is decreased
+    private volatile double backoffRatio;
+
+    // Maximum number of waiting calls (0 rejects calls over the limit immediately)
+    private volatile int maxQueueLength;
+
+    // Maximum time a call waits for a free slot in nanoseconds
+    private volatile long maxWaitNanos;
+
+    // Current limit (fractional, the integer part is enforced)
+    private double limit;
+
+    // Current limit as enforced by the acquires
+    private volatile int effectiveLimit;
+
+    // Baseline latency in nanoseconds (0 until the first window is measured)
+    private long baselineNanos;
+
+    // Minimal latency of the current window in nanoseconds
+    private long windowMinNanos;
+
+    // Number of calls in the current window
+    private int windowCount;
+
+    // Time of the last decrease (System.nanoTime)
+    private long lastDecrease;
+
+    // Number of running calls
+    private final AtomicInteger inFlight;
+
+    // Number of waiting calls
+    private final AtomicInteger waiting;
+
+    // Number of rejected calls
+    private final AtomicLong rejectedCount;
+
+    // Lock of the waiting calls
+    private final ReentrantLock queueLock;
+
+    // Signaled when a call completes
+    private final Condition released;
+
+    /**
+     * Initializes a new limiter with the default limits, rejecting the calls over the limit immediately
+     */
+    public ConcurrencyLimiter() {
+        this(DefaultInitialLimit, DefaultMinLimit, DefaultMaxLimit);
+    }
+
+    /**
+     * Initializes a new limiter, rejecting the calls over the limit immediately
+     * @param initialLimit Initial number of concurrent calls
+     * @param minLimit Minimal number of concurrent calls
+     * @param maxLimit Maximal number of concurrent calls
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit)
+            throw new IllegalArgumentException("The limits must satisfy 1 <= min <= initial <= max.");
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = DefaultLatencyTolerance;
+        this.backoffRatio = DefaultBackoffRatio;
+        this.maxQueueLength = 0;
+        this.maxWaitNanos = 0;
+        this.limit = initialLimit;
+        this.effectiveLimit = initialLimit;
+        this.windowMinNanos = Long.MAX_VALUE;
+        this.lastDecrease = System.nanoTime();
+        this.inFlight = new AtomicInteger();
+        this.waiting = new AtomicInteger();
+        this.rejectedCount = new AtomicLong();
+        this.queueLock = new ReentrantLock();
+        this.released = this.queueLock.newCondition();
+    }
+
+    /**
+     * Sets the queue of the calls over the limit
+     * @param maxQueueLength Maximum number of waiting calls (0 rejects calls over the limit immediately)
+     * @param maxWaitMillis Maximum time a call waits for a free slot in milliseconds
+     */
+    public void setQueue(int maxQueueLength, long maxWaitMillis) {
+        if (maxQueueLength < 0 || maxWaitMillis < 0)
+            throw new IllegalArgumentException("The queue length and the wait can not be negative.");
+
+        this.maxQueueLength = maxQueueLength;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    /**
+     * Sets how the limit reacts to slow calls
+     * @param latencyTolerance Ratio of the baseline latency above which a call is slow (e.g. 2.0)
+     * @param backoffRatio Multiplier of the limit when it is decreased (e.g. 0.9)
+     */
+    public void setBackoff(double latencyTolerance, double backoffRatio) {
+        if (!(latencyTolerance > 1) || !(backoffRatio > 0 && backoffRatio < 1))
+            throw new IllegalArgumentException("The tolerance must be above 1, the backoff ratio between 0 and 1.");
+
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * Gets the current limit
+     * @return Returns the number of calls allowed to run concurrently
+     */
+    public int getLimit() {
+        return effectiveLimit;
+    }
+
+    /**
+     * Gets the number of running calls
+     * @return Returns the number of calls holding a slot
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Gets the number of calls waiting for a slot
+     * @return Returns the queue depth
+     */
+    public int getQueueDepth() {
+        return waiting.get();
+    }
+
+    /**
+     * Gets the number of rejected calls
+     * @return Returns the number of calls rejected because the queue was full or the wait timed out
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Gets the baseline latency
+     * @return Returns the minimal latency of the last sample window in milliseconds (0 until it is measured)
+     */
+    public synchronized long getBaselineLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(baselineNanos);
+    }
+
+    /**
+     * Takes a slot for a call, waiting for it if the queue allows
+     * @return Returns the start time of the call (System.nanoTime), to be passed to {@link #release}
+     * @throws ConcurrencyLimitExceededException Thrown when no slot is available in time
+     * @throws InterruptedIOException Thrown when the thread is interrupted while waiting
+     */
+    public long acquire() throws ConcurrencyLimitExceededException, InterruptedIOException {
+        if (tryTake())
+            return System.nanoTime();
+
+        if (waiting.get() >= maxQueueLength || maxWaitNanos == 0) {
+            rejectedCount.incrementAndGet();
+            throw new ConcurrencyLimitExceededException("The concurrency limit of " + effectiveLimit + " calls is reached.");
+        }
+
+        long remaining = maxWaitNanos;
+        queueLock.lock();
+        try {
+            waiting.incrementAndGet();
+            try {
+                while (!tryTake()) {
+                    if (remaining <= 0) {
+                        rejectedCount.incrementAndGet();
+                        throw new ConcurrencyLimitExceededException("No call slot became free in time, the concurrency limit is " + effectiveLimit + ".");
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+            }
+            finally {
+                waiting.decrementAndGet();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Waiting for a call slot was interrupted.");
+        }
+        finally {
+            queueLock.unlock();
+        }
+
+        return System.nanoTime();
+    }
+
+    /**
+     * Gives back the slot of a completed call and adapts the limit to its outcome
+     * @param start Start time of the call returned by {@link #acquire()}
+     * @param failed True if the call failed or the service signaled overload
+     */
+    public void release(long start, boolean failed) {
+        long now = System.nanoTime();
+        int running = inFlight.getAndDecrement();
+        update(start, now - start, running, failed);
+
+        if (waiting.get() > 0) {
+            queueLock.lock();
+            try {
+                released.signalAll();
+            }
+            finally {
+                queueLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Gives back the slot of a call which was not executed, without adapting the limit
+     */
+    public void cancel() {
+        inFlight.decrementAndGet();
+
+        if (waiting.get() > 0) {
+            queueLock.lock();
+            try {
+                released.signalAll();
+            }
+            finally {
+                queueLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Takes a slot if the limit allows
+     * @return Returns true if a slot was taken
+     */
+    private boolean tryTake() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= effectiveLimit)
+                return false;
+            if (inFlight.compareAndSet(current, current + 1))
+                return true;
+        }
+    }
+
+    /**
+     * Adapts the limit to the outcome of a call
+     * @param start Start time of the call
+     * @param latency Latency of the call in nanoseconds
+     * @param running Number of running calls when the call completed (including itself)
+     * @param failed True if the call failed
+     */
+    private synchronized void update(long start, long latency, int running, boolean failed) {
+        if (!failed) {
+            windowMinNanos = Math.min(windowMinNanos, latency);
+            if (++windowCount >= SampleWindow || baselineNanos == 0) {
+                baselineNanos = windowMinNanos;
+                windowMinNanos = Long.MAX_VALUE;
+                windowCount = 0;
+            }
+        }
+
+        boolean slow = baselineNanos > 0 && latency > baselineNanos * latencyTolerance;
+        if (failed || slow) {
+            // A single overload episode is seen by every call in flight, only the first one counts
+            if (start - lastDecrease > 0) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastDecrease = System.nanoTime();
+            }
+        }
+        else if (running * 2 >= (int) limit) {
+            // Grow only while the limit is actually used
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+
+        effectiveLimit = (int) limit;
+    }
+}
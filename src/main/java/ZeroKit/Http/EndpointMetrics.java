@@ -0,0 +1,220 @@
+package ZeroKit.Http;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics of the calls of a single endpoint (method and path)
+ * Every counter is updated lock-free, recording a call does not allocate once the endpoint and its error codes were seen.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class EndpointMetrics {
+    // Number of tracked status codes (0 - 599)
+    private static final int StatusCodeCount = 600;
+
+    // HTTP method of the endpoint
+    private final HttpMethod method;
+
+    // URL path of the endpoint
+    private final String path;
+
+    // Latencies of the completed calls
+    private final LatencyHistogram latency;
+
+    // Number of responses by status code
+    private final AtomicLongArray statusCounts;
+
+    // Number of calls failed with an I/O error
+    private final AtomicLong failureCount;
+
+    // Number of request body bytes sent
+    private final AtomicLong bytesSent;
+
+    // Number of response body bytes received
+    private final AtomicLong bytesReceived;
+
+    // Number of API errors by error code
+    private final ConcurrentMap<String, AtomicLong> errorCodeCounts;
+
+    /**
+     * Initializes new, empty metrics of an endpoint
+     * @param method HTTP method of the endpoint
+     * @param path URL path of the endpoint
+     */
+    public EndpointMetrics(HttpMethod method, String path) {
+        this.method = method;
+        this.path = path;
+        this.latency = new LatencyHistogram();
+        this.statusCounts = new AtomicLongArray(StatusCodeCount);
+        this.failureCount = new AtomicLong();
+        this.bytesSent = new AtomicLong();
+        this.bytesReceived = new AtomicLong();
+        this.errorCodeCounts = new ConcurrentHashMap<String, AtomicLong>();
+    }
+
+    /**
+     * Gets the HTTP method of the endpoint
+     * @return Returns the method
+     */
+    public HttpMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the URL path of the endpoint
+     * @return Returns the path, without the query
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the latency histogram of the completed calls (calls failed with an I/O error are not included)
+     * @return Returns the histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Gets the number of responses with the given status code
+     * @param statusCode HTTP status code
+     * @return Returns the number of responses
+     */
+    public long getStatusCount(int statusCode) {
+        return statusCode >= 0 && statusCode < StatusCodeCount ? statusCounts.get(statusCode) : 0;
+    }
+
+    /**
+     * Gets the number of responses by status code
+     * @return Returns the counts of the status codes seen
+     */
+    public Map<Integer, Long> getStatusCounts() {
+        Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+        for (int i = 0; i < StatusCodeCount; i++) {
+            long count = statusCounts.get(i);
+            if (count != 0)
+                counts.put(i, count);
+        }
+
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Gets the number of calls failed with an I/O error
+     * @return Returns the number of failures
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * Gets the number of request body bytes sent
+     * @return Returns the byte count
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * Gets the number of response body bytes received
+     * Streamed responses are counted by their Content-Length header, chunked ones are not counted.
+     * @return Returns the byte count
+     */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * Gets the number of API errors by error code
+     * @return Returns the counts of the error codes seen
+     */
+    public Map<String, Long> getErrorCodeCounts() {
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : errorCodeCounts.entrySet())
+            counts.put(entry.getKey(), entry.getValue().get());
+
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Counts an API error returned by the endpoint
+     * @param errorCode Error code of the API error
+     */
+    public void recordErrorCode(String errorCode) {
+        AtomicLong count = errorCodeCounts.get(errorCode);
+        if (count == null) {
+            AtomicLong created = new AtomicLong();
+            count = errorCodeCounts.putIfAbsent(errorCode, created);
+            if (count == null)
+                count = created;
+        }
+
+        count.incrementAndGet();
+    }
+
+    /**
+     * Records a completed call
+     * @param request Request of the call
+     * @param response Response of the call
+     * @param latencyNanos Latency of the call in nanoseconds
+     */
+    void record(HttpRequest request, HttpResponse response, long latencyNanos) {
+        latency.record(latencyNanos);
+
+        int statusCode = response.getStatusCode();
+        if (statusCode >= 0 && statusCode < StatusCodeCount)
+            statusCounts.incrementAndGet(statusCode);
+
+        HttpContent content = request.getContent();
+        if (content != null)
+            bytesSent.addAndGet(content.getLength());
+
+        long received = -1;
+        if (!response.isStreaming()) {
+            byte[] contents = response.getContents();
+            received = contents != null ? contents.length : 0;
+        }
+        else {
+            List<String> contentLength = response.getHeaders().get("content-length");
+            if (contentLength != null && !contentLength.isEmpty()) {
+                try {
+                    received = Long.parseLong(contentLength.get(0).trim());
+                }
+                catch (NumberFormatException e) {
+                    // Not counted
+                }
+            }
+        }
+
+        if (received > 0)
+            bytesReceived.addAndGet(received);
+    }
+
+    /**
+     * Records a call failed with an I/O error
+     */
+    void recordFailure() {
+        failureCount.incrementAndGet();
+    }
+
+    /**
+     * Clears the metrics
+     */
+    void reset() {
+        latency.reset();
+        for (int i = 0; i < StatusCodeCount; i++)
+            statusCounts.set(i, 0);
+        failureCount.set(0);
+        bytesSent.set(0);
+        bytesReceived.set(0);
+        errorCodeCounts.clear();
+    }
+}
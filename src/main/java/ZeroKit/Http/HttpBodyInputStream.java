@@ -0,0 +1,339 @@
+package ZeroKit.Http;
+
+import ZeroKit.Utils.BufferPool;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Response body stream of a pooled connection
+ * The connection is returned to its pool as soon as the body was read to the end or the stream is closed.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+abstract class HttpBodyInputStream extends InputStream {
+    // Maximum number of unread bytes drained on close to keep the connection reusable
+    private static final long MaxDrainLength = 65536;
+
+    // Connection the body is read from
+    private final HttpConnection connection;
+
+    // Pool owning the connection
+    private final HttpConnectionPool pool;
+
+    // Indicates whether the connection can be reused after the body
+    private final boolean keepAlive;
+
+    // Raw input of the connection
+    protected final InputStream input;
+
+    // Indicates whether the end of the body was reached
+    private boolean eof;
+
+    // Indicates whether the connection was already given back to the pool
+    private boolean released;
+
+    // Scratch buffer for single byte reads
+    private byte[] single;
+
+    /**
+     * Initializes a new body stream
+     * @param pool Pool owning the connection
+     * @param connection Connection to read from
+     * @param keepAlive Indicates whether the connection can be reused after the body
+     */
+    protected HttpBodyInputStream(HttpConnectionPool pool, HttpConnection connection, boolean keepAlive) {
+        this.pool = pool;
+        this.connection = connection;
+        this.keepAlive = keepAlive;
+        this.input = connection.getInput();
+    }
+
+    /**
+     * Creates a body stream for a response without body
+     * @param pool Pool owning the connection
+     * @param connection Connection of the response
+     * @param keepAlive Indicates whether the connection can be reused
+     * @return Returns the body stream
+     */
+    static HttpBodyInputStream empty(HttpConnectionPool pool, HttpConnection connection, boolean keepAlive) {
+        return new FixedLength(pool, connection, keepAlive, 0);
+    }
+
+    /**
+     * Creates a body stream for a response with Content-Length framing
+     * @param pool Pool owning the connection
+     * @param connection Connection of the response
+     * @param keepAlive Indicates whether the connection can be reused
+     * @param length Length of the body
+     * @return Returns the body stream
+     */
+    static HttpBodyInputStream fixedLength(HttpConnectionPool pool, HttpConnection connection, boolean keepAlive, long length) {
+        return new FixedLength(pool, connection, keepAlive, length);
+    }
+
+    /**
+     * Creates a body stream for a response with chunked transfer encoding
+     * @param pool Pool owning the connection
+     * @param connection Connection of the response
+     * @param keepAlive Indicates whether the connection can be reused
+     * @return Returns the body stream
+     */
+    static HttpBodyInputStream chunked(HttpConnectionPool pool, HttpConnection connection, boolean keepAlive) {
+        return new Chunked(pool, connection, keepAlive);
+    }
+
+    /**
+     * Creates a body stream for a response delimited by the closing of the connection
+     * @param pool Pool owning the connection
+     * @param connection Connection of the response
+     * @return Returns the body stream
+     */
+    static HttpBodyInputStream untilClose(HttpConnectionPool pool, HttpConnection connection) {
+        return new UntilClose(pool, connection);
+    }
+
+    /**
+     * Gets the number of body bytes still expected, if known
+     * @return Returns the remaining length or -1 if it is unknown
+     */
+    long getRemainingLength() {
+        return -1;
+    }
+
+    /**
+     * Reads the next part of the body
+     * @param b Buffer to read into
+     * @param off Offset in the buffer
+     * @param len Maximum number of bytes to read
+     * @return Returns the number of read bytes or -1 at the end of the body
+     * @throws IOException Thrown when reading fails or the body is malformed
+     */
+    protected abstract int readBody(byte[] b, int off, int len) throws IOException;
+
+    @Override
+    public int read() throws IOException {
+        if (single == null)
+            single = new byte[1];
+
+        int n = read(single, 0, 1);
+        return n == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (eof || released)
+            return -1;
+
+        if (len == 0)
+            return 0;
+
+        try {
+            int n = readBody(b, off, len);
+            if (n == -1) {
+                eof = true;
+                release(keepAlive);
+            }
+            return n;
+        }
+        catch (IOException e) {
+            release(false);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (released)
+            return;
+
+        if (!eof) {
+            // Drain short leftovers so the connection can be reused, drop it otherwise
+            long remaining = getRemainingLength();
+            if (remaining < 0 || remaining > MaxDrainLength) {
+                release(false);
+                return;
+            }
+
+            byte[] buffer = BufferPool.acquire((int) Math.max(remaining, 1));
+            try {
+                while (read(buffer, 0, buffer.length) != -1) {
+                    // Discard
+                }
+            }
+            catch (IOException e) {
+                release(false);
+            }
+            finally {
+                BufferPool.release(buffer);
+            }
+        }
+
+        release(keepAlive);
+    }
+
+    /**
+     * Gives the connection back to the pool (only once)
+     * @param reusable Indicates whether the connection can be reused
+     */
+    private void release(boolean reusable) {
+        if (released)
+            return;
+
+        released = true;
+        pool.release(connection, reusable);
+    }
+
+    /**
+     * Body with a known length
+     */
+    private static final class FixedLength extends HttpBodyInputStream {
+        // Remaining bytes of the body
+        private long remaining;
+
+        FixedLength(HttpConnectionPool pool, HttpConnection connection, boolean keepAlive, long length) {
+            super(pool, connection, keepAlive);
+            this.remaining = length;
+        }
+
+        @Override
+        long getRemainingLength() {
+            return remaining;
+        }
+
+        @Override
+        protected int readBody(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0)
+                return -1;
+
+            int n = input.read(b, off, (int) Math.min(len, remaining));
+            if (n == -1)
+                throw new EOFException("Unexpected end of stream, " + remaining + " bytes of the response body are missing.");
+
+            remaining -= n;
+            return n;
+        }
+    }
+
+    /**
+     * Body with chunked transfer encoding
+     */
+    private static final class Chunked extends HttpBodyInputStream {
+        // Remaining bytes of the current chunk
+        private long chunkRemaining;
+
+        // Indicates whether the terminating chunk was read
+        private boolean done;
+
+        // Indicates whether the next read starts a chunk (after the first one, a CRLF precedes it)
+        private boolean first;
+
+        Chunked(HttpConnectionPool pool, HttpConnection connection, boolean keepAlive) {
+            super(pool, connection, keepAlive);
+            this.chunkRemaining = 0;
+            this.done = false;
+            this.first = true;
+        }
+
+        @Override
+        protected int readBody(byte[] b, int off, int len) throws IOException {
+            if (done)
+                return -1;
+
+            if (chunkRemaining == 0) {
+                if (!first)
+                    readCrlf();
+                first = false;
+
+                chunkRemaining = readChunkSize();
+                if (chunkRemaining == 0) {
+                    readTrailers();
+                    done = true;
+                    return -1;
+                }
+            }
+
+            int n = input.read(b, off, (int) Math.min(len, chunkRemaining));
+            if (n == -1)
+                throw new EOFException("Unexpected end of stream inside a response body chunk.");
+
+            chunkRemaining -= n;
+            return n;
+        }
+
+        /**
+         * Reads a chunk size line
+         * @return Returns the size of the next chunk
+         * @throws IOException Thrown when the line is malformed
+         */
+        private long readChunkSize() throws IOException {
+            String line = readLine();
+            int extension = line.indexOf(';');
+            if (extension >= 0)
+                line = line.substring(0, extension);
+
+            try {
+                return Long.parseLong(line.trim(), 16);
+            }
+            catch (NumberFormatException e) {
+                throw new IOException("Malformed chunk size in the response body: " + line);
+            }
+        }
+
+        /**
+         * Reads the CRLF closing a chunk
+         * @throws IOException Thrown when the line is not empty
+         */
+        private void readCrlf() throws IOException {
+            if (readLine().length() != 0)
+                throw new IOException("Malformed chunk terminator in the response body.");
+        }
+
+        /**
+         * Reads and discards the trailer section
+         * @throws IOException Thrown when reading fails
+         */
+        private void readTrailers() throws IOException {
+            while (readLine().length() != 0) {
+                // Discard
+            }
+        }
+
+        /**
+         * Reads a line of the chunk framing
+         * @return Returns the line without the line terminator
+         * @throws IOException Thrown when the stream ends
+         */
+        private String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder(16);
+
+            int c;
+            while ((c = input.read()) != -1) {
+                if (c == '\n') {
+                    int len = sb.length();
+                    if (len > 0 && sb.charAt(len - 1) == '\r')
+                        sb.setLength(len - 1);
+                    return sb.toString();
+                }
+                sb.append((char) c);
+            }
+
+            throw new EOFException("Unexpected end of stream inside the chunk framing of the response body.");
+        }
+    }
+
+    /**
+     * Body delimited by the closing of the connection
+     */
+    private static final class UntilClose extends HttpBodyInputStream {
+        UntilClose(HttpConnectionPool pool, HttpConnection connection) {
+            super(pool, connection, false);
+        }
+
+        @Override
+        protected int readBody(byte[] b, int off, int len) throws IOException {
+            return input.read(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package ZeroKit.Http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Abort handle of an asynchronous HTTP call
+ * While the call runs, the transport attaches its connection, so cancelling the call can
+ * close the connection and unblock the thread waiting on the network.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+final class HttpCall {
+    // Call executed by the current thread
+    private static final ThreadLocal<HttpCall> Current = new ThreadLocal<HttpCall>();
+
+    // Resource to close on abort
+    private Closeable resource;
+
+    // Indicates whether the call was aborted
+    private boolean aborted;
+
+    /**
+     * Marks the given call as executed by the current thread
+     * @param call Call to execute
+     */
+    static void enter(HttpCall call) {
+        Current.set(call);
+    }
+
+    /**
+     * Marks the end of the call executed by the current thread
+     */
+    static void exit() {
+        Current.remove();
+    }
+
+    /**
+     * Attaches the given resource to the call executed by the current thread (if any)
+     * @param resource Resource to close when the call is aborted
+     * @throws InterruptedIOException Thrown when the call was already aborted
+     */
+    static void attach(Closeable resource) throws InterruptedIOException {
+        HttpCall call = Current.get();
+        if (call != null)
+            call.setResource(resource);
+    }
+
+    /**
+     * Detaches the given resource from the call executed by the current thread (if attached)
+     * @param resource Resource which must not be closed on abort anymore
+     */
+    static void detach(Closeable resource) {
+        HttpCall call = Current.get();
+        if (call != null)
+            call.clearResource(resource);
+    }
+
+    /**
+     * Gets whether the call executed by the current thread was aborted
+     * @return Returns true if the current call was cancelled, timed out or lost a hedge
+     */
+    static boolean isAborted() {
+        HttpCall call = Current.get();
+        if (call == null)
+            return false;
+
+        synchronized (call) {
+            return call.aborted;
+        }
+    }
+
+    /**
+     * Aborts the call by closing its attached resource
+     */
+    synchronized void abort() {
+        aborted = true;
+
+        if (resource != null) {
+            closeQuietly(resource);
+            resource = null;
+        }
+    }
+
+    /**
+     * Sets the resource to close on abort
+     * @param resource Resource to attach
+     * @throws InterruptedIOException Thrown when the call was already aborted
+     */
+    private synchronized void setResource(Closeable resource) throws InterruptedIOException {
+        if (aborted) {
+            closeQuietly(resource);
+            throw new InterruptedIOException("The HTTP call was cancelled.");
+        }
+
+        this.resource = resource;
+    }
+
+    /**
+     * Clears the resource to close on abort
+     * @param resource Resource to detach
+     */
+    private synchronized void clearResource(Closeable resource) {
+        if (this.resource == resource)
+            this.resource = null;
+    }
+
+    /**
+     * Closes the given resource, suppressing errors
+     * @param resource Resource to close
+     */
+    private static void closeQuietly(Closeable resource) {
+        try {
+            resource.close();
+        }
+        catch (IOException e) {
+            // Suppress
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ZeroKit.Http;
+
+/**
+ * Listener of the phase timings of the HTTP calls, e.g. to forward them to a tracing system
+ * Listeners are called synchronously on the thread executing the call as each phase ends, so they should be fast and must
+ * not throw. When no listener is registered, the phases are not timed at all.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public interface HttpCallListener {
+    /**
+     * Called when a phase of a call ended
+     * A phase may be reported more than once per request, e.g. when a stale pooled connection is replaced.
+     * @param request Request of the call
+     * @param phase Phase which ended
+     * @param nanos Duration of the phase in nanoseconds
+     */
+    void onPhase(HttpRequest request, HttpPhase phase, long nanos);
+}
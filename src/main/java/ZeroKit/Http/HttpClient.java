@@ -1,34 +1,60 @@
 package ZeroKit.Http;
 
-import ZeroKit.Utils.IOUtils;
-
-import java.io.DataOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Basic HTTP client for JAVA 7+
+ * Basic HTTP client for JAVA 8+
+ * The client is thread-safe, its calls can be executed concurrently from any number of threads.
  * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
  * @copyright	Copyright © Tresorit AG. 2017
  */
 public class HttpClient {
     // Base URL of the client
-    private URL baseUrl;
+    private final URL baseUrl;
+
+    // Transport executing the calls
+    private volatile HttpTransport transport;
+
+    // Executor of the asynchronous calls (null if the shared default executor is used)
+    private volatile Executor executor;
 
-    // Indicate whether to use caches
-    private boolean useCache;
+    // Adaptive limit of the concurrent calls (null if the calls are not limited)
+    private volatile ConcurrencyLimiter concurrencyLimiter;
+
+    // Per-endpoint metrics of the calls (null if the calls are not measured)
+    private volatile HttpMetrics metrics;
+
+    // Listener of the phase timings (null if the calls are not timed)
+    private volatile HttpCallListener callListener;
 
     /**
      * Initializes a new ZeroKit.HttpKit.HttpClient
      */
     public HttpClient() {
-        this.baseUrl = null;
-        this.useCache = false;
+        this((URL) null);
     }
 
     /**
@@ -45,8 +71,9 @@ public class HttpClient {
      * @param baseUrl Base url to use for on-the-fly calls
      */
     public HttpClient(URL baseUrl) {
-        this();
         this.baseUrl = baseUrl;
+        this.transport = new UrlConnectionHttpTransport();
+        this.executor = null;
     }
 
     /**
@@ -54,15 +81,150 @@ public class HttpClient {
      * @return Returns true if the client uses caches
      */
     public boolean isUseCache() {
-        return useCache;
+        HttpTransport transport = this.transport;
+        return transport instanceof UrlConnectionHttpTransport && ((UrlConnectionHttpTransport) transport).isUseCache();
     }
 
     /**
      * Sets the cache usage policy of the client
+     * The policy only applies to the HttpURLConnection transport, other transports never use caches.
      * @param useCache If true the cache usage is turned on, otherwise off
      */
     public void setUseCache(boolean useCache) {
-        this.useCache = useCache;
+        HttpTransport transport = this.transport;
+        if (transport instanceof UrlConnectionHttpTransport)
+            ((UrlConnectionHttpTransport) transport).setUseCache(useCache);
+    }
+
+    /**
+     * Gets the transport executing the calls of the client
+     * @return Returns the transport of the client
+     */
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Sets the transport executing the calls of the client
+     * The same transport can be shared by several clients. See {@link HttpTransports} for the available ones.
+     * @param transport Transport to use, or null to use a new HttpURLConnection transport
+     */
+    public void setTransport(HttpTransport transport) {
+        this.transport = transport != null ? transport : new UrlConnectionHttpTransport();
+    }
+
+    /**
+     * Gets the connection pool used by the client
+     * @return Returns the connection pool, or null if the client does not use a pooled transport
+     */
+    public HttpConnectionPool getConnectionPool() {
+        HttpTransport transport = this.transport;
+        return transport instanceof PooledHttpTransport ? ((PooledHttpTransport) transport).getPool() : null;
+    }
+
+    /**
+     * Sets the connection pool to use for the calls of the client
+     * Pooled calls keep their connections (and TLS sessions) alive between requests. The same pool
+     * can be shared by several clients. The cache usage policy has no effect on pooled calls.
+     * @param connectionPool Connection pool to use, or null to use HttpURLConnection
+     */
+    public void setConnectionPool(HttpConnectionPool connectionPool) {
+        setTransport(connectionPool != null ? new PooledHttpTransport(connectionPool) : null);
+    }
+
+    /**
+     * Gets the executor of the asynchronous calls
+     * @return Returns the executor used for asynchronous calls
+     */
+    public Executor getExecutor() {
+        Executor executor = this.executor;
+        return executor != null ? executor : DefaultExecutor.Instance;
+    }
+
+    /**
+     * Sets the executor of the asynchronous calls
+     * Asynchronous calls block an executor thread while they run, so the executor should be sized
+     * for the expected number of concurrent calls.
+     * @param executor Executor to use, or null to use the shared default executor (unbounded, daemon threads)
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Gets the adaptive limit of the concurrent calls
+     * @return Returns the concurrency limiter, or null if the calls are not limited
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Sets the adaptive limit of the concurrent calls
+     * A call holds its slot until its response head is received (streamed bodies are not counted), I/O errors, 429 and
+     * 5xx responses count as failures. The limiter can be shared by clients calling the same service.
+     * @param concurrencyLimiter Concurrency limiter to use, or null to disable the limit
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Gets the per-endpoint metrics of the calls
+     * @return Returns the metrics, or null if the calls are not measured
+     */
+    public HttpMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the per-endpoint metrics of the calls
+     * Every request sent to the service is recorded, from the concurrency limit to the response head (streamed bodies are
+     * not timed). The metrics can be shared by clients.
+     * @param metrics Metrics to record to, or null to disable them
+     */
+    public void setMetrics(HttpMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Gets the listener of the phase timings of the calls
+     * @return Returns the listener, or null if the calls are not timed
+     */
+    public HttpCallListener getCallListener() {
+        return callListener;
+    }
+
+    /**
+     * Sets the listener of the phase timings of the calls
+     * While a listener is registered, every request sent is timed phase by phase (see {@link HttpPhase}), the phases are
+     * reported to the listener and are available through {@link HttpResponse#getTimings()}. Without a listener the phases
+     * are not measured and nothing is allocated for them.
+     * @param callListener Listener to use, or null to disable timing
+     */
+    public void setCallListener(HttpCallListener callListener) {
+        this.callListener = callListener;
+    }
+
+    /**
+     * Gets the base URL of the client
+     * @return Returns the base URL the requests are created with
+     */
+    public URL getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Creates a precompiled endpoint relative to the base URL of this client
+     * Requests created by the endpoint skip the path concatenation and the URL parsing of {@link #createRequest(String)}.
+     * Create endpoints once and reuse them for every call.
+     * @param method HTTP method of the endpoint
+     * @param template Path of the endpoint, optionally followed by the names of its query parameters (e.g. "?fileName=")
+     * @return Returns the created endpoint
+     * @throws MalformedURLException Thrown when the path can not be appended to the base URL
+     */
+    public HttpEndpoint createEndpoint(HttpMethod method, String template) throws MalformedURLException {
+        return new HttpEndpoint(this.baseUrl, method, template);
     }
 
     /**
@@ -140,68 +302,329 @@ public class HttpClient {
      * @throws IOException Thrown when the call fails due to network / accessibility issues.
      */
     public  HttpResponse doHttpCall(HttpRequest request) throws IOException {
-        HttpURLConnection connection = null;
+        CallEvent event = CallEvents.beginHttpRequest();
+        HttpCallListener listener = this.callListener;
+        if ((listener != null || event != null) && request.getTimings() == null)
+            request.setTimings(new HttpTimings(request, listener));
 
+        HttpMetrics metrics = this.metrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        Throwable failure = null;
         try {
-            //Create connection
-            connection = (HttpURLConnection) request.getUrl().openConnection();
-            connection.setRequestMethod(request.getMethod().name());
-
-            // Add headers
-            for (String key: request.getHeaders().keySet()){
-                for (String value: request.getHeaders().get(key)){
-                    if (key == "Content-Length")
-                        connection.setFixedLengthStreamingMode(Integer.parseInt(value));
-                    else
-                        connection.addRequestProperty(key, value);
-                }
-            }
-
-            // Set default headers
-            Map<String, List<String>> properties = connection.getRequestProperties();
-            if (request.getContents() != null && !properties.containsKey("Content-Length"))
-                connection.setFixedLengthStreamingMode(request.getContents().length);
-            else if (!properties.containsKey("Content-Length"))
-                connection.setFixedLengthStreamingMode(0);
+            HttpResponse response = doLimitedHttpCall(request);
+            if (metrics != null)
+                metrics.record(request, response, System.nanoTime() - start);
 
-            // Disable caches
-            connection.setUseCaches(this.useCache);
+            response.setTimings(request.getTimings());
+            if (event != null)
+                event.setResponse(response);
+            return response;
+        }
+        catch (IOException | RuntimeException e) {
+            failure = e;
+            if (metrics != null && e instanceof IOException)
+                metrics.recordFailure(request);
+            throw e;
+        }
+        finally {
+            if (event != null)
+                event.commit(null, request, null, failure);
 
-            // Set output mode to true
-            connection.setDoOutput(true);
+            // A request sent again is timed again
+            request.setTimings(null);
+        }
+    }
 
-            //Send request
-            DataOutputStream wr = new DataOutputStream(connection.getOutputStream());
+    /**
+     * Executes the given HTTP request within the concurrency limit of the client
+     * @param request ZeroKit.Http request object to execute
+     * @return Returns the result of the HTTP call
+     * @throws IOException Thrown when the call fails due to network / accessibility issues.
+     */
+    private HttpResponse doLimitedHttpCall(HttpRequest request) throws IOException {
+        ConcurrencyLimiter limiter = this.concurrencyLimiter;
+        if (limiter == null)
+            return transport.execute(request);
 
-            if (request.getContents() != null)
-                wr.write(request.getContents());
+        long start = limiter.acquire();
+        boolean failed = true;
+        boolean cancelled = false;
+        try {
+            HttpResponse response = transport.execute(request);
+            failed = response.getStatusCode() == 429 || response.getStatusCode() >= 500;
+            return response;
+        }
+        catch (IOException e) {
+            // A cancelled call says nothing about the service (timeouts are subclasses, they are failures)
+            cancelled = isCallAborted(e);
+            throw e;
+        }
+        finally {
+            if (cancelled)
+                limiter.cancel();
             else
-                wr.write(new byte[0]);
+                limiter.release(start, failed);
+        }
+    }
 
-            wr.close();
+    /**
+     * Gets whether the given failure was caused by cancelling the call rather than by the service
+     * Closing the connection of an aborted call (cancelled future, timeout of an asynchronous call, lost hedge) makes the
+     * transport fail with arbitrary I/O errors, these say nothing about the health of the service.
+     * @param error Failure of the call executed by the current thread
+     * @return Returns true if the call was cancelled
+     */
+    protected static boolean isCallAborted(IOException error) {
+        if (error instanceof SocketTimeoutException)
+            return false;
 
-            // Get Response status code
-            int statusCode = connection.getResponseCode();
+        return error instanceof InterruptedIOException || HttpCall.isAborted();
+    }
 
-            if (statusCode >= 200 && statusCode < 300) {
-                InputStream is = connection.getInputStream();
-                byte[] response = IOUtils.readAll(is);
-                is.close();
+    /**
+     * Executes the given HTTP request asynchronously on the executor of the client
+     * The call runs through {@link #doHttpCall(HttpRequest)}, so derived clients sign and post-process
+     * the request inside the asynchronous pipeline. Cancelling the returned future aborts the call.
+     * @param request ZeroKit.Http request object to execute. Will be modified (signed) by the client!
+     * @return Returns a future of the result, failed with the exception the call threw
+     */
+    public CompletableFuture<HttpResponse> doHttpCallAsync(HttpRequest request) {
+        return doHttpCallAsync(request, 0, TimeUnit.MILLISECONDS);
+    }
 
-                return new HttpResponse(statusCode, connection.getHeaderFields(), response);
-            }
-            else {
-                InputStream is = connection.getErrorStream();
-                byte[] response = IOUtils.readAll(is);
-                is.close();
+    /**
+     * Executes the given HTTP request asynchronously on the executor of the client with a timeout
+     * The call runs through {@link #doHttpCall(HttpRequest)}, so derived clients sign and post-process
+     * the request inside the asynchronous pipeline. Cancelling the returned future aborts the call.
+     * @param request ZeroKit.Http request object to execute. Will be modified (signed) by the client!
+     * @param timeout Maximum duration of the whole call (0 means no timeout)
+     * @param unit Unit of the timeout
+     * @return Returns a future of the result, failed with the exception the call threw or with a
+     * {@link TimeoutException} if the call did not complete in time
+     */
+    public CompletableFuture<HttpResponse> doHttpCallAsync(final HttpRequest request, long timeout, TimeUnit unit) {
+        return submit(() -> doHttpCall(request), timeout, unit);
+    }
+
+    /**
+     * Executes the given call asynchronously on the executor of the client with a timeout
+     * The connections used by the call are closed when the returned future is cancelled, times out or fails.
+     * @param call Call to execute, typically one or more invocations of {@link #doHttpCall(HttpRequest)}
+     * @param timeout Maximum duration of the whole call (0 means no timeout)
+     * @param unit Unit of the timeout
+     * @return Returns a future of the result, failed with the exception the call threw or with a
+     * {@link TimeoutException} if the call did not complete in time
+     */
+    protected CompletableFuture<HttpResponse> submit(final Callable<HttpResponse> call, long timeout, TimeUnit unit) {
+        final CompletableFuture<HttpResponse> future = new CompletableFuture<HttpResponse>();
+        final HttpCall httpCall = new HttpCall();
+
+        // Cancellation, timeout or failure: close the connection of the call if it is still running
+        future.whenComplete((response, error) -> {
+            if (error != null)
+                httpCall.abort();
+        });
+
+        try {
+            getExecutor().execute(() -> {
+                if (future.isDone())
+                    return;
+
+                HttpCall.enter(httpCall);
+                try {
+                    HttpResponse response = call.call();
+
+                    // A streamed body nobody is going to read must not hold its connection
+                    if (!future.complete(response))
+                        closeQuietly(response);
+                }
+                catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+                finally {
+                    HttpCall.exit();
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        if (timeout > 0) {
+            final ScheduledFuture<?> timer = DefaultExecutor.Timer.schedule(() -> {
+                future.completeExceptionally(new TimeoutException("The HTTP call did not complete in time."));
+            }, timeout, unit);
+
+            future.whenComplete((response, error) -> timer.cancel(false));
+        }
+
+        return future;
+    }
+
+    /**
+     * Executes a call, and a second (hedged) one if the first did not complete within the given delay
+     * Both calls run on the executor of the client. The first successful response (no exception, status below 500) is
+     * returned, the other call is cancelled and its connection closed. If both fail, the outcome of the first call is
+     * returned or thrown. A call failing before the delay is not hedged. Cancelling the calling asynchronous call (if any)
+     * cancels both calls.
+     * @param primary First call
+     * @param hedge Second call, it must be independent of the first one (e.g. use its own request object)
+     * @param hedgeDelay Delay after which the second call is started
+     * @param unit Unit of the delay
+     * @return Returns the result of the winning call
+     * @throws IOException Thrown when the calls fail due to network / accessibility issues.
+     */
+    protected HttpResponse doHedgedHttpCall(Callable<HttpResponse> primary, Callable<HttpResponse> hedge, long hedgeDelay, TimeUnit unit) throws IOException {
+        final List<CompletableFuture<HttpResponse>> calls = new CopyOnWriteArrayList<CompletableFuture<HttpResponse>>();
+        Closeable abortHandle = () -> {
+            for (CompletableFuture<HttpResponse> call : calls)
+                call.cancel(false);
+        };
+
+        try {
+            calls.add(submit(primary, 0, TimeUnit.MILLISECONDS));
+            HttpCall.attach(abortHandle);
+            CompletableFuture<HttpResponse> first = calls.get(0);
 
-                return new HttpResponse(statusCode, connection.getHeaderFields(), response);
+            try {
+                first.get(hedgeDelay, unit);
+            }
+            catch (TimeoutException e) {
+                // Too slow, hedge it
+            }
+            catch (ExecutionException | CancellationException e) {
+                // Failed before the delay, not hedged
             }
+
+            if (first.isDone())
+                return getResult(first);
+
+            calls.add(submit(hedge, 0, TimeUnit.MILLISECONDS));
+            HttpCall.attach(abortHandle);
+            CompletableFuture<HttpResponse> second = calls.get(1);
+
+            CompletableFuture.anyOf(first, second).handle((result, error) -> null).get();
+            if (!isSuccessful(first) && !isSuccessful(second))
+                (first.isDone() ? second : first).handle((result, error) -> null).get();
+
+            CompletableFuture<HttpResponse> winner = isSuccessful(first) ? first : isSuccessful(second) ? second : first;
+            discard(winner == first ? second : first);
+            return getResult(winner);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The hedged HTTP call was interrupted.");
+        }
+        catch (ExecutionException e) {
+            // Never thrown, the completions are waited through handle()
+            throw new IOException(e.getCause());
         }
         finally {
-            if (connection != null) {
-                connection.disconnect();
+            HttpCall.detach(abortHandle);
+            for (CompletableFuture<HttpResponse> call : calls) {
+                if (!call.isDone())
+                    discard(call);
             }
         }
     }
+
+    /**
+     * Gets whether the given call completed with a successful response
+     * @param call Call to check
+     * @return Returns true if the call returned a response with a status below 500
+     */
+    private static boolean isSuccessful(CompletableFuture<HttpResponse> call) {
+        return call.isDone() && !call.isCompletedExceptionally() && call.join().getStatusCode() < 500;
+    }
+
+    /**
+     * Cancels the given call, or closes its response if it already completed
+     * @param call Call to discard
+     */
+    private static void discard(CompletableFuture<HttpResponse> call) {
+        if (!call.cancel(false))
+            call.thenAccept(HttpClient::closeQuietly);
+    }
+
+    /**
+     * Gets the result of a completed call, rethrowing its failure
+     * @param call Completed call
+     * @return Returns the response of the call
+     * @throws IOException Thrown when the call failed with an I/O error or was cancelled
+     */
+    private static HttpResponse getResult(CompletableFuture<HttpResponse> call) throws IOException {
+        try {
+            return call.join();
+        }
+        catch (CancellationException e) {
+            throw new InterruptedIOException("The HTTP call was cancelled.");
+        }
+        catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Closes the given response, suppressing errors
+     * @param response Response to close
+     */
+    private static void closeQuietly(HttpResponse response) {
+        try {
+            response.close();
+        }
+        catch (IOException e) {
+            // Suppress
+        }
+    }
+
+    /**
+     * Lazily created shared executors of the asynchronous calls
+     */
+    private static final class DefaultExecutor {
+        // Shared executor of the asynchronous calls
+        private static final ExecutorService Instance = Executors.newCachedThreadPool(new DaemonThreadFactory("ZeroKit-HttpClient-"));
+
+        // Shared timer of the call timeouts
+        private static final ScheduledExecutorService Timer = createTimer();
+
+        /**
+         * Creates the timer of the call timeouts
+         * @return Returns a single threaded scheduler which drops cancelled timeouts immediately
+         */
+        private static ScheduledExecutorService createTimer() {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("ZeroKit-HttpClient-Timer-"));
+            timer.setRemoveOnCancelPolicy(true);
+            return timer;
+        }
+    }
+
+    /**
+     * Thread factory creating named daemon threads
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        // Prefix of the thread names
+        private final String prefix;
+
+        // Counter of the created threads
+        private final AtomicInteger counter = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
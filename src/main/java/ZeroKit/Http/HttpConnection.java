@@ -0,0 +1,325 @@
+package ZeroKit.Http;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Persistent HTTP/1.1 connection managed by a {@link HttpConnectionPool}
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+final class HttpConnection implements Closeable {
+    // Charset of the HTTP message heads
+    private static final Charset HeadCharset = Charset.forName("ISO-8859-1");
+
+    // Size of the socket stream buffers
+    private static final int BufferSize = 8192;
+
+    // Host pool which owns this connection
+    private final HttpConnectionPool.HostPool hostPool;
+
+    // Underlying (possibly TLS) socket
+    private final Socket socket;
+
+    // Channel of the socket for zero-copy writes (null for TLS connections)
+    private final SocketChannel channel;
+
+    // Buffered input of the socket
+    private final BufferedInputStream input;
+
+    // Buffered output of the socket
+    private final BufferedOutputStream output;
+
+    // Read timeout to restore after stale checks
+    private final int readTimeout;
+
+    // Time of the last release to the pool
+    private volatile long lastUsedMillis;
+
+    // Number of requests served by this connection
+    private int useCount;
+
+    // Indicates whether the connection was closed
+    private volatile boolean closed;
+
+    /**
+     * Initializes a new connection over the given connected socket
+     * @param hostPool Host pool owning the connection
+     * @param socket Connected socket
+     * @param channel Channel of a plain socket, or null for TLS sockets
+     * @param readTimeout Read timeout of the socket in milliseconds
+     * @throws IOException Thrown when the streams of the socket are not accessible
+     */
+    private HttpConnection(HttpConnectionPool.HostPool hostPool, Socket socket, SocketChannel channel, int readTimeout) throws IOException {
+        this.hostPool = hostPool;
+        this.socket = socket;
+        this.channel = channel;
+        this.readTimeout = readTimeout;
+        this.input = new BufferedInputStream(socket.getInputStream(), BufferSize);
+        this.output = new BufferedOutputStream(socket.getOutputStream(), BufferSize);
+        this.lastUsedMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Opens a new connection to the host of the given host pool
+     * @param hostPool Host pool to open the connection for
+     * @param sslSocketFactory Factory to use for TLS connections
+     * @param connectTimeout Connect timeout in milliseconds (0 means infinite)
+     * @param readTimeout Read timeout in milliseconds (0 means infinite)
+     * @param timings Timings of the request opening the connection, or null if it is not timed
+     * @return Returns the opened connection
+     * @throws IOException Thrown when the connection or the TLS handshake fails
+     */
+    static HttpConnection open(HttpConnectionPool.HostPool hostPool, SSLSocketFactory sslSocketFactory,
+                               int connectTimeout, int readTimeout, HttpTimings timings) throws IOException {
+        // Sockets of channels allow zero-copy file transfers on plain connections
+        SocketChannel channel = SocketChannel.open();
+        Socket socket = channel.socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.connect(new InetSocketAddress(hostPool.getHost(), hostPool.getPort()), connectTimeout);
+            socket.setSoTimeout(readTimeout);
+
+            if (hostPool.isSecure()) {
+                SSLSocket sslSocket = (SSLSocket) sslSocketFactory.createSocket(socket, hostPool.getHost(), hostPool.getPort(), true);
+
+                SSLParameters parameters = sslSocket.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                sslSocket.setSSLParameters(parameters);
+                long handshakeStart = HttpTimings.start(timings);
+                sslSocket.startHandshake();
+                HttpTimings.mark(timings, HttpPhase.TLS_HANDSHAKE, handshakeStart);
+
+                return new HttpConnection(hostPool, sslSocket, null, readTimeout);
+            }
+
+            return new HttpConnection(hostPool, socket, channel, readTimeout);
+        }
+        catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the host pool which owns this connection
+     * @return Returns the owner host pool
+     */
+    HttpConnectionPool.HostPool getHostPool() {
+        return hostPool;
+    }
+
+    /**
+     * Gets whether this connection already served a request before the current one
+     * @return Returns true if the connection was taken from the idle pool
+     */
+    boolean isReused() {
+        return useCount > 1;
+    }
+
+    /**
+     * Gets whether the connection was closed
+     * @return Returns true if the connection is closed
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Marks the connection as leased for a new request
+     */
+    void markLeased() {
+        useCount++;
+    }
+
+    /**
+     * Marks the connection as idle
+     */
+    void markIdle() {
+        lastUsedMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets how long the connection has been idle
+     * @param nowMillis Current time in milliseconds
+     * @return Returns the idle time in milliseconds
+     */
+    long getIdleMillis(long nowMillis) {
+        return nowMillis - lastUsedMillis;
+    }
+
+    /**
+     * Checks whether the server closed the idle connection in the meantime
+     * @return Returns true if the connection is not usable anymore
+     */
+    boolean isStale() {
+        if (closed || socket.isClosed() || socket.isInputShutdown() || socket.isOutputShutdown())
+            return true;
+
+        try {
+            socket.setSoTimeout(1);
+            input.mark(1);
+            int b = input.read();
+            if (b == -1)
+                return true;
+
+            // Unsolicited data on an idle connection: do not trust it
+            input.reset();
+            return true;
+        }
+        catch (SocketTimeoutException e) {
+            return false;
+        }
+        catch (IOException e) {
+            return true;
+        }
+        finally {
+            try {
+                if (!socket.isClosed())
+                    socket.setSoTimeout(readTimeout);
+            }
+            catch (IOException e) {
+                // Suppress
+            }
+        }
+    }
+
+    /**
+     * Writes the request line and headers of an HTTP/1.1 request
+     * @param head Serialized request head, including the terminating empty line
+     * @throws IOException Thrown when writing to the socket fails
+     */
+    void writeHead(String head) throws IOException {
+        output.write(head.getBytes(HeadCharset));
+    }
+
+    /**
+     * Writes the given request contents to the connection
+     * @param content Contents to write
+     * @throws IOException Thrown when reading the contents or writing to the socket fails
+     */
+    void writeBody(HttpContent content) throws IOException {
+        if (channel != null && content.isTransferable()) {
+            output.flush();
+            content.transferTo(channel);
+            return;
+        }
+
+        content.writeTo(output);
+    }
+
+    /**
+     * Flushes the buffered request to the socket
+     * @throws IOException Thrown when writing to the socket fails
+     */
+    void flush() throws IOException {
+        output.flush();
+    }
+
+    /**
+     * Reads a CRLF (or LF) terminated line from the connection
+     * @return Returns the read line, or null if the stream ended before any character
+     * @throws IOException Thrown when reading fails or the line is not terminated
+     */
+    String readLine() throws IOException {
+        StringBuilder sb = new StringBuilder(64);
+
+        int b;
+        while ((b = input.read()) != -1) {
+            if (b == '\n') {
+                int len = sb.length();
+                if (len > 0 && sb.charAt(len - 1) == '\r')
+                    sb.setLength(len - 1);
+                return sb.toString();
+            }
+            sb.append((char) b);
+        }
+
+        if (sb.length() == 0)
+            return null;
+
+        throw new EOFException("Unexpected end of stream while reading an HTTP line.");
+    }
+
+    /**
+     * Reads the header block of a response
+     * @return Returns the read headers with their names as received
+     * @throws IOException Thrown when the header block is malformed or reading fails
+     */
+    Map<String, List<String>> readHeaders() throws IOException {
+        Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+
+        String line;
+        while ((line = readLine()) != null && line.length() > 0) {
+            int colon = line.indexOf(':');
+            if (colon <= 0)
+                throw new IOException("Malformed HTTP header line: " + line);
+
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+
+            List<String> values = headers.get(name);
+            if (values == null) {
+                values = new ArrayList<String>(1);
+                headers.put(name, values);
+            }
+            values.add(value);
+        }
+
+        if (line == null)
+            throw new EOFException("Unexpected end of stream while reading HTTP headers.");
+
+        return headers;
+    }
+
+    /**
+     * Gets the raw input stream of the connection
+     * @return Returns the buffered socket input
+     */
+    InputStream getInput() {
+        return input;
+    }
+
+    /**
+     * Gets the raw output stream of the connection
+     * @return Returns the buffered socket output
+     */
+    OutputStream getOutput() {
+        return output;
+    }
+
+    /**
+     * Closes the connection and the underlying socket
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+
+        closed = true;
+        try {
+            socket.close();
+        }
+        catch (IOException e) {
+            // Suppress
+        }
+    }
+}
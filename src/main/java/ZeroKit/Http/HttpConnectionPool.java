@@ -0,0 +1,494 @@
+package ZeroKit.Http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Pool of persistent (keep-alive) HTTP/1.1 connections, grouped by target host
+ * The pool is thread-safe, a single instance can be shared by any number of clients
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class HttpConnectionPool implements Closeable {
+    /**
+     * Default maximum number of connections per host
+     */
+    public static final int DefaultMaxConnectionsPerHost = 20;
+
+    /**
+     * Default time in milliseconds after which idle connections are evicted
+     */
+    public static final long DefaultIdleTimeoutMillis = 30000;
+
+    // Idle time in milliseconds after which a connection is checked for staleness before reuse
+    private static final long ValidateAfterInactivityMillis = 2000;
+
+    // Pools of the individual hosts keyed by "scheme://host:port"
+    private final ConcurrentHashMap<String, HostPool> hostPools;
+
+    // Maximum number of connections per host
+    private final int maxConnectionsPerHost;
+
+    // Time in milliseconds after which idle connections are evicted
+    private final long idleTimeoutMillis;
+
+    // Connect timeout in milliseconds (0 means infinite)
+    private volatile int connectTimeout;
+
+    // Read timeout in milliseconds (0 means infinite)
+    private volatile int readTimeout;
+
+    // Maximum time in milliseconds to wait for a free connection (0 means infinite)
+    private volatile long leaseTimeout;
+
+    // Socket factory used for HTTPS connections
+    private volatile SSLSocketFactory sslSocketFactory;
+
+    // Earliest time of the next opportunistic idle eviction run
+    private final AtomicLong nextEvictionMillis;
+
+    // Indicates whether the pool was closed
+    private volatile boolean closed;
+
+    /**
+     * Initializes a new connection pool with the default settings
+     */
+    public HttpConnectionPool() {
+        this(DefaultMaxConnectionsPerHost, DefaultIdleTimeoutMillis);
+    }
+
+    /**
+     * Initializes a new connection pool with the given maximum connection count per host
+     * @param maxConnectionsPerHost Maximum number of concurrent connections per host
+     */
+    public HttpConnectionPool(int maxConnectionsPerHost) {
+        this(maxConnectionsPerHost, DefaultIdleTimeoutMillis);
+    }
+
+    /**
+     * Initializes a new connection pool with the given parameters
+     * @param maxConnectionsPerHost Maximum number of concurrent connections per host
+     * @param idleTimeoutMillis Time in milliseconds after which idle connections are evicted
+     * @throws IllegalArgumentException Thrown when any of the given parameters is invalid
+     */
+    public HttpConnectionPool(int maxConnectionsPerHost, long idleTimeoutMillis) {
+        if (maxConnectionsPerHost < 1)
+            throw new IllegalArgumentException("The maximum connection count must be positive.");
+
+        if (idleTimeoutMillis < 0)
+            throw new IllegalArgumentException("The idle timeout can not be negative.");
+
+        this.hostPools = new ConcurrentHashMap<String, HostPool>();
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.connectTimeout = 0;
+        this.readTimeout = 0;
+        this.leaseTimeout = 0;
+        this.sslSocketFactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+        this.nextEvictionMillis = new AtomicLong(System.currentTimeMillis() + idleTimeoutMillis);
+        this.closed = false;
+    }
+
+    /**
+     * Gets the maximum number of concurrent connections per host
+     * @return Returns the maximum connection count per host
+     */
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * Gets the time after which idle connections are evicted
+     * @return Returns the idle timeout in milliseconds
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * Gets the connect timeout of new connections
+     * @return Returns the connect timeout in milliseconds (0 means infinite)
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Sets the connect timeout of new connections
+     * @param connectTimeout Connect timeout in milliseconds (0 means infinite)
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Gets the read timeout of the connections
+     * @return Returns the read timeout in milliseconds (0 means infinite)
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Sets the read timeout of new connections
+     * @param readTimeout Read timeout in milliseconds (0 means infinite)
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Gets the maximum time to wait for a free connection when the host limit is reached
+     * @return Returns the lease timeout in milliseconds (0 means infinite)
+     */
+    public long getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    /**
+     * Sets the maximum time to wait for a free connection when the host limit is reached
+     * @param leaseTimeout Lease timeout in milliseconds (0 means infinite)
+     */
+    public void setLeaseTimeout(long leaseTimeout) {
+        this.leaseTimeout = leaseTimeout;
+    }
+
+    /**
+     * Gets the socket factory used for HTTPS connections
+     * @return Returns the SSL socket factory
+     */
+    public SSLSocketFactory getSslSocketFactory() {
+        return sslSocketFactory;
+    }
+
+    /**
+     * Sets the socket factory used for new HTTPS connections
+     * @param sslSocketFactory SSL socket factory to use
+     */
+    public void setSslSocketFactory(SSLSocketFactory sslSocketFactory) {
+        this.sslSocketFactory = sslSocketFactory;
+    }
+
+    /**
+     * Gets the aggregated statistics of all host pools
+     * @return Returns the pool statistics
+     */
+    public HttpConnectionPoolStats getStats() {
+        int leased = 0;
+        int idle = 0;
+        long created = 0;
+        long evicted = 0;
+
+        for (HostPool hostPool : hostPools.values()) {
+            leased += hostPool.leased.get();
+            idle += hostPool.idleCount.get();
+            created += hostPool.created.get();
+            evicted += hostPool.evicted.get();
+        }
+
+        return new HttpConnectionPoolStats(leased, idle, created, evicted);
+    }
+
+    /**
+     * Gets the statistics of the host pool of the given URL
+     * @param url URL of the host
+     * @return Returns the statistics of the host pool (all zero if the host was never used)
+     * @throws MalformedURLException Thrown when the protocol of the URL is not supported
+     */
+    public HttpConnectionPoolStats getStats(URL url) throws MalformedURLException {
+        HostPool hostPool = hostPools.get(getHostKey(url));
+
+        if (hostPool == null)
+            return new HttpConnectionPoolStats(0, 0, 0, 0);
+
+        return new HttpConnectionPoolStats(hostPool.leased.get(), hostPool.idleCount.get(),
+                hostPool.created.get(), hostPool.evicted.get());
+    }
+
+    /**
+     * Closes every connection which has been idle for longer than the idle timeout
+     * This is also done opportunistically when connections are released, calling it is only
+     * needed when the pool may stay unused for a long time.
+     * @return Returns the number of evicted connections
+     */
+    public int evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        int count = 0;
+
+        for (HostPool hostPool : hostPools.values()) {
+            Iterator<HttpConnection> it = hostPool.idle.descendingIterator();
+            while (it.hasNext()) {
+                HttpConnection connection = it.next();
+                if (connection.getIdleMillis(now) >= idleTimeoutMillis && hostPool.idle.removeFirstOccurrence(connection)) {
+                    hostPool.idleCount.decrementAndGet();
+                    hostPool.evicted.incrementAndGet();
+                    connection.close();
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Closes the pool and every idle connection
+     * Leased connections are closed when they are released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        for (HostPool hostPool : hostPools.values())
+            hostPool.closeIdle();
+    }
+
+    /**
+     * Leases a connection to the host of the given URL, timing the TLS handshake of a new connection
+     * Blocks if the maximum connection count of the host is reached.
+     * @param url URL of the target
+     * @param timings Timings of the request, or null if it is not timed
+     * @return Returns a warm idle connection or a newly opened one
+     * @throws IOException Thrown when a connection can not be acquired or opened
+     */
+    HttpConnection lease(URL url, HttpTimings timings) throws IOException {
+        if (closed)
+            throw new IOException("The connection pool is closed.");
+
+        HostPool hostPool = getHostPool(url);
+        hostPool.acquirePermit(leaseTimeout);
+
+        try {
+            long now = System.currentTimeMillis();
+
+            HttpConnection connection;
+            while ((connection = hostPool.idle.pollFirst()) != null) {
+                hostPool.idleCount.decrementAndGet();
+
+                long idleMillis = connection.getIdleMillis(now);
+                if (idleMillis >= idleTimeoutMillis || (idleMillis >= ValidateAfterInactivityMillis && connection.isStale())) {
+                    hostPool.evicted.incrementAndGet();
+                    connection.close();
+                    continue;
+                }
+
+                hostPool.leased.incrementAndGet();
+                connection.markLeased();
+                return connection;
+            }
+
+            connection = HttpConnection.open(hostPool, sslSocketFactory, connectTimeout, readTimeout, timings);
+            hostPool.created.incrementAndGet();
+            hostPool.leased.incrementAndGet();
+            connection.markLeased();
+            return connection;
+        }
+        catch (IOException e) {
+            hostPool.permits.release();
+            throw e;
+        }
+        catch (RuntimeException e) {
+            hostPool.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a leased connection to the pool
+     * @param connection Connection to release
+     * @param reusable If true, the connection is kept alive for later requests, otherwise it is closed
+     */
+    void release(HttpConnection connection, boolean reusable) {
+        HttpCall.detach(connection);
+
+        HostPool hostPool = connection.getHostPool();
+        hostPool.leased.decrementAndGet();
+
+        if (reusable && !closed && !connection.isClosed()
+                && hostPool.leased.get() + hostPool.idleCount.get() < maxConnectionsPerHost) {
+            connection.markIdle();
+            hostPool.idle.offerFirst(connection);
+            hostPool.idleCount.incrementAndGet();
+
+            // The pool could have been closed in the meantime
+            if (closed)
+                hostPool.closeIdle();
+        }
+        else {
+            connection.close();
+        }
+
+        hostPool.permits.release();
+
+        long next = nextEvictionMillis.get();
+        long now = System.currentTimeMillis();
+        if (now >= next && nextEvictionMillis.compareAndSet(next, now + Math.max(idleTimeoutMillis / 2, 1000)))
+            evictIdleConnections();
+    }
+
+    /**
+     * Gets (or creates) the host pool of the given URL
+     * @param url URL of the target
+     * @return Returns the host pool
+     * @throws MalformedURLException Thrown when the protocol of the URL is not supported
+     */
+    private HostPool getHostPool(URL url) throws MalformedURLException {
+        String key = getHostKey(url);
+
+        HostPool hostPool = hostPools.get(key);
+        if (hostPool == null) {
+            HostPool created = new HostPool(url.getProtocol().equalsIgnoreCase("https"), url.getHost(), getPort(url), maxConnectionsPerHost);
+            hostPool = hostPools.putIfAbsent(key, created);
+            if (hostPool == null)
+                hostPool = created;
+        }
+
+        return hostPool;
+    }
+
+    /**
+     * Gets the key of the host pool of the given URL
+     * @param url URL of the target
+     * @return Returns the host pool key
+     * @throws MalformedURLException Thrown when the protocol of the URL is not supported
+     */
+    private static String getHostKey(URL url) throws MalformedURLException {
+        String protocol = url.getProtocol().toLowerCase();
+        if (!protocol.equals("http") && !protocol.equals("https"))
+            throw new MalformedURLException("Unsupported protocol for pooled connections: " + protocol);
+
+        return protocol + "://" + url.getHost().toLowerCase() + ":" + getPort(url);
+    }
+
+    /**
+     * Gets the effective port of the given URL
+     * @param url URL of the target
+     * @return Returns the explicit port or the default port of the protocol
+     */
+    private static int getPort(URL url) {
+        return url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+    }
+
+    /**
+     * Connections and counters of a single host
+     */
+    static final class HostPool {
+        // Indicates whether the host uses TLS
+        private final boolean secure;
+
+        // Host name
+        private final String host;
+
+        // Port number
+        private final int port;
+
+        // Permits limiting the number of leased connections
+        private final Semaphore permits;
+
+        // Idle connections, most recently used first
+        private final ConcurrentLinkedDeque<HttpConnection> idle;
+
+        // Number of idle connections
+        private final AtomicInteger idleCount;
+
+        // Number of leased connections
+        private final AtomicInteger leased;
+
+        // Number of opened connections
+        private final AtomicLong created;
+
+        // Number of connections closed due to idle timeout or staleness
+        private final AtomicLong evicted;
+
+        /**
+         * Initializes a new host pool
+         * @param secure Indicates whether the host uses TLS
+         * @param host Host name
+         * @param port Port number
+         * @param maxConnections Maximum number of leased connections
+         */
+        HostPool(boolean secure, String host, int port, int maxConnections) {
+            this.secure = secure;
+            this.host = host;
+            this.port = port;
+            this.permits = new Semaphore(maxConnections);
+            this.idle = new ConcurrentLinkedDeque<HttpConnection>();
+            this.idleCount = new AtomicInteger();
+            this.leased = new AtomicInteger();
+            this.created = new AtomicLong();
+            this.evicted = new AtomicLong();
+        }
+
+        /**
+         * Gets whether the host uses TLS
+         * @return Returns true for HTTPS hosts
+         */
+        boolean isSecure() {
+            return secure;
+        }
+
+        /**
+         * Gets the host name
+         * @return Returns the host name
+         */
+        String getHost() {
+            return host;
+        }
+
+        /**
+         * Gets the port number
+         * @return Returns the port number
+         */
+        int getPort() {
+            return port;
+        }
+
+        /**
+         * Gets whether the host is accessed on the default port of its protocol
+         * @return Returns true for port 80 over HTTP and 443 over HTTPS
+         */
+        boolean isDefaultPort() {
+            return port == (secure ? 443 : 80);
+        }
+
+        /**
+         * Acquires a connection permit of this host
+         * @param timeout Maximum time to wait in milliseconds (0 means infinite)
+         * @throws IOException Thrown when the timeout elapses or the thread is interrupted
+         */
+        void acquirePermit(long timeout) throws IOException {
+            try {
+                if (timeout <= 0)
+                    permits.acquire();
+                else if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS))
+                    throw new IOException("Timed out waiting for a connection to " + host + ":" + port + " from the pool.");
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a pooled connection.");
+            }
+        }
+
+        /**
+         * Closes every idle connection of the host
+         */
+        void closeIdle() {
+            HttpConnection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                idleCount.decrementAndGet();
+                connection.close();
+            }
+        }
+    }
+}
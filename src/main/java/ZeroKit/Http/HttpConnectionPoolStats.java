@@ -0,0 +1,71 @@
+package ZeroKit.Http;
+
+/**
+ * Point-in-time statistics of an HTTP connection pool
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class HttpConnectionPoolStats {
+    // Number of connections currently in use
+    private final int leased;
+
+    // Number of connections currently waiting for reuse
+    private final int idle;
+
+    // Number of connections opened so far
+    private final long created;
+
+    // Number of connections closed so far due to idle timeout or staleness
+    private final long evicted;
+
+    /**
+     * Initializes a new pool statistics snapshot
+     * @param leased Number of leased connections
+     * @param idle Number of idle connections
+     * @param created Number of created connections
+     * @param evicted Number of evicted connections
+     */
+    public HttpConnectionPoolStats(int leased, int idle, long created, long evicted) {
+        this.leased = leased;
+        this.idle = idle;
+        this.created = created;
+        this.evicted = evicted;
+    }
+
+    /**
+     * Gets the number of connections currently in use
+     * @return Returns the leased connection count
+     */
+    public int getLeased() {
+        return leased;
+    }
+
+    /**
+     * Gets the number of connections currently waiting for reuse
+     * @return Returns the idle connection count
+     */
+    public int getIdle() {
+        return idle;
+    }
+
+    /**
+     * Gets the number of connections opened so far
+     * @return Returns the created connection count
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * Gets the number of connections closed so far due to idle timeout or staleness
+     * @return Returns the evicted connection count
+     */
+    public long getEvicted() {
+        return evicted;
+    }
+
+    @Override
+    public String toString() {
+        return "leased=" + leased + ", idle=" + idle + ", created=" + created + ", evicted=" + evicted;
+    }
+}
@@ -0,0 +1,535 @@
+package ZeroKit.Http;
+
+import ZeroKit.Utils.BufferPool;
+import ZeroKit.Utils.Sha256;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Body contents of an HTTP request
+ * Contents are replayable: they can be hashed, sent and (on a failed keep-alive connection) resent, and
+ * they are streamed to the network without being copied into a single array. The SHA256 hash of the
+ * contents is computed incrementally and only once. File contents are hashed through memory-mapped
+ * views and sent with zero-copy transfers where the transport allows it.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public abstract class HttpContent {
+    // Size of the copy buffers
+    private static final int BufferSize = 16384;
+
+    // Memoized SHA256 hash of the contents (null until computed)
+    private volatile String sha256;
+
+    /**
+     * Replayable source of request contents
+     */
+    public interface Source {
+        /**
+         * Opens a new stream over the contents, every stream must return the same bytes
+         * @return Returns the opened stream
+         * @throws IOException Thrown when the contents are not accessible
+         */
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Creates contents backed by the given array
+     * The array is stored as a reference!
+     * @param data Data of the contents
+     * @return Returns the created contents
+     */
+    public static HttpContent ofBytes(byte[] data) {
+        return new ByteArrayContent(data, 0, data.length);
+    }
+
+    /**
+     * Creates contents backed by a part of the given array
+     * The array is stored as a reference!
+     * @param data Data of the contents
+     * @param offset Offset of the contents in the array
+     * @param length Length of the contents
+     * @return Returns the created contents
+     */
+    public static HttpContent ofBytes(byte[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > data.length)
+            throw new IndexOutOfBoundsException("The given range is out of the bounds of the array.");
+
+        return new ByteArrayContent(data, offset, length);
+    }
+
+    /**
+     * Creates contents backed by the given file
+     * The file is read when the request is hashed and sent, it must not change meanwhile.
+     * @param file File of the contents
+     * @return Returns the created contents
+     */
+    public static HttpContent ofFile(final File file) {
+        return new SourceContent(file.length(), new Source() {
+            @Override
+            public InputStream open() throws IOException {
+                return new FileInputStream(file);
+            }
+        });
+    }
+
+    /**
+     * Creates contents backed by the file at the given path
+     * The file is hashed through a memory-mapped view and, on plain HTTP connections, sent to the socket
+     * with zero-copy transfers. It must not change until the request is sent.
+     * @param path Path of the file
+     * @return Returns the created contents
+     * @throws IOException Thrown when the size of the file is not accessible
+     */
+    public static HttpContent ofPath(Path path) throws IOException {
+        return new FileContent(path, null, 0, Files.size(path));
+    }
+
+    /**
+     * Creates contents backed by the whole file of the given channel
+     * The channel is only accessed with positional operations, its position is not changed. It is not
+     * closed by the request, it must stay open until the request is sent.
+     * @param channel Channel of the file
+     * @return Returns the created contents
+     * @throws IOException Thrown when the size of the file is not accessible
+     */
+    public static HttpContent ofChannel(FileChannel channel) throws IOException {
+        return ofChannel(channel, 0, channel.size());
+    }
+
+    /**
+     * Creates contents backed by a region of the file of the given channel
+     * @param channel Channel of the file
+     * @param position Position of the region in the file
+     * @param length Length of the region
+     * @return Returns the created contents
+     */
+    public static HttpContent ofChannel(FileChannel channel, long position, long length) {
+        if (position < 0 || length < 0)
+            throw new IllegalArgumentException("The region of the file can not be negative.");
+
+        return new FileContent(null, channel, position, length);
+    }
+
+    /**
+     * Creates contents backed by the given replayable source
+     * @param length Length of the contents in bytes
+     * @param source Source of the contents
+     * @return Returns the created contents
+     */
+    public static HttpContent ofSource(long length, Source source) {
+        if (length < 0)
+            throw new IllegalArgumentException("The length of the contents can not be negative.");
+
+        return new SourceContent(length, source);
+    }
+
+    /**
+     * Creates contents by reading the given stream to the end
+     * The stream is read only once: it is buffered and hashed in the same pass.
+     * @param input Stream to read
+     * @return Returns the created contents
+     * @throws IOException Thrown when reading the stream fails
+     */
+    public static HttpContent ofStream(InputStream input) throws IOException {
+        MessageDigest digest = Sha256.createDigest();
+        ExposedByteArrayOutputStream buffer = new ExposedByteArrayOutputStream();
+
+        DigestOutputStream output = new DigestOutputStream(buffer, digest);
+        copy(input, output);
+
+        HttpContent content = new ByteArrayContent(buffer.getBuffer(), 0, buffer.size());
+        content.sha256 = Sha256.toHex(digest.digest());
+        return content;
+    }
+
+    /**
+     * Gets the length of the contents
+     * @return Returns the length in bytes
+     */
+    public abstract long getLength();
+
+    /**
+     * Opens a new stream over the contents
+     * @return Returns the opened stream
+     * @throws IOException Thrown when the contents are not accessible
+     */
+    public abstract InputStream openStream() throws IOException;
+
+    /**
+     * Writes the contents to the given stream
+     * @param output Stream to write to
+     * @throws IOException Thrown when reading the contents or writing the stream fails
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        long length = getLength();
+
+        InputStream input = openStream();
+        try {
+            // Never write more than announced, the extra bytes would corrupt the connection
+            long remaining = length;
+            byte[] data = BufferPool.acquire((int) Math.min(BufferSize, Math.max(remaining, 1)));
+            try {
+                while (remaining > 0) {
+                    int nRead = input.read(data, 0, (int) Math.min(data.length, remaining));
+                    if (nRead == -1)
+                        break;
+
+                    output.write(data, 0, nRead);
+                    remaining -= nRead;
+                }
+            }
+            finally {
+                BufferPool.release(data);
+            }
+
+            if (remaining != 0 || input.read() != -1)
+                throw new IOException("The length of the request contents changed, " + length + " bytes were expected.");
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Gets the SHA256 hash of the contents
+     * The hash is computed on the first call, later calls return the memoized value.
+     * @return Returns the hash as a hex string
+     * @throws IOException Thrown when reading the contents fails
+     */
+    public String getSha256() throws IOException {
+        String sha256 = this.sha256;
+        if (sha256 == null) {
+            sha256 = computeSha256();
+            this.sha256 = sha256;
+        }
+
+        return sha256;
+    }
+
+    /**
+     * Gets the contents as an array if they are held in memory
+     * @return Returns the array of the contents, or null if they are not held in memory
+     */
+    byte[] getArray() {
+        return null;
+    }
+
+    /**
+     * Gets the file of the contents if they are a whole file accessible by path
+     * @return Returns the path of the file, or null if the contents are not a whole file
+     */
+    Path getPath() {
+        return null;
+    }
+
+    /**
+     * Gets whether the contents can be transferred to a channel without copying them through the heap
+     * @return Returns true if {@link #transferTo(WritableByteChannel)} is supported
+     */
+    boolean isTransferable() {
+        return false;
+    }
+
+    /**
+     * Transfers the contents to the given channel without copying them through the heap
+     * @param target Channel to write to
+     * @throws IOException Thrown when reading the contents or writing the channel fails
+     */
+    void transferTo(WritableByteChannel target) throws IOException {
+        throw new UnsupportedOperationException("The contents can not be transferred to a channel.");
+    }
+
+    /**
+     * Computes the SHA256 hash of the contents
+     * @return Returns the hash as a hex string
+     * @throws IOException Thrown when reading the contents fails
+     */
+    protected String computeSha256() throws IOException {
+        InputStream input = openStream();
+        try {
+            return Sha256.hash(input);
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Copies the given stream to the end
+     * @param input Stream to read
+     * @param output Stream to write
+     * @return Returns the number of copied bytes
+     * @throws IOException Thrown when reading or writing fails
+     */
+    static long copy(InputStream input, OutputStream output) throws IOException {
+        long total = 0;
+
+        int nRead;
+        byte[] data = BufferPool.acquire(BufferSize);
+        try {
+            while ((nRead = input.read(data, 0, data.length)) != -1) {
+                output.write(data, 0, nRead);
+                total += nRead;
+            }
+        }
+        finally {
+            BufferPool.release(data);
+        }
+
+        return total;
+    }
+
+    /**
+     * Contents held in memory
+     */
+    private static final class ByteArrayContent extends HttpContent {
+        // Array of the contents
+        private final byte[] data;
+
+        // Offset of the contents in the array
+        private final int offset;
+
+        // Length of the contents
+        private final int length;
+
+        ByteArrayContent(byte[] data, int offset, int length) {
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public long getLength() {
+            return length;
+        }
+
+        @Override
+        public InputStream openStream() {
+            return new ByteArrayInputStream(data, offset, length);
+        }
+
+        @Override
+        public void writeTo(OutputStream output) throws IOException {
+            output.write(data, offset, length);
+        }
+
+        @Override
+        byte[] getArray() {
+            return offset == 0 && length == data.length ? data : Arrays.copyOfRange(data, offset, offset + length);
+        }
+
+        @Override
+        protected String computeSha256() {
+            MessageDigest digest = Sha256.createDigest();
+            digest.update(data, offset, length);
+            return Sha256.toHex(digest.digest());
+        }
+    }
+
+    /**
+     * Contents read from a replayable source
+     */
+    private static final class SourceContent extends HttpContent {
+        // Length of the contents
+        private final long length;
+
+        // Source of the contents
+        private final Source source;
+
+        SourceContent(long length, Source source) {
+            this.length = length;
+            this.source = source;
+        }
+
+        @Override
+        public long getLength() {
+            return length;
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return source.open();
+        }
+    }
+
+    /**
+     * Contents read from a region of a file
+     */
+    private static final class FileContent extends HttpContent {
+        // Size of the memory-mapped windows used for hashing
+        private static final long MapWindowSize = 64L * 1024 * 1024;
+
+        // Path of the file (null if a channel was given)
+        private final Path path;
+
+        // Channel of the file (null if a path was given)
+        private final FileChannel channel;
+
+        // Position of the region in the file
+        private final long position;
+
+        // Length of the region
+        private final long length;
+
+        FileContent(Path path, FileChannel channel, long position, long length) {
+            this.path = path;
+            this.channel = channel;
+            this.position = position;
+            this.length = length;
+        }
+
+        @Override
+        public long getLength() {
+            return length;
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return new ChannelInputStream(open(), position, length, path != null);
+        }
+
+        @Override
+        Path getPath() {
+            return path;
+        }
+
+        @Override
+        boolean isTransferable() {
+            return true;
+        }
+
+        @Override
+        void transferTo(WritableByteChannel target) throws IOException {
+            FileChannel channel = open();
+            try {
+                long transferred = 0;
+                while (transferred < length) {
+                    long n = channel.transferTo(position + transferred, length - transferred, target);
+                    if (n <= 0)
+                        throw new IOException("The length of the request contents changed, " + length + " bytes were expected.");
+
+                    transferred += n;
+                }
+            }
+            finally {
+                release(channel);
+            }
+        }
+
+        @Override
+        protected String computeSha256() throws IOException {
+            FileChannel channel = open();
+            try {
+                if (channel.size() < position + length)
+                    throw new IOException("The length of the request contents changed, " + length + " bytes were expected.");
+
+                MessageDigest digest = Sha256.createDigest();
+                for (long offset = 0; offset < length; offset += MapWindowSize) {
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position + offset, Math.min(MapWindowSize, length - offset));
+                    digest.update(window);
+                }
+
+                return Sha256.toHex(digest.digest());
+            }
+            finally {
+                release(channel);
+            }
+        }
+
+        /**
+         * Opens the channel of the file
+         * @return Returns a new channel for paths, the given channel otherwise
+         * @throws IOException Thrown when the file can not be opened
+         */
+        private FileChannel open() throws IOException {
+            return path != null ? FileChannel.open(path, StandardOpenOption.READ) : channel;
+        }
+
+        /**
+         * Closes the channel if it was opened for the operation
+         * @param channel Channel to release
+         * @throws IOException Thrown when closing fails
+         */
+        private void release(FileChannel channel) throws IOException {
+            if (path != null)
+                channel.close();
+        }
+    }
+
+    /**
+     * Stream reading a region of a file with positional reads
+     */
+    private static final class ChannelInputStream extends InputStream {
+        // Channel of the file
+        private final FileChannel channel;
+
+        // End of the region in the file
+        private final long end;
+
+        // Indicates whether the channel is closed with the stream
+        private final boolean ownsChannel;
+
+        // Current read position in the file
+        private long position;
+
+        ChannelInputStream(FileChannel channel, long position, long length, boolean ownsChannel) {
+            this.channel = channel;
+            this.position = position;
+            this.end = position + length;
+            this.ownsChannel = ownsChannel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end)
+                return -1;
+
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (n > 0)
+                position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (ownsChannel)
+                channel.close();
+        }
+    }
+
+    /**
+     * Byte array output stream giving access to its buffer without copying it
+     */
+    private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        ExposedByteArrayOutputStream() {
+            super(BufferSize);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+    }
+}
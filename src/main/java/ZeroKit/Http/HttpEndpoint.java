@@ -0,0 +1,333 @@
+package ZeroKit.Http;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Precompiled, immutable route of an API endpoint: method, URL, canonical path and query template
+ * The URL, the path relative to the base URL and the canonical form signed by the admin API are resolved once, requests
+ * created from the endpoint share them. Endpoints without query parameters share a single URL instance, so creating a
+ * request parses nothing. The template can list query parameters with empty values (e.g.
+ * "/api/v4/admin/tenant/upload-custom-content?fileName="), their values are percent-encoded when a request is created.
+ * Endpoints are thread-safe and meant to be created once per client.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public final class HttpEndpoint {
+    // Hexadecimal digits of the percent-encoding
+    private static final char[] HexDigits = "0123456789ABCDEF".toCharArray();
+
+    // Base URL the endpoint is relative to
+    private final URL baseUrl;
+
+    // HTTP method of the endpoint
+    private final HttpMethod method;
+
+    // URL of the endpoint, without the query
+    private final URL url;
+
+    // Path of the endpoint relative to the base URL (e.g. /api/v4/admin/user/set-user-state)
+    private final String relativePath;
+
+    // Method and relative path of the endpoint (e.g. "POST /api/v4/admin/user/set-user-state")
+    private final String name;
+
+    // Method and path without its leading slash, as they start the canonical form of a signed request
+    private final String canonicalPrefix;
+
+    // Names of the query parameters
+    private final String[] parameters;
+
+    // Request of each thread reused by reuseRequest()
+    private final ThreadLocal<HttpRequest> reusedRequests = new ThreadLocal<HttpRequest>();
+
+    /**
+     * Initializes a new endpoint
+     * @param baseUrl Base URL of the client (e.g. the service URL of the tenant)
+     * @param method HTTP method of the endpoint
+     * @param template Path of the endpoint relative to the base URL, optionally followed by the names of its query
+     *                 parameters (e.g. "/api/v4/admin/tenant/upload-custom-content?fileName=")
+     * @throws MalformedURLException Thrown when the path can not be appended to the base URL
+     * @throws IllegalArgumentException Thrown when the query template has a parameter with a value
+     */
+    public HttpEndpoint(URL baseUrl, HttpMethod method, String template) throws MalformedURLException {
+        int queryStart = template.indexOf('?');
+        String path = queryStart < 0 ? template : template.substring(0, queryStart);
+
+        List<String> parameters = new ArrayList<String>();
+        if (queryStart >= 0) {
+            for (String parameter : template.substring(queryStart + 1).split("&")) {
+                if (parameter.isEmpty())
+                    continue;
+                int equals = parameter.indexOf('=');
+                if (equals >= 0 && equals != parameter.length() - 1)
+                    throw new IllegalArgumentException("The query template can not have fixed values: " + parameter);
+                parameters.add(equals >= 0 ? parameter.substring(0, equals) : parameter);
+            }
+        }
+
+        String basePath = baseUrl.getPath();
+        if (basePath.endsWith("/"))
+            basePath = basePath.substring(0, basePath.length() - 1);
+        String relativePath = path.startsWith("/") ? path : "/" + path;
+        String fullPath = basePath + relativePath;
+
+        this.baseUrl = baseUrl;
+        this.method = method;
+        this.url = new URL(baseUrl.getProtocol(), baseUrl.getHost(), baseUrl.getPort(), fullPath);
+        this.relativePath = relativePath;
+        this.name = method + " " + relativePath;
+        this.canonicalPrefix = method.name() + "\n" + fullPath.substring(1);
+        this.parameters = parameters.toArray(new String[0]);
+    }
+
+    /**
+     * Gets the base URL the endpoint is relative to
+     * @return Returns the base URL
+     */
+    public URL getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Gets the HTTP method of the endpoint
+     * @return Returns the method
+     */
+    public HttpMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the URL of the endpoint
+     * @return Returns the URL, without the query
+     */
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * Gets the path of the endpoint relative to the base URL
+     * @return Returns the relative path (e.g. /api/v4/admin/user/set-user-state)
+     */
+    public String getRelativePath() {
+        return relativePath;
+    }
+
+    /**
+     * Gets the name of the endpoint
+     * @return Returns the method and the relative path (e.g. "POST /api/v4/admin/user/set-user-state")
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the method and the path of the endpoint in the canonical form of the signed requests
+     * @return Returns the method, a line break and the path without its leading slash
+     */
+    public String getCanonicalPrefix() {
+        return canonicalPrefix;
+    }
+
+    /**
+     * Gets the number of query parameters of the endpoint
+     * @return Returns the number of parameters
+     */
+    public int getParameterCount() {
+        return parameters.length;
+    }
+
+    /**
+     * Creates a new request of the endpoint
+     * @param values Values of the query parameters, in the order of the template (null values are omitted)
+     * @return Returns the created request
+     * @throws IllegalArgumentException Thrown when the number of values does not match the template
+     */
+    public HttpRequest createRequest(String... values) {
+        return new HttpRequest(this, createUrl(values)).setMethod(method);
+    }
+
+    /**
+     * Resets a request and points it to the endpoint, so an existing request can be sent again
+     * The headers, the contents and the streaming flag of the request are cleared, like by {@link HttpRequest#reset()}.
+     * @param request Request to reset
+     * @param values Values of the query parameters, in the order of the template (null values are omitted)
+     * @return Returns the reset request
+     * @throws IllegalArgumentException Thrown when the number of values does not match the template
+     */
+    public HttpRequest resetRequest(HttpRequest request, String... values) {
+        return request.reset(this, createUrl(values));
+    }
+
+    /**
+     * Gets the reusable request of the current thread, reset to a new request of the endpoint
+     * Each thread has one request per endpoint, which is reset and returned again by the next call on the same thread.
+     * Steady-state callers allocate nothing for the request besides the URL of the query parameters. The request must
+     * not be kept or shared with other threads, and must not be used for async calls: use
+     * {@link #createRequest(String...)} for those.
+     * @param values Values of the query parameters, in the order of the template (null values are omitted)
+     * @return Returns the reset request of the current thread
+     * @throws IllegalArgumentException Thrown when the number of values does not match the template
+     */
+    public HttpRequest reuseRequest(String... values) {
+        URL requestUrl = createUrl(values);
+
+        HttpRequest request = reusedRequests.get();
+        if (request == null) {
+            request = new HttpRequest(this, requestUrl).setMethod(method);
+            reusedRequests.set(request);
+            return request;
+        }
+
+        return request.reset(this, requestUrl);
+    }
+
+    /**
+     * Creates the URL of a request
+     * @param values Values of the query parameters, in the order of the template (null values are omitted)
+     * @return Returns the URL of the endpoint with the encoded query, or the shared URL if the endpoint has no parameters
+     * @throws IllegalArgumentException Thrown when the number of values does not match the template
+     */
+    private URL createUrl(String... values) {
+        if (values.length != parameters.length)
+            throw new IllegalArgumentException("The endpoint " + name + " has " + parameters.length + " query parameters, "
+                    + values.length + " values were given.");
+
+        if (parameters.length == 0)
+            return url;
+
+        String path = url.getPath();
+        int capacity = path.length();
+        for (int i = 0; i < parameters.length; i++) {
+            if (values[i] != null)
+                capacity += 2 + parameters[i].length() + getEncodedLength(values[i]);
+        }
+
+        char[] file = new char[capacity];
+        path.getChars(0, path.length(), file, 0);
+        int length = path.length();
+        char separator = '?';
+        for (int i = 0; i < parameters.length; i++) {
+            if (values[i] == null)
+                continue;
+            file[length++] = separator;
+            parameters[i].getChars(0, parameters[i].length(), file, length);
+            length += parameters[i].length();
+            file[length++] = '=';
+            length = percentEncode(values[i], file, length);
+            separator = '&';
+        }
+
+        try {
+            return new URL(url.getProtocol(), url.getHost(), url.getPort(), new String(file, 0, length));
+        }
+        catch (MalformedURLException e) {
+            // The protocol was already accepted for the endpoint URL
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets the name of the endpoint
+     * @return Returns the method and the relative path
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Percent-encodes a query parameter value as UTF-8, only the unreserved characters of RFC 3986 are kept
+     * @param value Value to encode
+     * @param out Output buffer, large enough for the encoded value
+     * @param position Position in the output buffer
+     * @return Returns the position after the encoded value
+     */
+    static int percentEncode(String value, char[] out, int position) {
+        int p = position;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isUnreserved(c)) {
+                out[p++] = c;
+            }
+            else if (c < 0x80) {
+                p = escape(out, p, c);
+            }
+            else if (c < 0x800) {
+                p = escape(out, p, 0xc0 | c >> 6);
+                p = escape(out, p, 0x80 | c & 0x3f);
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                p = escape(out, p, 0xf0 | codePoint >> 18);
+                p = escape(out, p, 0x80 | codePoint >> 12 & 0x3f);
+                p = escape(out, p, 0x80 | codePoint >> 6 & 0x3f);
+                p = escape(out, p, 0x80 | codePoint & 0x3f);
+            }
+            else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, replaced like by the UTF-8 encoder of the JDK
+                p = escape(out, p, '?');
+            }
+            else {
+                p = escape(out, p, 0xe0 | c >> 12);
+                p = escape(out, p, 0x80 | c >> 6 & 0x3f);
+                p = escape(out, p, 0x80 | c & 0x3f);
+            }
+        }
+
+        return p;
+    }
+
+    /**
+     * Gets the length of a percent-encoded query parameter value
+     * @param value Value to encode
+     * @return Returns the number of characters of the encoded value
+     */
+    static int getEncodedLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isUnreserved(c))
+                length += 1;
+            else if (c < 0x80)
+                length += 3;
+            else if (c < 0x800)
+                length += 6;
+            else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 12;
+                i++;
+            }
+            else if (Character.isSurrogate(c))
+                length += 3;
+            else
+                length += 9;
+        }
+
+        return length;
+    }
+
+    /**
+     * Checks whether a character is unreserved (RFC 3986), and needs no encoding
+     * @param c Character to check
+     * @return Returns true for letters, digits, '-', '.', '_' and '~'
+     */
+    private static boolean isUnreserved(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    /**
+     * Writes a percent-encoded byte
+     * @param out Output buffer
+     * @param position Position in the output buffer
+     * @param b Byte to encode
+     * @return Returns the position after the encoded byte
+     */
+    private static int escape(char[] out, int position, int b) {
+        out[position] = '%';
+        out[position + 1] = HexDigits[b >> 4];
+        out[position + 2] = HexDigits[b & 0xf];
+        return position + 3;
+    }
+}
@@ -0,0 +1,290 @@
+package ZeroKit.Http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, ordered and case-insensitive container of the HTTP headers of a request
+ * Names and values are stored in two parallel arrays, one entry per value. The values of a header are kept next to each
+ * other in the order they were added, and the headers stay in the order they were first added. Requests have a handful
+ * of headers, so lookups scan the names instead of hashing them. Iterate with {@link #size()}, {@link #getName(int)} and
+ * {@link #getValue(int)} to walk the headers without allocating:
+ * <pre>
+ * for (int i = 0; i &lt; headers.size(); i++)
+ *     write(headers.getName(i), headers.getValue(i));
+ * </pre>
+ * The container is not thread-safe.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public final class HttpHeaders {
+    // Initial number of entries, enough for the headers of a signed admin API call
+    private static final int InitialCapacity = 8;
+
+    // Header names, one per entry
+    private String[] names;
+
+    // Header values, one per entry
+    private String[] values;
+
+    // Number of entries in use
+    private int size;
+
+    /**
+     * Initializes a new, empty header container
+     */
+    public HttpHeaders() {
+        this.names = new String[InitialCapacity];
+        this.values = new String[InitialCapacity];
+        this.size = 0;
+    }
+
+    /**
+     * Initializes a new header container with the entries of another one
+     * @param other Headers to copy
+     */
+    public HttpHeaders(HttpHeaders other) {
+        int capacity = Math.max(InitialCapacity, other.size);
+        this.names = Arrays.copyOf(other.names, capacity);
+        this.values = Arrays.copyOf(other.values, capacity);
+        this.size = other.size;
+    }
+
+    /**
+     * Gets the number of entries (header values)
+     * @return Returns the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the name of an entry
+     * @param index Index of the entry
+     * @return Returns the header name, as it was given when the entry was added
+     */
+    public String getName(int index) {
+        checkIndex(index);
+        return names[index];
+    }
+
+    /**
+     * Gets the value of an entry
+     * @param index Index of the entry
+     * @return Returns the header value
+     */
+    public String getValue(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /**
+     * Checks whether the entry has a different header name than the previous one, the first entry of each header does
+     * @param index Index of the entry
+     * @return Returns true if the entry is the first value of its header
+     */
+    public boolean isFirstValue(int index) {
+        checkIndex(index);
+        return index == 0 || !names[index - 1].equalsIgnoreCase(names[index]);
+    }
+
+    /**
+     * Gets the index of the first entry of a header
+     * @param name Header name, case-insensitive
+     * @return Returns the index of the first value of the header, or -1 if it is not set
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equalsIgnoreCase(name))
+                return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Checks whether a header is set
+     * @param name Header name, case-insensitive
+     * @return Returns true if the header has at least one value
+     */
+    public boolean contains(String name) {
+        return indexOf(name) >= 0;
+    }
+
+    /**
+     * Gets the first value of a header
+     * @param name Header name, case-insensitive
+     * @return Returns the first value, or null if the header is not set
+     */
+    public String get(String name) {
+        int index = indexOf(name);
+        return index >= 0 ? values[index] : null;
+    }
+
+    /**
+     * Gets every value of a header
+     * @param name Header name, case-insensitive
+     * @return Returns the values in the order they were added, an empty list if the header is not set
+     */
+    public List<String> getAll(String name) {
+        List<String> result = new ArrayList<String>(1);
+        for (int i = indexOf(name); i >= 0 && i < size && names[i].equalsIgnoreCase(name); i++)
+            result.add(values[i]);
+
+        return result;
+    }
+
+    /**
+     * Adds a header value, previous values of the header are kept
+     * @param name Header name
+     * @param value Header value
+     * @return Returns the modified headers
+     */
+    public HttpHeaders add(String name, String value) {
+        int index = indexOf(name);
+        if (index < 0) {
+            insert(size, name, value);
+        }
+        else {
+            // Keep the values of the header next to each other
+            while (index < size && names[index].equalsIgnoreCase(name))
+                index++;
+            insert(index, names[index - 1], value);
+        }
+
+        return this;
+    }
+
+    /**
+     * Sets the value of a header, previous values of the header are replaced
+     * The header keeps its position if it was already set, and takes the given spelling of the name.
+     * @param name Header name
+     * @param value Header value
+     * @return Returns the modified headers
+     */
+    public HttpHeaders set(String name, String value) {
+        int index = indexOf(name);
+        if (index < 0) {
+            insert(size, name, value);
+        }
+        else {
+            names[index] = name;
+            values[index] = value;
+            removeRange(index + 1, name);
+        }
+
+        return this;
+    }
+
+    /**
+     * Removes every value of a header
+     * @param name Header name, case-insensitive
+     * @return Returns the modified headers
+     */
+    public HttpHeaders remove(String name) {
+        int index = indexOf(name);
+        if (index >= 0)
+            removeRange(index, name);
+
+        return this;
+    }
+
+    /**
+     * Removes every header
+     * The arrays are kept, so the container can be refilled without allocating.
+     * @return Returns the cleared headers
+     */
+    public HttpHeaders clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+
+        return this;
+    }
+
+    /**
+     * Creates a map of the headers, in the order of the headers
+     * @return Returns a new map of the header names to their values, changes of the map are not reflected
+     */
+    public Map<String, List<String>> toMap() {
+        Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
+        List<String> current = null;
+        for (int i = 0; i < size; i++) {
+            if (isFirstValue(i)) {
+                current = new ArrayList<String>(1);
+                result.put(names[i], current);
+            }
+            current.add(values[i]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the headers in a readable form
+     * @return Returns the "name: value" lines of the entries
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < size; i++)
+            result.append(names[i]).append(": ").append(values[i]).append('\n');
+
+        return result.toString();
+    }
+
+    /**
+     * Inserts an entry, the arrays are grown if they are full
+     * @param index Index of the new entry
+     * @param name Header name
+     * @param value Header value
+     */
+    private void insert(int index, String name, String value) {
+        if (name == null || value == null)
+            throw new IllegalArgumentException("Header names and values can not be null.");
+
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+
+        System.arraycopy(names, index, names, index + 1, size - index);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        names[index] = name;
+        values[index] = value;
+        size++;
+    }
+
+    /**
+     * Removes the consecutive entries of a header from the given index
+     * @param from Index of the first entry to remove
+     * @param name Header name, case-insensitive
+     */
+    private void removeRange(int from, String name) {
+        int to = from;
+        while (to < size && names[to].equalsIgnoreCase(name))
+            to++;
+        if (to == from)
+            return;
+
+        System.arraycopy(names, to, names, from, size - to);
+        System.arraycopy(values, to, values, from, size - to);
+        int newSize = size - (to - from);
+        Arrays.fill(names, newSize, size, null);
+        Arrays.fill(values, newSize, size, null);
+        size = newSize;
+    }
+
+    /**
+     * Checks the index of an entry
+     * @param index Index to check
+     * @throws IndexOutOfBoundsException Thrown when the index is not of an entry
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+}
@@ -0,0 +1,167 @@
+package ZeroKit.Http;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-endpoint metrics of the HTTP calls of one or more clients
+ * Latencies, status codes, transferred bytes and API error codes are recorded by endpoint (method and URL path, without
+ * the query). Recording is lock-free and allocation-free once an endpoint was seen. Snapshots can be exported in the plain
+ * text exposition format understood by most metrics collectors, without any metrics library.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class HttpMetrics {
+    // Percentiles of the exported latencies
+    private static final double[] ExportedPercentiles = { 0.5, 0.9, 0.99, 0.999 };
+
+    // Endpoints by method and path (the method map is never modified after construction)
+    private final Map<HttpMethod, ConcurrentMap<String, EndpointMetrics>> endpoints;
+
+    /**
+     * Initializes new, empty metrics
+     */
+    public HttpMetrics() {
+        this.endpoints = new EnumMap<HttpMethod, ConcurrentMap<String, EndpointMetrics>>(HttpMethod.class);
+        for (HttpMethod method : HttpMethod.values())
+            this.endpoints.put(method, new ConcurrentHashMap<String, EndpointMetrics>());
+    }
+
+    /**
+     * Gets the metrics of an endpoint, creating them if the endpoint was not called yet
+     * @param method HTTP method of the endpoint
+     * @param path URL path of the endpoint (without the query)
+     * @return Returns the metrics of the endpoint
+     */
+    public EndpointMetrics getEndpoint(HttpMethod method, String path) {
+        ConcurrentMap<String, EndpointMetrics> paths = endpoints.get(method);
+        EndpointMetrics metrics = paths.get(path);
+        if (metrics != null)
+            return metrics;
+
+        EndpointMetrics created = new EndpointMetrics(method, path);
+        metrics = paths.putIfAbsent(path, created);
+        return metrics != null ? metrics : created;
+    }
+
+    /**
+     * Gets the metrics of the given request's endpoint
+     * @param request Request of a call
+     * @return Returns the metrics of the endpoint
+     */
+    public EndpointMetrics getEndpoint(HttpRequest request) {
+        return getEndpoint(request.getMethod(), request.getUrl().getPath());
+    }
+
+    /**
+     * Gets the metrics of every called endpoint
+     * @return Returns the metrics by endpoint (e.g. "POST /api/v4/admin/user/set-user-state")
+     */
+    public Map<String, EndpointMetrics> getEndpoints() {
+        Map<String, EndpointMetrics> result = new TreeMap<String, EndpointMetrics>();
+        for (ConcurrentMap<String, EndpointMetrics> paths : endpoints.values()) {
+            for (EndpointMetrics metrics : paths.values())
+                result.put(metrics.getMethod() + " " + metrics.getPath(), metrics);
+        }
+
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Clears the metrics of every endpoint
+     */
+    public void reset() {
+        for (ConcurrentMap<String, EndpointMetrics> paths : endpoints.values()) {
+            for (EndpointMetrics metrics : paths.values())
+                metrics.reset();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the metrics in the plain text exposition format
+     * Latencies are exported as summaries in microseconds, counters with a _total suffix.
+     * @param output Output to write to
+     * @throws IOException Thrown when the output can not be written
+     */
+    public void writeTo(Appendable output) throws IOException {
+        for (EndpointMetrics metrics : getEndpoints().values()) {
+            String labels = "method=\"" + metrics.getMethod() + "\",path=\"" + escape(metrics.getPath()) + "\"";
+
+            for (Map.Entry<Integer, Long> status : metrics.getStatusCounts().entrySet())
+                line(output, "zerokit_http_responses_total", labels + ",status=\"" + status.getKey() + "\"", status.getValue());
+            line(output, "zerokit_http_failures_total", labels, metrics.getFailureCount());
+            line(output, "zerokit_http_request_bytes_total", labels, metrics.getBytesSent());
+            line(output, "zerokit_http_response_bytes_total", labels, metrics.getBytesReceived());
+
+            LatencyHistogram latency = metrics.getLatency();
+            for (double percentile : ExportedPercentiles)
+                line(output, "zerokit_http_latency_microseconds", labels + ",quantile=\"" + percentile + "\"", latency.getPercentileMicros(percentile));
+            line(output, "zerokit_http_latency_microseconds_count", labels, latency.getCount());
+            line(output, "zerokit_http_latency_microseconds_sum", labels, latency.getSumMicros());
+            line(output, "zerokit_http_latency_microseconds_max", labels, latency.getMaxMicros());
+
+            for (Map.Entry<String, Long> error : metrics.getErrorCodeCounts().entrySet())
+                line(output, "zerokit_api_errors_total", labels + ",error_code=\"" + escape(error.getKey()) + "\"", error.getValue());
+        }
+    }
+
+    /**
+     * Gets a snapshot of the metrics in the plain text exposition format
+     * @return Returns the exported metrics
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeTo(sb);
+        }
+        catch (IOException e) {
+            // StringBuilder does not throw
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Records a completed call
+     * @param request Request of the call
+     * @param response Response of the call
+     * @param latencyNanos Latency of the call in nanoseconds
+     */
+    void record(HttpRequest request, HttpResponse response, long latencyNanos) {
+        getEndpoint(request).record(request, response, latencyNanos);
+    }
+
+    /**
+     * Records a call failed with an I/O error
+     * @param request Request of the call
+     */
+    void recordFailure(HttpRequest request) {
+        getEndpoint(request).recordFailure();
+    }
+
+    /**
+     * Writes a single sample
+     * @param output Output to write to
+     * @param name Name of the metric
+     * @param labels Labels of the sample
+     * @param value Value of the sample
+     * @throws IOException Thrown when the output can not be written
+     */
+    private static void line(Appendable output, String name, String labels, long value) throws IOException {
+        output.append(name).append('{').append(labels).append("} ").append(Long.toString(value)).append('\n');
+    }
+
+    /**
+     * Escapes a label value
+     * @param value Value to escape
+     * @return Returns the value with backslashes, quotes and line breaks escaped
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,48 @@
+package ZeroKit.Http;
+
+/**
+ * Timed phases of an HTTP call
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public enum HttpPhase {
+    /**
+     * Hashing of the request contents (Content-SHA256), 0 when the memoized hash is reused
+     */
+    CONTENT_HASH,
+
+    /**
+     * Signing of the request
+     */
+    SIGN,
+
+    /**
+     * Acquiring a connection: reusing an idle one or connecting (including the TLS handshake)
+     */
+    CONNECT,
+
+    /**
+     * TLS handshake of a new connection (part of CONNECT)
+     */
+    TLS_HANDSHAKE,
+
+    /**
+     * Writing the request head and body
+     */
+    WRITE,
+
+    /**
+     * Waiting for the response head after the request was written (server think time)
+     */
+    FIRST_BYTE,
+
+    /**
+     * Reading a buffered response body (streamed bodies are read by the caller and not timed)
+     */
+    READ,
+
+    /**
+     * Parsing the API error of a failed response
+     */
+    TRANSLATE;
+}
@@ -1,14 +1,14 @@
 package ZeroKit.Http;
 
-import ZeroKit.Utils.IOUtils;
-
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -21,24 +21,54 @@ public class HttpRequest {
     // URL of the request, including the path and the query
     private URL url;
 
+    // Endpoint the request was created from (null if its URL was built or changed by path)
+    private HttpEndpoint endpoint;
+
     // HTTP method to use
     private HttpMethod method;
 
-    // HTTP header to send along with the request
-    private Map<String, List<String>> headers;
+    // HTTP headers to send along with the request
+    private final HttpHeaders headers;
 
     // Body contents to send
-    private byte[] contents;
+    private HttpContent content;
+
+    // Indicates whether the response body should be streamed instead of buffered
+    private boolean streamingResponse;
+
+    // Phase timings of the request being sent (null if it is not timed)
+    private HttpTimings timings;
 
     /**
      * Initializes a new HTTP request
      * @param url URL of the request
      */
     public HttpRequest(URL url) {
+        this(null, url, new HttpHeaders());
+    }
+
+    /**
+     * Initializes a new HTTP request of an endpoint
+     * @param endpoint Endpoint of the request
+     * @param url URL of the request, derived from the URL of the endpoint
+     */
+    HttpRequest(HttpEndpoint endpoint, URL url) {
+        this(endpoint, url, new HttpHeaders());
+    }
+
+    /**
+     * Initializes a new HTTP request with the given headers
+     * @param endpoint Endpoint of the request, or null
+     * @param url URL of the request
+     * @param headers Headers of the request, owned by the request from now on
+     */
+    private HttpRequest(HttpEndpoint endpoint, URL url, HttpHeaders headers) {
         this.url = url;
+        this.endpoint = endpoint;
         this.method = HttpMethod.GET;
-        this.headers = new HashMap<String, List<String>>();
-        this.contents = null;
+        this.headers = headers;
+        this.content = null;
+        this.streamingResponse = false;
     }
 
     /**
@@ -67,6 +97,23 @@ public class HttpRequest {
      */
     public HttpRequest setMethod(HttpMethod method){
         this.method = method;
+        if (this.endpoint != null && this.endpoint.getMethod() != method)
+            this.endpoint = null;
+        return this;
+    }
+
+    /**
+     * Sets the URL of the request, including its path and query
+     * @param url URL to use for the request
+     * @return Returns the modified request
+     */
+    public HttpRequest setUrl(URL url) {
+        if (url == null)
+            throw new IllegalArgumentException("The URL of the request can not be null.");
+
+        this.url = url;
+        this.endpoint = null;
+
         return this;
     }
 
@@ -84,6 +131,7 @@ public class HttpRequest {
             newFile += "?" + oldQuery;
 
         this.url = new URL(this.url.getProtocol(), this.url.getHost(), this.url.getPort(), newFile);
+        this.endpoint = null;
 
         return this;
     }
@@ -96,8 +144,11 @@ public class HttpRequest {
      */
     public HttpRequest addPath(String path) throws MalformedURLException {
         String oldPath = this.url.getPath();
+        int oldEnd = oldPath.endsWith("/") ? oldPath.length() - 1 : oldPath.length();
+        int start = path.startsWith("/") ? 1 : 0;
 
-        String newPath = oldPath.replaceAll("\\/$", "") + "/" + path.replaceAll("^\\/", "");
+        String newPath = new StringBuilder(oldEnd + path.length() + 1 - start)
+                .append(oldPath, 0, oldEnd).append('/').append(path, start, path.length()).toString();
 
         return this.setPath(newPath);
     }
@@ -160,38 +211,118 @@ public class HttpRequest {
      * @return Returns the modified request
      */
     public HttpRequest addHeader(String name, Object value){
-        if (!this.headers.containsKey(name))
-            this.headers.put(name, new ArrayList<String>());
-
-        this.headers.get(name).add(value.toString());
+        this.headers.add(name, value.toString());
 
         return this;
     }
 
     /**
      * Sets an HTTP header value of the request
-     * If a previous header value exists, that will be overwritten
+     * If previous header values exist (the name is case-insensitive), they will be overwritten
      * @param name Header name to use
      * @param value header value to use
      * @return Returns the modified request
      */
     public HttpRequest setHeader(String name, Object value){
-        this.headers.put(name, new ArrayList<String>());
+        this.headers.set(name, value.toString());
+
+        return this;
+    }
 
-        this.headers.get(name).add(value.toString());
+    /**
+     * Removes every value of an HTTP header from the request
+     * @param name Header name to remove, case-insensitive
+     * @return Returns the modified request
+     */
+    public HttpRequest removeHeader(String name){
+        this.headers.remove(name);
+
+        return this;
+    }
+
+    /**
+     * Resets the request so it can be filled and sent again
+     * The URL, the method and the endpoint are kept, the headers, the contents, the streaming flag and the timings are
+     * cleared. The header storage is kept, so a request refilled with a similar set of headers allocates nothing.
+     * The request must not be reset while a call of it is in progress (e.g. an async call which is not completed yet).
+     * @return Returns the reset request
+     */
+    public HttpRequest reset() {
+        this.headers.clear();
+        this.content = null;
+        this.streamingResponse = false;
+        this.timings = null;
+
+        return this;
+    }
+
+    /**
+     * Resets the request and points it to an endpoint
+     * @param endpoint Endpoint of the request
+     * @param url URL of the request, derived from the URL of the endpoint
+     * @return Returns the reset request
+     */
+    HttpRequest reset(HttpEndpoint endpoint, URL url) {
+        this.url = url;
+        this.endpoint = endpoint;
+        this.method = endpoint.getMethod();
+
+        return reset();
+    }
+
+    /**
+     * Creates an independent copy of the request
+     * The URL, the method, the headers and the streaming flag are copied, the content is shared (it must be replayable to
+     * send both requests).
+     * @return Returns the copied request
+     */
+    public HttpRequest copy(){
+        HttpRequest copy = new HttpRequest(this.endpoint, this.url, new HttpHeaders(this.headers));
+        copy.method = this.method;
+        copy.content = this.content;
+        copy.streamingResponse = this.streamingResponse;
+
+        return copy;
+    }
+
+    /**
+     * Gets the endpoint the request was created from
+     * @return Returns the endpoint, or null if the URL of the request was built or changed by path
+     */
+    public HttpEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Gets the phase timings of the request being sent
+     * @return Returns the timings, or null if the request is not timed
+     */
+    public HttpTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * Sets the phase timings of the request being sent, the clients set them when a call listener is registered
+     * @param timings Timings to record to, or null to disable timing
+     * @return Returns the modified request
+     */
+    public HttpRequest setTimings(HttpTimings timings) {
+        this.timings = timings;
 
         return this;
     }
 
     /**
      * Sets the contents of the message to the contents of the given input stream
-     * The stream will be read to the end during the call!
+     * The stream will be read to the end during the call, and its whole contents are buffered in memory! It is read only
+     * once, its hash is computed on the fly. For large contents send the file instead, with {@link #setContents(Path)},
+     * {@link #setContents(FileChannel)} or {@link HttpContent#ofFile}, which stream it when the request is sent.
      * @param contents Stream contents to add
      * @return Returns the modified request
      * @throws IOException Thrown if an error occurs during the reading of the underlying stream
      */
     public HttpRequest setContents(InputStream contents) throws IOException {
-        return this.setContents(IOUtils.readAll(contents));
+        return this.setContent(HttpContent.ofStream(contents));
     }
 
     /**
@@ -201,7 +332,39 @@ public class HttpRequest {
      * @return Returns the modified request
      */
     public HttpRequest setContents(byte[] contents){
-        this.contents = contents;
+        return this.setContent(contents != null ? HttpContent.ofBytes(contents) : null);
+    }
+
+    /**
+     * Sets the contents of the message to the contents of the given file
+     * The file is hashed through a memory-mapped view and streamed (zero-copy where possible) when the request is sent.
+     * @param contents Path of the file to send
+     * @return Returns the modified request
+     * @throws IOException Thrown when the size of the file is not accessible
+     */
+    public HttpRequest setContents(Path contents) throws IOException {
+        return this.setContent(HttpContent.ofPath(contents));
+    }
+
+    /**
+     * Sets the contents of the message to the contents of the file of the given channel
+     * The channel is not closed by the request and its position is not changed, it must stay open until the request is sent.
+     * @param contents Channel of the file to send
+     * @return Returns the modified request
+     * @throws IOException Thrown when the size of the file is not accessible
+     */
+    public HttpRequest setContents(FileChannel contents) throws IOException {
+        return this.setContent(HttpContent.ofChannel(contents));
+    }
+
+    /**
+     * Sets the contents of the message
+     * The contents are streamed to the network when the request is sent, they are not read into memory.
+     * @param content Contents to send, or null to send an empty body
+     * @return Returns the modified request
+     */
+    public HttpRequest setContent(HttpContent content){
+        this.content = content;
 
         return this;
     }
@@ -225,6 +388,27 @@ public class HttpRequest {
         return this.setContents(contents.getBytes(charset));
     }
 
+    /**
+     * Sets whether the response body should be streamed instead of buffered
+     * Streaming responses expose the body through {@link HttpResponse#getBody()}, and the caller must
+     * close the response to release its connection.
+     * @param streamingResponse If true the response body is streamed, otherwise it is read into memory
+     * @return Returns the modified request
+     */
+    public HttpRequest setStreamingResponse(boolean streamingResponse) {
+        this.streamingResponse = streamingResponse;
+
+        return this;
+    }
+
+    /**
+     * Gets whether the response body should be streamed instead of buffered
+     * @return Returns true if the response body is streamed
+     */
+    public boolean isStreamingResponse() {
+        return streamingResponse;
+    }
+
     /**
      * Gets the URL of the request
      * @return Returns the request URL
@@ -243,33 +427,54 @@ public class HttpRequest {
 
     /**
      * Gets the headers of the request
+     * The returned container is the one of the request, it can be iterated by index without allocating.
      * @return Returns the request headers
      */
-    public Map<String, List<String>> getHeaders() {
+    public HttpHeaders getHttpHeaders() {
         return headers;
     }
 
+    /**
+     * Gets the headers of the request as a map
+     * @return Returns a read-only snapshot of the request headers in their order, use the setters to change the headers
+     * @deprecated Builds a map and a list per header on every call, use {@link #getHttpHeaders()} instead
+     */
+    @Deprecated
+    public Map<String, List<String>> getHeaders() {
+        Map<String, List<String>> result = headers.toMap();
+        for (Map.Entry<String, List<String>> entry : result.entrySet())
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+
+        return Collections.unmodifiableMap(result);
+    }
+
     /**
      * Gets the headers of the request as a list
      * @return Returns the request header list
      */
     public List<HttpHeader> getAllHeaders() {
-        ArrayList<HttpHeader> result = new ArrayList<HttpHeader>();
+        ArrayList<HttpHeader> result = new ArrayList<HttpHeader>(headers.size());
 
-        for (String key: getHeaders().keySet()){
-            for (String value: getHeaders().get(key)){
-                result.add(new HttpHeader(key, value));
-            }
-        }
+        for (int i = 0; i < headers.size(); i++)
+            result.add(new HttpHeader(headers.getName(i), headers.getValue(i)));
 
         return result;
     }
 
     /**
      * Returns the contents of the request as a binary array
+     * Contents which are not held in memory (files, sources) are not returned, use {@link #getContent()} for them.
      * @return Returns the request contents
      */
     public byte[] getContents() {
-        return contents;
+        return content != null ? content.getArray() : null;
+    }
+
+    /**
+     * Gets the contents of the request
+     * @return Returns the request contents, or null if the request has no body
+     */
+    public HttpContent getContent() {
+        return content;
     }
 }
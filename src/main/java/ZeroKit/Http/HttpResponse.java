@@ -1,15 +1,32 @@
 package ZeroKit.Http;
 
+import ZeroKit.Utils.BufferPool;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * HTTP request object
  * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
  * @copyright	Copyright © Tresorit AG. 2017
  */
-public class HttpResponse {
+public class HttpResponse implements Closeable {
+    // Case-insensitive order of the header names, tolerating lookups of the null (status line) key
+    private static final Comparator<String> HeaderNameOrder = Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER);
+
     // Status code of the response
     private int statusCode;
 
@@ -19,6 +36,12 @@ public class HttpResponse {
     // Response contents
     private byte[] contents;
 
+    // Unread body stream of a streaming response (null if the contents are buffered)
+    private InputStream body;
+
+    // Phase timings of the request (null if it was not timed)
+    private HttpTimings timings;
+
     /**
      * Initializes a new HTTP response
      * @param statusCode Status code of the response
@@ -29,6 +52,67 @@ public class HttpResponse {
         this.statusCode = statusCode;
         this.headers = headers;
         this.contents = contents;
+        this.body = null;
+    }
+
+    /**
+     * Initializes a new streaming HTTP response
+     * The response owns the given stream, it must be consumed and closed through the response.
+     * @param statusCode Status code of the response
+     * @param headers Headers of the response
+     * @param body Body stream of the response
+     */
+    public HttpResponse(int statusCode, Map<String, List<String>> headers, InputStream body) {
+        this.statusCode = statusCode;
+        this.headers = headers;
+        this.contents = null;
+        this.body = body;
+    }
+
+    /**
+     * Normalizes the received headers, so every transport produces the same header map
+     * Header names are converted to lower case, the map is case-insensitive and read-only. Status lines
+     * (null key) and HTTP/2 pseudo headers are dropped, repeated headers are merged in received order.
+     * @param headers Headers as received by the transport
+     * @return Returns the normalized headers
+     */
+    static Map<String, List<String>> normalizeHeaders(Map<String, List<String>> headers) {
+        TreeMap<String, List<String>> result = new TreeMap<String, List<String>>(HeaderNameOrder);
+
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            String name = header.getKey();
+            if (name == null || name.startsWith(":"))
+                continue;
+
+            List<String> values = result.get(name);
+            if (values == null) {
+                values = new ArrayList<String>(header.getValue().size());
+                result.put(name.toLowerCase(Locale.ROOT), values);
+            }
+            values.addAll(header.getValue());
+        }
+
+        for (Map.Entry<String, List<String>> header : result.entrySet())
+            header.setValue(Collections.unmodifiableList(header.getValue()));
+
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Gets the phase timings of the request
+     * Timings are recorded only while a {@link HttpCallListener} is registered on the client.
+     * @return Returns the timings, or null if the request was not timed
+     */
+    public HttpTimings getTimings() {
+        return timings;
+    }
+
+    /**
+     * Sets the phase timings of the request
+     * @param timings Timings of the request
+     */
+    void setTimings(HttpTimings timings) {
+        this.timings = timings;
     }
 
     /**
@@ -63,9 +147,92 @@ public class HttpResponse {
         return result;
     }
 
+    /**
+     * Gets whether the body of the response is streamed from the network
+     * @return Returns true if the body was not buffered yet
+     */
+    public boolean isStreaming() {
+        return body != null;
+    }
+
+    /**
+     * Gets the body of the response as a stream
+     * A streaming response gives its network stream, the caller must read and close it (or the
+     * response) to release the connection. A buffered response gives a stream over its contents.
+     * @return Returns the body stream
+     */
+    public InputStream getBody() {
+        if (body != null)
+            return body;
+
+        return new ByteArrayInputStream(contents != null ? contents : new byte[0]);
+    }
+
+    /**
+     * Gets the body of the response as a channel
+     * Closing the channel closes the body stream, see {@link #getBody()}.
+     * @return Returns the body channel
+     */
+    public ReadableByteChannel getBodyChannel() {
+        return Channels.newChannel(getBody());
+    }
+
+    /**
+     * Buffers the contents of a streaming response if it is not longer than the given limit
+     * If the body fits, the stream is closed (releasing the connection) and the contents become
+     * available through {@link #getContents()}. Otherwise the already read bytes remain readable
+     * through {@link #getBody()}, followed by the rest of the stream.
+     * @param maxLength Maximum number of bytes to buffer
+     * @return Returns true if the contents are buffered
+     * @throws IOException Thrown when reading the body fails
+     * @throws IllegalArgumentException Thrown when the limit is negative
+     */
+    public boolean bufferContents(int maxLength) throws IOException {
+        if (maxLength < 0)
+            throw new IllegalArgumentException("The maximum length of the contents can not be negative: " + maxLength);
+
+        if (body == null)
+            return true;
+
+        // Reading one byte over the limit tells whether the body is longer
+        long readLimit = maxLength + 1L;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.min(maxLength, 8192));
+        byte[] data = BufferPool.acquire((int) Math.min(readLimit, 8192));
+        try {
+            int nRead;
+            while (buffer.size() < readLimit && (nRead = body.read(data, 0, (int) Math.min(data.length, readLimit - buffer.size()))) != -1)
+                buffer.write(data, 0, nRead);
+        }
+        finally {
+            BufferPool.release(data);
+        }
+
+        if (buffer.size() > maxLength) {
+            body = new SequenceInputStream(new ByteArrayInputStream(buffer.toByteArray()), body);
+            return false;
+        }
+
+        body.close();
+        body = null;
+        contents = buffer.toByteArray();
+        return true;
+    }
+
+    /**
+     * Closes the body stream of a streaming response, releasing its connection
+     * Buffered responses hold no resources, closing them has no effect.
+     * @throws IOException Thrown when closing the stream fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (body != null)
+            body.close();
+    }
+
     /**
      * Returns the contents of the response as a binary array
      * The response array can be null, it there were no received data
+     * Streaming responses have no contents until they are buffered with {@link #bufferContents(int)}.
      * @return Returns the request contents
      */
     public byte[] getContents() {
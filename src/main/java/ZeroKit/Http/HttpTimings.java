@@ -0,0 +1,106 @@
+package ZeroKit.Http;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phase timings of a single HTTP request
+ * Created for each request sent while a {@link HttpCallListener} is registered or a JFR recording records the call events
+ * (see {@link CallEvents}), every recorded phase is forwarded to the listener. The timings are available on the response
+ * through {@link HttpResponse#getTimings()}.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class HttpTimings {
+    // Phases by their ordinal
+    private static final HttpPhase[] Phases = HttpPhase.values();
+
+    // Request of the timings
+    private final HttpRequest request;
+
+    // Listener of the phases
+    private final HttpCallListener listener;
+
+    // Durations of the phases in nanoseconds, by their ordinal
+    private final long[] nanos;
+
+    /**
+     * Initializes new, empty timings of a request
+     * @param request Request to time
+     * @param listener Listener to forward the phases to, or null to only record them
+     */
+    public HttpTimings(HttpRequest request, HttpCallListener listener) {
+        this.request = request;
+        this.listener = listener;
+        this.nanos = new long[Phases.length];
+    }
+
+    /**
+     * Records the duration of a phase, adding it to the previous durations of the same phase
+     * @param phase Phase which ended
+     * @param nanos Duration in nanoseconds
+     */
+    public void record(HttpPhase phase, long nanos) {
+        this.nanos[phase.ordinal()] += nanos;
+        if (listener != null)
+            listener.onPhase(request, phase, nanos);
+    }
+
+    /**
+     * Records a phase which started at the given time and ended now, if the request is timed
+     * @param timings Timings of the request, or null if it is not timed (nothing is measured then)
+     * @param phase Phase which ended
+     * @param start Start of the phase (System.nanoTime)
+     * @return Returns the current time (System.nanoTime), the start of the next phase, or 0 if the request is not timed
+     */
+    public static long mark(HttpTimings timings, HttpPhase phase, long start) {
+        if (timings == null)
+            return 0;
+
+        long now = System.nanoTime();
+        timings.record(phase, now - start);
+        return now;
+    }
+
+    /**
+     * Gets the start time of the first phase, if the request is timed
+     * @param timings Timings of the request, or null if it is not timed
+     * @return Returns the current time (System.nanoTime), or 0 if the request is not timed
+     */
+    public static long start(HttpTimings timings) {
+        return timings != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Gets the duration of a phase
+     * @param phase Phase to get
+     * @return Returns the duration in nanoseconds, 0 if the phase was not recorded
+     */
+    public long getNanos(HttpPhase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * Gets the duration of a phase
+     * @param phase Phase to get
+     * @return Returns the duration in milliseconds
+     */
+    public double getMillis(HttpPhase phase) {
+        return nanos[phase.ordinal()] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Gets the recorded phases in a human readable form
+     * @return Returns the phases and their durations in milliseconds
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (HttpPhase phase : Phases) {
+            if (sb.length() > 0)
+                sb.append(", ");
+            sb.append(phase.name().toLowerCase()).append('=').append(String.format(Locale.ROOT, "%.3f", getMillis(phase))).append("ms");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,28 @@
+package ZeroKit.Http;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Transport executing the HTTP requests of a {@link HttpClient}
+ * Implementations must be thread-safe and must produce the same {@link HttpResponse} for the same exchange:
+ * header names are lower case and can be looked up case-insensitively, and the body is never null.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public interface HttpTransport extends Closeable {
+    /**
+     * Executes the given HTTP request and returns the result
+     * @param request Request to execute
+     * @return Returns the result of the HTTP call
+     * @throws IOException Thrown when the call fails due to network / accessibility issues.
+     */
+    HttpResponse execute(HttpRequest request) throws IOException;
+
+    /**
+     * Releases the resources (connections, threads) held by the transport
+     * @throws IOException Thrown when the resources can not be released
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,63 @@
+package ZeroKit.Http;
+
+/**
+ * Factory of the available HTTP transports
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public final class HttpTransports {
+    // Class name of the java.net.http transport (compiled only on JAVA 11+)
+    private static final String JavaNetHttpTransportClass = "ZeroKit.Http.JavaNetHttpTransport";
+
+    /**
+     * Static factory, not instantiable
+     */
+    private HttpTransports() {
+    }
+
+    /**
+     * Creates a new HttpURLConnection transport (the default transport of the clients)
+     * @return Returns the created transport
+     */
+    public static HttpTransport urlConnection() {
+        return new UrlConnectionHttpTransport();
+    }
+
+    /**
+     * Creates a new transport over the given keep-alive connection pool
+     * @param pool Connection pool to use
+     * @return Returns the created transport
+     */
+    public static HttpTransport pooled(HttpConnectionPool pool) {
+        return new PooledHttpTransport(pool);
+    }
+
+    /**
+     * Creates a new HTTP/2 capable transport over the java.net.http client
+     * @return Returns the created transport
+     * @throws UnsupportedOperationException Thrown when the runtime is older than JAVA 11
+     */
+    public static HttpTransport javaNetHttp() {
+        try {
+            return (HttpTransport) Class.forName(JavaNetHttpTransportClass).getConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError e) {
+            throw new UnsupportedOperationException("The java.net.http transport requires JAVA 11 or newer.", e);
+        }
+    }
+
+    /**
+     * Gets whether the java.net.http transport is available on this runtime
+     * @return Returns true if {@link #javaNetHttp()} can be used
+     */
+    public static boolean isJavaNetHttpAvailable() {
+        try {
+            Class.forName(JavaNetHttpTransportClass, false, HttpTransports.class.getClassLoader());
+            Class.forName("java.net.http.HttpClient", false, HttpTransports.class.getClassLoader());
+            return true;
+        }
+        catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package ZeroKit.Http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory, lock-free latency histogram with log-linear buckets (as in HDR histograms)
+ * Latencies are recorded in microseconds. Every power of two range is split into 32 linear buckets, so a recorded value is
+ * off by at most 1/32 (about 3%) of itself, from 1 microsecond up to about 19 hours; longer latencies are counted in the last
+ * bucket. Recording is a few atomic increments, it never locks or allocates.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class LatencyHistogram {
+    // Number of bits of the linear sub-buckets
+    private static final int SubBucketBits = 5;
+
+    // Number of linear sub-buckets per power of two
+    private static final int SubBucketCount = 1 << SubBucketBits;
+
+    // Highest bit of the largest tracked value in microseconds
+    private static final int MaxValueBit = 35;
+
+    // Largest tracked value in microseconds
+    private static final long MaxValue = (1L << (MaxValueBit + 1)) - 1;
+
+    // Number of buckets
+    private static final int BucketCount = (MaxValueBit - SubBucketBits + 2) * SubBucketCount;
+
+    // Counts of the buckets
+    private final AtomicLongArray counts;
+
+    // Number of recorded values
+    private final AtomicLong count;
+
+    // Sum of the recorded values in microseconds
+    private final AtomicLong sum;
+
+    // Largest recorded value in microseconds
+    private final AtomicLong max;
+
+    /**
+     * Initializes a new, empty histogram
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BucketCount);
+        this.count = new AtomicLong();
+        this.sum = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Records a latency
+     * @param nanos Latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.min(MaxValue, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+
+        counts.incrementAndGet(getBucket(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+
+        long current = max.get();
+        while (micros > current && !max.compareAndSet(current, micros))
+            current = max.get();
+    }
+
+    /**
+     * Gets the number of recorded latencies
+     * @return Returns the count
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the mean of the recorded latencies
+     * @return Returns the mean in microseconds, 0 if nothing was recorded
+     */
+    public double getMeanMicros() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Gets the sum of the recorded latencies
+     * @return Returns the sum in microseconds
+     */
+    public long getSumMicros() {
+        return sum.get();
+    }
+
+    /**
+     * Gets the largest recorded latency
+     * @return Returns the maximum in microseconds
+     */
+    public long getMaxMicros() {
+        return max.get();
+    }
+
+    /**
+     * Gets the latency below which the given fraction of the recorded latencies fall
+     * The result is the highest value of the bucket of the percentile, never above the recorded maximum.
+     * @param percentile Percentile between 0 and 1 (e.g. 0.99)
+     * @return Returns the latency in microseconds, 0 if nothing was recorded
+     */
+    public long getPercentileMicros(double percentile) {
+        if (percentile < 0 || percentile > 1)
+            throw new IllegalArgumentException("The percentile must be between 0 and 1.");
+
+        long total = 0;
+        long[] snapshot = new long[BucketCount];
+        for (int i = 0; i < BucketCount; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        if (total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < BucketCount; i++) {
+            seen += snapshot[i];
+            if (seen >= rank)
+                return Math.min(getBucketMax(i), max.get());
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Clears the histogram
+     * Values recorded concurrently may be partially kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BucketCount; i++)
+            counts.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Gets the bucket of a value
+     * @param micros Value in microseconds, at most the largest tracked value
+     * @return Returns the index of the bucket
+     */
+    static int getBucket(long micros) {
+        if (micros < SubBucketCount)
+            return (int) micros;
+
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SubBucketBits;
+        return ((shift + 1) << SubBucketBits) + (int) (micros >>> shift) - SubBucketCount;
+    }
+
+    /**
+     * Gets the highest value of a bucket
+     * @param bucket Index of the bucket
+     * @return Returns the highest value counted in the bucket in microseconds
+     */
+    static long getBucketMax(int bucket) {
+        if (bucket < SubBucketCount)
+            return bucket;
+
+        int shift = (bucket >>> SubBucketBits) - 1;
+        long subBucket = (bucket & (SubBucketCount - 1)) + SubBucketCount;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,331 @@
+package ZeroKit.Http;
+
+import ZeroKit.Utils.IOUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transport executing HTTP/1.1 requests over the keep-alive connections of a {@link HttpConnectionPool}
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class PooledHttpTransport implements HttpTransport {
+    // Pool of the connections
+    private final HttpConnectionPool pool;
+
+    /**
+     * Initializes a new pooled transport with a default connection pool
+     */
+    public PooledHttpTransport() {
+        this(new HttpConnectionPool());
+    }
+
+    /**
+     * Initializes a new pooled transport over the given connection pool
+     * @param pool Connection pool to use, it can be shared by several transports
+     */
+    public PooledHttpTransport(HttpConnectionPool pool) {
+        if (pool == null)
+            throw new IllegalArgumentException("The connection pool can not be null.");
+
+        this.pool = pool;
+    }
+
+    /**
+     * Gets the connection pool of the transport
+     * @return Returns the connection pool
+     */
+    public HttpConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Executes the given request over a pooled connection and reads the whole response (unless it is streamed)
+     * A request failing on a reused connection before any response byte arrived is resent once
+     * on a fresh connection, as the server most likely closed the idle connection meanwhile. As the server may have
+     * processed a request it received in full (RFC 7230 6.3.1), only requests of safe methods (GET, HEAD, OPTIONS) and
+     * requests which could not be written completely are resent, other failures are left to the retry policy of the
+     * caller. Timeouts and cancelled calls are never resent.
+     * @param request Request to execute
+     * @return Returns the response of the call
+     * @throws IOException Thrown when the call fails due to network / accessibility issues.
+     */
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        HttpTimings timings = request.getTimings();
+
+        for (int attempt = 0; ; attempt++) {
+            long mark = HttpTimings.start(timings);
+            HttpConnection connection = pool.lease(request.getUrl(), timings);
+            mark = HttpTimings.mark(timings, HttpPhase.CONNECT, mark);
+            boolean requestSent = false;
+            boolean responseStarted = false;
+            HttpBodyInputStream body = null;
+
+            try {
+                HttpCall.attach(connection);
+                writeRequest(connection, request);
+                requestSent = true;
+                mark = HttpTimings.mark(timings, HttpPhase.WRITE, mark);
+
+                int statusCode;
+                String statusLine;
+                Map<String, List<String>> headers;
+                do {
+                    statusLine = connection.readLine();
+                    if (statusLine == null)
+                        throw new IOException("The server closed the connection without sending a response.");
+
+                    responseStarted = true;
+                    statusCode = parseStatusCode(statusLine);
+                    headers = connection.readHeaders();
+                }
+                while (statusCode >= 100 && statusCode < 200);
+                mark = HttpTimings.mark(timings, HttpPhase.FIRST_BYTE, mark);
+
+                // From here on the body stream is responsible for releasing the connection
+                body = openBody(pool, connection, request.getMethod(), statusCode, statusLine, headers);
+
+                if (request.isStreamingResponse()) {
+                    HttpResponse response = new HttpResponse(statusCode, HttpResponse.normalizeHeaders(headers), body);
+                    body = null;
+                    return response;
+                }
+
+                // Bodies with a Content-Length are read straight into an array of their size
+                byte[] contents = IOUtils.readAll(body, body.getRemainingLength());
+                HttpTimings.mark(timings, HttpPhase.READ, mark);
+                return new HttpResponse(statusCode, HttpResponse.normalizeHeaders(headers), contents);
+            }
+            catch (IOException e) {
+                if (body == null)
+                    pool.release(connection, false);
+
+                if (attempt == 0 && !responseStarted && connection.isReused() && (!requestSent || isSafe(request.getMethod()))
+                        && !(e instanceof InterruptedIOException) && !(e instanceof ClosedByInterruptException))
+                    continue;
+
+                throw e;
+            }
+            catch (RuntimeException e) {
+                if (body == null)
+                    pool.release(connection, false);
+
+                throw e;
+            }
+            finally {
+                if (body != null)
+                    body.close();
+            }
+        }
+    }
+
+    /**
+     * Closes the connection pool of the transport
+     */
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    /**
+     * Checks whether the given method is safe (RFC 7231 4.2.1), so its requests can be resent without side effects
+     * @param method Method to check
+     * @return Returns true for GET, HEAD and OPTIONS
+     */
+    private static boolean isSafe(HttpMethod method) {
+        return method == HttpMethod.GET || method == HttpMethod.HEAD || method == HttpMethod.OPTIONS;
+    }
+
+    /**
+     * Writes the request head and body to the given connection
+     * @param connection Connection to write to
+     * @param request Request to write
+     * @throws IOException Thrown when writing fails or the declared content length is invalid
+     * @throws IllegalArgumentException Thrown when the URL or a header would break the request head (e.g. a line break
+     * in a header value), nothing is written in this case
+     */
+    private static void writeRequest(HttpConnection connection, HttpRequest request) throws IOException {
+        URL url = request.getUrl();
+        HttpContent content = request.getContent();
+        long contentLength = content != null ? content.getLength() : 0;
+
+        StringBuilder sb = new StringBuilder(512);
+        sb.append(request.getMethod().name()).append(' ');
+        sb.append(url.getPath().length() > 0 ? url.getPath() : "/");
+        if (url.getQuery() != null)
+            sb.append('?').append(url.getQuery());
+        checkRequestTarget(sb, request.getMethod().name().length() + 1);
+        sb.append(" HTTP/1.1\r\n");
+
+        boolean hasHost = false;
+        HttpHeaders headers = request.getHttpHeaders();
+        for (int i = 0; i < headers.size(); i++) {
+            String name = headers.getName(i);
+            String value = headers.getValue(i);
+            checkHeader(name, value);
+
+            if (name.equalsIgnoreCase("Content-Length")) {
+                if (!value.trim().equals(Long.toString(contentLength)))
+                    throw new IOException("The Content-Length header does not match the length of the request contents.");
+                continue;
+            }
+
+            if (name.equalsIgnoreCase("Host"))
+                hasHost = true;
+
+            sb.append(name).append(": ").append(value).append("\r\n");
+        }
+
+        if (!hasHost) {
+            HttpConnectionPool.HostPool hostPool = connection.getHostPool();
+            sb.append("Host: ").append(hostPool.getHost());
+            if (!hostPool.isDefaultPort())
+                sb.append(':').append(hostPool.getPort());
+            sb.append("\r\n");
+        }
+
+        sb.append("Content-Length: ").append(contentLength).append("\r\n\r\n");
+
+        connection.writeHead(sb.toString());
+        if (content != null)
+            connection.writeBody(content);
+        connection.flush();
+    }
+
+    /**
+     * Checks that the request target of the request line has no whitespace or control characters
+     * @param requestLine Request line written so far
+     * @param start Index of the request target in the line
+     * @throws IllegalArgumentException Thrown when the target has an invalid character
+     */
+    private static void checkRequestTarget(CharSequence requestLine, int start) {
+        for (int i = start; i < requestLine.length(); i++) {
+            char c = requestLine.charAt(i);
+            if (c <= ' ' || c == 0x7f)
+                throw new IllegalArgumentException("Invalid character in the request URL: " + (int) c);
+        }
+    }
+
+    /**
+     * Checks that a header can be written to the request head as it is
+     * Names must be tokens (RFC 7230 3.2.6), values must not have line breaks or other control characters than tab.
+     * @param name Header name
+     * @param value Header value
+     * @throws IllegalArgumentException Thrown when the name or the value is invalid
+     */
+    private static void checkHeader(String name, String value) {
+        if (name.isEmpty())
+            throw new IllegalArgumentException("Header names can not be empty.");
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 0x7f || c <= ' ' || "\"(),/:;<=>?@[\\]{}".indexOf(c) >= 0)
+                throw new IllegalArgumentException("Invalid character in the name of the header " + name + ": " + (int) c);
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c < ' ' && c != '\t') || c == 0x7f)
+                throw new IllegalArgumentException("Invalid character in the value of the header " + name + ": " + (int) c);
+        }
+    }
+
+    /**
+     * Opens the body stream of the response according to its framing
+     * @param pool Pool owning the connection
+     * @param connection Connection of the response
+     * @param method Method of the request
+     * @param statusCode Status code of the response
+     * @param statusLine Status line of the response
+     * @param headers Headers of the response
+     * @return Returns the body stream, which releases the connection when done
+     * @throws IOException Thrown when the framing headers are invalid
+     */
+    private static HttpBodyInputStream openBody(HttpConnectionPool pool, HttpConnection connection, HttpMethod method,
+                                        int statusCode, String statusLine, Map<String, List<String>> headers) throws IOException {
+        boolean keepAlive = statusLine.startsWith("HTTP/1.1")
+                ? !hasToken(headers, "Connection", "close")
+                : hasToken(headers, "Connection", "keep-alive");
+
+        if (method == HttpMethod.HEAD || statusCode == 204 || statusCode == 304)
+            return HttpBodyInputStream.empty(pool, connection, keepAlive);
+
+        if (hasToken(headers, "Transfer-Encoding", "chunked"))
+            return HttpBodyInputStream.chunked(pool, connection, keepAlive);
+
+        String contentLength = getHeader(headers, "Content-Length");
+        if (contentLength != null) {
+            try {
+                return HttpBodyInputStream.fixedLength(pool, connection, keepAlive, Long.parseLong(contentLength.trim()));
+            }
+            catch (NumberFormatException e) {
+                throw new IOException("Invalid Content-Length in the response: " + contentLength);
+            }
+        }
+
+        return HttpBodyInputStream.untilClose(pool, connection);
+    }
+
+    /**
+     * Parses the status code of the given status line
+     * @param statusLine Status line to parse
+     * @return Returns the status code
+     * @throws IOException Thrown when the status line is malformed
+     */
+    private static int parseStatusCode(String statusLine) throws IOException {
+        int space = statusLine.indexOf(' ');
+        if (!statusLine.startsWith("HTTP/") || space < 0 || statusLine.length() < space + 4)
+            throw new IOException("Malformed HTTP status line: " + statusLine);
+
+        try {
+            return Integer.parseInt(statusLine.substring(space + 1, space + 4));
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Malformed HTTP status line: " + statusLine);
+        }
+    }
+
+    /**
+     * Gets the first value of the given header (case-insensitive)
+     * @param headers Headers to search
+     * @param name Header name
+     * @return Returns the header value or null if it is missing
+     */
+    static String getHeader(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty())
+                return header.getValue().get(0);
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks whether a comma separated header contains the given token (case-insensitive)
+     * @param headers Headers to search
+     * @param name Header name
+     * @param token Token to look for
+     * @return Returns true if the token is present
+     */
+    private static boolean hasToken(Map<String, List<String>> headers, String name, String token) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (!name.equalsIgnoreCase(header.getKey()))
+                continue;
+
+            for (String value : header.getValue()) {
+                for (String part : value.split(",")) {
+                    if (part.trim().equalsIgnoreCase(token))
+                        return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
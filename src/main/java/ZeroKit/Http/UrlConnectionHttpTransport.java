@@ -0,0 +1,152 @@
+package ZeroKit.Http;
+
+import ZeroKit.Utils.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+
+/**
+ * Transport executing the requests over {@link HttpURLConnection}
+ * This is the default transport, it works on every JVM and uses the keep-alive cache of the JDK.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class UrlConnectionHttpTransport implements HttpTransport {
+    // Indicate whether to use caches
+    private volatile boolean useCache;
+
+    /**
+     * Initializes a new HttpURLConnection transport with caches turned off
+     */
+    public UrlConnectionHttpTransport() {
+        this.useCache = false;
+    }
+
+    /**
+     * Gets whether the transport is using caches
+     * @return Returns true if the transport uses caches
+     */
+    public boolean isUseCache() {
+        return useCache;
+    }
+
+    /**
+     * Sets the cache usage policy of the transport
+     * @param useCache If true the cache usage is turned on, otherwise off
+     */
+    public void setUseCache(boolean useCache) {
+        this.useCache = useCache;
+    }
+
+    /**
+     * Executes the given HTTP request and returns the result
+     * @param request Request to execute
+     * @return Returns the result of the HTTP call
+     * @throws IOException Thrown when the call fails due to network / accessibility issues.
+     */
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        HttpURLConnection connection = null;
+        Closeable abortHandle = null;
+        boolean succeeded = false;
+        HttpTimings timings = request.getTimings();
+        long mark = HttpTimings.start(timings);
+
+        try {
+            //Create connection
+            connection = (HttpURLConnection) request.getUrl().openConnection();
+            connection.setRequestMethod(request.getMethod().name());
+
+            final HttpURLConnection abortedConnection = connection;
+            abortHandle = new Closeable() {
+                @Override
+                public void close() {
+                    abortedConnection.disconnect();
+                }
+            };
+            HttpCall.attach(abortHandle);
+
+            // Add headers (the connection does not send a Content-Length property, it is set as the streaming length)
+            boolean hasContentLength = false;
+            HttpHeaders headers = request.getHttpHeaders();
+            for (int i = 0; i < headers.size(); i++) {
+                String name = headers.getName(i);
+                if (name.equalsIgnoreCase("Content-Length")) {
+                    connection.setFixedLengthStreamingMode(Long.parseLong(headers.getValue(i).trim()));
+                    hasContentLength = true;
+                }
+                else {
+                    connection.addRequestProperty(name, headers.getValue(i));
+                }
+            }
+
+            // Set default headers
+            HttpContent content = request.getContent();
+            if (!hasContentLength)
+                connection.setFixedLengthStreamingMode(content != null ? content.getLength() : 0);
+
+            // Disable caches
+            connection.setUseCaches(this.useCache);
+
+            // Set output mode to true
+            connection.setDoOutput(true);
+
+            //Send request (the connection is opened by the first write)
+            OutputStream wr = connection.getOutputStream();
+            mark = HttpTimings.mark(timings, HttpPhase.CONNECT, mark);
+
+            if (content != null)
+                content.writeTo(wr);
+
+            wr.close();
+            mark = HttpTimings.mark(timings, HttpPhase.WRITE, mark);
+
+            // Get Response status code
+            int statusCode = connection.getResponseCode();
+            mark = HttpTimings.mark(timings, HttpPhase.FIRST_BYTE, mark);
+
+            // Streamed bodies give the connection back to the keep-alive cache of the JDK when the caller closes them
+            InputStream is = statusCode >= 200 && statusCode < 300 ? connection.getInputStream() : connection.getErrorStream();
+            if (request.isStreamingResponse()) {
+                succeeded = true;
+                return new HttpResponse(statusCode, HttpResponse.normalizeHeaders(connection.getHeaderFields()),
+                        is != null ? is : new ByteArrayInputStream(new byte[0]));
+            }
+
+            // Read the response to the end, so the JDK can keep the connection alive for later calls
+            byte[] response = new byte[0];
+            if (is != null) {
+                try {
+                    response = IOUtils.readAll(is, connection.getContentLengthLong());
+                }
+                finally {
+                    is.close();
+                }
+            }
+            HttpTimings.mark(timings, HttpPhase.READ, mark);
+
+            succeeded = true;
+            return new HttpResponse(statusCode, HttpResponse.normalizeHeaders(connection.getHeaderFields()), response);
+        }
+        finally {
+            if (abortHandle != null)
+                HttpCall.detach(abortHandle);
+
+            // Only failed connections are dropped, successful ones go back to the keep-alive cache
+            if (connection != null && !succeeded) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Does nothing, the keep-alive cache of the JDK is shared by the whole JVM
+     */
+    @Override
+    public void close() {
+    }
+}
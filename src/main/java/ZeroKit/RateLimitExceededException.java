@@ -0,0 +1,25 @@
+package ZeroKit;
+
+import ZeroKit.Http.ClientRejectedException;
+
+/**
+ * Exception thrown when a call is rejected by the client side rate limiter of the tenant
+ * The call was not sent to the service.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class RateLimitExceededException extends ClientRejectedException {
+    // Version of the serialized form
+    private static final long serialVersionUID = 1L;
+
+    // Error code of the rejected calls
+    public static final String ErrorCode = "ClientRateLimitExceeded";
+
+    /**
+     * Initializes a new rate limit exception
+     * @param errorMessage Description of the exceeded limit
+     */
+    public RateLimitExceededException(String errorMessage) {
+        super(ErrorCode, errorMessage);
+    }
+}
@@ -0,0 +1,291 @@
+package ZeroKit;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free token bucket limiting the rate of the admin API calls
+ * The bucket is refilled continuously with the configured rate and holds at most burst tokens. Its whole state is a single
+ * timestamp (the time the bucket will be full again, as in the generic cell rate algorithm), updated by compare-and-set, so
+ * acquiring never blocks other threads. Blocking acquires reserve their token immediately and wait for its time, so waiting
+ * threads are served in the order they arrived.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class RateLimiter {
+    // Shared limiters of the tenants
+    private static final ConcurrentMap<String, RateLimiter> TenantLimiters = new ConcurrentHashMap<String, RateLimiter>();
+
+    // Rate and burst of the bucket
+    private volatile Settings settings;
+
+    // Maximum time a call waits for a token in nanoseconds (0 means calls are rejected immediately)
+    private volatile long maxWaitNanos;
+
+    // Time (System.nanoTime) at which the bucket is full again, relative to the creation of the limiter
+    private final AtomicLong fullAt;
+
+    // Creation time of the limiter (System.nanoTime)
+    private final long origin;
+
+    // Number of acquired tokens
+    private final AtomicLong acquiredCount;
+
+    // Number of acquires rejected because no token was available in time
+    private final AtomicLong throttledCount;
+
+    // Number of acquires which had to wait for their token
+    private final AtomicLong waitedCount;
+
+    // Total time spent waiting for tokens in nanoseconds
+    private final AtomicLong waitedNanos;
+
+    /**
+     * Initializes a new rate limiter with a full bucket, calls are rejected immediately if no token is available
+     * @param permitsPerSecond Rate of the calls
+     * @param burst Maximum number of calls allowed at once (size of the bucket)
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        this.settings = new Settings(permitsPerSecond, burst);
+        this.maxWaitNanos = 0;
+        this.origin = System.nanoTime();
+        this.fullAt = new AtomicLong(0);
+        this.acquiredCount = new AtomicLong();
+        this.throttledCount = new AtomicLong();
+        this.waitedCount = new AtomicLong();
+        this.waitedNanos = new AtomicLong();
+    }
+
+    /**
+     * Gets the shared limiter of the given tenant, creating it with the given settings if it does not exist yet
+     * Every client of the tenant in this JVM should use the shared limiter, so they are limited together.
+     * @param tenantId ID of the tenant
+     * @param permitsPerSecond Rate of the calls, used only if the limiter is created
+     * @param burst Maximum number of calls allowed at once, used only if the limiter is created
+     * @return Returns the limiter of the tenant
+     */
+    public static RateLimiter forTenant(String tenantId, double permitsPerSecond, int burst) {
+        RateLimiter limiter = TenantLimiters.get(tenantId);
+        if (limiter != null)
+            return limiter;
+
+        RateLimiter created = new RateLimiter(permitsPerSecond, burst);
+        limiter = TenantLimiters.putIfAbsent(tenantId, created);
+        return limiter != null ? limiter : created;
+    }
+
+    /**
+     * Gets the rate of the calls
+     * @return Returns the number of calls allowed per second
+     */
+    public double getPermitsPerSecond() {
+        return settings.permitsPerSecond;
+    }
+
+    /**
+     * Gets the size of the bucket
+     * @return Returns the maximum number of calls allowed at once
+     */
+    public int getBurst() {
+        return settings.burst;
+    }
+
+    /**
+     * Changes the rate and the size of the bucket, the tokens already taken are kept
+     * @param permitsPerSecond Rate of the calls
+     * @param burst Maximum number of calls allowed at once
+     */
+    public void setRate(double permitsPerSecond, int burst) {
+        this.settings = new Settings(permitsPerSecond, burst);
+    }
+
+    /**
+     * Gets the maximum time {@link #acquire()} waits for a token
+     * @return Returns the time in milliseconds, 0 if calls are rejected immediately
+     */
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos);
+    }
+
+    /**
+     * Sets the maximum time {@link #acquire()} waits for a token
+     * @param maxWaitMillis Time in milliseconds, 0 to reject the calls immediately (non-blocking mode)
+     */
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        if (maxWaitMillis < 0)
+            throw new IllegalArgumentException("The maximum wait can not be negative.");
+
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    /**
+     * Gets the number of acquired tokens
+     * @return Returns the number of calls let through
+     */
+    public long getAcquiredCount() {
+        return acquiredCount.get();
+    }
+
+    /**
+     * Gets the number of rejected acquires
+     * @return Returns the number of calls rejected because no token was available in time
+     */
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * Gets the number of acquires which had to wait
+     * @return Returns the number of calls delayed by the limiter
+     */
+    public long getWaitedCount() {
+        return waitedCount.get();
+    }
+
+    /**
+     * Gets the total time calls waited for their tokens
+     * @return Returns the waited time in milliseconds
+     */
+    public long getWaitedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitedNanos.get());
+    }
+
+    /**
+     * Takes a token if one is available right now
+     * @return Returns true if a token was taken
+     */
+    public boolean tryAcquire() {
+        long wait = reserve(0);
+        if (wait != 0) {
+            throttledCount.incrementAndGet();
+            return false;
+        }
+
+        acquiredCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Takes a token, waiting for it at most the given time
+     * Nothing is taken if the token would not be available in time, so rejected calls do not delay later ones.
+     * @param timeout Maximum time to wait
+     * @param unit Unit of the timeout
+     * @return Returns true if a token was taken, false if none is available in time
+     * @throws InterruptedIOException Thrown when the thread is interrupted while waiting (the token is given back)
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedIOException {
+        long wait = reserve(unit.toNanos(timeout));
+        if (wait < 0) {
+            throttledCount.incrementAndGet();
+            return false;
+        }
+
+        if (wait > 0) {
+            waitedCount.incrementAndGet();
+            waitedNanos.addAndGet(wait);
+            try {
+                park(wait);
+            }
+            catch (InterruptedIOException e) {
+                refund();
+                throw e;
+            }
+        }
+
+        acquiredCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Takes a token, waiting for it at most the configured maximum wait
+     * @throws RateLimitExceededException Thrown when no token is available in time
+     * @throws InterruptedIOException Thrown when the thread is interrupted while waiting
+     */
+    public void acquire() throws RateLimitExceededException, InterruptedIOException {
+        if (!tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS))
+            throw new RateLimitExceededException("The client side rate limit of " + settings.permitsPerSecond + " calls / second is exceeded.");
+    }
+
+    /**
+     * Reserves a token if it is available within the given time
+     * @param maxWaitNanos Maximum time to wait for the token
+     * @return Returns the time to wait for the reserved token in nanoseconds, or -1 if nothing was reserved
+     */
+    private long reserve(long maxWaitNanos) {
+        while (true) {
+            Settings settings = this.settings;
+            long now = System.nanoTime() - origin;
+            long current = fullAt.get();
+
+            // The bucket is full at "fullAt", each token taken pushes it one interval further
+            long next = Math.max(current, now) + settings.intervalNanos;
+            long wait = next - now - settings.capacityNanos;
+            if (wait > maxWaitNanos)
+                return -1;
+
+            if (fullAt.compareAndSet(current, next))
+                return Math.max(0, wait);
+        }
+    }
+
+    /**
+     * Gives back a reserved token which was not used
+     * Reservations made meanwhile keep their wait, only later ones benefit from the refund.
+     */
+    private void refund() {
+        while (true) {
+            long current = fullAt.get();
+            if (fullAt.compareAndSet(current, current - settings.intervalNanos))
+                return;
+        }
+    }
+
+    /**
+     * Waits the given time
+     * @param nanos Time to wait
+     * @throws InterruptedIOException Thrown when the thread is interrupted while waiting
+     */
+    private static void park(long nanos) throws InterruptedIOException {
+        long deadline = System.nanoTime() + nanos;
+        long remaining = nanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Waiting for the rate limiter was interrupted.");
+            }
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * Immutable rate and burst of the bucket
+     */
+    private static final class Settings {
+        // Number of calls allowed per second
+        private final double permitsPerSecond;
+
+        // Size of the bucket
+        private final int burst;
+
+        // Time to refill a single token in nanoseconds
+        private final long intervalNanos;
+
+        // Time to refill the whole bucket in nanoseconds
+        private final long capacityNanos;
+
+        Settings(double permitsPerSecond, int burst) {
+            if (!(permitsPerSecond > 0) || burst < 1)
+                throw new IllegalArgumentException("The rate must be positive and the burst at least 1.");
+
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+            this.capacityNanos = this.intervalNanos * burst;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package ZeroKit;
+
+import ZeroKit.Http.ClientRejectedException;
+import ZeroKit.Http.HttpResponse;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.MalformedURLException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retry policy of the admin API client
+ * Failed attempts are retried after an exponentially growing, fully jittered delay, so clients failing at the same time
+ * do not retry in lockstep. Retries are limited per call (attempts and total duration) and by a budget shared by every
+ * call using the policy: each call earns a fraction of a retry, each retry spends a whole one, so an outage can not
+ * multiply the load on the service. Unless {@link #setRetryNonIdempotent(boolean)} allows it, calls of non-idempotent
+ * endpoints (see {@link HedgingPolicy#isNonIdempotent(String)}) are retried after an I/O error only if the connection
+ * could not be established, and after a 502 or 504 response of a gateway, as the service may have processed a request
+ * whose response was lost.
+ * The policy is thread-safe, it can be shared by any number of clients.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class RetryPolicy {
+    // Default maximum number of attempts per call (including the first one)
+    public static final int DefaultMaxAttempts = 3;
+
+    // Default delay before the first retry in milliseconds
+    public static final long DefaultBaseDelayMillis = 100;
+
+    // Default maximum delay between two attempts in milliseconds
+    public static final long DefaultMaxDelayMillis = 5000;
+
+    // Default maximum duration of a call including its retries in milliseconds
+    public static final long DefaultMaxDurationMillis = 30000;
+
+    // Default fraction of a retry earned by each call
+    public static final double DefaultBudgetRatio = 0.1;
+
+    // Default maximum (and initial) number of retries in the budget
+    public static final int DefaultMaxBudget = 10;
+
+    // Status codes of transient gateway and availability failures
+    private static final List<Integer> DefaultRetryableStatusCodes = Arrays.asList(502, 503, 504);
+
+    // Budget units of a single retry
+    private static final long RetryCost = 1000;
+
+    // Maximum number of attempts per call
+    private volatile int maxAttempts;
+
+    // Delay before the first retry in milliseconds
+    private volatile long baseDelayMillis;
+
+    // Maximum delay between two attempts in milliseconds
+    private volatile long maxDelayMillis;
+
+    // Maximum duration of a call including its retries in milliseconds
+    private volatile long maxDurationMillis;
+
+    // Budget units earned by each call
+    private volatile long budgetDeposit;
+
+    // Maximum number of budget units
+    private volatile long budgetLimit;
+
+    // HTTP status codes worth retrying
+    private volatile Set<Integer> retryableStatusCodes;
+
+    // API error codes worth retrying
+    private volatile Set<String> retryableErrorCodes;
+
+    // Indicates whether calls of non-idempotent endpoints are retried after any retryable I/O error
+    private volatile boolean retryNonIdempotent;
+
+    // Available budget units
+    private final AtomicLong budget;
+
+    // Number of retries made
+    private final AtomicLong retryCount;
+
+    // Number of retries denied because the budget was exhausted
+    private final AtomicLong budgetExhaustedCount;
+
+    /**
+     * Initializes a new retry policy with the default settings
+     * I/O errors (except cancellations) and 502, 503, 504 responses are retried, API error codes are not. Non-idempotent
+     * endpoints are retried after I/O errors only if the connection failed.
+     */
+    public RetryPolicy() {
+        this.maxAttempts = DefaultMaxAttempts;
+        this.baseDelayMillis = DefaultBaseDelayMillis;
+        this.maxDelayMillis = DefaultMaxDelayMillis;
+        this.maxDurationMillis = DefaultMaxDurationMillis;
+        this.budgetDeposit = Math.round(DefaultBudgetRatio * RetryCost);
+        this.budgetLimit = DefaultMaxBudget * RetryCost;
+        this.retryableStatusCodes = Collections.unmodifiableSet(new HashSet<Integer>(DefaultRetryableStatusCodes));
+        this.retryableErrorCodes = Collections.<String>emptySet();
+        this.budget = new AtomicLong(this.budgetLimit);
+        this.retryCount = new AtomicLong();
+        this.budgetExhaustedCount = new AtomicLong();
+    }
+
+    /**
+     * Gets the maximum number of attempts per call
+     * @return Returns the maximum number of attempts, including the first one
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Sets the maximum number of attempts per call
+     * @param maxAttempts Maximum number of attempts, including the first one (1 disables retries)
+     * @return Returns the modified policy
+     */
+    public RetryPolicy setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1)
+            throw new IllegalArgumentException("At least one attempt is required.");
+
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * Gets the delay before the first retry
+     * @return Returns the delay in milliseconds
+     */
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    /**
+     * Gets the maximum delay between two attempts
+     * @return Returns the delay in milliseconds
+     */
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * Sets the backoff of the retries, the delay before the nth retry is drawn uniformly from [0, min(max, base * 2^(n-1))]
+     * @param baseDelayMillis Delay before the first retry in milliseconds
+     * @param maxDelayMillis Maximum delay between two attempts in milliseconds
+     * @return Returns the modified policy
+     */
+    public RetryPolicy setBackoff(long baseDelayMillis, long maxDelayMillis) {
+        if (baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis)
+            throw new IllegalArgumentException("The delays must satisfy 0 <= base <= max.");
+
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        return this;
+    }
+
+    /**
+     * Gets the maximum duration of a call including its retries
+     * @return Returns the duration in milliseconds
+     */
+    public long getMaxDurationMillis() {
+        return maxDurationMillis;
+    }
+
+    /**
+     * Sets the maximum duration of a call including its retries, no retry is started which could not end in time
+     * @param maxDurationMillis Duration in milliseconds (0 means infinite)
+     * @return Returns the modified policy
+     */
+    public RetryPolicy setMaxDurationMillis(long maxDurationMillis) {
+        if (maxDurationMillis < 0)
+            throw new IllegalArgumentException("The duration can not be negative.");
+
+        this.maxDurationMillis = maxDurationMillis;
+        return this;
+    }
+
+    /**
+     * Sets the retry budget shared by the calls using this policy
+     * @param ratio Fraction of a retry earned by each call (e.g. 0.1 allows one retry per ten calls)
+     * @param maxBudget Maximum (and initial) number of retries in the budget, the allowed burst of retries
+     * @return Returns the modified policy
+     */
+    public RetryPolicy setBudget(double ratio, int maxBudget) {
+        if (ratio < 0 || maxBudget < 0)
+            throw new IllegalArgumentException("The budget can not be negative.");
+
+        this.budgetDeposit = Math.round(ratio * RetryCost);
+        this.budgetLimit = maxBudget * RetryCost;
+        this.budget.set(this.budgetLimit);
+        return this;
+    }
+
+    /**
+     * Sets the HTTP status codes which are retried
+     * @param statusCodes Retryable status codes
+     * @return Returns the modified policy
+     */
+    public RetryPolicy setRetryableStatusCodes(Integer... statusCodes) {
+        this.retryableStatusCodes = Collections.unmodifiableSet(new HashSet<Integer>(Arrays.asList(statusCodes)));
+        return this;
+    }
+
+    /**
+     * Sets the API error codes which are retried
+     * Only transient errors (e.g. throttling) should be listed, the call is repeated with the same request.
+     * @param errorCodes Retryable error codes of {@link ZeroKitAdminApiException}s and {@link ClientRejectedException}s
+     * @return Returns the modified policy
+     */
+    public RetryPolicy setRetryableErrorCodes(String... errorCodes) {
+        this.retryableErrorCodes = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(errorCodes)));
+        return this;
+    }
+
+    /**
+     * Gets the number of retries made
+     * @return Returns the number of retries
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * Gets the number of retries denied by the exhausted budget
+     * @return Returns the number of denied retries
+     */
+    public long getBudgetExhaustedCount() {
+        return budgetExhaustedCount.get();
+    }
+
+    /**
+     * Gets whether calls of non-idempotent endpoints are retried after any retryable I/O error
+     * @return Returns true if they are, false if they are retried only when the connection could not be established
+     */
+    public boolean isRetryNonIdempotent() {
+        return retryNonIdempotent;
+    }
+
+    /**
+     * Sets whether calls of non-idempotent endpoints are retried after any retryable I/O error
+     * A timeout or a dropped connection may hide a request which was processed by the service, retrying it may e.g.
+     * register a second user. Only enable this if the duplicate is harmless.
+     * @param retryNonIdempotent True to retry them like other calls, false (default) to retry them only when the
+     *                           connection could not be established
+     * @return Returns the modified policy
+     */
+    public RetryPolicy setRetryNonIdempotent(boolean retryNonIdempotent) {
+        this.retryNonIdempotent = retryNonIdempotent;
+        return this;
+    }
+
+    /**
+     * Gets whether the given response is worth retrying
+     * @param response Response of an attempt
+     * @return Returns true if the status code of the response is retryable
+     */
+    public boolean isRetryable(HttpResponse response) {
+        return retryableStatusCodes.contains(response.getStatusCode());
+    }
+
+    /**
+     * Gets whether the given response of a call of an endpoint is worth retrying
+     * A 502 or 504 response of a gateway does not tell whether the service processed the request, so non-idempotent
+     * endpoints get them retried only if {@link #setRetryNonIdempotent(boolean)} allows it.
+     * @param response Response of an attempt
+     * @param path API path of the call (e.g. "/api/v4/admin/user/init-user-registration")
+     * @return Returns true if the response is retryable
+     */
+    public boolean isRetryable(HttpResponse response, String path) {
+        if (!isRetryable(response))
+            return false;
+
+        if (retryNonIdempotent || !HedgingPolicy.isNonIdempotent(path))
+            return true;
+
+        int status = response.getStatusCode();
+        return status != 502 && status != 504;
+    }
+
+    /**
+     * Gets whether the given failure is worth retrying
+     * Cancellations, malformed URLs and TLS failures are not retried, timeouts and other I/O errors are transient. Calls
+     * rejected by the client itself ({@link ClientRejectedException}) are retried only if their error code is retryable.
+     * @param error Failure of an attempt
+     * @return Returns true if the failure is retryable
+     */
+    public boolean isRetryable(Exception error) {
+        if (error instanceof ZeroKitAdminApiException)
+            return retryableErrorCodes.contains(((ZeroKitAdminApiException) error).getErrorCode());
+
+        if (error instanceof ClientRejectedException)
+            return retryableErrorCodes.contains(((ClientRejectedException) error).getErrorCode());
+
+        if (error instanceof InterruptedIOException)
+            return error instanceof SocketTimeoutException;
+
+        return error instanceof IOException && !(error instanceof MalformedURLException) && !(error instanceof SSLException);
+    }
+
+    /**
+     * Gets whether the given failure of a call of an endpoint is worth retrying
+     * I/O errors of non-idempotent endpoints are retried only if the request could not have reached the service (the
+     * connection failed), unless {@link #setRetryNonIdempotent(boolean)} allows it.
+     * @param error Failure of an attempt
+     * @param path API path of the call (e.g. "/api/v4/admin/user/init-user-registration")
+     * @return Returns true if the failure is retryable
+     */
+    public boolean isRetryable(Exception error, String path) {
+        if (!isRetryable(error))
+            return false;
+
+        if (error instanceof ZeroKitAdminApiException || error instanceof ClientRejectedException || retryNonIdempotent || !HedgingPolicy.isNonIdempotent(path))
+            return true;
+
+        return error instanceof ConnectException || error instanceof NoRouteToHostException || error instanceof UnknownHostException;
+    }
+
+    /**
+     * Credits the budget with the share of a new call
+     */
+    void onCall() {
+        long deposit = budgetDeposit;
+        if (deposit == 0)
+            return;
+
+        while (true) {
+            long current = budget.get();
+            long limit = budgetLimit;
+            if (current >= limit || budget.compareAndSet(current, Math.min(limit, current + deposit)))
+                return;
+        }
+    }
+
+    /**
+     * Spends a retry from the budget
+     * @return Returns true if the retry is allowed
+     */
+    boolean tryAcquireRetry() {
+        while (true) {
+            long current = budget.get();
+            if (current < RetryCost) {
+                budgetExhaustedCount.incrementAndGet();
+                return false;
+            }
+
+            if (budget.compareAndSet(current, current - RetryCost)) {
+                retryCount.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Computes the delay before the given retry
+     * A Retry-After header (in seconds) of the failed response raises the delay, up to the maximum delay.
+     * @param retry Index of the retry (1 for the first one)
+     * @param response Failed response, or null if the attempt threw
+     * @return Returns the delay in milliseconds
+     */
+    long computeDelayMillis(int retry, HttpResponse response) {
+        long max = maxDelayMillis;
+        long ceiling = Math.min(max, baseDelayMillis << Math.min(retry - 1, 30));
+        long delay = ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+
+        if (response != null) {
+            List<String> retryAfter = response.getHeaders().get("retry-after");
+            if (retryAfter != null && !retryAfter.isEmpty()) {
+                try {
+                    delay = Math.max(delay, Math.min(max, Long.parseLong(retryAfter.get(0).trim()) * 1000));
+                }
+                catch (NumberFormatException e) {
+                    // HTTP dates are ignored, the jittered delay is used
+                }
+            }
+        }
+
+        return delay;
+    }
+}
@@ -0,0 +1,94 @@
+package ZeroKit;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free provider of the TresoritDate header value (yyyy-MM-dd'T'HH:mm:ss'Z' in UTC)
+ * The timestamp is formatted at most once per second, the cached string is shared by every thread.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public final class TresoritDateProvider {
+    // Shared instance used by the admin API clients
+    private static final TresoritDateProvider Default = new TresoritDateProvider();
+
+    // Immutable, thread-safe formatter of the TresoritDate values
+    private static final DateTimeFormatter Formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ROOT)
+            .withZone(ZoneOffset.UTC);
+
+    // Last formatted second
+    private final AtomicReference<CachedDate> cache;
+
+    /**
+     * Initializes a new date provider
+     */
+    public TresoritDateProvider() {
+        this.cache = new AtomicReference<CachedDate>(new CachedDate(Long.MIN_VALUE, null));
+    }
+
+    /**
+     * Gets the shared date provider instance
+     * @return Returns the shared instance
+     */
+    public static TresoritDateProvider getDefault() {
+        return Default;
+    }
+
+    /**
+     * Gets the TresoritDate value of the current time
+     * @return Returns the formatted current time
+     */
+    public String now() {
+        return format(System.currentTimeMillis());
+    }
+
+    /**
+     * Gets the TresoritDate value of the given time
+     * @param epochMillis Milliseconds since the epoch
+     * @return Returns the formatted time
+     */
+    public String format(long epochMillis) {
+        long epochSecond = Math.floorDiv(epochMillis, 1000);
+
+        CachedDate cached = cache.get();
+        if (cached.epochSecond == epochSecond)
+            return cached.text;
+
+        String text = formatSecond(epochSecond);
+
+        // Losing the race is fine, the other thread cached an equally valid value
+        if (epochSecond > cached.epochSecond)
+            cache.compareAndSet(cached, new CachedDate(epochSecond, text));
+
+        return text;
+    }
+
+    /**
+     * Formats the given second
+     * @param epochSecond Seconds since the epoch
+     * @return Returns the formatted time
+     */
+    static String formatSecond(long epochSecond) {
+        return Formatter.format(Instant.ofEpochSecond(epochSecond));
+    }
+
+    /**
+     * Immutable cache entry of a formatted second
+     */
+    private static final class CachedDate {
+        // Second of the entry
+        private final long epochSecond;
+
+        // Formatted value of the second
+        private final String text;
+
+        CachedDate(long epochSecond, String text) {
+            this.epochSecond = epochSecond;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ZeroKit;
+
+import ZeroKit.Utils.JsonReader;
+
+import java.io.IOException;
+
+/**
+ * Started user registration, returned by init-user-registration
+ * The session ID and verifier are needed again to validate the registration.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class UserRegistration {
+    // ID of the registered user
+    private final String userId;
+
+    // ID of the registration session
+    private final String regSessionId;
+
+    // Verifier of the registration session
+    private final String regSessionVerifier;
+
+    /**
+     * Initializes a new user registration
+     * @param userId ID of the registered user
+     * @param regSessionId ID of the registration session
+     * @param regSessionVerifier Verifier of the registration session
+     */
+    public UserRegistration(String userId, String regSessionId, String regSessionVerifier) {
+        this.userId = userId;
+        this.regSessionId = regSessionId;
+        this.regSessionVerifier = regSessionVerifier;
+    }
+
+    /**
+     * Gets the ID of the registered user
+     * @return Returns the user ID
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Gets the ID of the registration session
+     * @return Returns the session ID
+     */
+    public String getRegSessionId() {
+        return regSessionId;
+    }
+
+    /**
+     * Gets the verifier of the registration session
+     * @return Returns the session verifier
+     */
+    public String getRegSessionVerifier() {
+        return regSessionVerifier;
+    }
+
+    /**
+     * Reads a user registration from the JSON body of an init-user-registration response
+     * @param contents UTF-8 encoded JSON body
+     * @return Returns the user registration
+     * @throws IOException Thrown when the body is not a user registration
+     */
+    public static UserRegistration parse(byte[] contents) throws IOException {
+        String userId = null;
+        String regSessionId = null;
+        String regSessionVerifier = null;
+
+        JsonReader reader = new JsonReader(contents);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("UserId"))
+                userId = reader.nextString();
+            else if (name.equals("RegSessionId"))
+                regSessionId = reader.nextString();
+            else if (name.equals("RegSessionVerifier"))
+                regSessionVerifier = reader.nextString();
+            else
+                reader.skipValue();
+        }
+        reader.endObject();
+
+        if (userId == null || regSessionId == null || regSessionVerifier == null)
+            throw new IOException("The response is not a user registration.");
+
+        return new UserRegistration(userId, regSessionId, regSessionVerifier);
+    }
+}
@@ -0,0 +1,114 @@
+package ZeroKit.Utils;
+
+/**
+ * Pool of the scratch buffers used to read and write streams
+ * Buffers are pooled in size classes (powers of two from 1 KB to 64 KB), each thread has its own free lists, so acquiring
+ * and releasing a buffer needs no synchronization. Larger buffers are allocated on demand and never pooled. A thread
+ * keeps at most a few buffers of each size class, the rest is left to the garbage collector.
+ * A released buffer must not be used anymore, and must not be released twice.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public final class BufferPool {
+    // Size of the smallest size class, as a power of two
+    private static final int MinSizeShift = 10;
+
+    // Size of the largest size class, as a power of two
+    private static final int MaxSizeShift = 16;
+
+    // Maximum number of free buffers kept per size class and thread
+    private static final int BuffersPerClass = 2;
+
+    // Free lists of each thread
+    private static final ThreadLocal<FreeLists> Pools = new ThreadLocal<FreeLists>() {
+        @Override
+        protected FreeLists initialValue() {
+            return new FreeLists();
+        }
+    };
+
+    /**
+     * Gets the size of the largest pooled buffer
+     * @return Returns the size of the largest size class in bytes
+     */
+    public static int getMaxPooledSize() {
+        return 1 << MaxSizeShift;
+    }
+
+    /**
+     * Acquires a buffer of at least the given size
+     * @param minSize Minimum size of the buffer
+     * @return Returns a buffer of the size class of the given size (its contents are undefined), or a new array of the
+     * given size if it is larger than the largest size class
+     */
+    public static byte[] acquire(int minSize) {
+        if (minSize < 0)
+            throw new IllegalArgumentException("The size of a buffer can not be negative: " + minSize);
+        if (minSize > getMaxPooledSize())
+            return new byte[minSize];
+
+        int sizeClass = getSizeClass(minSize);
+        byte[] buffer = Pools.get().poll(sizeClass);
+        return buffer != null ? buffer : new byte[1 << (sizeClass + MinSizeShift)];
+    }
+
+    /**
+     * Gives a buffer back to the pool of the current thread
+     * Buffers which are not of a size class (e.g. not acquired from the pool) are ignored.
+     * @param buffer Buffer to release, or null
+     */
+    public static void release(byte[] buffer) {
+        if (buffer == null)
+            return;
+
+        int size = buffer.length;
+        if (size < 1 << MinSizeShift || size > getMaxPooledSize() || (size & (size - 1)) != 0)
+            return;
+
+        Pools.get().offer(Integer.numberOfTrailingZeros(size) - MinSizeShift, buffer);
+    }
+
+    /**
+     * Gets the size class of the given size
+     * @param size Size of a buffer, at most the largest size class
+     * @return Returns the index of the smallest size class which fits the size
+     */
+    private static int getSizeClass(int size) {
+        if (size <= 1 << MinSizeShift)
+            return 0;
+
+        // Rounded up to the next power of two
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MinSizeShift;
+    }
+
+    /**
+     * Free buffers of a thread
+     */
+    private static final class FreeLists {
+        // Free buffers, indexed by size class
+        private final byte[][][] buffers = new byte[MaxSizeShift - MinSizeShift + 1][BuffersPerClass][];
+
+        // Number of free buffers of each size class
+        private final int[] counts = new int[MaxSizeShift - MinSizeShift + 1];
+
+        byte[] poll(int sizeClass) {
+            int count = counts[sizeClass];
+            if (count == 0)
+                return null;
+
+            byte[] buffer = buffers[sizeClass][--count];
+            buffers[sizeClass][count] = null;
+            counts[sizeClass] = count;
+            return buffer;
+        }
+
+        void offer(int sizeClass, byte[] buffer) {
+            int count = counts[sizeClass];
+            if (count == BuffersPerClass)
+                return;
+
+            buffers[sizeClass][count] = buffer;
+            counts[sizeClass] = count + 1;
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package ZeroKit.Utils;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 /**
  * IO utilities for ZeroKit admin API client
@@ -10,6 +10,18 @@ import java.io.InputStream;
  * @copyright	Copyright © Tresorit AG. 2017
  */
 public final class IOUtils {
+    // Size of the pooled buffer streams of unknown length are read into first
+    private static final int ChunkSize = 16384;
+
+    // Largest expected length reads are presized to, longer streams grow as they are read
+    private static final int MaxPresize = 1 << 20;
+
+    // Largest array size supported by the JVMs
+    private static final int MaxArraySize = Integer.MAX_VALUE - 8;
+
+    // Contents of the empty streams
+    private static final byte[] Empty = new byte[0];
+
     /**
      * Reads all contents till the end of the given input stream and returns it as a byte array
      * @param input Input stream to read
@@ -17,17 +29,100 @@ public final class IOUtils {
      * @throws IOException Throw when an error occurs during the read of the underlying stream
      */
     public static byte[] readAll(InputStream input) throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        return readAll(input, -1);
+    }
+
+    /**
+     * Reads all contents till the end of the given input stream and returns it as a byte array
+     * If the length of the stream is known (e.g. from the Content-Length of a response), the stream is read straight
+     * into an array of that size. Otherwise it is read into a pooled buffer, and copied once into an exactly sized array.
+     * The expected length is only a hint: shorter and longer streams are read correctly.
+     * @param input Input stream to read
+     * @param expectedLength Expected length of the stream, or -1 if it is unknown
+     * @return Returns the read data as a byte array
+     * @throws IOException Throw when an error occurs during the read of the underlying stream
+     */
+    public static byte[] readAll(InputStream input, long expectedLength) throws IOException {
+        if (expectedLength >= 0 && expectedLength <= MaxPresize) {
+            byte[] data = expectedLength == 0 ? Empty : new byte[(int) expectedLength];
+            int length = read(input, data, 0);
+            if (length < data.length)
+                return Arrays.copyOf(data, length);
+
+            int next = input.read();
+            if (next == -1)
+                return data;
+
+            // Longer than expected, read the rest
+            data = grow(data);
+            data[length++] = (byte) next;
+            return readToEnd(input, data, length);
+        }
+
+        byte[] buffer = BufferPool.acquire(ChunkSize);
+        try {
+            return readToEnd(input, buffer, 0);
+        }
+        finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Reads the given stream to the end, growing the buffer when it is full
+     * @param input Input stream to read
+     * @param data Buffer to read into
+     * @param length Number of bytes already in the buffer
+     * @return Returns a new array of the read bytes
+     * @throws IOException Throw when an error occurs during the read of the underlying stream
+     */
+    private static byte[] readToEnd(InputStream input, byte[] data, int length) throws IOException {
+        while (true) {
+            length = read(input, data, length);
+            if (length < data.length)
+                return Arrays.copyOf(data, length);
+
+            // A full buffer does not tell whether the stream ended
+            int next = input.read();
+            if (next == -1)
+                return Arrays.copyOf(data, length);
+
+            data = grow(data);
+            data[length++] = (byte) next;
+        }
+    }
 
-        int nRead;
-        byte[] data = new byte[16384];
+    /**
+     * Reads the given stream until the buffer is full or the stream ends
+     * @param input Input stream to read
+     * @param data Buffer to read into
+     * @param offset Number of bytes already in the buffer
+     * @return Returns the number of bytes in the buffer
+     * @throws IOException Throw when an error occurs during the read of the underlying stream
+     */
+    private static int read(InputStream input, byte[] data, int offset) throws IOException {
+        int length = offset;
+        while (length < data.length) {
+            int nRead = input.read(data, length, data.length - length);
+            if (nRead == -1)
+                break;
 
-        while ((nRead = input.read(data, 0, data.length)) != -1) {
-            buffer.write(data, 0, nRead);
+            length += nRead;
         }
 
-        buffer.flush();
+        return length;
+    }
+
+    /**
+     * Copies the given buffer into a larger one
+     * @param data Buffer to grow
+     * @return Returns the new buffer, with the contents of the given one
+     */
+    private static byte[] grow(byte[] data) {
+        if (data.length >= MaxArraySize)
+            throw new OutOfMemoryError("The stream is too long to be read into an array.");
 
-        return buffer.toByteArray();
+        int newLength = data.length <= MaxArraySize / 2 ? Math.max(data.length * 2, ChunkSize) : MaxArraySize;
+        return Arrays.copyOf(data, newLength);
     }
 }
@@ -0,0 +1,479 @@
+package ZeroKit.Utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal pull reader of UTF-8 encoded JSON
+ * The input bytes are scanned once, in place: strings without escapes are decoded directly from the input, skipped values
+ * are not decoded at all. The caller drives the structure (beginObject, hasNext, nextName, ..., endObject), syntax errors
+ * are reported as IOExceptions with the offset of the error. The reader is not thread-safe.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public final class JsonReader {
+    // Maximum nesting depth of objects and arrays
+    private static final int MaxDepth = 256;
+
+    // Input data
+    private final byte[] data;
+
+    // End of the input (exclusive)
+    private final int end;
+
+    // Offset of the next unread byte
+    private int position;
+
+    // Current nesting depth
+    private int depth;
+
+    // Whether the next element of the current object or array is its first one
+    private boolean first;
+
+    // Buffer of the strings with escapes (created on demand)
+    private StringBuilder builder;
+
+    /**
+     * Initializes a new reader of the given JSON
+     * @param data UTF-8 encoded JSON
+     */
+    public JsonReader(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * Initializes a new reader of a part of the given array
+     * @param data Array containing UTF-8 encoded JSON
+     * @param offset Offset of the JSON in the array
+     * @param length Length of the JSON in bytes
+     */
+    public JsonReader(byte[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > data.length)
+            throw new IndexOutOfBoundsException("The JSON is out of the bounds of the array.");
+
+        this.data = data;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * Gets the kind of the next value without consuming it
+     * @return Returns the kind of the next value
+     * @throws IOException Thrown when the next value is malformed
+     */
+    public JsonToken peek() throws IOException {
+        if (!skipWhitespace())
+            return JsonToken.END_DOCUMENT;
+
+        switch (data[position]) {
+            case '{':
+                return JsonToken.OBJECT;
+            case '[':
+                return JsonToken.ARRAY;
+            case '"':
+                return JsonToken.STRING;
+            case 't':
+            case 'f':
+                return JsonToken.BOOLEAN;
+            case 'n':
+                return JsonToken.NULL;
+            case '}':
+            case ']':
+                return JsonToken.END;
+            case '-':
+                return JsonToken.NUMBER;
+            default:
+                if (data[position] >= '0' && data[position] <= '9')
+                    return JsonToken.NUMBER;
+                throw syntaxError("Unexpected character");
+        }
+    }
+
+    /**
+     * Consumes the beginning of an object
+     * @throws IOException Thrown when the next value is not an object
+     */
+    public void beginObject() throws IOException {
+        begin('{');
+    }
+
+    /**
+     * Consumes the end of the current object
+     * @throws IOException Thrown when the object has more members
+     */
+    public void endObject() throws IOException {
+        end('}');
+    }
+
+    /**
+     * Consumes the beginning of an array
+     * @throws IOException Thrown when the next value is not an array
+     */
+    public void beginArray() throws IOException {
+        begin('[');
+    }
+
+    /**
+     * Consumes the end of the current array
+     * @throws IOException Thrown when the array has more elements
+     */
+    public void endArray() throws IOException {
+        end(']');
+    }
+
+    /**
+     * Checks whether the current object or array has more members, consuming the separating comma
+     * @return Returns true if there is a next member
+     * @throws IOException Thrown when the input ends or the members are not separated
+     */
+    public boolean hasNext() throws IOException {
+        if (!skipWhitespace())
+            throw syntaxError("Unexpected end of input");
+
+        byte c = data[position];
+        if (c == '}' || c == ']')
+            return false;
+
+        if (!first) {
+            if (c != ',')
+                throw syntaxError("Expected ','");
+            position++;
+        }
+
+        first = false;
+        return true;
+    }
+
+    /**
+     * Consumes the name of the next member of the current object
+     * @return Returns the decoded name
+     * @throws IOException Thrown when the next token is not a member name
+     */
+    public String nextName() throws IOException {
+        String name = nextString();
+        expect(':');
+        return name;
+    }
+
+    /**
+     * Consumes a string value
+     * @return Returns the value with its escapes decoded
+     * @throws IOException Thrown when the next value is not a string
+     */
+    public String nextString() throws IOException {
+        expect('"');
+
+        int start = position;
+        for (int i = start; i < end; i++) {
+            byte c = data[i];
+            if (c == '"') {
+                position = i + 1;
+                return new String(data, start, i - start, StandardCharsets.UTF_8);
+            }
+            if (c == '\\')
+                return nextEscapedString(start, i);
+            if (c >= 0 && c < 0x20)
+                throw syntaxError(i, "Unescaped control character");
+        }
+
+        throw syntaxError(end, "Unterminated string");
+    }
+
+    /**
+     * Consumes a boolean value
+     * @return Returns the value
+     * @throws IOException Thrown when the next value is not a boolean
+     */
+    public boolean nextBoolean() throws IOException {
+        if (!skipWhitespace())
+            throw syntaxError("Unexpected end of input");
+
+        if (data[position] == 't') {
+            literal("true");
+            return true;
+        }
+
+        literal("false");
+        return false;
+    }
+
+    /**
+     * Consumes a null value
+     * @throws IOException Thrown when the next value is not null
+     */
+    public void nextNull() throws IOException {
+        if (!skipWhitespace())
+            throw syntaxError("Unexpected end of input");
+
+        literal("null");
+    }
+
+    /**
+     * Consumes an integer value
+     * @return Returns the value
+     * @throws IOException Thrown when the next value is not an integer, or it does not fit in a long
+     */
+    public long nextLong() throws IOException {
+        if (!skipWhitespace())
+            throw syntaxError("Unexpected end of input");
+
+        int start = position;
+        boolean negative = data[position] == '-';
+        if (negative)
+            position++;
+
+        long value = 0;
+        int digits = 0;
+        while (position < end && data[position] >= '0' && data[position] <= '9') {
+            int digit = data[position] - '0';
+            if (value < (Long.MIN_VALUE + digit) / 10)
+                throw syntaxError(start, "Integer overflow");
+            value = value * 10 - digit;
+            position++;
+            digits++;
+        }
+
+        if (digits == 0 || (position < end && (data[position] == '.' || data[position] == 'e' || data[position] == 'E')))
+            throw syntaxError(start, "Expected an integer");
+
+        if (!negative) {
+            if (value == Long.MIN_VALUE)
+                throw syntaxError(start, "Integer overflow");
+            value = -value;
+        }
+
+        return value;
+    }
+
+    /**
+     * Skips the next value, including nested objects and arrays, without decoding it
+     * @throws IOException Thrown when the value is malformed
+     */
+    public void skipValue() throws IOException {
+        switch (peek()) {
+            case OBJECT:
+                beginObject();
+                while (hasNext()) {
+                    skipString();
+                    expect(':');
+                    skipValue();
+                }
+                endObject();
+                break;
+            case ARRAY:
+                beginArray();
+                while (hasNext())
+                    skipValue();
+                endArray();
+                break;
+            case STRING:
+                skipString();
+                break;
+            case NUMBER:
+                skipNumber();
+                break;
+            case BOOLEAN:
+                nextBoolean();
+                break;
+            case NULL:
+                nextNull();
+                break;
+            default:
+                throw syntaxError("Expected a value");
+        }
+    }
+
+    /**
+     * Consumes the beginning of an object or an array
+     * @param c Opening character
+     * @throws IOException Thrown when the next value is not the expected one or it is nested too deeply
+     */
+    private void begin(char c) throws IOException {
+        expect(c);
+        if (++depth > MaxDepth)
+            throw syntaxError(position - 1, "Nesting too deep");
+        first = true;
+    }
+
+    /**
+     * Consumes the end of an object or an array
+     * @param c Closing character
+     * @throws IOException Thrown when the next token is not the expected one
+     */
+    private void end(char c) throws IOException {
+        expect(c);
+        depth--;
+        first = false;
+    }
+
+    /**
+     * Consumes a string value without decoding it
+     * @throws IOException Thrown when the next value is not a string
+     */
+    private void skipString() throws IOException {
+        expect('"');
+
+        for (int i = position; i < end; i++) {
+            byte c = data[i];
+            if (c == '"') {
+                position = i + 1;
+                return;
+            }
+            if (c == '\\')
+                i++;
+        }
+
+        throw syntaxError(end, "Unterminated string");
+    }
+
+    /**
+     * Consumes a number value without parsing it
+     */
+    private void skipNumber() {
+        while (position < end) {
+            byte c = data[position];
+            if ((c < '0' || c > '9') && c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E')
+                break;
+            position++;
+        }
+    }
+
+    /**
+     * Decodes the rest of a string value containing escapes
+     * @param start Offset of the first character of the string
+     * @param escape Offset of the first backslash
+     * @return Returns the decoded value
+     * @throws IOException Thrown when the string is malformed
+     */
+    private String nextEscapedString(int start, int escape) throws IOException {
+        if (builder == null)
+            builder = new StringBuilder();
+        builder.setLength(0);
+
+        int segment = start;
+        int i = escape;
+        while (i < end) {
+            byte c = data[i];
+            if (c == '"') {
+                builder.append(new String(data, segment, i - segment, StandardCharsets.UTF_8));
+                position = i + 1;
+                return builder.toString();
+            }
+
+            if (c >= 0 && c < 0x20)
+                throw syntaxError(i, "Unescaped control character");
+
+            if (c != '\\') {
+                i++;
+                continue;
+            }
+
+            builder.append(new String(data, segment, i - segment, StandardCharsets.UTF_8));
+            if (i + 1 >= end)
+                break;
+
+            switch (data[i + 1]) {
+                case '"': builder.append('"'); break;
+                case '\\': builder.append('\\'); break;
+                case '/': builder.append('/'); break;
+                case 'b': builder.append('\b'); break;
+                case 'f': builder.append('\f'); break;
+                case 'n': builder.append('\n'); break;
+                case 'r': builder.append('\r'); break;
+                case 't': builder.append('\t'); break;
+                case 'u':
+                    if (i + 6 > end)
+                        throw syntaxError(i, "Unterminated escape");
+                    builder.append((char) (hex(i + 2) << 12 | hex(i + 3) << 8 | hex(i + 4) << 4 | hex(i + 5)));
+                    i += 4;
+                    break;
+                default:
+                    throw syntaxError(i, "Invalid escape");
+            }
+
+            i += 2;
+            segment = i;
+        }
+
+        throw syntaxError(end, "Unterminated string");
+    }
+
+    /**
+     * Parses a hexadecimal digit of a unicode escape
+     * @param offset Offset of the digit
+     * @return Returns the value of the digit
+     * @throws IOException Thrown when the character is not a hexadecimal digit
+     */
+    private int hex(int offset) throws IOException {
+        byte c = data[offset];
+        if (c >= '0' && c <= '9')
+            return c - '0';
+        if (c >= 'a' && c <= 'f')
+            return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F')
+            return c - 'A' + 10;
+        throw syntaxError(offset, "Invalid unicode escape");
+    }
+
+    /**
+     * Consumes a literal (true, false or null)
+     * @param literal Expected literal
+     * @throws IOException Thrown when the input does not continue with the literal
+     */
+    private void literal(String literal) throws IOException {
+        if (position + literal.length() > end)
+            throw syntaxError("Expected '" + literal + "'");
+
+        for (int i = 0; i < literal.length(); i++) {
+            if (data[position + i] != literal.charAt(i))
+                throw syntaxError("Expected '" + literal + "'");
+        }
+
+        position += literal.length();
+    }
+
+    /**
+     * Consumes the given character after optional whitespace
+     * @param c Expected character
+     * @throws IOException Thrown when the input does not continue with the character
+     */
+    private void expect(char c) throws IOException {
+        if (!skipWhitespace() || data[position] != c)
+            throw syntaxError("Expected '" + c + "'");
+        position++;
+    }
+
+    /**
+     * Skips whitespace
+     * @return Returns true if the input has more characters
+     */
+    private boolean skipWhitespace() {
+        while (position < end) {
+            byte c = data[position];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+                return true;
+            position++;
+        }
+
+        return false;
+    }
+
+    /**
+     * Creates a syntax error at the current position
+     * @param message Description of the error
+     * @return Returns the exception to throw
+     */
+    private IOException syntaxError(String message) {
+        return syntaxError(position, message);
+    }
+
+    /**
+     * Creates a syntax error
+     * @param offset Offset of the error
+     * @param message Description of the error
+     * @return Returns the exception to throw
+     */
+    private static IOException syntaxError(int offset, String message) {
+        return new IOException("Malformed JSON at offset " + offset + ": " + message + ".");
+    }
+}
@@ -0,0 +1,48 @@
+package ZeroKit.Utils;
+
+/**
+ * Kinds of the JSON values read by {@link JsonReader}
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public enum JsonToken {
+    /**
+     * Object, read by {@link JsonReader#beginObject()}
+     */
+    OBJECT,
+
+    /**
+     * Array, read by {@link JsonReader#beginArray()}
+     */
+    ARRAY,
+
+    /**
+     * String, read by {@link JsonReader#nextString()}
+     */
+    STRING,
+
+    /**
+     * Number, read by {@link JsonReader#nextLong()}
+     */
+    NUMBER,
+
+    /**
+     * true or false, read by {@link JsonReader#nextBoolean()}
+     */
+    BOOLEAN,
+
+    /**
+     * null, read by {@link JsonReader#nextNull()}
+     */
+    NULL,
+
+    /**
+     * End of an object or an array
+     */
+    END,
+
+    /**
+     * End of the input
+     */
+    END_DOCUMENT
+}
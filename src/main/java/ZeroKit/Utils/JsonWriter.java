@@ -0,0 +1,289 @@
+package ZeroKit.Utils;
+
+import java.util.Arrays;
+
+/**
+ * Minimal writer of UTF-8 encoded JSON
+ * Strings are encoded and escaped directly into a growable byte buffer, which can be sent without copying
+ * ({@link #getBuffer()} and {@link #size()}). The caller drives the structure, commas and colons are written
+ * automatically. The writer is not thread-safe.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public final class JsonWriter {
+    // Hexadecimal digits of the unicode escapes
+    private static final byte[] HexDigits = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+
+    // Literals
+    private static final byte[] True = { 't', 'r', 'u', 'e' };
+    private static final byte[] False = { 'f', 'a', 'l', 's', 'e' };
+    private static final byte[] Null = { 'n', 'u', 'l', 'l' };
+
+    // Output buffer
+    private byte[] buffer;
+
+    // Number of bytes written
+    private int size;
+
+    // Whether the next value is the first one of the current object or array
+    private boolean first;
+
+    // Whether a member name was written, and its value is expected next
+    private boolean afterName;
+
+    /**
+     * Initializes a new writer with a buffer for small documents
+     */
+    public JsonWriter() {
+        this(128);
+    }
+
+    /**
+     * Initializes a new writer
+     * @param capacity Initial capacity of the buffer in bytes
+     */
+    public JsonWriter(int capacity) {
+        this.buffer = new byte[Math.max(capacity, 16)];
+        this.first = true;
+    }
+
+    /**
+     * Writes the beginning of an object
+     * @return Returns the writer for chaining
+     */
+    public JsonWriter beginObject() {
+        separate();
+        write('{');
+        first = true;
+        return this;
+    }
+
+    /**
+     * Writes the end of the current object
+     * @return Returns the writer for chaining
+     */
+    public JsonWriter endObject() {
+        write('}');
+        first = false;
+        return this;
+    }
+
+    /**
+     * Writes the beginning of an array
+     * @return Returns the writer for chaining
+     */
+    public JsonWriter beginArray() {
+        separate();
+        write('[');
+        first = true;
+        return this;
+    }
+
+    /**
+     * Writes the end of the current array
+     * @return Returns the writer for chaining
+     */
+    public JsonWriter endArray() {
+        write(']');
+        first = false;
+        return this;
+    }
+
+    /**
+     * Writes the name of the next member of the current object
+     * @param name Name of the member
+     * @return Returns the writer for chaining
+     */
+    public JsonWriter name(String name) {
+        separate();
+        string(name);
+        write(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Writes a string value
+     * @param value Value to write, null is written as null
+     * @return Returns the writer for chaining
+     */
+    public JsonWriter value(String value) {
+        if (value == null)
+            return nullValue();
+
+        separate();
+        string(value);
+        return this;
+    }
+
+    /**
+     * Writes a boolean value
+     * @param value Value to write
+     * @return Returns the writer for chaining
+     */
+    public JsonWriter value(boolean value) {
+        separate();
+        write(value ? True : False);
+        return this;
+    }
+
+    /**
+     * Writes an integer value
+     * @param value Value to write
+     * @return Returns the writer for chaining
+     */
+    public JsonWriter value(long value) {
+        separate();
+        ascii(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes a null value
+     * @return Returns the writer for chaining
+     */
+    public JsonWriter nullValue() {
+        separate();
+        write(Null);
+        return this;
+    }
+
+    /**
+     * Gets the internal buffer of the writer, valid up to {@link #size()}
+     * The buffer is not copied, it must not be used after further writes.
+     * @return Returns the buffer
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Gets the number of bytes written
+     * @return Returns the size of the document
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets a copy of the written document
+     * @return Returns the UTF-8 encoded JSON
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Writes the comma before a value or a member name, unless it is the first one or it follows a name
+     */
+    private void separate() {
+        if (afterName)
+            afterName = false;
+        else if (!first)
+            write(',');
+        first = false;
+    }
+
+    /**
+     * Writes a quoted, escaped string
+     * @param value Value to write
+     */
+    private void string(String value) {
+        // Enough for ASCII, grown on demand for escapes and multi-byte characters (at most 6 bytes per UTF-16 unit)
+        ensureCapacity(value.length() + 2);
+
+        byte[] b = buffer;
+        int p = size;
+        b[p++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            if (p + 7 > b.length) {
+                size = p;
+                ensureCapacity(7 + (value.length() - i));
+                b = buffer;
+            }
+
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                b[p++] = (byte) c;
+            }
+            else if (c < 0x80) {
+                b[p++] = '\\';
+                switch (c) {
+                    case '"': b[p++] = '"'; break;
+                    case '\\': b[p++] = '\\'; break;
+                    case '\n': b[p++] = 'n'; break;
+                    case '\r': b[p++] = 'r'; break;
+                    case '\t': b[p++] = 't'; break;
+                    case '\b': b[p++] = 'b'; break;
+                    case '\f': b[p++] = 'f'; break;
+                    default:
+                        b[p++] = 'u';
+                        b[p++] = '0';
+                        b[p++] = '0';
+                        b[p++] = HexDigits[c >> 4];
+                        b[p++] = HexDigits[c & 0xf];
+                }
+            }
+            else if (c < 0x800) {
+                b[p++] = (byte) (0xc0 | c >> 6);
+                b[p++] = (byte) (0x80 | c & 0x3f);
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                b[p++] = (byte) (0xf0 | codePoint >> 18);
+                b[p++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                b[p++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                b[p++] = (byte) (0x80 | codePoint & 0x3f);
+            }
+            else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, replaced like by the UTF-8 encoder of the JDK
+                b[p++] = '?';
+            }
+            else {
+                b[p++] = (byte) (0xe0 | c >> 12);
+                b[p++] = (byte) (0x80 | c >> 6 & 0x3f);
+                b[p++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        b[p++] = '"';
+        size = p;
+    }
+
+    /**
+     * Writes ASCII text without escaping
+     * @param text Text to write
+     */
+    private void ascii(String text) {
+        ensureCapacity(text.length());
+        for (int i = 0; i < text.length(); i++)
+            buffer[size++] = (byte) text.charAt(i);
+    }
+
+    /**
+     * Writes raw bytes
+     * @param bytes Bytes to write
+     */
+    private void write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    /**
+     * Writes a single ASCII character
+     * @param c Character to write
+     */
+    private void write(char c) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) c;
+    }
+
+    /**
+     * Grows the buffer if it can not hold the given number of additional bytes
+     * @param additional Number of bytes to be written
+     */
+    private void ensureCapacity(int additional) {
+        if (size + additional > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+    }
+}
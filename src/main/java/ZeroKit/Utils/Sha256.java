@@ -1,5 +1,7 @@
 package ZeroKit.Utils;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.security.MessageDigest;
 
 /**
@@ -21,26 +23,65 @@ public final class Sha256 {
         }
     }
 
+    // Hex digits of the hash strings
+    private static final char[] HexDigits = "0123456789abcdef".toCharArray();
+
     /**
      * Computes the SHA256 signature of the given binary data
      * @param data Data to hash
      * @return Return the hash as a hex string
      */
     public static String hash(byte[] data) {
-        try{
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(data);
-            StringBuilder hexString = new StringBuilder();
+        return toHex(createDigest().digest(data));
+    }
 
-            for (int i = 0; i < hash.length; i++) {
-                String hex = Integer.toHexString(0xff & hash[i]);
-                if(hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
+    /**
+     * Computes the SHA256 signature of the given stream, reading it to the end
+     * The stream is hashed incrementally, it is never held in memory as a whole.
+     * @param input Stream to hash
+     * @return Return the hash as a hex string
+     * @throws IOException Thrown when reading the stream fails
+     */
+    public static String hash(InputStream input) throws IOException {
+        MessageDigest digest = createDigest();
+
+        int nRead;
+        byte[] data = BufferPool.acquire(16384);
+        try {
+            while ((nRead = input.read(data, 0, data.length)) != -1)
+                digest.update(data, 0, nRead);
+        }
+        finally {
+            BufferPool.release(data);
+        }
+
+        return toHex(digest.digest());
+    }
 
-            return hexString.toString();
+    /**
+     * Creates a new SHA256 digest for incremental hashing
+     * @return Returns the created digest
+     */
+    public static MessageDigest createDigest() {
+        try{
+            return MessageDigest.getInstance("SHA-256");
         } catch(Exception ex){
             throw new RuntimeException(ex);
         }
     }
+
+    /**
+     * Converts the given hash to a lower case hex string
+     * @param hash Hash to convert
+     * @return Return the hash as a hex string
+     */
+    public static String toHex(byte[] hash) {
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HexDigits[(hash[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HexDigits[hash[i] & 0xf];
+        }
+
+        return new String(hex);
+    }
 }
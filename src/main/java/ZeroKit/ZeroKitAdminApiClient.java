@@ -1,46 +1,82 @@
 package ZeroKit;
 
+import ZeroKit.Http.CallEvent;
+import ZeroKit.Http.CallEvents;
+import ZeroKit.Http.ClientRejectedException;
+import ZeroKit.Http.HttpCallListener;
 import ZeroKit.Http.HttpClient;
+import ZeroKit.Http.HttpContent;
+import ZeroKit.Http.HttpEndpoint;
+import ZeroKit.Http.HttpHeaders;
+import ZeroKit.Http.HttpMethod;
+import ZeroKit.Http.HttpMetrics;
+import ZeroKit.Http.HttpPhase;
 import ZeroKit.Http.HttpRequest;
 import ZeroKit.Http.HttpResponse;
-import ZeroKit.Utils.Sha256;
+import ZeroKit.Http.HttpTimings;
+import ZeroKit.Utils.JsonWriter;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * ZeroKit admin API client for JAVA 7+
+ * ZeroKit admin API client for JAVA 8+
+ * The client is thread-safe, a single instance can be shared by any number of request threads.
+ * Request objects are not thread-safe, every call should use its own request.
  * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
  * @copyright	Copyright © Tresorit AG. 2017
  */
 public class ZeroKitAdminApiClient extends HttpClient {
     // Regex patterns
-    private static Pattern ErrorCodeRegex = Pattern.compile("\\A\\s*\\{.*\"ErrorCode\"\\s*:\\s*\"(?<errorcode>[a-zA-Z0-9_]+)\".*}\\s*\\z", Pattern.DOTALL);
-    private static Pattern ErrorMessageRegex = Pattern.compile("\\A\\s*[^\"]*\"ErrorMessage\"\\s*:\\s*\"(?<errormessage>((?=\\\\)\\\\(\"|/|\\\\|b|f|n|r|t|u[0-9a-f]{4})|[^\\\\\"]*)*)\".*}\\s*\\z", Pattern.DOTALL);
-    private static Pattern HostedTenantUrlPattern = Pattern.compile("\\Ahttps?://[^/,^?,^#]*/tenant-(?<tenantid>[a-z][a-z0-9]{7,9})/?\\z");
-    private static Pattern ProductionTenantUrlPattern = Pattern.compile("\\Ahttps?://(?<tenantid>[a-z][a-z0-9]{7,9})\\.[^/,^?,^#]*/?\\z");
-    private static Pattern TenantIdRegex = Pattern.compile("\\A[a-z][a-z0-9]{7,9}\\z");
-    private static Pattern AdminKeyRegex = Pattern.compile("\\A[a-fA-F0-9]{64}\\z");
+    private static final Pattern HostedTenantUrlPattern = Pattern.compile("\\Ahttps?://[^/,^?,^#]*/tenant-(?<tenantid>[a-z][a-z0-9]{7,9})/?\\z");
+    private static final Pattern ProductionTenantUrlPattern = Pattern.compile("\\Ahttps?://(?<tenantid>[a-z][a-z0-9]{7,9})\\.[^/,^?,^#]*/?\\z");
+    private static final Pattern TenantIdRegex = Pattern.compile("\\A[a-z][a-z0-9]{7,9}\\z");
+    private static final Pattern AdminKeyRegex = Pattern.compile("\\A[a-fA-F0-9]{64}\\z");
 
-    // date format for HTTP api
-    private SimpleDateFormat apiDateFormat;
+    // Maximum length of a streamed error body which is buffered for translation
+    private static final int MaxErrorBodyLength = 65536;
+
+    // date provider for HTTP api
+    private final TresoritDateProvider dateProvider;
 
     // API signer
-    private ZeroKitAdminApiSigner signer;
+    private final ZeroKitAdminApiSigner signer;
 
     // Tenant ID
-    private String tenantId;
+    private final String tenantId;
 
     // Admin user ID
-    private String adminUserId;
+    private final String adminUserId;
 
     // Indicates whether to translate API error to ZeroKit APi exceptions automatically
-    private boolean translateExceptions;
+    private final boolean translateExceptions;
+
+    // Retry policy of the calls (null if failed calls are not retried)
+    private volatile RetryPolicy retryPolicy;
+
+    // Rate limiter of the calls (null if the calls are not limited)
+    private volatile RateLimiter rateLimiter;
+
+    // Hedging policy of the calls (null means calls are never hedged)
+    private volatile HedgingPolicy hedgingPolicy;
+
+    // Circuit breaker of the endpoints (null means calls are never rejected)
+    private volatile CircuitBreaker circuitBreaker;
+
+    // Endpoints of the typed methods
+    private final HttpEndpoint initUserRegistrationEndpoint;
+    private final HttpEndpoint validateUserRegistrationEndpoint;
+    private final HttpEndpoint setUserStateEndpoint;
+    private final HttpEndpoint uploadCustomContentEndpoint;
+
+    // Value of the HMACHeaders header of the last signed request, reused while the requests have the same header names
+    private String signedHeaderNames;
 
     /**
      * Initializes a new zeroKit admin API client with the given parameters
@@ -57,29 +93,34 @@ public class ZeroKitAdminApiClient extends HttpClient {
             throw new IllegalArgumentException("The given admin key is invalid.");
 
         this.signer = new ZeroKitAdminApiSigner(adminKey);
-        this.apiDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-        this.apiDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        this.dateProvider = TresoritDateProvider.getDefault();
         this.translateExceptions = true;
-        this.tenantId = tenantId;
 
         // Try match tenant ID
-        if (this.tenantId == null){
+        if (tenantId == null){
             Matcher matcher = ProductionTenantUrlPattern.matcher(baseUrl);
             if (matcher.matches()){
-                this.tenantId = matcher.group("tenantid");
+                tenantId = matcher.group("tenantid");
             }
             else{
                 matcher = HostedTenantUrlPattern.matcher(baseUrl);
                 if (matcher.matches()){
-                    this.tenantId = matcher.group("tenantid");
+                    tenantId = matcher.group("tenantid");
                 }
             }
         }
 
-        if (this.tenantId == null || !TenantIdRegex.matcher(this.tenantId).matches())
+        if (tenantId == null || !TenantIdRegex.matcher(tenantId).matches())
             throw new IllegalArgumentException("The given or parsed tenant ID is invalid.");
 
+        this.tenantId = tenantId;
+
         this.adminUserId = "admin@" + this.tenantId + ".tresorit.io";
+
+        this.initUserRegistrationEndpoint = createEndpoint(HttpMethod.POST, "/api/v4/admin/user/init-user-registration");
+        this.validateUserRegistrationEndpoint = createEndpoint(HttpMethod.POST, "/api/v4/admin/user/validate-user-registration");
+        this.setUserStateEndpoint = createEndpoint(HttpMethod.POST, "/api/v4/admin/user/set-user-state");
+        this.uploadCustomContentEndpoint = createEndpoint(HttpMethod.PUT, "/api/v4/admin/tenant/upload-custom-content?fileName=");
     }
 
     /**
@@ -93,77 +134,578 @@ public class ZeroKitAdminApiClient extends HttpClient {
         this(baseUrl, adminKey, null);
     }
 
+    /**
+     * Gets the tenant ID of the client
+     * @return Returns the tenant ID
+     */
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    /**
+     * Gets the retry policy of the calls
+     * @return Returns the retry policy, or null if failed calls are not retried
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Sets the retry policy of the calls
+     * Every attempt is re-signed with a fresh TresoritDate, the content hash is computed only once. Streamed request
+     * contents must be replayable ({@link HttpContent#ofSource}, files), arrays and buffered streams always are.
+     * A timeout or a dropped connection does not tell whether the service processed the request, so calls of
+     * non-idempotent endpoints (e.g. init-user-registration, upload-custom-content) are retried after an I/O error only
+     * if the connection could not be established, see {@link RetryPolicy#setRetryNonIdempotent(boolean)}.
+     * @param retryPolicy Retry policy to use, or null to disable retries
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Gets the rate limiter of the calls
+     * @return Returns the rate limiter, or null if the calls are not limited
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Sets the rate limiter of the calls
+     * Every attempt (including retries) takes a token before it is signed. Use {@link RateLimiter#forTenant} to share the
+     * limit between the clients of a tenant. Depending on the maximum wait of the limiter, calls over the limit wait for
+     * their turn or fail with a {@link RateLimitExceededException}.
+     * @param rateLimiter Rate limiter to use, or null to disable rate limiting
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Gets the hedging policy of the calls
+     * @return Returns the hedging policy, or null if calls are never hedged
+     */
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * Sets the hedging policy of the calls
+     * Slow calls to the allowlisted endpoints of the policy are sent again with an independently signed copy of the
+     * request, each attempt of a retried call is hedged on its own. Both requests run on the executor of the client.
+     * @param hedgingPolicy Hedging policy to use, or null to disable hedging
+     */
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    /**
+     * Gets the circuit breaker of the endpoints
+     * @return Returns the circuit breaker, or null if calls are never rejected
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Sets the circuit breaker of the endpoints
+     * Every attempt (including retries and hedged requests) passes the circuit of its endpoint before it takes a token from
+     * the rate limiter. Calls of an endpoint with an open circuit fail with a {@link CircuitOpenException}, which is not
+     * retried by default.
+     * @param circuitBreaker Circuit breaker to use, or null to disable it
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
     /**
      * Executes the given HTTP request and returns the result
-     * This method automatically signs or re-signs the given request for ZeroKit admin API
+     * This method automatically signs or re-signs the given request for ZeroKit admin API, and retries transient failures
+     * according to the retry policy of the client. If every attempt fails, the last failure is returned or thrown.
      * @param request ZeroKit.Http request object to execute. Will be modified (signed) by the client!
      * @return Returns the result of the HTTP call
      * @throws IOException Thrown when the call fails due to network / accessibility issues.
      */
     @Override
     public HttpResponse doHttpCall(HttpRequest request) throws IOException {
+        CallEvent event = CallEvents.beginAdminCall();
+        if (event == null)
+            return doRetriedHttpCall(request, null);
+
+        String errorCode = null;
+        Throwable failure = null;
+        try {
+            return doRetriedHttpCall(request, event);
+        }
+        catch (ZeroKitAdminApiException e) {
+            errorCode = e.getErrorCode();
+            failure = e;
+            throw e;
+        }
+        catch (ClientRejectedException e) {
+            errorCode = e.getErrorCode();
+            failure = e;
+            throw e;
+        }
+        catch (IOException | RuntimeException e) {
+            failure = e;
+            throw e;
+        }
+        finally {
+            event.commit(tenantId, request, errorCode, failure);
+        }
+    }
+
+    /**
+     * Starts the registration of a new user (init-user-registration)
+     * @return Returns the ID of the user and the registration session, which is needed to validate the registration
+     * @throws IOException Thrown when the call fails due to network / accessibility issues.
+     * @throws ZeroKitAdminApiException Thrown when the API returns an error
+     */
+    public UserRegistration initUserRegistration() throws IOException {
+        HttpResponse response = doJsonCall(initUserRegistrationEndpoint.createRequest());
+        return UserRegistration.parse(response.getContents());
+    }
+
+    /**
+     * Validates the registration of a user (validate-user-registration)
+     * @param registration Registration returned by {@link #initUserRegistration()}
+     * @param regValidationVerifier Validation verifier returned by the client SDK when the user registered
+     * @throws IOException Thrown when the call fails due to network / accessibility issues.
+     * @throws ZeroKitAdminApiException Thrown when the API returns an error
+     */
+    public void validateUserRegistration(UserRegistration registration, String regValidationVerifier) throws IOException {
+        JsonWriter json = new JsonWriter()
+                .beginObject()
+                .name("UserId").value(registration.getUserId())
+                .name("RegSessionId").value(registration.getRegSessionId())
+                .name("RegSessionVerifier").value(registration.getRegSessionVerifier())
+                .name("RegValidationVerifier").value(regValidationVerifier)
+                .endObject();
+
+        doJsonCall(validateUserRegistrationEndpoint.createRequest()
+                .setContent(HttpContent.ofBytes(json.getBuffer(), 0, json.size())));
+    }
+
+    /**
+     * Enables or disables a user (set-user-state)
+     * @param userId ID of the user
+     * @param enabled True to enable, false to disable the user
+     * @throws IOException Thrown when the call fails due to network / accessibility issues.
+     * @throws ZeroKitAdminApiException Thrown when the API returns an error (e.g. UserNotExists)
+     */
+    public void setUserState(String userId, boolean enabled) throws IOException {
+        JsonWriter json = new JsonWriter()
+                .beginObject()
+                .name("UserId").value(userId)
+                .name("Enabled").value(enabled)
+                .endObject();
+
+        doJsonCall(setUserStateEndpoint.createRequest()
+                .setContent(HttpContent.ofBytes(json.getBuffer(), 0, json.size())));
+    }
+
+    /**
+     * Uploads a custom content of the tenant, e.g. a stylesheet of the login page (upload-custom-content)
+     * @param fileName Path of the content (e.g. css/login.css)
+     * @param contentType MIME type of the content
+     * @param content Content to upload
+     * @return Returns the uploaded content
+     * @throws IOException Thrown when the call fails due to network / accessibility issues.
+     * @throws ZeroKitAdminApiException Thrown when the API returns an error
+     */
+    public CustomContent uploadCustomContent(String fileName, String contentType, HttpContent content) throws IOException {
+        HttpResponse response = doJsonCall(uploadCustomContentEndpoint.createRequest(fileName)
+                .setHeader("Content-Type", contentType)
+                .setContent(content));
+        return CustomContent.parse(response.getContents());
+    }
+
+    /**
+     * Uploads a custom content of the tenant, e.g. a stylesheet of the login page (upload-custom-content)
+     * @param fileName Path of the content (e.g. css/login.css)
+     * @param contentType MIME type of the content
+     * @param content Content to upload
+     * @return Returns the uploaded content
+     * @throws IOException Thrown when the call fails due to network / accessibility issues.
+     * @throws ZeroKitAdminApiException Thrown when the API returns an error
+     */
+    public CustomContent uploadCustomContent(String fileName, String contentType, byte[] content) throws IOException {
+        return uploadCustomContent(fileName, contentType, HttpContent.ofBytes(content));
+    }
+
+    /**
+     * Executes a call of a typed endpoint method
+     * @param request Request of the call
+     * @return Returns the successful response, with its contents buffered
+     * @throws IOException Thrown when the call fails, or it returns an error which is not an API error
+     */
+    private HttpResponse doJsonCall(HttpRequest request) throws IOException {
+        HttpResponse response = doHttpCall(request);
+        if (response.getStatusCode() < 200 || response.getStatusCode() >= 300)
+            throw new IOException("The call failed with HTTP status " + response.getStatusCode() + ".");
+        if (response.getContents() == null)
+            throw new IOException("The response has no body.");
+
+        return response;
+    }
+
+    /**
+     * Executes the attempts of the given request according to the retry policy of the client
+     * @param request Request to execute
+     * @param event JFR event of the call, or null if it is not recorded
+     * @return Returns the translated result of the last attempt
+     * @throws IOException Thrown when the call fails due to network / accessibility issues.
+     */
+    private HttpResponse doRetriedHttpCall(HttpRequest request, CallEvent event) throws IOException {
+        RetryPolicy policy = this.retryPolicy;
+        if (policy == null)
+            return translate(request, doAttempt(request), event);
+
+        policy.onCall();
+        long start = System.nanoTime();
+        String path = getApiPath(request);
+
+        for (int attempt = 1; ; attempt++) {
+            long delay;
+            try {
+                HttpResponse response = doAttempt(request);
+
+                delay = policy.isRetryable(response, path) ? getRetryDelay(policy, attempt, start, response) : -1;
+                if (delay < 0)
+                    return translate(request, response, event);
+
+                response.close();
+            }
+            catch (IOException | ZeroKitAdminApiException e) {
+                delay = policy.isRetryable(e, path) ? getRetryDelay(policy, attempt, start, null) : -1;
+                if (delay < 0)
+                    throw e;
+            }
+
+            sleep(delay);
+        }
+    }
+
+    /**
+     * Executes a single attempt of the given request, hedging it if the hedging policy allows
+     * @param request Request to execute
+     * @return Returns the result of the HTTP call
+     * @throws IOException Thrown when the call fails due to network / accessibility issues.
+     */
+    private HttpResponse doAttempt(final HttpRequest request) throws IOException {
+        final HedgingPolicy policy = this.hedgingPolicy;
+        final String endpoint = policy != null ? getEndpoint(request) : null;
+        if (endpoint == null || !policy.isHedged(endpoint))
+            return doGuardedHttpCall(request);
+
+        long delay = policy.getHedgeDelayNanos(endpoint);
+        if (delay < 0)
+            return doMeasuredHttpCall(policy, endpoint, request);
+
+        // Copied before the first request is signed on another thread
+        final HttpRequest hedge = request.copy();
+        final AtomicReference<HttpResponse> hedgeResponse = new AtomicReference<HttpResponse>();
+        final AtomicBoolean hedged = new AtomicBoolean();
+
+        HttpResponse response = doHedgedHttpCall(
+                () -> doMeasuredHttpCall(policy, endpoint, request),
+                () -> {
+                    hedged.set(true);
+                    HttpResponse result = doMeasuredHttpCall(policy, endpoint, hedge);
+                    hedgeResponse.set(result);
+                    return result;
+                },
+                delay, TimeUnit.NANOSECONDS);
+
+        if (hedged.get())
+            policy.onHedged(response == hedgeResponse.get());
+
+        return response;
+    }
+
+    /**
+     * Signs and executes a request, recording its latency in the hedging policy if it succeeds
+     * @param policy Hedging policy of the call
+     * @param endpoint Allowlisted endpoint of the request
+     * @param request Request to execute
+     * @return Returns the result of the HTTP call
+     * @throws IOException Thrown when the call fails due to network / accessibility issues.
+     */
+    private HttpResponse doMeasuredHttpCall(HedgingPolicy policy, String endpoint, HttpRequest request) throws IOException {
+        long start = System.nanoTime();
+        HttpResponse response = doGuardedHttpCall(request);
+
+        if (response.getStatusCode() < 500)
+            policy.recordLatency(endpoint, System.nanoTime() - start);
+
+        return response;
+    }
+
+    /**
+     * Executes a single request through the circuit of its endpoint
+     * @param request Request to execute
+     * @return Returns the result of the HTTP call
+     * @throws IOException Thrown when the call fails due to network / accessibility issues.
+     * @throws CircuitOpenException Thrown when the circuit of the endpoint is open
+     */
+    private HttpResponse doGuardedHttpCall(HttpRequest request) throws IOException {
+        CircuitBreaker breaker = this.circuitBreaker;
+        if (breaker == null)
+            return doSignedHttpCall(request);
+
+        String endpoint = getEndpoint(request);
+        long generation = breaker.acquire(endpoint);
+        long start = System.nanoTime();
+        try {
+            HttpResponse response = doSignedHttpCall(request);
+            int status = response.getStatusCode();
+            breaker.onResult(endpoint, generation, System.nanoTime() - start, status == 429 || status >= 500);
+            return response;
+        }
+        catch (ClientRejectedException e) {
+            // Rejected by the rate or concurrency limiter, the request was not sent
+            breaker.onCancelled(endpoint, generation);
+            throw e;
+        }
+        catch (IOException e) {
+            if (isCallAborted(e))
+                breaker.onCancelled(endpoint, generation);
+            else
+                breaker.onResult(endpoint, generation, System.nanoTime() - start, true);
+            throw e;
+        }
+        catch (RuntimeException e) {
+            breaker.onCancelled(endpoint, generation);
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the endpoint of a request, which identifies it in the circuit breaker and the hedging policy
+     * @param request Request of a call
+     * @return Returns the method and the API path of the request (e.g. "POST /api/v4/admin/user/set-user-state")
+     */
+    private String getEndpoint(HttpRequest request) {
+        HttpEndpoint route = request.getEndpoint();
+        if (route != null && route.getBaseUrl() == getBaseUrl())
+            return route.getName();
+
+        return CircuitBreaker.getEndpoint(request.getMethod(), getApiPath(request));
+    }
+
+    /**
+     * Gets the API path of a request, relative to the service URL of the tenant
+     * @param request Request of a call
+     * @return Returns the path of the request without the path of the service URL (e.g. "/api/v4/admin/user/set-user-state")
+     */
+    private String getApiPath(HttpRequest request) {
+        HttpEndpoint endpoint = request.getEndpoint();
+        if (endpoint != null && endpoint.getBaseUrl() == getBaseUrl())
+            return endpoint.getRelativePath();
+
+        String path = request.getUrl().getPath();
+        String basePath = getBaseUrl().getPath();
+        if (basePath.endsWith("/"))
+            basePath = basePath.substring(0, basePath.length() - 1);
+
+        return path.startsWith(basePath) ? path.substring(basePath.length()) : path;
+    }
+
+    /**
+     * Signs and executes a single attempt of the given request
+     * @param request Request to execute
+     * @return Returns the result of the HTTP call
+     * @throws IOException Thrown when the call fails due to network / accessibility issues.
+     */
+    private HttpResponse doSignedHttpCall(HttpRequest request) throws IOException {
+        RateLimiter limiter = this.rateLimiter;
+        if (limiter != null)
+            limiter.acquire();
+
+        HttpCallListener listener = getCallListener();
+        HttpTimings timings = listener != null || CallEvents.isRecording() ? new HttpTimings(request, listener) : null;
+        request.setTimings(timings);
+        long mark = HttpTimings.start(timings);
+
         String contentHash = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
-        int contentLength = 0;
-        if (request.getContents() != null){
-            contentHash = Sha256.hash(request.getContents());
-            contentLength = request.getContents().length;
+        long contentLength = 0;
+        HttpContent content = request.getContent();
+        if (content != null){
+            contentHash = content.getSha256();
+            contentLength = content.getLength();
         }
+        HttpTimings.mark(timings, HttpPhase.CONTENT_HASH, mark);
 
         request.setHeader("UserId", this.adminUserId);
-        request.setHeader("TresoritDate", this.apiDateFormat.format(new Date()));
+        request.setHeader("TresoritDate", this.dateProvider.now());
         request.setHeader("Content-SHA256", contentHash);
-        request.setHeader("Content-Length", contentLength);
+        request.setHeader("Content-Length", contentLength == 0 ? "0" : Long.toString(contentLength));
 
-        if (!request.getHeaders().containsKey("\"Content-Type\""))
+        HttpHeaders headers = request.getHttpHeaders();
+        if (!headers.contains("Content-Type"))
             request.setHeader("Content-Type", "application/json");
 
+        request.removeHeader("Authorization"); // Signature of a previous attempt
         request.setHeader("HMACHeaders", ""); // Pre-seed this header
 
-        String[] headerNames = request.getHeaders().keySet().toArray(new String[0]);
+        request.setHeader("HMACHeaders", getSignedHeaderNames(headers));
 
-        StringBuilder sb = new StringBuilder();
-        sb.append(headerNames[0]);
-        for(int i=1;i<headerNames.length;i++)
-            sb.append(',').append(headerNames[i]);
+        mark = HttpTimings.start(timings);
+        request.setHeader("Authorization", "AdminKey " + this.signer.signRequest(request));
+        HttpTimings.mark(timings, HttpPhase.SIGN, mark);
 
-        request.setHeader("HMACHeaders", sb.toString());
+        return super.doHttpCall(request);
+    }
 
-        request.setHeader("Authorization", "AdminKey " + this.signer.signRequest(request));
+    /**
+     * Gets the value of the HMACHeaders header of a request
+     * Requests of the client usually have the same headers, so the value of the previous request is reused if it lists
+     * the same names.
+     * @param headers Headers of the request
+     * @return Returns the comma separated names of the headers
+     */
+    private String getSignedHeaderNames(HttpHeaders headers) {
+        // Strings are immutable, so the cached value can be shared between threads without synchronization
+        String cached = this.signedHeaderNames;
+        if (cached != null && isSignedHeaderNames(cached, headers))
+            return cached;
+
+        // The values of a header are stored next to each other
+        StringBuilder sb = new StringBuilder(16 * headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            if (!headers.isFirstValue(i))
+                continue;
+            if (sb.length() > 0)
+                sb.append(',');
+            sb.append(headers.getName(i));
+        }
 
-        HttpResponse response = super.doHttpCall(request);
+        String names = sb.toString();
+        this.signedHeaderNames = names;
+        return names;
+    }
+
+    /**
+     * Checks whether a value of the HMACHeaders header lists the headers of a request
+     * @param names Comma separated header names
+     * @param headers Headers of the request
+     * @return Returns true if the value lists the names of the headers in their order and spelling
+     */
+    private static boolean isSignedHeaderNames(String names, HttpHeaders headers) {
+        int position = 0;
+        for (int i = 0; i < headers.size(); i++) {
+            if (!headers.isFirstValue(i))
+                continue;
+
+            String name = headers.getName(i);
+            if (position > 0) {
+                if (position >= names.length() || names.charAt(position) != ',')
+                    return false;
+                position++;
+            }
+            if (!names.regionMatches(position, name, 0, name.length()))
+                return false;
+            position += name.length();
+        }
+
+        return position == names.length();
+    }
+
+    /**
+     * Translates the API errors of the given response if the client is configured to do so
+     * Translated error codes are counted in the metrics of the client.
+     * @param request Request of the call
+     * @param response Response of the call
+     * @param event JFR event of the call, or null if it is not recorded
+     * @return Returns the given response
+     * @throws IOException Thrown when the error body of a streaming response can not be read
+     */
+    private HttpResponse translate(HttpRequest request, HttpResponse response, CallEvent event) throws IOException {
+        if (event != null)
+            event.setResponse(response);
 
-        if (translateExceptions)
-            translateException(response);
+        if (translateExceptions) {
+            HttpTimings timings = response.getTimings();
+            long start = HttpTimings.start(timings);
+            try {
+                translateException(response);
+            }
+            catch (ZeroKitAdminApiException e) {
+                HttpMetrics metrics = getMetrics();
+                if (metrics != null)
+                    metrics.getEndpoint(request).recordErrorCode(e.getErrorCode());
+                throw e;
+            }
+            finally {
+                HttpTimings.mark(timings, HttpPhase.TRANSLATE, start);
+            }
+        }
 
         return response;
     }
 
     /**
-     * Automatically detects and translates JSON API error to API exceptions
-     * @param response HTTP response to check for errors
+     * Gets the delay before retrying a failed attempt
+     * @param policy Retry policy of the call
+     * @param attempt Number of the failed attempt
+     * @param start Start of the call in nanoseconds
+     * @param response Failed response, or null if the attempt threw
+     * @return Returns the delay in milliseconds, or -1 if the call must not be retried
      */
-    private static void translateException(HttpResponse response) {
-        try {
-            if ((response.getStatusCode() < 200 || response.getStatusCode() >= 300) && response.getContents() != null) {
-                String responseText = response.getStringContents();
+    private static long getRetryDelay(RetryPolicy policy, int attempt, long start, HttpResponse response) {
+        if (attempt >= policy.getMaxAttempts())
+            return -1;
 
-                Matcher errorCodeMatcher = ErrorCodeRegex.matcher(responseText);
-                Matcher errorMessageMatcher = ErrorMessageRegex.matcher(responseText);
+        long delay = policy.computeDelayMillis(attempt, response);
+        long maxDuration = policy.getMaxDurationMillis();
+        if (maxDuration > 0 && TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + delay >= maxDuration)
+            return -1;
 
-                if (errorCodeMatcher.matches() && errorMessageMatcher.matches()){
-                    String errorCode = errorCodeMatcher.group("errorcode");
-                    String errorMessage = errorMessageMatcher.group("errormessage");
+        return policy.tryAcquireRetry() ? delay : -1;
+    }
 
-                    throw new ZeroKitAdminApiException(errorCode, errorMessage);
-                }
-            }
+    /**
+     * Waits before the next attempt
+     * @param millis Delay in milliseconds
+     * @throws InterruptedIOException Thrown when the thread is interrupted while waiting
+     */
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0)
+            return;
+
+        try {
+            Thread.sleep(millis);
         }
-        catch (ZeroKitAdminApiException e){
-            throw e;
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The retry of the HTTP call was interrupted.");
+        }
+    }
+
+    /**
+     * Automatically detects and translates JSON API error to API exceptions
+     * Error bodies of streaming responses are buffered only if they are small, larger ones are left to the caller.
+     * @param response HTTP response to check for errors
+     * @throws IOException Thrown when the error body of a streaming response can not be read
+     */
+    private static void translateException(HttpResponse response) throws IOException {
+        if (response.isStreaming() && (response.getStatusCode() < 200 || response.getStatusCode() >= 300)) {
+            try {
+                if (!response.bufferContents(MaxErrorBodyLength))
+                    return;
+            }
+            catch (IOException e) {
+                response.close();
+                throw e;
+            }
         }
-        catch (Exception e)
-        {
-            // Suppress
+
+        if (response.getStatusCode() < 200 || response.getStatusCode() >= 300) {
+            ZeroKitAdminApiException error = ZeroKitAdminApiException.parse(response.getContents());
+            if (error != null)
+                throw error;
         }
     }
 }
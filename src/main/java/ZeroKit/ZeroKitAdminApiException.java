@@ -1,5 +1,10 @@
 package ZeroKit;
 
+import ZeroKit.Utils.JsonReader;
+import ZeroKit.Utils.JsonToken;
+
+import java.io.IOException;
+
 /**
  * Exception thrown when a ZeroKit API error occurs
  * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
@@ -26,4 +31,42 @@ public class ZeroKitAdminApiException extends RuntimeException {
     public String getErrorCode() {
         return errorCode;
     }
+
+    /**
+     * Reads an API error from a JSON error body
+     * The body is scanned once as UTF-8, members other than ErrorCode and ErrorMessage are skipped without decoding.
+     * @param contents Error body of a response
+     * @return Returns the API exception, or null if the body is not a JSON API error
+     */
+    public static ZeroKitAdminApiException parse(byte[] contents) {
+        if (contents == null)
+            return null;
+
+        try {
+            JsonReader reader = new JsonReader(contents);
+            if (reader.peek() != JsonToken.OBJECT)
+                return null;
+
+            String errorCode = null;
+            String errorMessage = null;
+            reader.beginObject();
+            while ((errorCode == null || errorMessage == null) && reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("ErrorCode") && reader.peek() == JsonToken.STRING)
+                    errorCode = reader.nextString();
+                else if (name.equals("ErrorMessage") && reader.peek() == JsonToken.STRING)
+                    errorMessage = reader.nextString();
+                else
+                    reader.skipValue();
+            }
+
+            if (errorCode == null || errorCode.isEmpty() || errorMessage == null)
+                return null;
+
+            return new ZeroKitAdminApiException(errorCode, errorMessage);
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
 }
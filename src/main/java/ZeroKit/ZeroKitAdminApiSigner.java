@@ -1,19 +1,48 @@
 package ZeroKit;
 
+import ZeroKit.Http.HttpEndpoint;
+import ZeroKit.Http.HttpHeaders;
 import ZeroKit.Http.HttpRequest;
 import ZeroKit.Utils.Base64;
 
 import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.SecretKeySpec;
+import java.net.URL;
+import java.nio.charset.Charset;
 
 /**
  * ZeroKit admin API signer for creating signed HTTP requests
+ * The signer is thread-safe: the key is decoded once, and every thread signs with its own initialized HMAC instance.
+ * Requests are signed without building their canonical string: the canonical form is encoded straight into a
+ * per-thread buffer which is fed to the HMAC instance, so signing allocates only the resulting signature.
  * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
  * @copyright	Copyright © Tresorit AG. 2017
  */
 public final class ZeroKitAdminApiSigner {
+    // Name of the signature algorithm
+    private static final String Algorithm = "HmacSHA256";
+
+    // Charset of the signed data
+    private static final Charset Utf8 = Charset.forName("UTF-8");
+
+    // Charset of the encoded signatures
+    private static final Charset Ascii = Charset.forName("US-ASCII");
+
+    // Size of the per-thread buffers feeding the HMAC instances
+    private static final int BufferSize = 1024;
+
     // Admin key in hexadecimal string format (64 char / 32 bytes long)
-    public String key;
+    public final String key;
+
+    // Initialized HMAC instance, cloned for every signing thread
+    private final Mac prototype;
+
+    // Decoded admin key
+    private final SecretKeySpec secretKey;
+
+    // Signing buffers (with initialized HMAC instances) of the signing threads
+    private final ThreadLocal<SigningBuffer> buffers;
 
     /**
      * Initializes a new zeroKit admin API signer with the given API key
@@ -21,6 +50,14 @@ public final class ZeroKitAdminApiSigner {
      */
     public ZeroKitAdminApiSigner(String key) {
         this.key = key;
+        this.secretKey = new SecretKeySpec(hex2Bin(key), Algorithm);
+        this.prototype = createMac(this.secretKey);
+        this.buffers = new ThreadLocal<SigningBuffer>() {
+            @Override
+            protected SigningBuffer initialValue() {
+                return new SigningBuffer(copyPrototype());
+            }
+        };
     }
 
     /**
@@ -29,7 +66,10 @@ public final class ZeroKitAdminApiSigner {
      * @return Returns the signature in ZeroKit.Utilsit.Base64 encoded format
      */
     public String hmacSha256(String data) {
-        return hmacSha256(this.key, data);
+        // doFinal() resets the instance, so it is ready for the next signature of this thread
+        byte[] encoded = buffers.get().mac.doFinal(data.getBytes(Utf8));
+
+        return Base64.encodeToString(encoded, Base64.NO_WRAP);
     }
 
     /**
@@ -43,19 +83,18 @@ public final class ZeroKitAdminApiSigner {
         // Add method
         sb.append(request.getMethod().name()).append('\n');
 
-        // Add path
-        sb.append(request.getUrl().getPath().replaceAll("^\\/", ""));
+        // Add path (without its leading slash)
+        String path = request.getUrl().getPath();
+        sb.append(path, path.startsWith("/") ? 1 : 0, path.length());
 
         // Add query
         if (request.getUrl().getQuery()!=null)
             sb.append('?').append(request.getUrl().getQuery());
 
         // Add headers
-        for (String key: request.getHeaders().keySet()){
-            for (String value: request.getHeaders().get(key)){
-                sb.append('\n').append(key).append(':').append(value);
-            }
-        }
+        HttpHeaders headers = request.getHttpHeaders();
+        for (int i = 0; i < headers.size(); i++)
+            sb.append('\n').append(headers.getName(i)).append(':').append(headers.getValue(i));
 
         return sb.toString();
     }
@@ -66,34 +105,65 @@ public final class ZeroKitAdminApiSigner {
      * @return Returns the signature in ZeroKit.Base64s.Base64 format
      */
     public String signRequest(HttpRequest request) {
-        String canonicalRequest = canonicalizeRequest(request);
+        SigningBuffer buffer = buffers.get().reset();
+        URL url = request.getUrl();
+
+        // Same canonical form as canonicalizeRequest(), written directly into the HMAC
+        HttpEndpoint endpoint = request.getEndpoint();
+        if (endpoint != null) {
+            buffer.append(endpoint.getCanonicalPrefix());
+        }
+        else {
+            buffer.append(request.getMethod().name()).append('\n');
+
+            String path = url.getPath();
+            buffer.append(path, path.startsWith("/") ? 1 : 0);
+        }
+
+        String query = url.getQuery();
+        if (query != null)
+            buffer.append('?').append(query, 0);
 
-        String signature = hmacSha256(canonicalRequest);
+        HttpHeaders headers = request.getHttpHeaders();
+        for (int i = 0; i < headers.size(); i++)
+            buffer.append('\n').append(headers.getName(i)).append(':').append(headers.getValue(i));
 
-        return signature;
+        return buffer.sign();
     }
 
     /**
-     * Computes the HMAC-SHA256 signature of the given string data signed by the admin key of the instance
-     * @param key Key to use for singing in hexadecimal string format (64 chars / 32 bytes long)
-     * @param data String data to sign
-     * @return Returns the signature in ZeroKit.Base64s.Base64 encoded format
+     * Creates an HMAC-SHA256 instance initialized with the given key
+     * @param secretKey Key to use for singing
+     * @return Returns the initialized HMAC instance
      */
-    private static String hmacSha256(String key, String data) {
+    private static Mac createMac(SecretKeySpec secretKey) {
         try {
-            Mac sha256_HMAC = Mac.getInstance("HmacSHA256");
-            SecretKeySpec secret_key = new SecretKeySpec(hex2Bin(key), "HmacSHA256");
-            sha256_HMAC.init(secret_key);
+            Mac mac = Mac.getInstance(Algorithm);
+            mac.init(secretKey);
 
-            byte[] encoded = sha256_HMAC.doFinal(data.getBytes("UTF-8"));
-
-            return Base64.encodeToString(encoded, Base64.NO_WRAP);
+            return mac;
         }
         catch (Exception e){
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Creates a new initialized HMAC instance for a signing thread
+     * Cloning skips the provider lookup and the key setup, but not every provider supports it.
+     * @return Returns the initialized HMAC instance
+     */
+    private Mac copyPrototype() {
+        try {
+            synchronized (prototype) {
+                return (Mac) prototype.clone();
+            }
+        }
+        catch (CloneNotSupportedException e) {
+            return createMac(secretKey);
+        }
+    }
+
     /**
      * Converts the given hex string to binary data
      * @param hex Hex string to convert
@@ -108,4 +178,154 @@ public final class ZeroKitAdminApiSigner {
         }
         return data;
     }
+
+    /**
+     * Per-thread buffer encoding the canonical request form as UTF-8 directly into an HMAC instance
+     */
+    private static final class SigningBuffer {
+        // Characters of the standard Base64 alphabet
+        private static final byte[] Base64Alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(Ascii);
+
+        // HMAC instance of the thread
+        private final Mac mac;
+
+        // Buffer of the encoded data not yet fed to the HMAC
+        private final byte[] buffer;
+
+        // Raw signature
+        private final byte[] signature;
+
+        // Base64 encoded signature
+        private final byte[] encoded;
+
+        // Number of bytes in the buffer
+        private int length;
+
+        SigningBuffer(Mac mac) {
+            this.mac = mac;
+            this.buffer = new byte[BufferSize];
+            this.signature = new byte[mac.getMacLength()];
+            this.encoded = new byte[(signature.length + 2) / 3 * 4];
+            this.length = 0;
+        }
+
+        /**
+         * Drops any data left over by a failed signing
+         * @return Returns this buffer
+         */
+        SigningBuffer reset() {
+            mac.reset();
+            length = 0;
+            return this;
+        }
+
+        /**
+         * Appends a single (non-surrogate) character
+         * @param c Character to append
+         * @return Returns this buffer
+         */
+        SigningBuffer append(char c) {
+            if (length + 3 > buffer.length)
+                flush();
+
+            if (c < 0x80) {
+                buffer[length++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                buffer[length++] = (byte) (0xc0 | (c >> 6));
+                buffer[length++] = (byte) (0x80 | (c & 0x3f));
+            }
+            else {
+                buffer[length++] = (byte) (0xe0 | (c >> 12));
+                buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[length++] = (byte) (0x80 | (c & 0x3f));
+            }
+
+            return this;
+        }
+
+        /**
+         * Appends the given string
+         * @param s String to append
+         * @return Returns this buffer
+         */
+        SigningBuffer append(String s) {
+            return append(s, 0);
+        }
+
+        /**
+         * Appends the given string from the given index, encoded exactly like String.getBytes(UTF-8)
+         * @param s String to append
+         * @param start Index of the first character to append
+         * @return Returns this buffer
+         */
+        SigningBuffer append(String s, int start) {
+            int end = s.length();
+            for (int i = start; i < end; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    if (length == buffer.length)
+                        flush();
+                    buffer[length++] = (byte) c;
+                }
+                else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                    if (length + 4 > buffer.length)
+                        flush();
+                    buffer[length++] = (byte) (0xf0 | (codePoint >> 18));
+                    buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    buffer[length++] = (byte) (0x80 | (codePoint & 0x3f));
+                }
+                else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogates are replaced like the JDK encoder does
+                    append('?');
+                }
+                else {
+                    append(c);
+                }
+            }
+
+            return this;
+        }
+
+        /**
+         * Finishes the signature of the appended data and resets the buffer
+         * @return Returns the Base64 encoded signature
+         */
+        String sign() {
+            flush();
+
+            try {
+                // doFinal() resets the instance, so it is ready for the next signature of this thread
+                mac.doFinal(signature, 0);
+            }
+            catch (ShortBufferException e) {
+                throw new RuntimeException(e);
+            }
+
+            int o = 0;
+            for (int i = 0; i < signature.length; i += 3) {
+                int remaining = signature.length - i;
+                int bits = (signature[i] & 0xff) << 16
+                        | (remaining > 1 ? (signature[i + 1] & 0xff) << 8 : 0)
+                        | (remaining > 2 ? signature[i + 2] & 0xff : 0);
+
+                encoded[o++] = Base64Alphabet[(bits >> 18) & 0x3f];
+                encoded[o++] = Base64Alphabet[(bits >> 12) & 0x3f];
+                encoded[o++] = remaining > 1 ? Base64Alphabet[(bits >> 6) & 0x3f] : (byte) '=';
+                encoded[o++] = remaining > 2 ? Base64Alphabet[bits & 0x3f] : (byte) '=';
+            }
+
+            return new String(encoded, 0, o, Ascii);
+        }
+
+        /**
+         * Feeds the buffered bytes to the HMAC instance
+         */
+        private void flush() {
+            mac.update(buffer, 0, length);
+            length = 0;
+        }
+    }
 }
@@ -0,0 +1,241 @@
+package ZeroKit.Http;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Transport executing the requests over the java.net.http client of JAVA 11+
+ * The transport prefers HTTP/2, so concurrent calls to the same host are multiplexed over a single
+ * connection instead of blocking one connection each. Plain HTTP hosts and servers without HTTP/2
+ * support are served over HTTP/1.1 keep-alive connections. Use {@link HttpTransports#javaNetHttp()}
+ * to create it without a compile time dependency on JAVA 11.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class JavaNetHttpTransport implements HttpTransport {
+    // Headers set by the java.net.http client itself (it refuses to take them from the caller)
+    private static final Set<String> RestrictedHeaders = createRestrictedHeaders();
+
+    // Underlying java.net.http client
+    private final java.net.http.HttpClient client;
+
+    // Indicates whether the underlying client was created (and so must be closed) by this transport
+    private final boolean ownsClient;
+
+    /**
+     * Initializes a new transport with an HTTP/2 client which never follows redirects
+     */
+    public JavaNetHttpTransport() {
+        this(java.net.http.HttpClient.newBuilder()
+                .version(java.net.http.HttpClient.Version.HTTP_2)
+                .followRedirects(java.net.http.HttpClient.Redirect.NEVER)
+                .build(), true);
+    }
+
+    /**
+     * Initializes a new transport over the given java.net.http client
+     * The client is not closed by the transport, it can be shared with other components.
+     * @param client Client to use for the calls
+     */
+    public JavaNetHttpTransport(java.net.http.HttpClient client) {
+        this(client, false);
+    }
+
+    /**
+     * Initializes a new transport over the given java.net.http client
+     * @param client Client to use for the calls
+     * @param ownsClient Indicates whether the client must be closed with the transport
+     */
+    private JavaNetHttpTransport(java.net.http.HttpClient client, boolean ownsClient) {
+        if (client == null)
+            throw new IllegalArgumentException("The client can not be null.");
+
+        this.client = client;
+        this.ownsClient = ownsClient;
+    }
+
+    /**
+     * Gets the underlying java.net.http client
+     * @return Returns the client used for the calls
+     */
+    public java.net.http.HttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Executes the given HTTP request and returns the result
+     * Content-Length and Host are always generated by java.net.http from the body and the URL, so the
+     * values set on the request must match them (as the signed values of the admin API client do).
+     * @param request Request to execute
+     * @return Returns the result of the HTTP call
+     * @throws IOException Thrown when the call fails due to network / accessibility issues.
+     */
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        java.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest.newBuilder(toUri(request))
+                .method(request.getMethod().name(), createPublisher(request.getContent()));
+
+        HttpHeaders headers = request.getHttpHeaders();
+        for (int i = 0; i < headers.size(); i++) {
+            if (!RestrictedHeaders.contains(headers.getName(i)))
+                builder.header(headers.getName(i), headers.getValue(i));
+        }
+
+        // The JDK client does not expose its phases, the whole exchange is reported as the wait for the response
+        HttpTimings timings = request.getTimings();
+        long mark = HttpTimings.start(timings);
+
+        if (request.isStreamingResponse()) {
+            java.net.http.HttpResponse<InputStream> response =
+                    send(builder.build(), java.net.http.HttpResponse.BodyHandlers.ofInputStream());
+            HttpTimings.mark(timings, HttpPhase.FIRST_BYTE, mark);
+            return new HttpResponse(response.statusCode(), HttpResponse.normalizeHeaders(response.headers().map()), response.body());
+        }
+
+        java.net.http.HttpResponse<byte[]> response = send(builder.build(), java.net.http.HttpResponse.BodyHandlers.ofByteArray());
+        HttpTimings.mark(timings, HttpPhase.FIRST_BYTE, mark);
+
+        byte[] body = response.body();
+        return new HttpResponse(response.statusCode(), HttpResponse.normalizeHeaders(response.headers().map()),
+                body != null ? body : new byte[0]);
+    }
+
+    /**
+     * Sends the given request and waits for its response, the wait can be aborted through the current call
+     * @param request Request to send
+     * @param handler Handler of the response body
+     * @param <T> Type of the response body
+     * @return Returns the response
+     * @throws IOException Thrown when the call fails, is interrupted or cancelled
+     */
+    private <T> java.net.http.HttpResponse<T> send(java.net.http.HttpRequest request,
+                                                    java.net.http.HttpResponse.BodyHandler<T> handler) throws IOException {
+        final CompletableFuture<java.net.http.HttpResponse<T>> future = client.sendAsync(request, handler);
+
+        Closeable abortHandle = new Closeable() {
+            @Override
+            public void close() {
+                future.cancel(true);
+            }
+        };
+        HttpCall.attach(abortHandle);
+
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The HTTP call was interrupted.");
+        }
+        catch (CancellationException e) {
+            throw new InterruptedIOException("The HTTP call was cancelled.");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+
+            throw new IOException(cause);
+        }
+        finally {
+            HttpCall.detach(abortHandle);
+        }
+    }
+
+    /**
+     * Closes the underlying client if it was created by this transport (JAVA 21+)
+     * Older clients have no close method, their connections are released when the client is collected.
+     * @throws IOException Thrown when the client can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        Object client = this.client;
+        if (!ownsClient || !(client instanceof AutoCloseable))
+            return;
+
+        try {
+            ((AutoCloseable) client).close();
+        }
+        catch (IOException | RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Creates the body publisher of the given request contents
+     * Empty bodies are published as an empty array, so the (signed) zero Content-Length is still sent.
+     * @param content Contents to publish (can be null)
+     * @return Returns the body publisher streaming the contents
+     */
+    private static java.net.http.HttpRequest.BodyPublisher createPublisher(final HttpContent content) {
+        if (content == null || content.getLength() == 0)
+            return java.net.http.HttpRequest.BodyPublishers.ofByteArray(new byte[0]);
+
+        if (content.getPath() != null) {
+            try {
+                return java.net.http.HttpRequest.BodyPublishers.ofFile(content.getPath());
+            }
+            catch (FileNotFoundException e) {
+                // Streamed below, opening the stream reports the error
+            }
+        }
+
+        java.net.http.HttpRequest.BodyPublisher stream = java.net.http.HttpRequest.BodyPublishers.ofInputStream(() -> {
+            try {
+                return content.openStream();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        return java.net.http.HttpRequest.BodyPublishers.fromPublisher(stream, content.getLength());
+    }
+
+    /**
+     * Converts the URL of the given request to an URI
+     * @param request Request to convert the URL of
+     * @return Returns the URI of the request
+     * @throws MalformedURLException Thrown when the URL is not a valid URI
+     */
+    private static URI toUri(HttpRequest request) throws MalformedURLException {
+        try {
+            return request.getUrl().toURI();
+        }
+        catch (URISyntaxException e) {
+            throw new MalformedURLException(e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the case-insensitive set of the restricted header names
+     * @return Returns the set of the restricted headers
+     */
+    private static Set<String> createRestrictedHeaders() {
+        Set<String> result = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+        result.add("Connection");
+        result.add("Content-Length");
+        result.add("Expect");
+        result.add("Host");
+        result.add("Upgrade");
+        return result;
+    }
+}
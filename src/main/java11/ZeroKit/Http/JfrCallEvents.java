@@ -0,0 +1,181 @@
+package ZeroKit.Http;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder implementation of the call events (JAVA 11+)
+ * Use {@link CallEvents} to record them without a compile time dependency on JAVA 11.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class JfrCallEvents extends CallEvents {
+    // Type of the HTTP request events
+    private final EventType httpRequestType;
+
+    // Type of the admin API call events
+    private final EventType adminCallType;
+
+    /**
+     * Initializes the events, registering their types
+     */
+    public JfrCallEvents() {
+        this.httpRequestType = EventType.getEventType(HttpRequestEvent.class);
+        this.adminCallType = EventType.getEventType(AdminCallEvent.class);
+    }
+
+    @Override
+    protected boolean isEnabled() {
+        return httpRequestType.isEnabled() || adminCallType.isEnabled();
+    }
+
+    @Override
+    protected CallEvent newHttpRequest() {
+        if (!httpRequestType.isEnabled())
+            return null;
+
+        HttpRequestEvent event = new HttpRequestEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    protected CallEvent newAdminCall() {
+        if (!adminCallType.isEnabled())
+            return null;
+
+        AdminCallEvent event = new AdminCallEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Fields shared by the call events
+     */
+    @Category({ "ZeroKit", "HTTP" })
+    @StackTrace(false)
+    abstract static class CallEventBase extends Event implements CallEvent {
+        @Label("Tenant ID")
+        String tenantId;
+
+        @Label("Method")
+        String method;
+
+        @Label("Path")
+        String path;
+
+        @Label("Request Body Size")
+        @DataAmount
+        long bodySize;
+
+        @Label("Status Code")
+        @Description("HTTP status code of the response, 0 if the call failed without a response")
+        int statusCode;
+
+        @Label("Error Code")
+        @Description("ZeroKit error code of the translated API error")
+        String errorCode;
+
+        @Label("Failure")
+        @Description("Class of the exception the call threw")
+        String failure;
+
+        @Label("Content Hash")
+        @Timespan(Timespan.NANOSECONDS)
+        long contentHash;
+
+        @Label("Sign")
+        @Timespan(Timespan.NANOSECONDS)
+        long sign;
+
+        @Label("Connect")
+        @Timespan(Timespan.NANOSECONDS)
+        long connect;
+
+        @Label("TLS Handshake")
+        @Timespan(Timespan.NANOSECONDS)
+        long tlsHandshake;
+
+        @Label("Write")
+        @Timespan(Timespan.NANOSECONDS)
+        long write;
+
+        @Label("Time To First Byte")
+        @Timespan(Timespan.NANOSECONDS)
+        long firstByte;
+
+        @Label("Read")
+        @Timespan(Timespan.NANOSECONDS)
+        long read;
+
+        @Label("Translate")
+        @Timespan(Timespan.NANOSECONDS)
+        long translate;
+
+        // Response of the call (not recorded)
+        private transient HttpResponse response;
+
+        @Override
+        public void setResponse(HttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void commit(String tenantId, HttpRequest request, String errorCode, Throwable failure) {
+            end();
+            if (!shouldCommit())
+                return;
+
+            this.tenantId = tenantId;
+            this.method = request.getMethod().name();
+            this.path = request.getUrl().getPath();
+            HttpContent content = request.getContent();
+            this.bodySize = content != null ? content.getLength() : 0;
+            this.errorCode = errorCode;
+            this.failure = failure != null ? failure.getClass().getName() : null;
+
+            if (response != null) {
+                this.statusCode = response.getStatusCode();
+
+                HttpTimings timings = response.getTimings();
+                if (timings != null) {
+                    this.contentHash = timings.getNanos(HttpPhase.CONTENT_HASH);
+                    this.sign = timings.getNanos(HttpPhase.SIGN);
+                    this.connect = timings.getNanos(HttpPhase.CONNECT);
+                    this.tlsHandshake = timings.getNanos(HttpPhase.TLS_HANDSHAKE);
+                    this.write = timings.getNanos(HttpPhase.WRITE);
+                    this.firstByte = timings.getNanos(HttpPhase.FIRST_BYTE);
+                    this.read = timings.getNanos(HttpPhase.READ);
+                    this.translate = timings.getNanos(HttpPhase.TRANSLATE);
+                }
+            }
+
+            commit();
+        }
+    }
+
+    /**
+     * Event of a single HTTP request sent by a client
+     */
+    @Name("ZeroKit.HttpRequest")
+    @Label("ZeroKit HTTP Request")
+    @Description("HTTP request sent by a ZeroKit client, phases of the request")
+    static class HttpRequestEvent extends CallEventBase {
+    }
+
+    /**
+     * Event of an admin API call, including its retries
+     */
+    @Name("ZeroKit.AdminCall")
+    @Label("ZeroKit Admin API Call")
+    @Description("Signed admin API call, the phases are those of its last attempt")
+    static class AdminCallEvent extends CallEventBase {
+    }
+}
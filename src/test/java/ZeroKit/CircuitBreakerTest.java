@@ -0,0 +1,131 @@
+package ZeroKit;
+
+import ZeroKit.Http.HttpMethod;
+import ZeroKit.Testing.ZeroKitAdminApiStubServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+
+import java.io.IOException;
+
+/**
+ * Tests of the circuit breakers of the admin API client
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class CircuitBreakerTest {
+    // Admin key of the stub tenant
+    private static final String AdminKey = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+    // Endpoint of the calls
+    private static final String InitUserRegistration = "/api/v4/admin/user/init-user-registration";
+
+    // Stub server
+    private ZeroKitAdminApiStubServer server;
+
+    // Client of the stub tenant
+    private ZeroKitAdminApiClient client;
+
+    // Circuit breaker of the client
+    private CircuitBreaker breaker;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new ZeroKitAdminApiStubServer(AdminKey, "abcdefgh").start();
+        client = new ZeroKitAdminApiClient(server.getServiceUrl(), AdminKey);
+        breaker = new CircuitBreaker().setWindow(4, 4).setRecovery(60000, 2);
+        client.setCircuitBreaker(breaker);
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    @org.junit.Test
+    public void failuresOpenTheCircuit() throws IOException {
+        server.injectFailures(2, 503, null);
+        server.injectFailures(1, 0, null);
+        callAndIgnoreFailure();
+        callAndIgnoreFailure();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(HttpMethod.POST, InitUserRegistration));
+        callAndIgnoreFailure();
+        Assert.assertEquals(200, client.doHttpCall(client.createPostRequest(InitUserRegistration)).getStatusCode());
+
+        // Three failures out of four calls
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState(HttpMethod.POST, InitUserRegistration));
+        Assert.assertEquals(1, breaker.getOpenedCount());
+        Assert.assertTrue(breaker.isDegraded());
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getStates().get("POST " + InitUserRegistration));
+
+        try {
+            client.doHttpCall(client.createPostRequest(InitUserRegistration));
+            Assert.fail();
+        }
+        catch (CircuitOpenException e) {
+            Assert.assertEquals(CircuitOpenException.ErrorCode, e.getErrorCode());
+            Assert.assertEquals("POST " + InitUserRegistration, e.getEndpoint());
+        }
+
+        Assert.assertEquals(4, server.getRequestCount());
+        Assert.assertEquals(1, breaker.getRejectedCount());
+
+        // Other endpoints have their own circuits
+        server.addUser("user1");
+        Assert.assertEquals(200, client.doHttpCall(client.createPostRequest("/api/v4/admin/user/set-user-state")
+                .setContents("{\"UserId\":\"user1\",\"Enabled\":true}")).getStatusCode());
+    }
+
+    @org.junit.Test
+    public void slowCallsOpenTheCircuit() throws IOException {
+        breaker.setSlowCalls(20, 0.5);
+        server.injectLatency(2, 50);
+
+        for (int i = 0; i < 4; i++)
+            client.doHttpCall(client.createPostRequest(InitUserRegistration));
+
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState(HttpMethod.POST, InitUserRegistration));
+    }
+
+    @org.junit.Test
+    public void successfulTrialCallsCloseTheCircuit() throws Exception {
+        breaker.setRecovery(50, 2);
+        openCircuit();
+
+        Thread.sleep(60);
+        Assert.assertEquals(200, client.doHttpCall(client.createPostRequest(InitUserRegistration)).getStatusCode());
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState(HttpMethod.POST, InitUserRegistration));
+        Assert.assertEquals(200, client.doHttpCall(client.createPostRequest(InitUserRegistration)).getStatusCode());
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(HttpMethod.POST, InitUserRegistration));
+        Assert.assertFalse(breaker.isDegraded());
+    }
+
+    @org.junit.Test
+    public void failedTrialCallReopensTheCircuit() throws Exception {
+        breaker.setRecovery(50, 2);
+        openCircuit();
+
+        Thread.sleep(60);
+        server.injectFailures(1, 503, null);
+        Assert.assertEquals(503, client.doHttpCall(client.createPostRequest(InitUserRegistration)).getStatusCode());
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState(HttpMethod.POST, InitUserRegistration));
+        Assert.assertEquals(2, breaker.getOpenedCount());
+    }
+
+    private void openCircuit() throws IOException {
+        server.injectFailures(4, 503, null);
+        for (int i = 0; i < 4; i++)
+            client.doHttpCall(client.createPostRequest(InitUserRegistration));
+
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState(HttpMethod.POST, InitUserRegistration));
+    }
+
+    private void callAndIgnoreFailure() {
+        try {
+            client.doHttpCall(client.createPostRequest(InitUserRegistration));
+        }
+        catch (IOException e) {
+            // Dropped connection
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ZeroKit.Http;
+
+import ZeroKit.Testing.ZeroKitAdminApiStubServer;
+import ZeroKit.ZeroKitAdminApiClient;
+import ZeroKit.ZeroKitAdminApiException;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Assume;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the Java Flight Recorder events of the calls
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class CallEventsTest {
+    // Admin key of the stub tenant
+    private static final String AdminKey = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+    @org.junit.Test
+    public void eventsAreCreatedOnlyWhileRecorded() {
+        Assume.assumeTrue(CallEvents.isAvailable());
+
+        Assert.assertFalse(CallEvents.isRecording());
+        Assert.assertNull(CallEvents.beginAdminCall());
+        Assert.assertNull(CallEvents.beginHttpRequest());
+    }
+
+    @org.junit.Test
+    public void callsAreRecorded() throws Exception {
+        Assume.assumeTrue(CallEvents.isAvailable());
+
+        ZeroKitAdminApiStubServer server = new ZeroKitAdminApiStubServer(AdminKey, "abcdefgh").start();
+        File file = File.createTempFile("zerokit", ".jfr");
+        try {
+            ZeroKitAdminApiClient client = new ZeroKitAdminApiClient(server.getServiceUrl(), AdminKey);
+
+            Recording recording = new Recording();
+            recording.enable("ZeroKit.AdminCall");
+            recording.enable("ZeroKit.HttpRequest");
+            recording.start();
+            try {
+                client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+                try {
+                    client.doHttpCall(client.createPostRequest("/api/v4/admin/user/set-user-state").setContents("{\"UserId\":\"x\",\"Enabled\":true}"));
+                    Assert.fail();
+                }
+                catch (ZeroKitAdminApiException e) {
+                    // Expected
+                }
+            }
+            finally {
+                recording.stop();
+                recording.dump(file.toPath());
+                recording.close();
+            }
+
+            List<RecordedEvent> adminCalls = new ArrayList<RecordedEvent>();
+            List<RecordedEvent> requests = new ArrayList<RecordedEvent>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+                if (event.getEventType().getName().equals("ZeroKit.AdminCall"))
+                    adminCalls.add(event);
+                else if (event.getEventType().getName().equals("ZeroKit.HttpRequest"))
+                    requests.add(event);
+            }
+
+            Assert.assertEquals(2, adminCalls.size());
+            Assert.assertEquals(2, requests.size());
+
+            RecordedEvent registration = adminCalls.get(0);
+            Assert.assertEquals("abcdefgh", registration.getString("tenantId"));
+            Assert.assertEquals("POST", registration.getString("method"));
+            Assert.assertTrue(registration.getString("path").endsWith("/api/v4/admin/user/init-user-registration"));
+            Assert.assertEquals(200, registration.getInt("statusCode"));
+            Assert.assertNull(registration.getString("errorCode"));
+            Assert.assertTrue(registration.getLong("firstByte") > 0);
+            Assert.assertTrue(registration.getLong("sign") > 0);
+
+            RecordedEvent state = adminCalls.get(1);
+            Assert.assertEquals(404, state.getInt("statusCode"));
+            Assert.assertEquals("UserNotExists", state.getString("errorCode"));
+            Assert.assertTrue(state.getLong("bodySize") > 0);
+
+            Assert.assertNull(requests.get(0).getString("tenantId"));
+            Assert.assertEquals(200, requests.get(0).getInt("statusCode"));
+        }
+        finally {
+            server.close();
+            file.delete();
+        }
+    }
+}
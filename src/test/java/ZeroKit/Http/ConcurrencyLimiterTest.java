@@ -0,0 +1,149 @@
+package ZeroKit.Http;
+
+import ZeroKit.Testing.ZeroKitAdminApiStubServer;
+import ZeroKit.ZeroKitAdminApiClient;
+import org.junit.Assert;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests for the adaptive concurrency limiter
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class ConcurrencyLimiterTest {
+    // Admin key of the stub tenant
+    private static final String AdminKey = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+    // Simulated latency of the calls
+    private static final long LatencyNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @org.junit.Test
+    public void rejectsCallsOverTheLimit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10);
+        limiter.acquire();
+        limiter.acquire();
+
+        try {
+            limiter.acquire();
+            Assert.fail();
+        }
+        catch (ConcurrencyLimitExceededException e) {
+            Assert.assertEquals(1, limiter.getRejectedCount());
+        }
+        Assert.assertEquals(2, limiter.getInFlight());
+    }
+
+    @org.junit.Test
+    public void queuedCallsWaitForAFreeSlot() throws Exception {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1);
+        limiter.setQueue(1, 5000);
+        long start = limiter.acquire();
+
+        final AtomicLong acquired = new AtomicLong();
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    acquired.set(limiter.acquire());
+                }
+                catch (Exception e) {
+                    // The assertion below fails
+                }
+            }
+        });
+        waiter.start();
+
+        while (limiter.getQueueDepth() == 0)
+            Thread.sleep(1);
+
+        // The queue is full
+        try {
+            limiter.acquire();
+            Assert.fail();
+        }
+        catch (ConcurrencyLimitExceededException e) {
+            Assert.assertEquals(1, limiter.getRejectedCount());
+        }
+
+        limiter.release(start, false);
+        waiter.join(5000);
+        Assert.assertNotEquals(0, acquired.get());
+        Assert.assertEquals(0, limiter.getQueueDepth());
+        Assert.assertEquals(1, limiter.getInFlight());
+    }
+
+    @org.junit.Test
+    public void growsWhileLatencyIsFlat() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100);
+
+        for (int round = 0; round < 50; round++) {
+            int limit = limiter.getLimit();
+            long[] starts = new long[limit];
+            for (int i = 0; i < limit; i++)
+                starts[i] = limiter.acquire();
+            for (int i = 0; i < limit; i++)
+                limiter.release(starts[i] - LatencyNanos, false);
+        }
+
+        Assert.assertTrue("Limit: " + limiter.getLimit(), limiter.getLimit() > 20);
+        Assert.assertEquals(10, limiter.getBaselineLatencyMillis());
+    }
+
+    @org.junit.Test
+    public void shrinksOncePerEpisodeOnErrorsAndSlowCalls() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(100, 1, 100);
+        limiter.release(limiter.acquire() - LatencyNanos, false);
+
+        long first = limiter.acquire();
+        long second = limiter.acquire();
+        limiter.release(second, true);
+        Assert.assertEquals(90, limiter.getLimit());
+
+        // Started before the decrease, the same overload episode
+        limiter.release(first, true);
+        Assert.assertEquals(90, limiter.getLimit());
+
+        // Three times the baseline latency
+        long slow = limiter.acquire();
+        Thread.sleep(3 * TimeUnit.NANOSECONDS.toMillis(LatencyNanos));
+        limiter.release(slow, false);
+        Assert.assertEquals(81, limiter.getLimit());
+    }
+
+    @org.junit.Test
+    public void clientCallsAreLimited() throws Exception {
+        ZeroKitAdminApiStubServer server = new ZeroKitAdminApiStubServer(AdminKey, "abcdefgh").start();
+        try {
+            server.setLatencyMillis(300);
+            ZeroKitAdminApiClient client = new ZeroKitAdminApiClient(server.getServiceUrl(), AdminKey);
+            ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1);
+            client.setConcurrencyLimiter(limiter);
+
+            CompletableFuture<HttpResponse> running = client.doHttpCallAsync(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+            while (limiter.getInFlight() == 0)
+                Thread.sleep(1);
+
+            try {
+                client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+                Assert.fail();
+            }
+            catch (ConcurrencyLimitExceededException e) {
+                // Expected
+            }
+
+            Assert.assertEquals(200, running.get().getStatusCode());
+            Assert.assertEquals(0, limiter.getInFlight());
+            Assert.assertEquals(1, server.getRequestCount());
+        }
+        catch (ExecutionException e) {
+            throw new AssertionError(e.getCause());
+        }
+        finally {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package ZeroKit.Http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the keep-alive connection pool against a local HTTP server
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class HttpConnectionPoolTest {
+    // Local server echoing the request bodies
+    private HttpServer server;
+
+    // Base URL of the local server
+    private String baseUrl;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/echo", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = ZeroKit.Utils.IOUtils.readAll(exchange.getRequestBody());
+                exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.createContext("/chunked", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(404, 0);
+                OutputStream os = exchange.getResponseBody();
+                os.write("{\"ErrorCode\":".getBytes("UTF-8"));
+                os.flush();
+                os.write("\"NotFound\"}".getBytes("UTF-8"));
+                os.close();
+            }
+        });
+        server.start();
+
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @org.junit.Test
+    public void reusesConnections() throws IOException {
+        HttpConnectionPool pool = new HttpConnectionPool(4);
+        HttpClient client = new HttpClient(baseUrl);
+        client.setConnectionPool(pool);
+
+        for (int i = 0; i < 20; i++) {
+            HttpResponse response = client.doHttpCall(client.createPostRequest("/echo").setContents("hello " + i));
+
+            Assert.assertEquals(200, response.getStatusCode());
+            Assert.assertEquals("hello " + i, response.getStringContents());
+        }
+
+        HttpConnectionPoolStats stats = pool.getStats();
+        Assert.assertEquals(1, stats.getCreated());
+        Assert.assertEquals(0, stats.getLeased());
+        Assert.assertEquals(1, stats.getIdle());
+
+        pool.close();
+        Assert.assertEquals(0, pool.getStats().getIdle());
+    }
+
+    @org.junit.Test
+    public void readsChunkedErrorBodies() throws IOException {
+        HttpConnectionPool pool = new HttpConnectionPool();
+        HttpClient client = new HttpClient(baseUrl);
+        client.setConnectionPool(pool);
+
+        HttpResponse response = client.doHttpCall(client.createPostRequest("/chunked"));
+
+        Assert.assertEquals(404, response.getStatusCode());
+        Assert.assertEquals("{\"ErrorCode\":\"NotFound\"}", response.getStringContents());
+        Assert.assertEquals(0, pool.getStats().getLeased());
+        Assert.assertEquals(1, pool.getStats().getIdle());
+    }
+
+    @org.junit.Test
+    public void evictsIdleConnections() throws Exception {
+        HttpConnectionPool pool = new HttpConnectionPool(4, 50);
+        HttpClient client = new HttpClient(baseUrl);
+        client.setConnectionPool(pool);
+
+        client.doHttpCall(client.createPostRequest("/echo"));
+        Assert.assertEquals(1, pool.getStats().getIdle());
+
+        Thread.sleep(100);
+
+        Assert.assertEquals(1, pool.evictIdleConnections());
+        Assert.assertEquals(0, pool.getStats().getIdle());
+        Assert.assertEquals(1, pool.getStats().getEvicted());
+    }
+
+    @org.junit.Test
+    public void resendsOnlySafeRequestsOnReusedConnections() throws Exception {
+        // Serves the first request of each connection, then closes it after reading the next one
+        final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        final AtomicInteger received = new AtomicInteger();
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Socket socket = serverSocket.accept();
+                        try {
+                            BufferedInputStream input = new BufferedInputStream(socket.getInputStream());
+                            readRequest(input);
+                            received.incrementAndGet();
+                            OutputStream output = socket.getOutputStream();
+                            output.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes("ISO-8859-1"));
+                            output.flush();
+
+                            if (readRequest(input))
+                                received.incrementAndGet();
+                        }
+                        finally {
+                            socket.close();
+                        }
+                    }
+                }
+                catch (IOException e) {
+                    // Server socket closed
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        HttpConnectionPool pool = new HttpConnectionPool();
+        HttpClient client = new HttpClient("http://127.0.0.1:" + serverSocket.getLocalPort());
+        client.setConnectionPool(pool);
+        try {
+            Assert.assertEquals(200, client.doHttpCall(client.createPostRequest("/x").setContents("1")).getStatusCode());
+            try {
+                client.doHttpCall(client.createPostRequest("/x").setContents("2"));
+                Assert.fail();
+            }
+            catch (IOException e) {
+                // Expected, the server may have processed the request
+            }
+            Assert.assertEquals(2, received.get());
+
+            Assert.assertEquals(200, client.doHttpCall(client.createRequest("/x")).getStatusCode());
+            Assert.assertEquals(200, client.doHttpCall(client.createRequest("/x")).getStatusCode());
+            Assert.assertEquals(5, received.get());
+        }
+        finally {
+            pool.close();
+            serverSocket.close();
+        }
+    }
+
+    @org.junit.Test
+    public void rejectsHeadersBreakingTheRequestHead() throws IOException {
+        HttpConnectionPool pool = new HttpConnectionPool();
+        HttpClient client = new HttpClient(baseUrl);
+        client.setConnectionPool(pool);
+
+        for (String[] header : new String[][] { { "X-Test", "a\r\nX-Injected: 1" }, { "X-Test", "a\nb" },
+                { "X-Test: 1\r\nX", "a" }, { "X Test", "a" }, { "", "a" } }) {
+            try {
+                client.doHttpCall(client.createPostRequest("/echo").setHeader(header[0], header[1]));
+                Assert.fail(header[0]);
+            }
+            catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+
+        HttpResponse response = client.doHttpCall(client.createPostRequest("/echo").setHeader("X-Test", "a\tb \u00e1").setContents("ok"));
+        Assert.assertEquals("ok", response.getStringContents());
+        Assert.assertEquals(0, pool.getStats().getLeased());
+    }
+
+    /**
+     * Reads a request with a Content-Length framed body
+     * @param input Stream of the connection
+     * @return Returns true if a request was read, false if the connection was closed
+     * @throws IOException Thrown when reading fails
+     */
+    private static boolean readRequest(InputStream input) throws IOException {
+        int contentLength = 0;
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = input.read()) != -1) {
+            if (c == '\r')
+                continue;
+            if (c != '\n') {
+                line.append((char) c);
+                continue;
+            }
+            if (line.length() == 0) {
+                for (int i = 0; i < contentLength; i++)
+                    input.read();
+                return true;
+            }
+            if (line.toString().toLowerCase().startsWith("content-length:"))
+                contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+            line.setLength(0);
+        }
+
+        return false;
+    }
+}
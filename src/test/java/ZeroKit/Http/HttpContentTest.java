@@ -0,0 +1,177 @@
+package ZeroKit.Http;
+
+import ZeroKit.Utils.Sha256;
+import org.junit.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the request contents
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class HttpContentTest {
+    @org.junit.Test
+    public void hashesMatchTheArrayHash() throws Exception {
+        byte[] data = new byte[100000];
+        new Random(7).nextBytes(data);
+        String expected = Sha256.hash(data);
+
+        Assert.assertEquals(expected, HttpContent.ofBytes(data).getSha256());
+        Assert.assertEquals(expected, HttpContent.ofStream(new ByteArrayInputStream(data)).getSha256());
+        Assert.assertEquals(Sha256.hash(new byte[0]), HttpContent.ofBytes(new byte[0]).getSha256());
+
+        byte[] padded = new byte[data.length + 20];
+        System.arraycopy(data, 0, padded, 10, data.length);
+        Assert.assertEquals(expected, HttpContent.ofBytes(padded, 10, data.length).getSha256());
+    }
+
+    @org.junit.Test
+    public void streamIsReadOnce() throws Exception {
+        final byte[] data = "hello world".getBytes("UTF-8");
+        final AtomicInteger reads = new AtomicInteger();
+
+        HttpContent content = HttpContent.ofStream(new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                reads.incrementAndGet();
+                return super.read(b, off, len);
+            }
+        });
+        int readsAfterBuffering = reads.get();
+
+        Assert.assertEquals(Sha256.hash(data), content.getSha256());
+        Assert.assertArrayEquals(data, written(content));
+        Assert.assertEquals(readsAfterBuffering, reads.get());
+    }
+
+    @org.junit.Test
+    public void sourceHashIsMemoized() throws Exception {
+        final byte[] data = "replayable".getBytes("UTF-8");
+        final AtomicInteger opened = new AtomicInteger();
+
+        HttpContent content = HttpContent.ofSource(data.length, new HttpContent.Source() {
+            @Override
+            public InputStream open() {
+                opened.incrementAndGet();
+                return new ByteArrayInputStream(data);
+            }
+        });
+
+        Assert.assertEquals(Sha256.hash(data), content.getSha256());
+        Assert.assertEquals(Sha256.hash(data), content.getSha256());
+        Assert.assertEquals(1, opened.get());
+        Assert.assertArrayEquals(data, written(content));
+        Assert.assertArrayEquals(data, written(content));
+        Assert.assertEquals(3, opened.get());
+    }
+
+    @org.junit.Test
+    public void fileContentsAreStreamed() throws Exception {
+        byte[] data = new byte[300000];
+        new Random(11).nextBytes(data);
+
+        File file = File.createTempFile("zerokit-content", ".bin");
+        try {
+            FileOutputStream output = new FileOutputStream(file);
+            output.write(data);
+            output.close();
+
+            HttpContent content = HttpContent.ofFile(file);
+            Assert.assertEquals(data.length, content.getLength());
+            Assert.assertEquals(Sha256.hash(data), content.getSha256());
+            Assert.assertArrayEquals(data, written(content));
+            Assert.assertNull(new HttpRequest(file.toURI().toURL()).setContent(content).getContents());
+        }
+        finally {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    @org.junit.Test
+    public void pathAndChannelContentsAreMapped() throws Exception {
+        byte[] data = new byte[1000000];
+        new Random(13).nextBytes(data);
+
+        File file = File.createTempFile("zerokit-content", ".bin");
+        try {
+            FileOutputStream output = new FileOutputStream(file);
+            output.write(data);
+            output.close();
+
+            HttpContent content = HttpContent.ofPath(file.toPath());
+            Assert.assertEquals(data.length, content.getLength());
+            Assert.assertEquals(Sha256.hash(data), content.getSha256());
+            Assert.assertArrayEquals(data, written(content));
+            Assert.assertArrayEquals(data, transferred(content));
+
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                channel.position(123);
+
+                content = HttpContent.ofChannel(channel, 1000, 5000);
+                byte[] region = Arrays.copyOfRange(data, 1000, 6000);
+                Assert.assertEquals(Sha256.hash(region), content.getSha256());
+                Assert.assertArrayEquals(region, written(content));
+                Assert.assertArrayEquals(region, transferred(content));
+                Assert.assertEquals(123, channel.position());
+                Assert.assertTrue(channel.isOpen());
+
+                Assert.assertEquals(Sha256.hash(data), HttpContent.ofChannel(channel).getSha256());
+            }
+            finally {
+                channel.close();
+            }
+        }
+        finally {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    @org.junit.Test(expected = IOException.class)
+    public void changedLengthIsDetected() throws Exception {
+        final byte[] data = "longer than announced".getBytes("UTF-8");
+
+        HttpContent content = HttpContent.ofSource(6, new HttpContent.Source() {
+            @Override
+            public InputStream open() {
+                return new ByteArrayInputStream(data);
+            }
+        });
+
+        written(content);
+    }
+
+    /**
+     * Writes the given contents into an array
+     * @param content Contents to write
+     * @return Returns the written bytes
+     */
+    private static byte[] written(HttpContent content) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        content.writeTo(output);
+        return output.toByteArray();
+    }
+
+    /**
+     * Transfers the given contents into an array through a channel
+     * @param content Contents to transfer
+     * @return Returns the transferred bytes
+     */
+    private static byte[] transferred(HttpContent content) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        content.transferTo(Channels.newChannel(output));
+        return output.toByteArray();
+    }
+}
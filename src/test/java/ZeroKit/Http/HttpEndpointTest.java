@@ -0,0 +1,116 @@
+package ZeroKit.Http;
+
+import ZeroKit.ZeroKitAdminApiSigner;
+import org.junit.Assert;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Tests for the precompiled endpoints
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class HttpEndpointTest {
+    // Admin key of the signer
+    private static final String AdminKey = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+    @org.junit.Test
+    public void pathsAreResolvedOnce() throws IOException {
+        for (String baseUrl : new String[] { "https://host.io/tenant-abcdefgh", "https://host.io/tenant-abcdefgh/" }) {
+            HttpEndpoint endpoint = new HttpEndpoint(new URL(baseUrl), HttpMethod.POST, "api/v4/admin/user/set-user-state");
+
+            Assert.assertEquals("https://host.io/tenant-abcdefgh/api/v4/admin/user/set-user-state", endpoint.getUrl().toString());
+            Assert.assertEquals("/api/v4/admin/user/set-user-state", endpoint.getRelativePath());
+            Assert.assertEquals("POST /api/v4/admin/user/set-user-state", endpoint.getName());
+            Assert.assertEquals("POST\ntenant-abcdefgh/api/v4/admin/user/set-user-state", endpoint.getCanonicalPrefix());
+
+            HttpRequest request = endpoint.createRequest();
+            Assert.assertSame(endpoint.getUrl(), request.getUrl());
+            Assert.assertSame(endpoint, request.getEndpoint());
+            Assert.assertEquals(HttpMethod.POST, request.getMethod());
+        }
+    }
+
+    @org.junit.Test
+    public void queryParametersArePercentEncoded() throws IOException {
+        HttpEndpoint endpoint = new HttpEndpoint(new URL("https://host.io/tenant-abcdefgh"), HttpMethod.PUT,
+                "/api/v4/admin/tenant/upload-custom-content?fileName=&version=");
+
+        Assert.assertEquals(2, endpoint.getParameterCount());
+        Assert.assertEquals("fileName=css%2Flogin%20page%2B%C3%A1%F0%9F%98%80.css&version=a-b_c.d~e",
+                endpoint.createRequest("css/login page+á😀.css", "a-b_c.d~e").getUrl().getQuery());
+        Assert.assertEquals("fileName=x", endpoint.createRequest("x", null).getUrl().getQuery());
+
+        try {
+            endpoint.createRequest("x");
+            Assert.fail();
+        }
+        catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @org.junit.Test
+    public void endpointRequestsAreSignedLikeBuiltOnes() throws IOException {
+        HttpClient client = new HttpClient("https://host.io/tenant-abcdefgh/");
+        ZeroKitAdminApiSigner signer = new ZeroKitAdminApiSigner(AdminKey);
+
+        HttpRequest built = client.createPutRequest("/api/v4/admin/tenant/upload-custom-content?fileName=css%2Flogin.css")
+                .setHeader("UserId", "admin@abcdefgh.tresorit.io");
+        HttpRequest routed = client.createEndpoint(HttpMethod.PUT, "/api/v4/admin/tenant/upload-custom-content?fileName=")
+                .createRequest("css/login.css")
+                .setHeader("UserId", "admin@abcdefgh.tresorit.io");
+
+        Assert.assertEquals(built.getUrl().toString(), routed.getUrl().toString());
+        Assert.assertEquals(ZeroKitAdminApiSigner.canonicalizeRequest(built), ZeroKitAdminApiSigner.canonicalizeRequest(routed));
+        Assert.assertEquals(signer.signRequest(built), signer.signRequest(routed));
+
+        // Changing the path or the method detaches the request from its endpoint
+        Assert.assertNull(routed.copy().setMethod(HttpMethod.POST).getEndpoint());
+        Assert.assertNull(routed.copy().addPath("x").getEndpoint());
+        Assert.assertNotNull(routed.copy().getEndpoint());
+    }
+
+    @org.junit.Test
+    public void requestsAreReusedPerThread() throws Exception {
+        HttpClient client = new HttpClient("https://host.io/tenant-abcdefgh/");
+        final HttpEndpoint endpoint = client.createEndpoint(HttpMethod.PUT, "/api/v4/admin/tenant/upload-custom-content?fileName=");
+
+        HttpRequest request = endpoint.reuseRequest("a.css")
+                .setHeader("Content-Type", "text/css")
+                .setContents(new byte[] { 1, 2, 3 })
+                .setStreamingResponse(true)
+                .setMethod(HttpMethod.POST);
+
+        HttpRequest reused = endpoint.reuseRequest("b.css");
+        Assert.assertSame(request, reused);
+        Assert.assertSame(endpoint, reused.getEndpoint());
+        Assert.assertEquals(HttpMethod.PUT, reused.getMethod());
+        Assert.assertEquals("fileName=b.css", reused.getUrl().getQuery());
+        Assert.assertEquals(0, reused.getHttpHeaders().size());
+        Assert.assertNull(reused.getContent());
+        Assert.assertFalse(reused.isStreamingResponse());
+        Assert.assertEquals(ZeroKitAdminApiSigner.canonicalizeRequest(endpoint.createRequest("b.css")),
+                ZeroKitAdminApiSigner.canonicalizeRequest(reused));
+
+        final HttpRequest[] other = new HttpRequest[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                other[0] = endpoint.reuseRequest("c.css");
+            }
+        });
+        thread.start();
+        thread.join();
+        Assert.assertNotSame(reused, other[0]);
+
+        // Requests built by hand can be reset and pointed to an endpoint as well
+        HttpRequest built = client.createRequest("/x").setHeader("UserId", "admin").reset();
+        Assert.assertEquals("/tenant-abcdefgh/x", built.getUrl().getPath());
+        Assert.assertEquals(0, built.getHttpHeaders().size());
+        Assert.assertSame(endpoint, endpoint.resetRequest(built, "d.css").getEndpoint());
+        Assert.assertEquals(HttpMethod.PUT, built.getMethod());
+        Assert.assertNull(built.setUrl(endpoint.getUrl()).getEndpoint());
+    }
+}
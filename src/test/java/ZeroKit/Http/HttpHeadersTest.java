@@ -0,0 +1,95 @@
+package ZeroKit.Http;
+
+import ZeroKit.ZeroKitAdminApiSigner;
+import org.junit.Assert;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests for the header container of the requests
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class HttpHeadersTest {
+    @org.junit.Test
+    public void headersAreOrderedAndCaseInsensitive() {
+        HttpHeaders headers = new HttpHeaders()
+                .set("UserId", "admin")
+                .add("Accept", "text/plain")
+                .set("TresoritDate", "now")
+                .add("accept", "application/json")
+                .set("userid", "other");
+
+        Assert.assertEquals(4, headers.size());
+        Assert.assertEquals("userid:other,Accept:text/plain,Accept:application/json,TresoritDate:now", join(headers));
+        Assert.assertEquals("other", headers.get("USERID"));
+        Assert.assertEquals(Arrays.asList("text/plain", "application/json"), headers.getAll("ACCEPT"));
+        Assert.assertEquals(Collections.emptyList(), headers.getAll("Missing"));
+        Assert.assertNull(headers.get("Missing"));
+        Assert.assertTrue(headers.isFirstValue(1));
+        Assert.assertFalse(headers.isFirstValue(2));
+        Assert.assertEquals(Arrays.asList("userid", "Accept", "TresoritDate"), Arrays.asList(headers.toMap().keySet().toArray()));
+
+        headers.set("ACCEPT", "*/*");
+        Assert.assertEquals("userid:other,ACCEPT:*/*,TresoritDate:now", join(headers));
+
+        headers.remove("accept").remove("Missing");
+        Assert.assertEquals("userid:other,TresoritDate:now", join(headers));
+        Assert.assertFalse(headers.contains("Accept"));
+
+        for (int i = 0; i < 20; i++)
+            headers.add("X-Header-" + i, Integer.toString(i));
+        Assert.assertEquals(22, headers.size());
+        Assert.assertEquals("19", headers.get("x-header-19"));
+
+        HttpHeaders copy = new HttpHeaders(headers);
+        headers.clear();
+        Assert.assertEquals(0, headers.size());
+        Assert.assertEquals(22, copy.size());
+    }
+
+    @org.junit.Test
+    public void requestHeadersAreCopiedAndSigned() throws Exception {
+        HttpRequest request = HttpRequest.createRequest("https://host.io/tenant-abcdefgh/api/v4/admin/user/init-user-registration")
+                .setMethod(HttpMethod.POST)
+                .setHeader("Content-Type", "application/json")
+                .addHeader("X-Multi", "a")
+                .setHeader("UserId", "admin")
+                .addHeader("x-multi", "b");
+
+        HttpRequest copy = request.copy().setHeader("content-type", "text/plain");
+        Assert.assertEquals("application/json", request.getHttpHeaders().get("Content-Type"));
+        Assert.assertEquals("text/plain", copy.getHttpHeaders().get("Content-Type"));
+
+        Assert.assertEquals("POST\ntenant-abcdefgh/api/v4/admin/user/init-user-registration"
+                + "\nContent-Type:application/json\nX-Multi:a\nX-Multi:b\nUserId:admin",
+                ZeroKitAdminApiSigner.canonicalizeRequest(request));
+        Assert.assertEquals(4, request.getAllHeaders().size());
+        Assert.assertEquals(Arrays.asList("a", "b"), request.getHttpHeaders().getAll("X-Multi"));
+
+        try {
+            request.setHeader("X-Null", null);
+            Assert.fail();
+        }
+        catch (NullPointerException e) {
+            // Expected, like for the previous header map
+        }
+    }
+
+    /**
+     * Joins the entries of the given headers
+     * @param headers Headers to join
+     * @return Returns the comma separated "name:value" entries
+     */
+    private static String join(HttpHeaders headers) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < headers.size(); i++) {
+            if (i > 0)
+                result.append(',');
+            result.append(headers.getName(i)).append(':').append(headers.getValue(i));
+        }
+
+        return result.toString();
+    }
+}
@@ -0,0 +1,97 @@
+package ZeroKit.Http;
+
+import ZeroKit.Testing.ZeroKitAdminApiStubServer;
+import ZeroKit.ZeroKitAdminApiClient;
+import ZeroKit.ZeroKitAdminApiException;
+import org.junit.Assert;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the latency histograms and the per-endpoint metrics
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class HttpMetricsTest {
+    // Admin key of the stub tenant
+    private static final String AdminKey = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+    @org.junit.Test
+    public void bucketsAreContiguousAndPrecise() {
+        int previous = -1;
+        for (long micros = 0; micros < 1 << 20; micros++) {
+            int bucket = LatencyHistogram.getBucket(micros);
+            Assert.assertTrue(bucket == previous || bucket == previous + 1);
+            Assert.assertTrue(LatencyHistogram.getBucketMax(bucket) >= micros);
+            Assert.assertTrue(LatencyHistogram.getBucketMax(bucket) - micros <= micros / 32);
+            previous = bucket;
+        }
+
+        // The largest values share the last bucket
+        Assert.assertEquals(LatencyHistogram.getBucket((1L << 36) - 1), LatencyHistogram.getBucket((1L << 36) - 1000));
+    }
+
+    @org.junit.Test
+    public void percentilesAreWithinTheBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++)
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(1000000, histogram.getMaxMicros());
+        Assert.assertEquals(500500.0, histogram.getMeanMicros(), 0.001);
+        assertClose(500000, histogram.getPercentileMicros(0.5));
+        assertClose(990000, histogram.getPercentileMicros(0.99));
+        Assert.assertEquals(1000000, histogram.getPercentileMicros(1));
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getPercentileMicros(0.99));
+    }
+
+    @org.junit.Test
+    public void clientCallsAreRecordedByEndpoint() throws Exception {
+        ZeroKitAdminApiStubServer server = new ZeroKitAdminApiStubServer(AdminKey, "abcdefgh").start();
+        try {
+            ZeroKitAdminApiClient client = new ZeroKitAdminApiClient(server.getServiceUrl(), AdminKey);
+            HttpMetrics metrics = new HttpMetrics();
+            client.setMetrics(metrics);
+
+            client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+            client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+            try {
+                client.doHttpCall(client.createPostRequest("/api/v4/admin/user/set-user-state").setContents("{\"UserId\":\"x\",\"Enabled\":true}"));
+                Assert.fail();
+            }
+            catch (ZeroKitAdminApiException e) {
+                // Expected
+            }
+
+            String basePath = client.getBaseUrl().getPath().replaceAll("/$", "");
+            EndpointMetrics registration = metrics.getEndpoint(HttpMethod.POST, basePath + "/api/v4/admin/user/init-user-registration");
+            Assert.assertEquals(2, registration.getLatency().getCount());
+            Assert.assertEquals(2, registration.getStatusCount(200));
+            Assert.assertTrue(registration.getBytesReceived() > 0);
+            Assert.assertEquals(0, registration.getBytesSent());
+
+            EndpointMetrics state = metrics.getEndpoint(HttpMethod.POST, basePath + "/api/v4/admin/user/set-user-state");
+            Assert.assertEquals(1, state.getStatusCount(404));
+            Assert.assertEquals(Long.valueOf(1), state.getErrorCodeCounts().get("UserNotExists"));
+            Assert.assertTrue(state.getBytesSent() > 0);
+            Assert.assertEquals(2, metrics.getEndpoints().size());
+
+            String exported = metrics.toString();
+            Assert.assertTrue(exported, exported.contains("zerokit_http_responses_total{method=\"POST\",path=\"" + basePath
+                    + "/api/v4/admin/user/init-user-registration\",status=\"200\"} 2\n"));
+            Assert.assertTrue(exported, exported.contains(",error_code=\"UserNotExists\"} 1\n"));
+            Assert.assertTrue(exported, exported.contains(",quantile=\"0.99\"} "));
+        }
+        finally {
+            server.close();
+        }
+    }
+
+    private static void assertClose(long expected, long actual) {
+        Assert.assertTrue("Expected about " + expected + ", got " + actual, Math.abs(expected - actual) <= expected / 32);
+    }
+}
@@ -0,0 +1,113 @@
+package ZeroKit.Http;
+
+import ZeroKit.Testing.ZeroKitAdminApiStubServer;
+import ZeroKit.ZeroKitAdminApiClient;
+import ZeroKit.ZeroKitAdminApiException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the phase timings of the calls
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class HttpTimingsTest {
+    // Admin key of the stub tenant
+    private static final String AdminKey = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+    // Simulated server think time
+    private static final long LatencyMillis = 50;
+
+    // Stub server
+    private ZeroKitAdminApiStubServer server;
+
+    // Client of the stub tenant
+    private ZeroKitAdminApiClient client;
+
+    // Phases reported to the listener
+    private final Map<HttpPhase, Long> reported = new EnumMap<HttpPhase, Long>(HttpPhase.class);
+
+    @Before
+    public void startServer() throws IOException {
+        server = new ZeroKitAdminApiStubServer(AdminKey, "abcdefgh").start();
+        server.setLatencyMillis(LatencyMillis);
+        client = new ZeroKitAdminApiClient(server.getServiceUrl(), AdminKey);
+        client.setCallListener(new HttpCallListener() {
+            @Override
+            public void onPhase(HttpRequest request, HttpPhase phase, long nanos) {
+                Long previous = reported.get(phase);
+                reported.put(phase, (previous != null ? previous : 0) + nanos);
+            }
+        });
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    @org.junit.Test
+    public void urlConnectionPhasesAreReported() throws IOException {
+        assertPhasesReported();
+    }
+
+    @org.junit.Test
+    public void pooledPhasesAreReported() throws IOException {
+        HttpTransport transport = HttpTransports.pooled(new HttpConnectionPool());
+        client.setTransport(transport);
+        try {
+            assertPhasesReported();
+        }
+        finally {
+            transport.close();
+        }
+    }
+
+    @org.junit.Test
+    public void translatedErrorsAreTimed() throws IOException {
+        try {
+            client.doHttpCall(client.createPostRequest("/api/v4/admin/user/set-user-state").setContents("{\"UserId\":\"x\",\"Enabled\":true}"));
+            Assert.fail();
+        }
+        catch (ZeroKitAdminApiException e) {
+            Assert.assertEquals("UserNotExists", e.getErrorCode());
+        }
+
+        Assert.assertTrue(reported.containsKey(HttpPhase.TRANSLATE));
+        Assert.assertTrue(reported.containsKey(HttpPhase.CONTENT_HASH));
+    }
+
+    @org.junit.Test
+    public void callsAreNotTimedWithoutListener() throws IOException {
+        client.setCallListener(null);
+        HttpRequest request = client.createPostRequest("/api/v4/admin/user/init-user-registration");
+
+        Assert.assertNull(client.doHttpCall(request).getTimings());
+        Assert.assertNull(request.getTimings());
+        Assert.assertTrue(reported.isEmpty());
+    }
+
+    private void assertPhasesReported() throws IOException {
+        HttpResponse response = client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration")
+                .setContents("{}"));
+        Assert.assertEquals(200, response.getStatusCode());
+
+        HttpTimings timings = response.getTimings();
+        Assert.assertNotNull(timings);
+        for (HttpPhase phase : new HttpPhase[] { HttpPhase.CONTENT_HASH, HttpPhase.SIGN, HttpPhase.CONNECT, HttpPhase.WRITE,
+                HttpPhase.FIRST_BYTE, HttpPhase.READ, HttpPhase.TRANSLATE }) {
+            Assert.assertTrue(phase.name(), reported.containsKey(phase));
+            Assert.assertEquals(phase.name(), reported.get(phase).longValue(), timings.getNanos(phase));
+        }
+
+        // Plain HTTP, no handshake
+        Assert.assertFalse(reported.containsKey(HttpPhase.TLS_HANDSHAKE));
+        Assert.assertTrue(timings.toString(), timings.getNanos(HttpPhase.FIRST_BYTE) >= TimeUnit.MILLISECONDS.toNanos(LatencyMillis));
+    }
+}
@@ -0,0 +1,315 @@
+package ZeroKit.Http;
+
+import ZeroKit.Utils.Sha256;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests checking that every transport produces the same responses
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class HttpTransportTest {
+    // Length of a block of the large response
+    private static final int LargeBlockLength = 65536;
+
+    // Number of blocks in the large response
+    private static final int LargeBlockCount = 64;
+
+    // Local server
+    private HttpServer server;
+
+    // Base URL of the local server
+    private String baseUrl;
+
+    // Transports to compare
+    private List<HttpTransport> transports;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/echo", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = ZeroKit.Utils.IOUtils.readAll(exchange.getRequestBody());
+                exchange.getResponseHeaders().add("X-Echo-Method", exchange.getRequestMethod());
+                exchange.getResponseHeaders().add("X-Multi", "a");
+                exchange.getResponseHeaders().add("X-Multi", "b");
+                exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.createContext("/error", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = "{\"ErrorMessage\":\"Nope.\",\"ErrorCode\":\"BadInput\"}".getBytes("UTF-8");
+                exchange.sendResponseHeaders(400, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.createContext("/large", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] block = new byte[LargeBlockLength];
+                for (int i = 0; i < block.length; i++)
+                    block[i] = (byte) i;
+
+                exchange.sendResponseHeaders(200, (long) LargeBlockLength * LargeBlockCount);
+                OutputStream os = exchange.getResponseBody();
+                for (int i = 0; i < LargeBlockCount; i++)
+                    os.write(block);
+                os.close();
+            }
+        });
+        server.createContext("/hash", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] hash = Sha256.hash(exchange.getRequestBody()).getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, hash.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(hash);
+                os.close();
+            }
+        });
+        server.start();
+
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        transports = new ArrayList<HttpTransport>();
+        transports.add(HttpTransports.urlConnection());
+        transports.add(HttpTransports.pooled(new HttpConnectionPool()));
+        if (HttpTransports.isJavaNetHttpAvailable())
+            transports.add(HttpTransports.javaNetHttp());
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        for (HttpTransport transport : transports)
+            transport.close();
+
+        server.stop(0);
+    }
+
+    @org.junit.Test
+    public void transportsProduceIdenticalResponses() throws Exception {
+        for (HttpTransport transport : transports) {
+            HttpResponse response = transport.execute(HttpRequest.createRequest(baseUrl + "/echo")
+                    .setMethod(HttpMethod.POST).setHeader("Content-Type", "text/plain").setContents("hello"));
+            String name = transport.getClass().getSimpleName();
+
+            Assert.assertEquals(name, 200, response.getStatusCode());
+            Assert.assertEquals(name, "hello", response.getStringContents());
+            Assert.assertEquals(name, "POST", response.getHeaders().get("x-echo-method").get(0));
+            Assert.assertEquals(name, "POST", response.getHeaders().get("X-Echo-Method").get(0));
+            Assert.assertEquals(name, 2, response.getHeaders().get("x-multi").size());
+            Assert.assertEquals(name, "5", response.getHeaders().get("content-length").get(0));
+
+            for (String header : response.getHeaders().keySet())
+                Assert.assertEquals(name, header.toLowerCase(), header);
+        }
+    }
+
+    @org.junit.Test
+    public void transportsReturnErrorBodies() throws Exception {
+        for (HttpTransport transport : transports) {
+            HttpResponse response = transport.execute(HttpRequest.createRequest(baseUrl + "/error").setMethod(HttpMethod.POST));
+            String name = transport.getClass().getSimpleName();
+
+            Assert.assertEquals(name, 400, response.getStatusCode());
+            Assert.assertEquals(name, "{\"ErrorMessage\":\"Nope.\",\"ErrorCode\":\"BadInput\"}", response.getStringContents());
+            Assert.assertFalse(name, response.getHeaders().containsKey(null));
+        }
+    }
+
+    @org.junit.Test
+    public void transportsReturnEmptyBodies() throws Exception {
+        for (HttpTransport transport : transports) {
+            HttpResponse response = transport.execute(HttpRequest.createRequest(baseUrl + "/echo").setMethod(HttpMethod.POST));
+            String name = transport.getClass().getSimpleName();
+
+            Assert.assertEquals(name, 200, response.getStatusCode());
+            Assert.assertNotNull(name, response.getContents());
+            Assert.assertEquals(name, 0, response.getContents().length);
+        }
+    }
+
+    @org.junit.Test
+    public void transportsStreamResponseBodies() throws Exception {
+        for (HttpTransport transport : transports) {
+            HttpResponse response = transport.execute(HttpRequest.createRequest(baseUrl + "/large")
+                    .setMethod(HttpMethod.POST).setStreamingResponse(true));
+            String name = transport.getClass().getSimpleName();
+
+            Assert.assertTrue(name, response.isStreaming());
+            Assert.assertNull(name, response.getContents());
+
+            long total = 0;
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            ReadableByteChannel channel = response.getBodyChannel();
+            int n;
+            while ((n = channel.read(buffer)) != -1) {
+                for (int i = 0; i < n; i++)
+                    Assert.assertEquals(name, (byte) (total + i), buffer.get(i));
+                total += n;
+                buffer.clear();
+            }
+            channel.close();
+
+            Assert.assertEquals(name, (long) LargeBlockLength * LargeBlockCount, total);
+            if (transport instanceof PooledHttpTransport)
+                Assert.assertEquals(0, ((PooledHttpTransport) transport).getPool().getStats().getLeased());
+        }
+    }
+
+    @org.junit.Test
+    public void closingUnreadStreamReleasesConnection() throws Exception {
+        HttpConnectionPool pool = new HttpConnectionPool(1);
+        HttpTransport transport = HttpTransports.pooled(pool);
+
+        HttpResponse response = transport.execute(HttpRequest.createRequest(baseUrl + "/large")
+                .setMethod(HttpMethod.POST).setStreamingResponse(true));
+        Assert.assertEquals(1, pool.getStats().getLeased());
+        Assert.assertTrue(response.getBody().read() != -1);
+        response.close();
+        Assert.assertEquals(0, pool.getStats().getLeased());
+
+        // The only connection slot is free again
+        response = transport.execute(HttpRequest.createRequest(baseUrl + "/echo").setMethod(HttpMethod.POST).setContents("ok"));
+        Assert.assertEquals("ok", response.getStringContents());
+        transport.close();
+    }
+
+    @org.junit.Test
+    public void bufferContentsRespectsTheLimit() throws Exception {
+        for (HttpTransport transport : transports) {
+            String name = transport.getClass().getSimpleName();
+
+            HttpResponse error = transport.execute(HttpRequest.createRequest(baseUrl + "/error")
+                    .setMethod(HttpMethod.POST).setStreamingResponse(true));
+            Assert.assertTrue(name, error.bufferContents(1024));
+            Assert.assertFalse(name, error.isStreaming());
+            Assert.assertEquals(name, "{\"ErrorMessage\":\"Nope.\",\"ErrorCode\":\"BadInput\"}", error.getStringContents());
+
+            HttpResponse large = transport.execute(HttpRequest.createRequest(baseUrl + "/large")
+                    .setMethod(HttpMethod.POST).setStreamingResponse(true));
+            try {
+                large.bufferContents(-1);
+                Assert.fail(name);
+            }
+            catch (IllegalArgumentException e) {
+                // Expected, nothing is read
+            }
+            Assert.assertFalse(name, large.bufferContents(1024));
+            Assert.assertTrue(name, large.isStreaming());
+            Assert.assertEquals(name, (long) LargeBlockLength * LargeBlockCount, ZeroKit.Utils.IOUtils.readAll(large.getBody()).length);
+            large.close();
+        }
+    }
+
+    @org.junit.Test
+    public void transportsStreamRequestBodies() throws Exception {
+        final byte[] block = new byte[LargeBlockLength];
+        new Random(42).nextBytes(block);
+
+        final AtomicInteger opened = new AtomicInteger();
+        HttpContent content = HttpContent.ofSource((long) LargeBlockLength * LargeBlockCount, new HttpContent.Source() {
+            @Override
+            public InputStream open() {
+                opened.incrementAndGet();
+                return new RepeatingInputStream(block, LargeBlockCount);
+            }
+        });
+        String expected = content.getSha256();
+
+        for (HttpTransport transport : transports) {
+            HttpResponse response = transport.execute(HttpRequest.createRequest(baseUrl + "/hash")
+                    .setMethod(HttpMethod.POST).setContent(content));
+
+            Assert.assertEquals(transport.getClass().getSimpleName(), expected, response.getStringContents());
+        }
+
+        // One pass for the hash, one per transport for the body
+        Assert.assertEquals(1 + transports.size(), opened.get());
+    }
+
+    @org.junit.Test
+    public void transportsUploadFiles() throws Exception {
+        byte[] data = new byte[3 * LargeBlockLength + 17];
+        new Random(43).nextBytes(data);
+
+        File file = File.createTempFile("zerokit-upload", ".bin");
+        try {
+            FileOutputStream output = new FileOutputStream(file);
+            output.write(data);
+            output.close();
+
+            for (HttpTransport transport : transports) {
+                HttpResponse response = transport.execute(HttpRequest.createRequest(baseUrl + "/hash")
+                        .setMethod(HttpMethod.POST).setContents(file.toPath()));
+
+                Assert.assertEquals(transport.getClass().getSimpleName(), Sha256.hash(data), response.getStringContents());
+            }
+        }
+        finally {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    /**
+     * Stream repeating the same block a given number of times
+     */
+    private static final class RepeatingInputStream extends InputStream {
+        // Repeated block
+        private final byte[] block;
+
+        // Length of the stream
+        private final long length;
+
+        // Number of bytes read so far
+        private long position;
+
+        RepeatingInputStream(byte[] block, int count) {
+            this.block = block;
+            this.length = (long) block.length * count;
+        }
+
+        @Override
+        public int read() {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position == length)
+                return -1;
+
+            int offset = (int) (position % block.length);
+            int n = (int) Math.min(Math.min(len, length - position), block.length - offset);
+            System.arraycopy(block, offset, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+}
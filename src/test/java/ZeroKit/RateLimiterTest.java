@@ -0,0 +1,146 @@
+package ZeroKit;
+
+import ZeroKit.Testing.ZeroKitAdminApiStubServer;
+import org.junit.Assert;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for the token bucket rate limiter
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class RateLimiterTest {
+    // Admin key of the stub tenant
+    private static final String AdminKey = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+    @org.junit.Test
+    public void allowsTheBurstThenThrottles() {
+        RateLimiter limiter = new RateLimiter(0.5, 3);
+
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+
+        Assert.assertEquals(3, limiter.getAcquiredCount());
+        Assert.assertEquals(1, limiter.getThrottledCount());
+    }
+
+    @org.junit.Test
+    public void blockingAcquireWaitsForTheNextToken() throws Exception {
+        RateLimiter limiter = new RateLimiter(20, 1);
+        Assert.assertTrue(limiter.tryAcquire());
+
+        long start = System.nanoTime();
+        Assert.assertTrue(limiter.tryAcquire(1, TimeUnit.SECONDS));
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assert.assertTrue("Waited " + waited + " ms.", waited >= 30);
+        Assert.assertEquals(1, limiter.getWaitedCount());
+        Assert.assertTrue(limiter.getWaitedMillis() >= 30);
+    }
+
+    @org.junit.Test
+    public void rejectedAcquiresDoNotTakeTokens() throws Exception {
+        RateLimiter limiter = new RateLimiter(10, 1);
+        Assert.assertTrue(limiter.tryAcquire());
+
+        // The next token comes in 100 ms
+        Assert.assertFalse(limiter.tryAcquire(10, TimeUnit.MILLISECONDS));
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire(200, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(2, limiter.getThrottledCount());
+    }
+
+    @org.junit.Test
+    public void interruptedAcquiresGiveTheirTokenBack() throws Exception {
+        RateLimiter limiter = new RateLimiter(10, 1);
+        Assert.assertTrue(limiter.tryAcquire(0, TimeUnit.MILLISECONDS));
+
+        Thread.currentThread().interrupt();
+        try {
+            limiter.tryAcquire(1, TimeUnit.SECONDS);
+            Assert.fail();
+        }
+        catch (InterruptedIOException e) {
+            Assert.assertTrue(Thread.interrupted());
+        }
+
+        // The next token is due in 100 ms, not 200 ms
+        Assert.assertTrue(limiter.tryAcquire(150, TimeUnit.MILLISECONDS));
+    }
+
+    @org.junit.Test
+    public void concurrentAcquiresNeverExceedTheBucket() throws Exception {
+        final RateLimiter limiter = new RateLimiter(0.001, 1000);
+        final AtomicInteger acquired = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 16; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    }
+                    catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 200; i++) {
+                        if (limiter.tryAcquire())
+                            acquired.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+
+        Assert.assertEquals(1000, acquired.get());
+        Assert.assertEquals(16 * 200 - 1000, limiter.getThrottledCount());
+    }
+
+    @org.junit.Test
+    public void tenantsShareTheirLimiter() {
+        RateLimiter limiter = RateLimiter.forTenant("ratelimit1", 10, 10);
+
+        Assert.assertSame(limiter, RateLimiter.forTenant("ratelimit1", 5, 5));
+        Assert.assertNotSame(limiter, RateLimiter.forTenant("ratelimit2", 10, 10));
+        Assert.assertEquals(10, limiter.getBurst());
+    }
+
+    @org.junit.Test
+    public void clientCallsAreLimited() throws Exception {
+        ZeroKitAdminApiStubServer server = new ZeroKitAdminApiStubServer(AdminKey, "abcdefgh").start();
+        try {
+            ZeroKitAdminApiClient client = new ZeroKitAdminApiClient(server.getServiceUrl(), AdminKey);
+            client.setRateLimiter(new RateLimiter(0.1, 2));
+
+            client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+            client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+            try {
+                client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+                Assert.fail();
+            }
+            catch (RateLimitExceededException e) {
+                Assert.assertEquals(RateLimitExceededException.ErrorCode, e.getErrorCode());
+            }
+
+            Assert.assertEquals(2, server.getRequestCount());
+        }
+        finally {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,536 @@
+package ZeroKit.Testing;
+
+import ZeroKit.Utils.IOUtils;
+import ZeroKit.Utils.Sha256;
+import ZeroKit.ZeroKitAdminApiSigner;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stub of the ZeroKit admin API, built on the HTTP server of the JDK
+ * Every request is checked like the real service does: the AdminKey signature over the headers listed in HMACHeaders
+ * (canonicalized like {@link ZeroKitAdminApiSigner#canonicalizeRequest}), the admin user ID, the TresoritDate format and the
+ * Content-SHA256 of the received body. Emulates init-user-registration, validate-user-registration, set-user-state and
+ * upload-custom-content, so the client can be tested and load-tested without a live tenant:
+ * <pre>
+ * try (ZeroKitAdminApiStubServer server = new ZeroKitAdminApiStubServer(adminKey, "abcdefgh").start()) {
+ *     ZeroKitAdminApiClient client = new ZeroKitAdminApiClient(server.getServiceUrl(), adminKey);
+ *     ...
+ * }
+ * </pre>
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class ZeroKitAdminApiStubServer implements Closeable {
+    // Charset of the JSON bodies
+    private static final Charset Utf8 = Charset.forName("UTF-8");
+
+    // Headers every signed request has to list in HMACHeaders
+    private static final String[] RequiredSignedHeaders = { "UserId", "TresoritDate", "Content-SHA256", "Content-Length", "HMACHeaders" };
+
+    // Format of the TresoritDate header
+    private static final Pattern TresoritDateRegex = Pattern.compile("\\A\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}Z\\z");
+
+    // String property of a JSON request body
+    private static final Pattern UserIdRegex = Pattern.compile("\"UserId\"\\s*:\\s*\"(?<userid>[^\"]*)\"");
+
+    // Other string properties of a JSON request body
+    private static final Pattern RegSessionIdRegex = Pattern.compile("\"RegSessionId\"\\s*:\\s*\"(?<value>[^\"]*)\"");
+    private static final Pattern RegSessionVerifierRegex = Pattern.compile("\"RegSessionVerifier\"\\s*:\\s*\"(?<value>[^\"]*)\"");
+    private static final Pattern RegValidationVerifierRegex = Pattern.compile("\"RegValidationVerifier\"\\s*:\\s*\"(?<value>[^\"]+)\"");
+
+    // Boolean (or boolean string) property of a JSON request body
+    private static final Pattern EnabledRegex = Pattern.compile("\"Enabled\"\\s*:\\s*\"?(?<enabled>true|false)\"?", Pattern.CASE_INSENSITIVE);
+
+    // Verifier of the request signatures
+    private final ZeroKitAdminApiSigner signer;
+
+    // Tenant ID of the stubbed tenant
+    private final String tenantId;
+
+    // User ID of the tenant admin
+    private final String adminUserId;
+
+    // Registered users and their enabled state
+    private final Map<String, Boolean> users;
+
+    // Session ID and verifier of the registrations not validated yet, by user ID
+    private final Map<String, String> registrations;
+
+    // Uploaded custom contents by their path
+    private final Map<String, byte[]> customContents;
+
+    // Failures to answer the next authentic requests with
+    private final Queue<Failure> failures;
+
+    // Extra latencies of the next authentic requests in milliseconds
+    private final Queue<Long> latencySpikes;
+
+    // Number of received requests
+    private final AtomicLong requestCount;
+
+    // Number of requests rejected by the authentication checks
+    private final AtomicLong rejectedCount;
+
+    // Artificial latency added to every response in milliseconds
+    private volatile long latencyMillis;
+
+    // Underlying HTTP server
+    private HttpServer server;
+
+    // Executor of the HTTP server
+    private ExecutorService executor;
+
+    // Service URL of the running server
+    private volatile String serviceUrl;
+
+    /**
+     * Initializes a new stub server for the given tenant
+     * @param adminKey Admin key of the tenant in hex string format
+     * @param tenantId Tenant ID of the tenant
+     */
+    public ZeroKitAdminApiStubServer(String adminKey, String tenantId) {
+        this.signer = new ZeroKitAdminApiSigner(adminKey);
+        this.tenantId = tenantId;
+        this.adminUserId = "admin@" + tenantId + ".tresorit.io";
+        this.users = new ConcurrentHashMap<String, Boolean>();
+        this.registrations = new ConcurrentHashMap<String, String>();
+        this.customContents = new ConcurrentHashMap<String, byte[]>();
+        this.failures = new ConcurrentLinkedQueue<Failure>();
+        this.latencySpikes = new ConcurrentLinkedQueue<Long>();
+        this.requestCount = new AtomicLong();
+        this.rejectedCount = new AtomicLong();
+        this.latencyMillis = 0;
+    }
+
+    /**
+     * Starts the server on a free loopback port
+     * @return Returns this server
+     * @throws IOException Thrown when the server can not be bound
+     */
+    public synchronized ZeroKitAdminApiStubServer start() throws IOException {
+        if (server != null)
+            throw new IllegalStateException("The server is already started.");
+
+        // Without it the separately written response head and body wait for delayed ACKs
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "zerokit-stub-server");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext("/tenant-" + tenantId + "/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    handleExchange(exchange);
+                }
+                finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+        serviceUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/tenant-" + tenantId;
+
+        return this;
+    }
+
+    /**
+     * Stops the server
+     */
+    @Override
+    public synchronized void close() {
+        if (server == null)
+            return;
+
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        serviceUrl = null;
+    }
+
+    /**
+     * Gets the service URL of the stubbed tenant, to be passed to the client
+     * @return Returns the service URL
+     */
+    public String getServiceUrl() {
+        String url = serviceUrl;
+        if (url == null)
+            throw new IllegalStateException("The server is not started.");
+
+        return url;
+    }
+
+    /**
+     * Gets the artificial latency added to every response
+     * @return Returns the latency in milliseconds
+     */
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * Sets the artificial latency added to every response, can be changed while the server is running
+     * @param latencyMillis Latency in milliseconds, 0 to answer immediately
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        if (latencyMillis < 0)
+            throw new IllegalArgumentException("The latency can not be negative.");
+
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Gets the number of received requests
+     * @return Returns the number of requests
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Gets the number of requests rejected by the signature, header or content hash checks
+     * @return Returns the number of rejected requests
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Answers the next authentic requests with a failure instead of executing them
+     * @param count Number of requests to fail
+     * @param statusCode HTTP status code of the failures, or 0 to drop the connection without a response
+     * @param errorCode API error code of the failures, or null to send an empty body
+     */
+    public void injectFailures(int count, int statusCode, String errorCode) {
+        for (int i = 0; i < count; i++)
+            failures.add(new Failure(statusCode, errorCode));
+    }
+
+    /**
+     * Delays the answers of the next authentic requests with an extra latency
+     * @param count Number of requests to delay
+     * @param latencyMillis Extra latency in milliseconds, added to the latency of the server
+     */
+    public void injectLatency(int count, long latencyMillis) {
+        for (int i = 0; i < count; i++)
+            latencySpikes.add(latencyMillis);
+    }
+
+    /**
+     * Registers a user, as if its registration was validated
+     * @param userId ID of the user
+     */
+    public void addUser(String userId) {
+        users.put(userId, true);
+    }
+
+    /**
+     * Gets whether the given user is enabled
+     * @param userId ID of the user
+     * @return Returns null if the user does not exist, otherwise its state
+     */
+    public Boolean isUserEnabled(String userId) {
+        return users.get(userId);
+    }
+
+    /**
+     * Gets an uploaded custom content
+     * @param path Path of the content
+     * @return Returns the uploaded bytes, or null if nothing was uploaded to the path
+     */
+    public byte[] getCustomContent(String path) {
+        return customContents.get(path);
+    }
+
+    /**
+     * Authenticates and dispatches a single request
+     * @param exchange Exchange to handle
+     */
+    private void handleExchange(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        byte[] body = IOUtils.readAll(exchange.getRequestBody());
+
+        String authError = authenticate(exchange, body);
+        if (authError != null) {
+            rejectedCount.incrementAndGet();
+
+            // Not 401: HttpURLConnection drops the error body of 401 responses to fixed-length streaming requests
+            sendError(exchange, 403, "InvalidAuthorization", authError);
+            return;
+        }
+
+        try {
+            Long spike = latencySpikes.poll();
+            long latency = latencyMillis + (spike != null ? spike : 0);
+            if (latency > 0)
+                Thread.sleep(latency);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The stub server is stopping.");
+        }
+
+        Failure failure = failures.poll();
+        if (failure != null) {
+            // Status code 0: the exchange is closed without a response, which drops the connection
+            if (failure.statusCode != 0 && failure.errorCode != null)
+                sendError(exchange, failure.statusCode, failure.errorCode, "Injected failure.");
+            else if (failure.statusCode != 0)
+                exchange.sendResponseHeaders(failure.statusCode, -1);
+            return;
+        }
+
+        String path = exchange.getRequestURI().getRawPath().substring(("/tenant-" + tenantId).length());
+        String method = exchange.getRequestMethod();
+
+        if ("/api/v4/admin/user/init-user-registration".equals(path) && "POST".equals(method))
+            initUserRegistration(exchange);
+        else if ("/api/v4/admin/user/validate-user-registration".equals(path) && "POST".equals(method))
+            validateUserRegistration(exchange, new String(body, Utf8));
+        else if ("/api/v4/admin/user/set-user-state".equals(path) && "POST".equals(method))
+            setUserState(exchange, new String(body, Utf8));
+        else if ("/api/v4/admin/tenant/upload-custom-content".equals(path) && ("PUT".equals(method) || "POST".equals(method)))
+            uploadCustomContent(exchange, body);
+        else
+            sendError(exchange, 404, "NotFound", "The requested API endpoint does not exist.");
+    }
+
+    /**
+     * Checks the signature and the signed headers of a request
+     * @param exchange Exchange of the request
+     * @param body Received body of the request
+     * @return Returns null if the request is authentic, otherwise the reason of the rejection
+     */
+    private String authenticate(HttpExchange exchange, byte[] body) {
+        Headers headers = exchange.getRequestHeaders();
+
+        String authorization = headers.getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("AdminKey "))
+            return "Missing AdminKey authorization.";
+
+        String signedHeaders = headers.getFirst("HMACHeaders");
+        if (signedHeaders == null)
+            return "Missing HMACHeaders header.";
+
+        String[] names = signedHeaders.split(",");
+        for (String required : RequiredSignedHeaders) {
+            boolean signed = false;
+            for (String name : names)
+                signed |= name.equalsIgnoreCase(required);
+            if (!signed)
+                return "The " + required + " header is not signed.";
+        }
+
+        // Same layout as ZeroKitAdminApiSigner.canonicalizeRequest, in the order given by HMACHeaders
+        URI uri = exchange.getRequestURI();
+        StringBuilder sb = new StringBuilder();
+        sb.append(exchange.getRequestMethod()).append('\n');
+        sb.append(uri.getRawPath().substring(1));
+        if (uri.getRawQuery() != null)
+            sb.append('?').append(uri.getRawQuery());
+        for (String name : names) {
+            List<String> values = headers.get(name);
+            if (values == null)
+                return "The signed " + name + " header is missing.";
+            for (String value : values)
+                sb.append('\n').append(name).append(':').append(value);
+        }
+
+        if (!("AdminKey " + signer.hmacSha256(sb.toString())).equals(authorization))
+            return "Invalid signature.";
+
+        if (!adminUserId.equals(headers.getFirst("UserId")))
+            return "Invalid admin user ID.";
+
+        String date = headers.getFirst("TresoritDate");
+        if (date == null || !TresoritDateRegex.matcher(date).matches())
+            return "Invalid TresoritDate header.";
+
+        if (!Sha256.hash(body).equalsIgnoreCase(headers.getFirst("Content-SHA256")))
+            return "The Content-SHA256 header does not match the body.";
+
+        return null;
+    }
+
+    /**
+     * Emulates the init-user-registration call
+     * @param exchange Exchange to answer
+     */
+    private void initUserRegistration(HttpExchange exchange) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMddHHmmss");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        String userId = format.format(new Date()) + "." + randomHex(4) + "@" + tenantId + ".tresorit.io";
+        String sessionId = randomHex(16);
+        String verifier = randomHex(16);
+        registrations.put(userId, sessionId + ":" + verifier);
+
+        send(exchange, 200, "{\"UserId\":\"" + userId + "\",\"RegSessionId\":\"" + sessionId + "\",\"RegSessionVerifier\":\"" + verifier + "\"}");
+    }
+
+    /**
+     * Emulates the validate-user-registration call, the validated user is enabled
+     * @param exchange Exchange to answer
+     * @param body JSON body of the request
+     */
+    private void validateUserRegistration(HttpExchange exchange, String body) throws IOException {
+        Matcher userId = UserIdRegex.matcher(body);
+        Matcher sessionId = RegSessionIdRegex.matcher(body);
+        Matcher verifier = RegSessionVerifierRegex.matcher(body);
+        if (!userId.find() || !sessionId.find() || !verifier.find() || !RegValidationVerifierRegex.matcher(body).find()) {
+            sendError(exchange, 400, "BadInput", "UserId, RegSessionId, RegSessionVerifier and RegValidationVerifier are required.");
+            return;
+        }
+
+        String id = userId.group("userid");
+        if (!registrations.remove(id, sessionId.group("value") + ":" + verifier.group("value"))) {
+            sendError(exchange, 404, "RegistrationNotExists", "The registration session does not exist.");
+            return;
+        }
+
+        users.put(id, true);
+        send(exchange, 200, "{}");
+    }
+
+    /**
+     * Emulates the set-user-state call, users whose registration is not validated do not exist yet
+     * @param exchange Exchange to answer
+     * @param body JSON body of the request
+     */
+    private void setUserState(HttpExchange exchange, String body) throws IOException {
+        Matcher userId = UserIdRegex.matcher(body);
+        Matcher enabled = EnabledRegex.matcher(body);
+        if (!userId.find() || !enabled.find()) {
+            sendError(exchange, 400, "BadInput", "UserId and Enabled are required.");
+            return;
+        }
+
+        String id = userId.group("userid");
+        if (!users.containsKey(id)) {
+            sendError(exchange, 404, "UserNotExists", "The user does not exist.");
+            return;
+        }
+
+        users.put(id, Boolean.parseBoolean(enabled.group("enabled").toLowerCase()));
+        send(exchange, 200, "{}");
+    }
+
+    /**
+     * Emulates the upload-custom-content call
+     * @param exchange Exchange to answer
+     * @param body Uploaded content
+     */
+    private void uploadCustomContent(HttpExchange exchange, byte[] body) throws IOException {
+        String path = null;
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int index = parameter.indexOf('=');
+                if (index > 0 && "fileName".equals(parameter.substring(0, index)))
+                    path = URLDecoder.decode(parameter.substring(index + 1), "UTF-8");
+            }
+        }
+
+        if (path == null || path.isEmpty()) {
+            sendError(exchange, 400, "BadInput", "The fileName parameter is required.");
+            return;
+        }
+
+        customContents.put(path, body);
+
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        send(exchange, 200, "{\"Name\":\"" + name + "\",\"Path\":\"" + path + "\",\"Url\":\"" + getServiceUrl() + "/custom/" + path
+                + "\",\"Size\":" + body.length + ",\"ContentType\":\"" + (contentType != null ? contentType : "application/octet-stream")
+                + "\",\"Etag\":\"" + Sha256.hash(body).substring(0, 16) + "\"}");
+    }
+
+    /**
+     * Generates a random identifier (not cryptographically secure, SecureRandom would bottleneck load tests)
+     * @param length Number of random bytes
+     * @return Returns the random bytes in hex format
+     */
+    private static String randomHex(int length) {
+        byte[] bytes = new byte[length];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        return Sha256.toHex(bytes);
+    }
+
+    /**
+     * Sends a JSON API error
+     * @param exchange Exchange to answer
+     * @param statusCode HTTP status code
+     * @param errorCode API error code
+     * @param errorMessage API error message
+     */
+    private static void sendError(HttpExchange exchange, int statusCode, String errorCode, String errorMessage) throws IOException {
+        send(exchange, statusCode, "{\"ErrorMessage\":\"" + errorMessage + "\",\"ErrorCode\":\"" + errorCode + "\"}");
+    }
+
+    /**
+     * Sends a JSON response
+     * @param exchange Exchange to answer
+     * @param statusCode HTTP status code
+     * @param json JSON body
+     */
+    private static void send(HttpExchange exchange, int statusCode, String json) throws IOException {
+        byte[] response = json.getBytes(Utf8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(statusCode, response.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(response);
+        os.close();
+    }
+
+    /**
+     * Injected failure
+     */
+    private static final class Failure {
+        // HTTP status code (0 drops the connection)
+        private final int statusCode;
+
+        // API error code (null for an empty body)
+        private final String errorCode;
+
+        Failure(int statusCode, String errorCode) {
+            this.statusCode = statusCode;
+            this.errorCode = errorCode;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package ZeroKit.Testing;
+
+import ZeroKit.Http.HttpRequest;
+import ZeroKit.Http.HttpResponse;
+import ZeroKit.Http.HttpTransport;
+import ZeroKit.Http.HttpTransports;
+import ZeroKit.ZeroKitAdminApiClient;
+import ZeroKit.ZeroKitAdminApiException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tests of the admin API client against the in-process stub server
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class ZeroKitAdminApiStubServerTest {
+    // Admin key of the stub tenant
+    private static final String AdminKey = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+    // Stub server
+    private ZeroKitAdminApiStubServer server;
+
+    // Client of the stub tenant
+    private ZeroKitAdminApiClient client;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new ZeroKitAdminApiStubServer(AdminKey, "abcdefgh").start();
+        client = new ZeroKitAdminApiClient(server.getServiceUrl(), AdminKey);
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    @org.junit.Test
+    public void emulatesUserCalls() throws IOException {
+        HttpResponse response = client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+        Assert.assertEquals(200, response.getStatusCode());
+        Assert.assertTrue(response.getStringContents().contains("\"RegSessionId\""));
+        Assert.assertTrue(response.getStringContents().contains("\"RegSessionVerifier\""));
+
+        Matcher matcher = Pattern.compile("\"UserId\":\"(?<userid>[^\"]+)\"").matcher(response.getStringContents());
+        Assert.assertTrue(matcher.find());
+        String userId = matcher.group("userid");
+
+        // The registration is not validated, the user does not exist yet
+        try {
+            client.doHttpCall(client.createPostRequest("/api/v4/admin/user/set-user-state")
+                    .setContents("{\"UserId\":\"" + userId + "\", \"Enabled\":\"False\"}"));
+            Assert.fail();
+        }
+        catch (ZeroKitAdminApiException e) {
+            Assert.assertEquals("UserNotExists", e.getErrorCode());
+        }
+
+        server.addUser(userId);
+        response = client.doHttpCall(client.createPostRequest("/api/v4/admin/user/set-user-state")
+                .setContents("{\"UserId\":\"" + userId + "\", \"Enabled\":false}"));
+        Assert.assertEquals(200, response.getStatusCode());
+        Assert.assertEquals(Boolean.FALSE, server.isUserEnabled(userId));
+        Assert.assertEquals(0, server.getRejectedCount());
+    }
+
+    @org.junit.Test
+    public void emulatesCustomContentUpload() throws IOException {
+        HttpTransport transport = HttpTransports.pooled(new ZeroKit.Http.HttpConnectionPool());
+        client.setTransport(transport);
+
+        HttpResponse response = client.doHttpCall(client.createPutRequest("/api/v4/admin/tenant/upload-custom-content?fileName=css/login.css")
+                .setHeader("Content-Type", "text/css")
+                .setContents("body { background-color: red; }"));
+
+        Assert.assertEquals(200, response.getStatusCode());
+        for (String property : new String[] { "\"Name\"", "\"Path\"", "\"Url\"", "\"Size\"", "\"ContentType\"", "\"Etag\"" })
+            Assert.assertTrue(property, response.getStringContents().contains(property));
+        Assert.assertEquals("body { background-color: red; }", new String(server.getCustomContent("css/login.css"), "UTF-8"));
+        transport.close();
+    }
+
+    @org.junit.Test
+    public void rejectsForeignSignatures() throws IOException {
+        ZeroKitAdminApiClient foreign = new ZeroKitAdminApiClient(server.getServiceUrl(), AdminKey.replace('0', 'f'));
+
+        try {
+            foreign.doHttpCall(foreign.createPostRequest("/api/v4/admin/user/init-user-registration"));
+            Assert.fail();
+        }
+        catch (ZeroKitAdminApiException e) {
+            Assert.assertEquals("InvalidAuthorization", e.getErrorCode());
+        }
+        Assert.assertEquals(1, server.getRejectedCount());
+    }
+
+    @org.junit.Test
+    public void rejectsTamperedBodies() throws IOException {
+        final HttpTransport transport = HttpTransports.urlConnection();
+        client.setTransport(new HttpTransport() {
+            @Override
+            public HttpResponse execute(HttpRequest request) throws IOException {
+                // Same length, different contents than the signed ones
+                return transport.execute(request.setContents("{\"UserId\":\"x\",\"Enabled\":true}"));
+            }
+
+            @Override
+            public void close() throws IOException {
+                transport.close();
+            }
+        });
+
+        try {
+            client.doHttpCall(client.createPostRequest("/api/v4/admin/user/set-user-state").setContents("{\"UserId\":\"y\",\"Enabled\":true}"));
+            Assert.fail();
+        }
+        catch (ZeroKitAdminApiException e) {
+            Assert.assertEquals("InvalidAuthorization", e.getErrorCode());
+            Assert.assertTrue(e.getMessage().contains("Content-SHA256"));
+        }
+    }
+
+    @org.junit.Test
+    public void appliesTheLatency() throws IOException {
+        server.setLatencyMillis(200);
+
+        long start = System.nanoTime();
+        Assert.assertEquals(200, client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration")).getStatusCode());
+        Assert.assertTrue(System.nanoTime() - start >= 200000000L);
+        Assert.assertEquals(1, server.getRequestCount());
+    }
+}
@@ -0,0 +1,41 @@
+package ZeroKit;
+
+import org.junit.Assert;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Tests for the TresoritDate header provider
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class TresoritDateProviderTest {
+    @org.junit.Test
+    public void formatsLikeSimpleDateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        TresoritDateProvider provider = new TresoritDateProvider();
+        Random random = new Random(42);
+
+        long[] fixed = { 0L, 951782400000L, 1483228799999L, 1483228800000L, 4102444800000L };
+        for (long millis : fixed)
+            Assert.assertEquals(format.format(new Date(millis)), provider.format(millis));
+
+        for (int i = 0; i < 10000; i++) {
+            long millis = (long) (random.nextDouble() * 4102444800000L);
+            Assert.assertEquals(format.format(new Date(millis)), provider.format(millis));
+        }
+    }
+
+    @org.junit.Test
+    public void cachesTheCurrentSecond() {
+        TresoritDateProvider provider = new TresoritDateProvider();
+
+        Assert.assertSame(provider.format(1500000000123L), provider.format(1500000000999L));
+        Assert.assertEquals("2017-07-14T02:40:01Z", provider.format(1500000001000L));
+    }
+}
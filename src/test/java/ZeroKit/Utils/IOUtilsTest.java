@@ -0,0 +1,81 @@
+package ZeroKit.Utils;
+
+import org.junit.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * Tests for the stream reading and the buffer pool
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class IOUtilsTest {
+    @org.junit.Test
+    public void streamsAreReadWhateverTheExpectedLength() throws IOException {
+        for (int size : new int[] { 0, 1, 100, 16383, 16384, 16385, 100000 }) {
+            byte[] data = new byte[size];
+            new Random(size).nextBytes(data);
+
+            for (long expected : new long[] { -1, 0, size / 2, size, size + 10, Long.MAX_VALUE }) {
+                Assert.assertArrayEquals(size + "/" + expected, data, IOUtils.readAll(new ByteArrayInputStream(data), expected));
+                Assert.assertArrayEquals(size + "/" + expected, data, IOUtils.readAll(trickle(data), expected));
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void buffersArePooledBySizeClass() {
+        byte[] buffer = BufferPool.acquire(10000);
+        Assert.assertEquals(16384, buffer.length);
+        BufferPool.release(buffer);
+        Assert.assertSame(buffer, BufferPool.acquire(16384));
+        Assert.assertEquals(1024, BufferPool.acquire(0).length);
+        Assert.assertEquals(1024, BufferPool.acquire(1024).length);
+        Assert.assertEquals(2048, BufferPool.acquire(1025).length);
+
+        // Buffers out of the size classes are neither pooled nor rounded up
+        int large = BufferPool.getMaxPooledSize() + 1;
+        Assert.assertEquals(large, BufferPool.acquire(large).length);
+        byte[] odd = new byte[3000];
+        BufferPool.release(odd);
+        Assert.assertNotSame(odd, BufferPool.acquire(3000));
+        BufferPool.release(null);
+    }
+
+    @org.junit.Test
+    public void buffersArePooledPerThread() throws InterruptedException {
+        final byte[] buffer = BufferPool.acquire(4096);
+        BufferPool.release(buffer);
+
+        final byte[][] acquired = new byte[1][];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acquired[0] = BufferPool.acquire(4096);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        Assert.assertNotSame(buffer, acquired[0]);
+        Assert.assertSame(buffer, BufferPool.acquire(4096));
+    }
+
+    /**
+     * Creates a stream returning at most 7 bytes per read
+     * @param data Contents of the stream
+     * @return Returns the created stream
+     */
+    private static InputStream trickle(byte[] data) {
+        return new FilterInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+    }
+}
@@ -0,0 +1,138 @@
+package ZeroKit.Utils;
+
+import ZeroKit.ZeroKitAdminApiException;
+import org.junit.Assert;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for the JSON reader and writer, and the parsing of API errors
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class JsonReaderTest {
+    @org.junit.Test
+    public void valuesAreRead() throws IOException {
+        JsonReader reader = reader(" { \"a\" : [1, -20, true, false, null], \"b\":{\"c\":\"d\"}, \"e\": 9223372036854775807 } ");
+
+        reader.beginObject();
+        Assert.assertTrue(reader.hasNext());
+        Assert.assertEquals("a", reader.nextName());
+        reader.beginArray();
+        Assert.assertTrue(reader.hasNext());
+        Assert.assertEquals(1, reader.nextLong());
+        Assert.assertTrue(reader.hasNext());
+        Assert.assertEquals(-20, reader.nextLong());
+        Assert.assertTrue(reader.hasNext());
+        Assert.assertTrue(reader.nextBoolean());
+        Assert.assertTrue(reader.hasNext());
+        Assert.assertFalse(reader.nextBoolean());
+        Assert.assertTrue(reader.hasNext());
+        Assert.assertEquals(JsonToken.NULL, reader.peek());
+        reader.nextNull();
+        Assert.assertFalse(reader.hasNext());
+        reader.endArray();
+
+        Assert.assertTrue(reader.hasNext());
+        Assert.assertEquals("b", reader.nextName());
+        reader.skipValue();
+        Assert.assertTrue(reader.hasNext());
+        Assert.assertEquals("e", reader.nextName());
+        Assert.assertEquals(Long.MAX_VALUE, reader.nextLong());
+        Assert.assertFalse(reader.hasNext());
+        reader.endObject();
+        Assert.assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+    }
+
+    @org.junit.Test
+    public void escapesAreDecoded() throws IOException {
+        JsonReader reader = reader("[\"plain \u00e1rv\u00edzt\u0171r\u0151\", \"q\\\"b\\\\s\\/n\\n\\t\\u00e9\\ud83d\\ude00 end\"]");
+
+        reader.beginArray();
+        reader.hasNext();
+        Assert.assertEquals("plain \u00e1rv\u00edzt\u0171r\u0151", reader.nextString());
+        reader.hasNext();
+        Assert.assertEquals("q\"b\\s/n\n\t\u00e9\ud83d\ude00 end", reader.nextString());
+    }
+
+    @org.junit.Test
+    public void writtenJsonCanBeRead() throws IOException {
+        String text = "q\"b\\s/\n\t\u0001 \u00e1rv\u00edzt\u0171r\u0151 \ud83d\ude00";
+        JsonWriter writer = new JsonWriter(16)
+                .beginObject()
+                .name("s").value(text)
+                .name("a").beginArray().value(-42).value(true).nullValue().beginObject().endObject().endArray()
+                .name("n").value((String) null)
+                .endObject();
+
+        byte[] json = writer.toByteArray();
+        Assert.assertEquals("{\"s\":\"q\\\"b\\\\s/\\n\\t\\u0001 \u00e1rv\u00edzt\u0171r\u0151 \ud83d\ude00\",\"a\":[-42,true,null,{}],\"n\":null}",
+                new String(json, StandardCharsets.UTF_8));
+
+        JsonReader reader = new JsonReader(json);
+        reader.beginObject();
+        reader.hasNext();
+        Assert.assertEquals("s", reader.nextName());
+        Assert.assertEquals(text, reader.nextString());
+        reader.hasNext();
+        reader.nextName();
+        reader.beginArray();
+        reader.hasNext();
+        Assert.assertEquals(-42, reader.nextLong());
+    }
+
+    @org.junit.Test
+    public void malformedJsonIsRejected() {
+        // Structural errors are found even by skipping
+        for (String json : new String[] { "[1 2]", "[1,]", "{\"a\" 1}", "[\"a]", "[tru]", "{\"a\":\"b\"" })
+            assertMalformed(json, false);
+
+        // Values are validated when they are read
+        for (String json : new String[] { "[\"\\x\"]", "[\"\\u12\"]", "[\"a\nb\"]", "[1.5]", "[99999999999999999999]", "[-]" })
+            assertMalformed(json, true);
+    }
+
+    @org.junit.Test
+    public void apiErrorsAreParsed() {
+        ZeroKitAdminApiException error = parse("{\"Extra\":{\"ErrorCode\":\"Nested\"},\"ErrorMessage\":\"User \\\"x\\\" not found.\",\"ErrorCode\":\"UserNotExists\"}");
+        Assert.assertNotNull(error);
+        Assert.assertEquals("UserNotExists", error.getErrorCode());
+        Assert.assertEquals("User \"x\" not found.", error.getMessage());
+
+        Assert.assertNull(parse("{\"ErrorCode\":\"UserNotExists\"}"));
+        Assert.assertNull(parse("{\"ErrorCode\":42,\"ErrorMessage\":\"x\"}"));
+        Assert.assertNull(parse("<html>Bad gateway</html>"));
+        Assert.assertNull(parse("{\"ErrorMessage\":\"x\",\"ErrorCode\":\"Unterminated"));
+        Assert.assertNull(ZeroKitAdminApiException.parse(null));
+    }
+
+    private static void assertMalformed(String json, boolean readElement) {
+        try {
+            JsonReader reader = reader(json);
+            if (!readElement) {
+                reader.skipValue();
+            }
+            else {
+                reader.beginArray();
+                reader.hasNext();
+                if (reader.peek() == JsonToken.STRING)
+                    reader.nextString();
+                else
+                    reader.nextLong();
+            }
+            Assert.fail(json);
+        }
+        catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Malformed JSON at offset "));
+        }
+    }
+
+    private static JsonReader reader(String json) {
+        return new JsonReader(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ZeroKitAdminApiException parse(String json) {
+        return ZeroKitAdminApiException.parse(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,167 @@
+package ZeroKit;
+
+import ZeroKit.Http.HttpConnectionPool;
+import ZeroKit.Http.HttpResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tests for the asynchronous API of the admin API client
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class ZeroKitAdminApiClientAsyncTest {
+    // Admin key of the local tenant
+    private static final String AdminKey = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+    // Local server
+    private HttpServer server;
+
+    // Executor of the local server
+    private ExecutorService serverExecutor;
+
+    // Service URL of the local tenant
+    private String serviceUrl;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                byte[] response = "{}".getBytes("UTF-8");
+                int status = 200;
+
+                if (path.endsWith("/slow")) {
+                    try {
+                        Thread.sleep(3000);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                else if (path.endsWith("/error")) {
+                    status = 400;
+                    response = "{\"ErrorMessage\":\"Nope.\",\"ErrorCode\":\"BadInput\"}".getBytes("UTF-8");
+                }
+
+                try {
+                    exchange.sendResponseHeaders(status, response.length);
+                    OutputStream os = exchange.getResponseBody();
+                    os.write(response);
+                    os.close();
+                }
+                catch (IOException e) {
+                    // Client went away
+                }
+            }
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        serviceUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/tenant-abcdefgh";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @org.junit.Test
+    public void completesWithResponse() throws Exception {
+        ZeroKitAdminApiClient client = new ZeroKitAdminApiClient(serviceUrl, AdminKey);
+
+        HttpResponse response = client.doHttpCallAsync(client.createPostRequest("/ok")).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(200, response.getStatusCode());
+    }
+
+    @org.junit.Test
+    public void failsWithApiException() throws Exception {
+        ZeroKitAdminApiClient client = new ZeroKitAdminApiClient(serviceUrl, AdminKey);
+
+        try {
+            client.doHttpCallAsync(client.createPostRequest("/error")).get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof ZeroKitAdminApiException);
+            Assert.assertEquals("BadInput", ((ZeroKitAdminApiException) e.getCause()).getErrorCode());
+        }
+    }
+
+    @org.junit.Test
+    public void translatesStreamedErrors() throws Exception {
+        ZeroKitAdminApiClient client = new ZeroKitAdminApiClient(serviceUrl, AdminKey);
+        HttpConnectionPool pool = new HttpConnectionPool(1);
+        client.setConnectionPool(pool);
+
+        try {
+            client.doHttpCallAsync(client.createPostRequest("/error").setStreamingResponse(true)).get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof ZeroKitAdminApiException);
+            Assert.assertEquals("BadInput", ((ZeroKitAdminApiException) e.getCause()).getErrorCode());
+        }
+
+        Assert.assertEquals(0, pool.getStats().getLeased());
+    }
+
+    @org.junit.Test
+    public void timesOutAndReleasesConnection() throws Exception {
+        ZeroKitAdminApiClient client = new ZeroKitAdminApiClient(serviceUrl, AdminKey);
+        HttpConnectionPool pool = new HttpConnectionPool(1);
+        client.setConnectionPool(pool);
+
+        CompletableFuture<HttpResponse> future = client.doHttpCallAsync(client.createPostRequest("/slow"), 200, TimeUnit.MILLISECONDS);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        // The aborted connection must not block the only slot of the pool
+        HttpResponse response = client.doHttpCallAsync(client.createPostRequest("/ok")).get(2, TimeUnit.SECONDS);
+        Assert.assertEquals(200, response.getStatusCode());
+    }
+
+    @org.junit.Test
+    public void cancelAbortsCall() throws Exception {
+        ZeroKitAdminApiClient client = new ZeroKitAdminApiClient(serviceUrl, AdminKey);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        client.setExecutor(executor);
+
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse> future = client.doHttpCallAsync(client.createPostRequest("/slow"));
+        Thread.sleep(200);
+        Assert.assertTrue(future.cancel(true));
+        Assert.assertTrue(future.isCancelled());
+
+        // The only thread of the executor must be freed well before the server answers
+        HttpResponse response = client.doHttpCallAsync(client.createPostRequest("/ok")).get(2, TimeUnit.SECONDS);
+        Assert.assertEquals(200, response.getStatusCode());
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,184 @@
+package ZeroKit;
+
+import ZeroKit.Http.HttpConnectionPool;
+import ZeroKit.Http.HttpResponse;
+import ZeroKit.Http.HttpTransport;
+import ZeroKit.Http.HttpTransports;
+import ZeroKit.Utils.IOUtils;
+import ZeroKit.Utils.Sha256;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stress tests hammering a single shared admin API client instance from many threads
+ * The local server verifies the signature of every request.
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class ZeroKitAdminApiClientConcurrencyTest {
+    // Admin key of the local tenant
+    private static final String AdminKey = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+    // Number of calling threads
+    private static final int ThreadCount = 32;
+
+    // Number of calls per thread
+    private static final int CallsPerThread = 25;
+
+    // Local server verifying the signatures
+    private HttpServer server;
+
+    // Executor of the local server
+    private ExecutorService serverExecutor;
+
+    // Service URL of the local tenant
+    private String serviceUrl;
+
+    // Number of requests with valid signature
+    private AtomicInteger verified;
+
+    @Before
+    public void startServer() throws IOException {
+        final ZeroKitAdminApiSigner signer = new ZeroKitAdminApiSigner(AdminKey);
+        verified = new AtomicInteger();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = IOUtils.readAll(exchange.getRequestBody());
+                Headers headers = exchange.getRequestHeaders();
+
+                StringBuilder sb = new StringBuilder();
+                sb.append(exchange.getRequestMethod()).append('\n');
+                sb.append(exchange.getRequestURI().getRawPath().substring(1));
+                if (exchange.getRequestURI().getRawQuery() != null)
+                    sb.append('?').append(exchange.getRequestURI().getRawQuery());
+                for (String name : headers.getFirst("HMACHeaders").split(","))
+                    sb.append('\n').append(name).append(':').append(headers.getFirst(name));
+
+                boolean valid = ("AdminKey " + signer.hmacSha256(sb.toString())).equals(headers.getFirst("Authorization"))
+                        && Sha256.hash(body).equals(headers.getFirst("Content-SHA256"))
+                        && headers.getFirst("TresoritDate").matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}Z");
+
+                byte[] response = valid
+                        ? ("{\"Echo\":\"" + new String(body, "UTF-8") + "\"}").getBytes("UTF-8")
+                        : "{\"ErrorCode\":\"InvalidAuthorization\",\"ErrorMessage\":\"Bad signature.\"}".getBytes("UTF-8");
+                if (valid)
+                    verified.incrementAndGet();
+
+                exchange.sendResponseHeaders(valid ? 200 : 401, response.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(response);
+                os.close();
+            }
+        });
+        serverExecutor = Executors.newFixedThreadPool(16);
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        serviceUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/tenant-abcdefgh";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @org.junit.Test
+    public void sharedClientSignsConcurrentCalls() throws Exception {
+        ZeroKitAdminApiClient client = new ZeroKitAdminApiClient(serviceUrl, AdminKey);
+
+        hammer(client);
+    }
+
+    @org.junit.Test
+    public void sharedPooledClientSignsConcurrentCalls() throws Exception {
+        ZeroKitAdminApiClient client = new ZeroKitAdminApiClient(serviceUrl, AdminKey);
+        HttpConnectionPool pool = new HttpConnectionPool(8);
+        client.setConnectionPool(pool);
+
+        hammer(client);
+
+        Assert.assertEquals(0, pool.getStats().getLeased());
+        Assert.assertTrue(pool.getStats().getCreated() <= 8);
+        pool.close();
+    }
+
+    @org.junit.Test
+    public void sharedJavaNetHttpClientSignsConcurrentCalls() throws Exception {
+        Assume.assumeTrue(HttpTransports.isJavaNetHttpAvailable());
+
+        ZeroKitAdminApiClient client = new ZeroKitAdminApiClient(serviceUrl, AdminKey);
+        HttpTransport transport = HttpTransports.javaNetHttp();
+        client.setTransport(transport);
+
+        // Content-Length is generated by java.net.http, it must match the signed value for empty bodies too
+        Assert.assertEquals(200, client.doHttpCall(client.createPostRequest("/api/v4/admin/user/echo")).getStatusCode());
+        verified.set(0);
+
+        hammer(client);
+        transport.close();
+    }
+
+    /**
+     * Calls the given client from many threads at once and checks every response
+     * @param client Shared client to call
+     */
+    private void hammer(final ZeroKitAdminApiClient client) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < ThreadCount; t++) {
+            final int threadIndex = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < CallsPerThread; i++) {
+                            String payload = "t" + threadIndex + "c" + i;
+                            HttpResponse response = client.doHttpCall(client.createPostRequest("/api/v4/admin/user/echo").setContents(payload));
+
+                            Assert.assertEquals(200, response.getStatusCode());
+                            Assert.assertEquals("{\"Echo\":\"" + payload + "\"}", response.getStringContents());
+                        }
+                    }
+                    catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+
+        if (!errors.isEmpty())
+            throw new AssertionError(errors.size() + " calls failed, first error: " + errors.get(0), errors.get(0));
+
+        Assert.assertEquals(ThreadCount * CallsPerThread, verified.get());
+    }
+}
@@ -0,0 +1,128 @@
+package ZeroKit;
+
+import ZeroKit.Http.HttpMethod;
+import ZeroKit.Http.HttpRequest;
+import ZeroKit.Testing.ZeroKitAdminApiStubServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests of the hedged calls of the admin API client
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class ZeroKitAdminApiClientHedgingTest {
+    // Admin key of the stub tenant
+    private static final String AdminKey = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+    // Hedged endpoint
+    private static final String SetUserState = "/api/v4/admin/user/set-user-state";
+
+    // Number of calls measuring the latency before hedging starts
+    private static final int WarmupCalls = 30;
+
+    // Stub server
+    private ZeroKitAdminApiStubServer server;
+
+    // Client of the stub tenant
+    private ZeroKitAdminApiClient client;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new ZeroKitAdminApiStubServer(AdminKey, "abcdefgh").start();
+        server.addUser("user1");
+        client = new ZeroKitAdminApiClient(server.getServiceUrl(), AdminKey);
+        client.setHedgingPolicy(new HedgingPolicy().setMinDelayMillis(50).allow(HttpMethod.POST, SetUserState));
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    @org.junit.Test
+    public void slowCallsAreHedged() throws IOException {
+        for (int i = 0; i < WarmupCalls; i++)
+            Assert.assertEquals(200, client.doHttpCall(setUserState()).getStatusCode());
+        Assert.assertEquals(0, client.getHedgingPolicy().getHedgedCount());
+
+        server.injectLatency(1, 2000);
+        long start = System.nanoTime();
+        Assert.assertEquals(200, client.doHttpCall(setUserState()).getStatusCode());
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assert.assertTrue("Elapsed " + elapsed + " ms.", elapsed < 1000);
+        Assert.assertEquals(1, client.getHedgingPolicy().getHedgedCount());
+        Assert.assertEquals(1, client.getHedgingPolicy().getHedgeWinCount());
+        Assert.assertEquals(WarmupCalls + 2, server.getRequestCount());
+        Assert.assertEquals(0, server.getRejectedCount());
+    }
+
+    @org.junit.Test
+    public void callsAreNotHedgedBeforeTheLatencyIsKnown() throws IOException {
+        server.injectLatency(1, 300);
+        Assert.assertEquals(200, client.doHttpCall(setUserState()).getStatusCode());
+
+        Assert.assertEquals(0, client.getHedgingPolicy().getHedgedCount());
+        Assert.assertEquals(1, server.getRequestCount());
+    }
+
+    @org.junit.Test
+    public void otherEndpointsAreNotHedged() throws IOException {
+        HedgingPolicy policy = client.getHedgingPolicy();
+        for (int i = 0; i < WarmupCalls; i++)
+            client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+
+        server.injectLatency(1, 300);
+        client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+
+        Assert.assertEquals(0, policy.getHedgedCount());
+        Assert.assertEquals(WarmupCalls + 1, server.getRequestCount());
+    }
+
+    @org.junit.Test
+    public void nonIdempotentEndpointsRequireExplicitOptIn() {
+        HedgingPolicy policy = new HedgingPolicy();
+        for (String path : new String[] { "/api/v4/admin/tenant/upload-custom-content", "api/v4/admin/tenant/upload-custom-content/",
+                "upload-custom-content", "user/init-user-registration", "/user/init-user-registration" }) {
+            try {
+                policy.allow(HttpMethod.PUT, path);
+                Assert.fail(path);
+            }
+            catch (IllegalArgumentException e) {
+                Assert.assertTrue(policy.getEndpoints().isEmpty());
+            }
+        }
+
+        policy.allowNonIdempotent(HttpMethod.PUT, "/api/v4/admin/tenant/upload-custom-content");
+        Assert.assertTrue(policy.getEndpoints().contains("PUT /api/v4/admin/tenant/upload-custom-content"));
+        Assert.assertFalse(policy.isHedged("POST /api/v4/admin/tenant/upload-custom-content"));
+
+        policy.allow(HttpMethod.POST, "api/v4/admin/user/set-user-state/");
+        Assert.assertTrue(policy.isHedged("POST /api/v4/admin/user/set-user-state"));
+        Assert.assertFalse(policy.isHedged("GET /api/v4/admin/user/set-user-state"));
+    }
+
+    @org.junit.Test
+    public void validationsOfRegistrationsAreNotIdempotent() {
+        HedgingPolicy policy = new HedgingPolicy();
+        try {
+            policy.allow(HttpMethod.POST, "/api/v4/admin/user/validate-user-registration");
+            Assert.fail();
+        }
+        catch (IllegalArgumentException e) {
+            // Expected, the validation consumes the registration session
+        }
+
+        Assert.assertTrue(policy.getEndpoints().isEmpty());
+        Assert.assertTrue(HedgingPolicy.isNonIdempotent("/api/v4/admin/user/validate-user-registration"));
+    }
+
+    private HttpRequest setUserState() throws IOException {
+        return client.createPostRequest(SetUserState).setContents("{\"UserId\":\"user1\",\"Enabled\":true}");
+    }
+}
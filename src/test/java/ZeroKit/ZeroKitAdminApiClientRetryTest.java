@@ -0,0 +1,238 @@
+package ZeroKit;
+
+import ZeroKit.Http.HttpConnectionPool;
+import ZeroKit.Http.HttpContent;
+import ZeroKit.Http.HttpRequest;
+import ZeroKit.Http.HttpResponse;
+import ZeroKit.Testing.ZeroKitAdminApiStubServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests of the retries of the admin API client
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class ZeroKitAdminApiClientRetryTest {
+    // Admin key of the stub tenant
+    private static final String AdminKey = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+    // Stub server
+    private ZeroKitAdminApiStubServer server;
+
+    // Client of the stub tenant
+    private ZeroKitAdminApiClient client;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new ZeroKitAdminApiStubServer(AdminKey, "abcdefgh").start();
+        client = new ZeroKitAdminApiClient(server.getServiceUrl(), AdminKey);
+        client.setRetryPolicy(new RetryPolicy().setBackoff(1, 10));
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    @org.junit.Test
+    public void retriesTransientStatusCodesWithFreshSignatures() throws IOException {
+        server.addUser("user1");
+        server.injectFailures(1, 503, null);
+        server.injectFailures(1, 502, "BadGateway");
+
+        HttpResponse response = client.doHttpCall(setUserState());
+
+        Assert.assertEquals(200, response.getStatusCode());
+        Assert.assertEquals(3, server.getRequestCount());
+        Assert.assertEquals(0, server.getRejectedCount());
+        Assert.assertEquals(2, client.getRetryPolicy().getRetryCount());
+    }
+
+    @org.junit.Test
+    public void returnsTheLastFailureAfterTheLastAttempt() throws IOException {
+        server.addUser("user1");
+        server.injectFailures(5, 504, null);
+
+        HttpResponse response = client.doHttpCall(setUserState());
+
+        Assert.assertEquals(504, response.getStatusCode());
+        Assert.assertEquals(RetryPolicy.DefaultMaxAttempts, server.getRequestCount());
+    }
+
+    @org.junit.Test
+    public void gatewayFailuresOfNonIdempotentCallsAreRetriedOnlyIfAllowed() throws IOException {
+        server.injectFailures(1, 504, null);
+        HttpResponse response = client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+
+        Assert.assertEquals(504, response.getStatusCode());
+        Assert.assertEquals(1, server.getRequestCount());
+        Assert.assertEquals(0, client.getRetryPolicy().getRetryCount());
+
+        // Unavailable services did not process the request
+        server.injectFailures(1, 503, null);
+        Assert.assertEquals(200, client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration")).getStatusCode());
+        Assert.assertEquals(3, server.getRequestCount());
+
+        client.getRetryPolicy().setRetryNonIdempotent(true);
+        server.injectFailures(1, 502, null);
+        Assert.assertEquals(200, client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration")).getStatusCode());
+        Assert.assertEquals(5, server.getRequestCount());
+    }
+
+    @org.junit.Test
+    public void retriesOnlySelectedErrorCodes() throws IOException {
+        client.getRetryPolicy().setRetryableErrorCodes("Throttled");
+
+        server.injectFailures(1, 429, "Throttled");
+        Assert.assertEquals(200, client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration")).getStatusCode());
+
+        server.injectFailures(1, 400, "BadInput");
+        try {
+            client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+            Assert.fail();
+        }
+        catch (ZeroKitAdminApiException e) {
+            Assert.assertEquals("BadInput", e.getErrorCode());
+        }
+        Assert.assertEquals(3, server.getRequestCount());
+    }
+
+    @org.junit.Test
+    public void retriesDroppedConnectionsWithReplayedContents() throws IOException {
+        final byte[] data = "{\"UserId\":\"nobody\",\"Enabled\":true}".getBytes("UTF-8");
+        final AtomicInteger opened = new AtomicInteger();
+        HttpContent content = HttpContent.ofSource(data.length, new HttpContent.Source() {
+            @Override
+            public InputStream open() {
+                opened.incrementAndGet();
+                return new ByteArrayInputStream(data);
+            }
+        });
+
+        HttpConnectionPool pool = new HttpConnectionPool();
+        client.setConnectionPool(pool);
+        server.injectFailures(1, 0, null);
+
+        try {
+            client.doHttpCall(client.createPostRequest("/api/v4/admin/user/set-user-state").setContent(content));
+            Assert.fail();
+        }
+        catch (ZeroKitAdminApiException e) {
+            Assert.assertEquals("UserNotExists", e.getErrorCode());
+        }
+
+        // One pass for the hash, one per attempt for the body
+        Assert.assertEquals(2, server.getRequestCount());
+        Assert.assertEquals(0, server.getRejectedCount());
+        Assert.assertEquals(3, opened.get());
+        pool.close();
+    }
+
+    @org.junit.Test
+    public void droppedConnectionsOfNonIdempotentCallsAreRetriedOnlyIfAllowed() throws IOException {
+        HttpConnectionPool pool = new HttpConnectionPool();
+        client.setConnectionPool(pool);
+        server.injectFailures(1, 0, null);
+
+        try {
+            client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+            Assert.fail();
+        }
+        catch (IOException e) {
+            // Expected, the service may have registered the user
+        }
+        Assert.assertEquals(1, server.getRequestCount());
+        Assert.assertEquals(0, client.getRetryPolicy().getRetryCount());
+
+        client.getRetryPolicy().setRetryNonIdempotent(true);
+        server.injectFailures(1, 0, null);
+        Assert.assertEquals(200, client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration")).getStatusCode());
+        Assert.assertEquals(3, server.getRequestCount());
+        pool.close();
+    }
+
+    @org.junit.Test
+    public void droppedValidationsOfRegistrationsAreNotRetried() throws IOException {
+        HttpConnectionPool pool = new HttpConnectionPool();
+        client.setConnectionPool(pool);
+        UserRegistration registration = client.initUserRegistration();
+        server.injectFailures(1, 0, null);
+
+        try {
+            client.validateUserRegistration(registration, "verifier");
+            Assert.fail();
+        }
+        catch (IOException e) {
+            // Expected, the service may have consumed the registration session
+        }
+        Assert.assertEquals(2, server.getRequestCount());
+        Assert.assertEquals(0, client.getRetryPolicy().getRetryCount());
+        pool.close();
+    }
+
+    @org.junit.Test
+    public void clientRejectionsAreRetriedOnlyIfSelected() throws IOException {
+        client.setRateLimiter(new RateLimiter(0.1, 1));
+        client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+
+        try {
+            client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+            Assert.fail();
+        }
+        catch (RateLimitExceededException e) {
+            Assert.assertEquals(RateLimitExceededException.ErrorCode, e.getErrorCode());
+        }
+        Assert.assertEquals(0, client.getRetryPolicy().getRetryCount());
+
+        // Rejected calls were not sent, so even non-idempotent ones can be retried
+        client.getRetryPolicy().setRetryableErrorCodes(RateLimitExceededException.ErrorCode);
+        try {
+            client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
+            Assert.fail();
+        }
+        catch (RateLimitExceededException e) {
+            Assert.assertTrue(client.getRetryPolicy().getRetryCount() > 0);
+        }
+        Assert.assertEquals(1, server.getRequestCount());
+    }
+
+    @org.junit.Test
+    public void retriesAreLimitedByTheBudget() throws IOException {
+        client.getRetryPolicy().setBudget(0, 1);
+        server.injectFailures(4, 503, null);
+
+        Assert.assertEquals(503, client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration")).getStatusCode());
+        Assert.assertEquals(2, server.getRequestCount());
+
+        Assert.assertEquals(503, client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration")).getStatusCode());
+        Assert.assertEquals(3, server.getRequestCount());
+        Assert.assertEquals(1, client.getRetryPolicy().getRetryCount());
+        Assert.assertEquals(2, client.getRetryPolicy().getBudgetExhaustedCount());
+    }
+
+    @org.junit.Test
+    public void backoffIsJitteredAndBounded() {
+        RetryPolicy policy = new RetryPolicy().setBackoff(100, 1000);
+
+        boolean varied = false;
+        long first = policy.computeDelayMillis(4, null);
+        for (int i = 0; i < 100; i++) {
+            long delay = policy.computeDelayMillis(4, null);
+            Assert.assertTrue(delay >= 0 && delay <= 800);
+            Assert.assertTrue(policy.computeDelayMillis(30, null) <= 1000);
+            varied |= delay != first;
+        }
+        Assert.assertTrue(varied);
+    }
+
+    private HttpRequest setUserState() throws IOException {
+        return client.createPostRequest("/api/v4/admin/user/set-user-state").setContents("{\"UserId\":\"user1\",\"Enabled\":true}");
+    }
+}
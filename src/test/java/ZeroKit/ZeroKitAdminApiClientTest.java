@@ -5,7 +5,6 @@ import org.junit.Assert;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -111,14 +110,7 @@ public class ZeroKitAdminApiClientTest {
 
             HttpResponse response = client.doHttpCall(client.createPostRequest("/api/v4/admin/user/init-user-registration"));
 
-            Matcher matcher = Pattern.compile(
-                    "\\A\\s*[^\"]*\"UserId\"\\s*\\:\\s*\"(?<userid>((?=\\\\)\\\\(\\\"|\\/|\\\\|b|f|n|r|t|u[0-9a-f]{4})|[^\\\\\"]*)*)\".*}\\s*\\z",
-                    Pattern.DOTALL).
-                    matcher(response.getStringContents());
-
-            Assert.assertTrue(matcher.matches());
-
-            String userId = matcher.group("userid");
+            String userId = UserRegistration.parse(response.getContents()).getUserId();
 
             response = client.doHttpCall(client.createPostRequest("/api/v4/admin/user/set-user-state").
                     setContents("{\"UserId\":\"" + userId + "\", \"Enabled\":\"False\"}"));
@@ -0,0 +1,105 @@
+package ZeroKit;
+
+import ZeroKit.Http.HttpEndpoint;
+import ZeroKit.Http.HttpMethod;
+import ZeroKit.Http.HttpResponse;
+import ZeroKit.Testing.ZeroKitAdminApiStubServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for the typed endpoint methods of the client, against the stub server
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class ZeroKitAdminApiClientTypedTest {
+    // Admin key of the stub tenant
+    private static final String AdminKey = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+    // Stub server
+    private ZeroKitAdminApiStubServer server;
+
+    // Client of the stub tenant
+    private ZeroKitAdminApiClient client;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new ZeroKitAdminApiStubServer(AdminKey, "abcdefgh").start();
+        client = new ZeroKitAdminApiClient(server.getServiceUrl(), AdminKey);
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    @org.junit.Test
+    public void usersCanBeRegisteredAndDisabled() throws IOException {
+        UserRegistration registration = client.initUserRegistration();
+        Assert.assertTrue(registration.getUserId().endsWith("@abcdefgh.tresorit.io"));
+        Assert.assertNotNull(registration.getRegSessionId());
+        Assert.assertNotNull(registration.getRegSessionVerifier());
+
+        try {
+            client.setUserState(registration.getUserId(), false);
+            Assert.fail();
+        }
+        catch (ZeroKitAdminApiException e) {
+            Assert.assertEquals("UserNotExists", e.getErrorCode());
+        }
+
+        client.validateUserRegistration(registration, "verifier");
+        Assert.assertEquals(Boolean.TRUE, server.isUserEnabled(registration.getUserId()));
+
+        client.setUserState(registration.getUserId(), false);
+        Assert.assertEquals(Boolean.FALSE, server.isUserEnabled(registration.getUserId()));
+    }
+
+    @org.junit.Test
+    public void registrationsAreValidatedOnce() throws IOException {
+        UserRegistration registration = client.initUserRegistration();
+        client.validateUserRegistration(registration, "verifier");
+
+        try {
+            client.validateUserRegistration(registration, "verifier");
+            Assert.fail();
+        }
+        catch (ZeroKitAdminApiException e) {
+            Assert.assertEquals("RegistrationNotExists", e.getErrorCode());
+        }
+    }
+
+    @org.junit.Test
+    public void reusedRequestsAreSignedAgain() throws IOException {
+        HttpEndpoint endpoint = client.createEndpoint(HttpMethod.PUT, "/api/v4/admin/tenant/upload-custom-content?fileName=");
+
+        for (String fileName : new String[] { "a.css", "b.css", "b.css" }) {
+            byte[] css = ("/* " + fileName + " */").getBytes(StandardCharsets.UTF_8);
+            HttpResponse response = client.doHttpCall(endpoint.reuseRequest(fileName)
+                    .setHeader("Content-Type", "text/css")
+                    .setContents(css));
+
+            Assert.assertEquals(200, response.getStatusCode());
+            Assert.assertArrayEquals(css, server.getCustomContent(fileName));
+        }
+    }
+
+    @org.junit.Test
+    public void customContentsCanBeUploaded() throws IOException {
+        byte[] css = "body { background-color: red; }".getBytes(StandardCharsets.UTF_8);
+
+        CustomContent content = client.uploadCustomContent("css/login page.css", "text/css", css);
+
+        Assert.assertEquals("login page.css", content.getName());
+        Assert.assertEquals("css/login page.css", content.getPath());
+        Assert.assertEquals(css.length, content.getSize());
+        Assert.assertEquals("text/css", content.getContentType());
+        Assert.assertNotNull(content.getUrl());
+        Assert.assertNotNull(content.getEtag());
+        Assert.assertArrayEquals(css, server.getCustomContent("css/login page.css"));
+    }
+}
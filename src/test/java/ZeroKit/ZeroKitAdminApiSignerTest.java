@@ -0,0 +1,87 @@
+package ZeroKit;
+
+import ZeroKit.Http.HttpMethod;
+import ZeroKit.Http.HttpRequest;
+import org.junit.Assert;
+import org.junit.Assume;
+
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.Random;
+
+/**
+ * Tests for the admin API signer
+ * @author 		hami89 (Gergely Hamos, hami89@gmail.com)
+ * @copyright	Copyright © Tresorit AG. 2017
+ */
+public class ZeroKitAdminApiSignerTest {
+    // Admin key used for the tests
+    private static final String AdminKey = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    // Maximum number of bytes a signed request may allocate (the signature string and the header iterator,
+    // building the canonical string took about 2.4 KB)
+    private static final long MaxBytesPerSignature = 256;
+
+    @org.junit.Test
+    public void signsLikeTheCanonicalString() throws Exception {
+        ZeroKitAdminApiSigner signer = new ZeroKitAdminApiSigner(AdminKey);
+
+        HttpRequest request = createRequest();
+        Assert.assertEquals(signer.hmacSha256(ZeroKitAdminApiSigner.canonicalizeRequest(request)), signer.signRequest(request));
+
+        // Query, no leading slash handling and non-ASCII (incl. surrogate pairs and unpaired surrogates) header values
+        request = HttpRequest.createRequest(new URL("https://abcdefgh.api.tresorit.io//api/v4/admin/tenant/upload-custom-content?path=logo.png&x=%C3%A9"))
+                .setMethod(HttpMethod.PUT)
+                .setHeader("X-Name", "éő€😀\ud83d|\ude00")
+                .addHeader("X-Name", "second");
+        Assert.assertEquals(signer.hmacSha256(ZeroKitAdminApiSigner.canonicalizeRequest(request)), signer.signRequest(request));
+
+        // Longer than the signing buffer
+        Random random = new Random(5);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++)
+            sb.append((char) (random.nextInt(0x3000) + 0x20));
+        request = createRequest().setHeader("X-Long", sb.toString());
+        Assert.assertEquals(signer.hmacSha256(ZeroKitAdminApiSigner.canonicalizeRequest(request)), signer.signRequest(request));
+    }
+
+    @org.junit.Test
+    public void signingAllocatesOnlyTheSignature() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        ZeroKitAdminApiSigner signer = new ZeroKitAdminApiSigner(AdminKey);
+        HttpRequest request = createRequest();
+        long threadId = Thread.currentThread().getId();
+
+        // Warm-up, so the signing path is compiled
+        int iterations = 20000;
+        for (int i = 0; i < 5 * iterations; i++)
+            signer.signRequest(request);
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++)
+            signer.signRequest(request);
+        long perSignature = (threads.getThreadAllocatedBytes(threadId) - before) / iterations;
+
+        Assert.assertTrue("Signing allocated " + perSignature + " bytes per request.", perSignature <= MaxBytesPerSignature);
+    }
+
+    /**
+     * Creates a typical admin API request
+     * @return Returns the created request
+     */
+    private static HttpRequest createRequest() throws Exception {
+        return HttpRequest.createRequest(new URL("https://abcdefgh.api.tresorit.io/api/v4/admin/user/init-user-registration"))
+                .setMethod(HttpMethod.POST)
+                .setHeader("UserId", "admin@abcdefgh.tresorit.io")
+                .setHeader("TresoritDate", "2017-01-01T00:00:00Z")
+                .setHeader("Content-SHA256", "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855")
+                .setHeader("Content-Length", 0)
+                .setHeader("Content-Type", "application/json")
+                .setHeader("HMACHeaders", "UserId,TresoritDate,Content-SHA256,Content-Length,Content-Type,HMACHeaders");
+    }
+}